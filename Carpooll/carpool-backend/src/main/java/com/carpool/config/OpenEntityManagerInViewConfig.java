@@ -0,0 +1,43 @@
+package com.carpool.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Open-session-in-view for every endpoint except the ones that wait on the payment provider.
+ * The open EntityManager keeps its JDBC connection until the response is written, so during a
+ * provider incident each waiting payment request would pin a connection and the rest of the API
+ * would queue for the pool. Those endpoints only read plain columns, so they do without it.
+ * Notification streams stay open for many minutes and never touch the database, so they are
+ * left out as well.
+ *
+ * Declaring the interceptor here replaces the one Spring Boot registers for all paths.
+ */
+@Configuration
+public class OpenEntityManagerInViewConfig implements WebMvcConfigurer {
+
+    static final String[] PAYMENT_PROVIDER_PATHS = {
+            "/api/bookings/*/initiate-payment",
+            "/api/bookings/*/create-checkout-session",
+            "/api/bookings/*/confirm-checkout"
+    };
+
+    static final String[] STREAM_PATHS = {
+            "/api/notifications/stream/*"
+    };
+
+    @Bean
+    public OpenEntityManagerInViewInterceptor openEntityManagerInViewInterceptor() {
+        return new OpenEntityManagerInViewInterceptor();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addWebRequestInterceptor(openEntityManagerInViewInterceptor())
+                .excludePathPatterns(PAYMENT_PROVIDER_PATHS)
+                .excludePathPatterns(STREAM_PATHS);
+    }
+}
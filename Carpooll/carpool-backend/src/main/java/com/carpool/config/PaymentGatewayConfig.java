@@ -0,0 +1,58 @@
+package com.carpool.config;
+
+import com.carpool.service.PaymentGateway;
+import com.carpool.service.ResilientPaymentGateway;
+import com.carpool.service.SimulatedPaymentGateway;
+import com.carpool.service.StripeClient;
+import com.carpool.service.StripePaymentGateway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class PaymentGatewayConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentGatewayConfig.class);
+
+    /**
+     * payments.gateway = stripe | simulator | auto (default): auto uses Stripe when
+     * STRIPE_SECRET_KEY is set and the simulator otherwise. Either one sits behind the bulkhead,
+     * circuit breaker and timeouts configured under payments.resilience.
+     */
+    @Bean
+    public ResilientPaymentGateway paymentGateway(
+            StripeClient stripeClient,
+            @Value("${payments.gateway:auto}") String mode,
+            @Value("${payments.checkout.success-url:http://localhost:3000/payment-success?session_id={CHECKOUT_SESSION_ID}}") String successUrl,
+            @Value("${payments.checkout.cancel-url:http://localhost:3000/payment-cancel}") String cancelUrl,
+            @Value("${payments.simulator.latency-ms:150}") long latencyMs,
+            @Value("${payments.simulator.jitter-ms:100}") long jitterMs,
+            @Value("${payments.simulator.failure-rate:0}") double failureRate,
+            @Value("${payments.simulator.max-per-second:0}") int maxPerSecond,
+            @Value("${payments.resilience.max-concurrent:16}") int maxConcurrent,
+            @Value("${payments.resilience.window-size:20}") int windowSize,
+            @Value("${payments.resilience.minimum-calls:10}") int minimumCalls,
+            @Value("${payments.resilience.failure-rate-percent:50}") int failureRatePercent,
+            @Value("${payments.resilience.open-ms:30000}") long openMs,
+            @Value("${payments.resilience.timeout.create-intent-ms:5000}") long createIntentTimeoutMs,
+            @Value("${payments.resilience.timeout.create-checkout-ms:5000}") long createCheckoutTimeoutMs,
+            @Value("${payments.resilience.timeout.retrieve-checkout-ms:3000}") long retrieveCheckoutTimeoutMs,
+            @Value("${payments.resilience.timeout.list-intents-ms:10000}") long listIntentsTimeoutMs,
+            @Value("${payments.resilience.timeout.refund-ms:5000}") long refundTimeoutMs
+    ) {
+        boolean useStripe = switch (mode.trim().toLowerCase()) {
+            case "stripe" -> true;
+            case "simulator" -> false;
+            default -> stripeClient.isConfigured();
+        };
+        PaymentGateway provider = useStripe
+                ? new StripePaymentGateway(stripeClient, successUrl, cancelUrl)
+                : new SimulatedPaymentGateway(latencyMs, jitterMs, failureRate, maxPerSecond, successUrl);
+        log.info("Payment gateway: {}", provider.name());
+        return new ResilientPaymentGateway(provider, new ResilientPaymentGateway.Settings(
+                maxConcurrent, windowSize, minimumCalls, failureRatePercent, openMs,
+                createIntentTimeoutMs, createCheckoutTimeoutMs, retrieveCheckoutTimeoutMs, listIntentsTimeoutMs, refundTimeoutMs));
+    }
+}
@@ -7,8 +7,21 @@ import com.carpool.model.Booking;
 import com.carpool.repository.UserRepository;
 import com.carpool.repository.RideRepository;
 import com.carpool.repository.BookingRepository;
+import com.carpool.model.LedgerAccount;
+import com.carpool.repository.PaymentDiscrepancyRepository;
+import com.carpool.service.FareEngine;
+import com.carpool.service.LedgerService;
+import com.carpool.service.PaymentGateway;
+import com.carpool.service.PaymentReconciliationService;
+import com.carpool.service.ResilientPaymentGateway;
+import com.carpool.service.TaxReportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -20,11 +33,21 @@ public class AdminController {
     private final UserRepository userRepository;
     private final RideRepository rideRepository;
     private final BookingRepository bookingRepository;
+    private final ResilientPaymentGateway paymentGateway;
+    private final LedgerService ledgerService;
+    private final PaymentReconciliationService reconciliation;
+    private final PaymentDiscrepancyRepository discrepancyRepository;
+    private final TaxReportService taxReports;
 
-    public AdminController(UserRepository userRepository, RideRepository rideRepository, BookingRepository bookingRepository) {
+    public AdminController(UserRepository userRepository, RideRepository rideRepository, BookingRepository bookingRepository, ResilientPaymentGateway paymentGateway, LedgerService ledgerService, PaymentReconciliationService reconciliation, PaymentDiscrepancyRepository discrepancyRepository, TaxReportService taxReports) {
         this.userRepository = userRepository;
         this.rideRepository = rideRepository;
         this.bookingRepository = bookingRepository;
+        this.paymentGateway = paymentGateway;
+        this.ledgerService = ledgerService;
+        this.reconciliation = reconciliation;
+        this.discrepancyRepository = discrepancyRepository;
+        this.taxReports = taxReports;
     }
 
     @GetMapping("/users")
@@ -37,6 +60,78 @@ public class AdminController {
     @GetMapping("/bookings")
     public List<Booking> getAllBookings() { return bookingRepository.findAll(); }
 
+    // Circuit state, bulkhead usage and call counters for the payment provider
+    @GetMapping("/payments/gateway")
+    public Map<String, Object> paymentGatewayMetrics() { return paymentGateway.metrics(); }
+
+    // Platform revenue and GST collected, read from the ledger's running balances
+    @GetMapping("/ledger")
+    public Map<String, Object> ledgerSummary() {
+        LedgerAccount fees = ledgerService.account(LedgerService.PLATFORM_FEES);
+        LedgerAccount cgst = ledgerService.account(LedgerService.CGST_PAYABLE);
+        LedgerAccount sgst = ledgerService.account(LedgerService.SGST_PAYABLE);
+        LedgerAccount clearing = ledgerService.account(LedgerService.PAYMENTS_CLEARING);
+        return Map.of(
+                "platformFeesPaise", fees.balancePaise(),
+                "platformFees", FareEngine.Quote.rupees(fees.balancePaise()),
+                "cgstPaise", cgst.balancePaise(),
+                "sgstPaise", sgst.balancePaise(),
+                "collectedPaise", -clearing.balancePaise(),
+                "payments", clearing.getEntryCount()
+        );
+    }
+
+    // Last reconciliation run and the most recent payments it flagged
+    @GetMapping("/payments/reconciliation")
+    public Map<String, Object> reconciliationStatus() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("lastRun", reconciliation.lastReport());
+        body.put("discrepancies", discrepancyRepository.findTop100ByOrderByIdDesc());
+        return body;
+    }
+
+    // Run the nightly reconciliation now
+    @PostMapping("/payments/reconciliation")
+    public ResponseEntity<?> runReconciliation() {
+        try {
+            return ResponseEntity.ok(reconciliation.reconcileRecent());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+        } catch (PaymentGateway.GatewayException e) {
+            return ResponseEntity.status(e.getStatus()).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // GST and platform fees per month across all confirmed bookings net of refunds, as CSV (amounts in rupees)
+    @GetMapping("/reports/tax")
+    public ResponseEntity<?> taxReport() {
+        TaxReportService.Report report;
+        try {
+            report = taxReports.monthly();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+        }
+        StringBuilder csv = new StringBuilder("month,bookings,refunds,collected,platformFee,driverCommission,platformRevenue,cgst,sgst,gst\n");
+        for (TaxReportService.Month m : report.months()) {
+            csv.append(m.month()).append(',').append(m.bookings()).append(',').append(m.refunds()).append(',')
+                    .append(rupees(m.collectedPaise())).append(',')
+                    .append(rupees(m.platformFeePaise())).append(',')
+                    .append(rupees(m.driverCommissionPaise())).append(',')
+                    .append(rupees(m.platformRevenuePaise())).append(',')
+                    .append(rupees(m.cgstPaise())).append(',')
+                    .append(rupees(m.sgstPaise())).append(',')
+                    .append(rupees(m.gstPaise())).append('\n');
+        }
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"tax-report.csv\"")
+                .body(csv.toString());
+    }
+
+    private static String rupees(long paise) {
+        return BigDecimal.valueOf(paise, 2).toPlainString();
+    }
+
     @PostMapping("/approve/{id}")
     public ResponseEntity<?> approveAdmin(@PathVariable Long id) {
         return userRepository.findById(id).map(u -> {
@@ -2,34 +2,39 @@ package com.carpool.controller;
 
 import com.carpool.model.Booking;
 import com.carpool.model.Ride;
+import com.carpool.model.WaitlistEntry;
 import com.carpool.repository.BookingRepository;
+import com.carpool.repository.PassengerBookingViewRepository;
 import com.carpool.repository.RideRepository;
 import com.carpool.repository.UserRepository;
+import com.carpool.service.BookingArchiveService;
+import com.carpool.service.BookingCancellationService;
+import com.carpool.service.BookingPaymentService;
 import com.carpool.service.BookingService;
-import com.carpool.service.EmailService;
-import com.carpool.service.NotificationService;
+import com.carpool.service.FareEngine;
+import com.carpool.service.OutboxService;
+import com.carpool.service.PaymentGateway;
+import com.carpool.service.PaymentIntentService;
+import com.carpool.service.SeatsReleasedEvent;
+import com.carpool.service.ScheduleIndex;
+import com.carpool.service.SurgePricingService;
+import com.carpool.service.WaitlistService;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 import jakarta.servlet.http.HttpServletRequest;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.UUID;
-
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.http.HttpRequest.BodyPublishers;
-import java.net.http.HttpResponse.BodyHandlers;
-import java.net.URI;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/bookings")
@@ -39,36 +44,97 @@ public class BookingController {
     private final BookingService bookingService;
     private final RideRepository rideRepository;
     private final UserRepository userRepository;
-    private final NotificationService notificationService;
+    private final OutboxService outboxService;
     private final BookingRepository bookingRepository;
-    private final EmailService emailService;
+    private final PassengerBookingViewRepository bookingViewRepository;
+    private final WaitlistService waitlistService;
+    private final BookingCancellationService cancellationService;
+    private final BookingPaymentService bookingPayments;
+    private final BookingArchiveService bookingArchive;
+    private final ScheduleIndex scheduleIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PaymentGateway paymentGateway;
+    private final PaymentIntentService paymentIntents;
+    private final FareEngine fareEngine;
+    private final SurgePricingService surgePricing;
+    private final TransactionTemplate tx;
 
 
     public BookingController(
             BookingService bookingService,
             RideRepository rideRepository,
             UserRepository userRepository,
-            NotificationService notificationService,
+            OutboxService outboxService,
             BookingRepository bookingRepository,
-            EmailService emailService
+            PassengerBookingViewRepository bookingViewRepository,
+            WaitlistService waitlistService,
+            BookingCancellationService cancellationService,
+            BookingPaymentService bookingPayments,
+            BookingArchiveService bookingArchive,
+            ScheduleIndex scheduleIndex,
+            ApplicationEventPublisher eventPublisher,
+            PaymentGateway paymentGateway,
+            PaymentIntentService paymentIntents,
+            FareEngine fareEngine,
+            SurgePricingService surgePricing,
+            TransactionTemplate tx
     ) {
         this.bookingService = bookingService;
         this.rideRepository = rideRepository;
         this.userRepository = userRepository;
-        this.notificationService = notificationService;
+        this.outboxService = outboxService;
         this.bookingRepository = bookingRepository;
-        this.emailService = emailService;
+        this.bookingViewRepository = bookingViewRepository;
+        this.waitlistService = waitlistService;
+        this.cancellationService = cancellationService;
+        this.bookingPayments = bookingPayments;
+        this.bookingArchive = bookingArchive;
+        this.scheduleIndex = scheduleIndex;
+        this.eventPublisher = eventPublisher;
+        this.paymentGateway = paymentGateway;
+        this.paymentIntents = paymentIntents;
+        this.fareEngine = fareEngine;
+        this.surgePricing = surgePricing;
+        this.tx = tx;
     }
 
     @GetMapping("/my")
-    public List<Booking> myBookings(HttpServletRequest request) {
+    public List<Booking> myBookings(
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            HttpServletRequest request
+    ) {
         String email = (String) request.getAttribute("email");
         if (email == null) return List.of();
         return userRepository.findByEmail(email)
-                .map(u -> bookingService.findByRequesterId(u.getId()))
+                .map(u -> bookingArchive.findByRequesterId(u.getId(), includeArchived))
                 .orElse(List.of());
     }
 
+    // Booking history with ride summary and driver details, served from the passenger_booking_view projection
+    @GetMapping("/my/history")
+    public ResponseEntity<?> myBookingHistory(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            HttpServletRequest request
+    ) {
+        String email = (String) request.getAttribute("email");
+        if (email == null) return ResponseEntity.status(401).build();
+        var user = userRepository.findByEmail(email).orElse(null);
+        if (user == null) return ResponseEntity.status(401).build();
+
+        var result = bookingViewRepository.findByRequesterIdOrderByRequestedAtDescBookingIdDesc(
+                user.getId(), PageRequest.of(Math.max(0, page), Math.min(Math.max(1, size), 100)));
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("content", result.getContent());
+        body.put("page", result.getNumber());
+        body.put("size", result.getSize());
+        body.put("totalElements", result.getTotalElements());
+        body.put("totalPages", result.getTotalPages());
+        body.put("last", result.isLast());
+        return ResponseEntity.ok(body);
+    }
+
     @GetMapping("/for-host")
     public List<Map<String, Object>> bookingsForHost(HttpServletRequest request) {
         String email = (String) request.getAttribute("email");
@@ -100,74 +166,27 @@ public class BookingController {
                 .toList();
     }
 
-    // -------------------- PAYMENT FLOW (UNCHANGED) --------------------
+    // -------------------- PAYMENT FLOW --------------------
 
     @PostMapping("/{id}/initiate-payment")
-    public ResponseEntity<?> initiatePayment(@PathVariable Long id, HttpServletRequest request) {
+    public CompletableFuture<ResponseEntity<?>> initiatePayment(@PathVariable Long id, HttpServletRequest request) {
         String email = (String) request.getAttribute("email");
         Booking b = bookingService.findById(id).orElse(null);
         if (b == null || !email.equals(b.getRequesterEmail()))
-            return ResponseEntity.status(403).build();
+            return CompletableFuture.completedFuture(ResponseEntity.status(403).build());
 
-        b.setPaymentInitiatedAt(LocalDateTime.now());
-        bookingService.save(b);
+        Ride ride = rideRepository.findById(b.getRideId()).orElse(null);
+        if (ride == null)
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("message", "Ride not found")));
 
-        String stripeKey = System.getenv("STRIPE_SECRET_KEY");
-        if (stripeKey != null && !stripeKey.isBlank()) {
-            try {
-                Ride ride = rideRepository.findById(b.getRideId()).orElse(null);
-                if (ride == null) return ResponseEntity.badRequest().body(Map.of("message", "Ride not found"));
-
-                int seats = b.getSeatsRequested() > 0 ? b.getSeatsRequested() : 1;
-                double base = ride.getPrice() * seats;
-                double platformFeeRupees = base * 0.05; // 5% platform fee
-                double subtotal = base + platformFeeRupees;
-                double gstRupees = subtotal * 0.036; // 3.6% GST on subtotal (CGST 1.8% + SGST 1.8%)
-                long amount = Math.round((subtotal + gstRupees) * 100);
-
-                String form = "amount=" + amount
-                        + "&currency=inr"
-                        + "&description=" + URLEncoder.encode("Carpool booking: rideId=" + ride.getId(), StandardCharsets.UTF_8)
-                        + "&receipt_email=" + URLEncoder.encode(b.getRequesterEmail() == null ? "" : b.getRequesterEmail(), StandardCharsets.UTF_8)
-                        + "&metadata[bookingId]=" + b.getId();
-
-                HttpClient client = HttpClient.newHttpClient();
-                HttpRequest req = HttpRequest.newBuilder()
-                        .uri(URI.create("https://api.stripe.com/v1/payment_intents"))
-                        .header("Authorization", "Bearer " + stripeKey)
-                        .header("Content-Type", "application/x-www-form-urlencoded")
-                        .POST(BodyPublishers.ofString(form))
-                        .build();
-
-                HttpResponse<String> resp = client.send(req, BodyHandlers.ofString());
-                if (resp.statusCode() >= 400) {
-                    return ResponseEntity.status(502).body(Map.of("message", "Stripe error: " + resp.body()));
-                }
-
-                ObjectMapper mapper = new ObjectMapper();
-                Map<String, Object> parsed = mapper.readValue(resp.body(), new TypeReference<Map<String, Object>>() {});
-                String clientSecret = (String) parsed.get("client_secret");
-                String paymentIntentId = (String) parsed.get("id");
-
-                return ResponseEntity.ok(Map.of(
+        // Reuses the booking's intent when it is still valid; the request thread is released while the gateway answers
+        return paymentIntents.intentFor(b.getId(), ride)
+                .<ResponseEntity<?>>thenApply(intent -> ResponseEntity.ok(Map.of(
                         "status", "INITIATED",
-                        "clientSecret", clientSecret,
-                        "paymentIntentId", paymentIntentId
-                ));
-            } catch (Exception e) {
-                return ResponseEntity.status(502).body(Map.of("message", "Stripe error: " + e.getMessage()));
-            }
-        }
-
-        // Fallback demo behavior (keeps existing demo flow)
-        String clientSecret =
-                "pi_" + UUID.randomUUID().toString().substring(0, 8)
-                        + "_secret_" + UUID.randomUUID().toString().substring(0, 8);
-
-        return ResponseEntity.ok(Map.of(
-                "status", "INITIATED",
-                "clientSecret", clientSecret
-        ));
+                        "clientSecret", intent.clientSecret(),
+                        "paymentIntentId", intent.id()
+                )))
+                .exceptionally(BookingController::gatewayError);
     }
 
     @PostMapping("/{id}/verify-payment")
@@ -193,177 +212,85 @@ public ResponseEntity<?> verifyPayment(
         return ResponseEntity.badRequest().body(Map.of("message", "Transaction ID required"));
     }
 
-    // ✅ Stripe transaction validation
-    if (!txId.startsWith("pi_")) {
-        // notify requester about failed payment attempt
-        try {
-            userRepository.findByEmail(email).ifPresent(u -> {
-                notificationService.create(u, "Payment Failed", "Invalid transaction ID provided.", "PAYMENT", "/my-bookings");
-            });
-        } catch (Exception ignore) {}
-        return ResponseEntity.badRequest()
-                .body(Map.of("message", "Invalid Stripe transaction"));
-    }
-
-    if (bookingRepository.existsByTransactionId(txId)) {
-        try {
-            userRepository.findByEmail(email).ifPresent(u -> {
-                notificationService.create(u, "Payment Failed", "Duplicate transaction detected.", "PAYMENT", "/my-bookings");
-            });
-        } catch (Exception ignore) {}
-        return ResponseEntity.badRequest()
-                .body(Map.of("message", "Duplicate transaction"));
-    }
-
-    Ride ride = rideRepository.findById(b.getRideId()).orElse(null);
-    if (ride == null) {
-        return ResponseEntity.badRequest().body(Map.of("message", "Ride not found"));
-    }
-
-    int updated = rideRepository.deductSeatsIfAvailable(
-            ride.getId(), b.getSeatsRequested());
-
-    if (updated == 0) {
-        try {
-            userRepository.findByEmail(email).ifPresent(u -> {
-                notificationService.create(u, "Payment Failed", "Seats unavailable at the time of confirmation.", "PAYMENT", "/my-bookings");
-            });
-        } catch (Exception ignore) {}
-        return ResponseEntity.badRequest().body(Map.of("message", "Seats unavailable"));
-    }
-
-        b.setTransactionId(txId);
-        b.setPaymentCompletedAt(LocalDateTime.now());
-        b.setConfirmedAt(LocalDateTime.now());
-        b.setStatus(Booking.Status.CONFIRMED);
-        bookingService.save(b);
-
-// 📧 SEND EMAILS AFTER CONFIRMATION AND CREATE NOTIFICATIONS
-        try {
-            Ride rideObj = rideRepository.findById(b.getRideId()).orElse(null);
-            if (rideObj != null) {
-                emailService.sendRideConfirmedEmail(b, rideObj);
-                emailService.sendInvoiceEmail(b, rideObj);   // ✅ THIS LINE IS REQUIRED
-
-                // notify requester
-                if (b.getRequesterEmail() != null && !b.getRequesterEmail().isBlank()) {
-                    userRepository.findByEmail(b.getRequesterEmail()).ifPresent(user -> {
-                        try {
-                            notificationService.create(user, "Payment Successful", "Your payment was successful and booking is confirmed.", "PAYMENT", "/my-bookings");
-                        } catch (Exception ignore) {}
-                    });
-                }
-
-                // notify driver/host
-                if (rideObj.getOwnerEmail() != null && !rideObj.getOwnerEmail().isBlank()) {
-                    userRepository.findByEmail(rideObj.getOwnerEmail()).ifPresent(host -> {
-                        try {
-                            notificationService.create(host, "Passenger Paid", "A passenger has paid for a booking on your ride.", "PAYMENT", "/hosted");
-                        } catch (Exception ignore) {}
-                    });
-
-                    // send driver email informing passenger payment received
-                    emailService.sendPassengerPaidEmail(b, rideObj);
-                }
-
+    // Same confirmation path as the Stripe webhook, so whichever arrives second is a no-op
+    BookingPaymentService.Result result = bookingPayments.confirm(id, txId);
+    switch (result.outcome()) {
+        case CONFIRMED, ALREADY_CONFIRMED:
+            return ResponseEntity.ok(Map.of("status", "CONFIRMED"));
+        case INVALID_TRANSACTION:
+            return ResponseEntity.badRequest().body(Map.of("message", "Invalid Stripe transaction"));
+        case DUPLICATE_TRANSACTION:
+            return ResponseEntity.badRequest().body(Map.of("message", "Duplicate transaction"));
+        case SEATS_UNAVAILABLE:
+            WaitlistEntry entry = result.waitlistEntry();
+            Map<String, Object> body = new HashMap<>();
+            body.put("message", "Seats unavailable");
+            body.put("waitlisted", entry != null);
+            if (entry != null) {
+                body.put("waitlistId", entry.getId());
+                body.put("waitlistPosition", waitlistService.position(entry));
             }
-        } catch (Exception e) {
-            e.printStackTrace(); // IMPORTANT for debugging
-        }
-
-
-
-        return ResponseEntity.ok(Map.of("status", "CONFIRMED"));
+            return ResponseEntity.badRequest().body(body);
+        case RIDE_NOT_FOUND:
+            return ResponseEntity.badRequest().body(Map.of("message", "Ride not found"));
+        default:
+            return ResponseEntity.status(403).build();
+    }
 }
 
 
     @PostMapping("/{id}/create-checkout-session")
-    public ResponseEntity<?> createCheckoutSession(@PathVariable Long id, HttpServletRequest request) {
+    public CompletableFuture<ResponseEntity<?>> createCheckoutSession(@PathVariable Long id, HttpServletRequest request) {
         String email = (String) request.getAttribute("email");
         Booking b = bookingService.findById(id).orElse(null);
         if (b == null || !email.equals(b.getRequesterEmail()))
-            return ResponseEntity.status(403).build();
+            return CompletableFuture.completedFuture(ResponseEntity.status(403).build());
 
-        String stripeKey = System.getenv("STRIPE_SECRET_KEY");
-        if (stripeKey == null || stripeKey.isBlank())
-            return ResponseEntity.badRequest().body(Map.of("message", "Stripe not configured"));
+        Ride ride = rideRepository.findById(b.getRideId()).orElse(null);
+        if (ride == null)
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("message", "Ride not found")));
 
-        try {
-            Ride ride = rideRepository.findById(b.getRideId()).orElse(null);
-            if (ride == null) return ResponseEntity.badRequest().body(Map.of("message", "Ride not found"));
-
-            int seats = b.getSeatsRequested() > 0 ? b.getSeatsRequested() : 1;
-            double base = ride.getPrice() * seats;
-            double platformFeeRupees = base * 0.05; // 5% platform fee
-            double subtotal = base + platformFeeRupees;
-            double gstRupees = subtotal * 0.036; // 3.6% GST on subtotal (CGST 1.8% + SGST 1.8%)
-            long amount = Math.round((subtotal + gstRupees) * 100);
-
-            String form = "line_items[0][price_data][currency]=inr"
-                    + "&line_items[0][price_data][unit_amount]=" + amount
-                    + "&line_items[0][price_data][product_data][name]=" + URLEncoder.encode("Carpool booking for ride " + ride.getId(), StandardCharsets.UTF_8)
-                    + "&line_items[0][quantity]=1"
-                    + "&mode=payment"
-                    + "&success_url=" + URLEncoder.encode("http://localhost:3000/payment-success?session_id={CHECKOUT_SESSION_ID}", StandardCharsets.UTF_8)
-                    + "&cancel_url=" + URLEncoder.encode("http://localhost:3000/payment-cancel", StandardCharsets.UTF_8);
-
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create("https://api.stripe.com/v1/checkout/sessions"))
-                    .header("Authorization", "Bearer " + stripeKey)
-                    .header("Content-Type", "application/x-www-form-urlencoded")
-                    .POST(BodyPublishers.ofString(form))
-                    .build();
-
-            HttpResponse<String> resp = client.send(req, BodyHandlers.ofString());
-            if (resp.statusCode() >= 400) {
-                return ResponseEntity.status(502).body(Map.of("message", "Stripe error: " + resp.body()));
-            }
+        long amount = fareEngine.quote(ride, b.getSeatsRequested()).totalPaise();
 
-            ObjectMapper mapper = new ObjectMapper();
-            Map<String, Object> parsed = mapper.readValue(resp.body(), new TypeReference<Map<String, Object>>() {});
-            String url = (String) parsed.get("url");
-            String sessionId = (String) parsed.get("id");
-            return ResponseEntity.ok(Map.of("url", url, "sessionId", sessionId));
-        } catch (Exception e) {
-            return ResponseEntity.status(502).body(Map.of("message", "Stripe error: " + e.getMessage()));
-        }
+        return paymentGateway.createCheckoutSession(b.getId(), amount, "Carpool booking for ride " + ride.getId())
+                .<ResponseEntity<?>>thenApply(session -> ResponseEntity.ok(Map.of(
+                        "url", session.url(),
+                        "sessionId", session.id())))
+                .exceptionally(BookingController::gatewayError);
     }
 
     @PostMapping("/{id}/confirm-checkout")
-    public ResponseEntity<?> confirmCheckout(@PathVariable Long id, @RequestBody Map<String, String> body, HttpServletRequest request) {
+    public CompletableFuture<ResponseEntity<?>> confirmCheckout(@PathVariable Long id, @RequestBody Map<String, String> body, HttpServletRequest request) {
         String email = (String) request.getAttribute("email");
         Booking b = bookingService.findById(id).orElse(null);
         if (b == null || !email.equals(b.getRequesterEmail()))
-            return ResponseEntity.status(403).build();
+            return CompletableFuture.completedFuture(ResponseEntity.status(403).build());
+
+        // The webhook usually confirms first; then there is nothing to ask Stripe
+        if (b.getStatus() == Booking.Status.CONFIRMED)
+            return CompletableFuture.completedFuture(ResponseEntity.ok(Map.of("status", "CONFIRMED")));
 
         String sessionId = body.get("sessionId");
-        if (sessionId == null || sessionId.isBlank()) return ResponseEntity.badRequest().body(Map.of("message", "sessionId required"));
+        if (sessionId == null || sessionId.isBlank())
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("message", "sessionId required")));
 
-        String stripeKey = System.getenv("STRIPE_SECRET_KEY");
-        if (stripeKey == null || stripeKey.isBlank()) return ResponseEntity.badRequest().body(Map.of("message", "Stripe not configured"));
+        return paymentGateway.retrieveCheckoutSession(sessionId)
+                .<ResponseEntity<?>>thenApply(session -> {
+                    if (!session.paid() || session.paymentIntentId() == null)
+                        return ResponseEntity.badRequest().body(Map.of("message", "Payment not completed"));
 
-        try {
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create("https://api.stripe.com/v1/checkout/sessions/" + URLEncoder.encode(sessionId, StandardCharsets.UTF_8)))
-                    .header("Authorization", "Bearer " + stripeKey)
-                    .GET()
-                    .build();
-            HttpResponse<String> resp = client.send(req, BodyHandlers.ofString());
-            if (resp.statusCode() >= 400) return ResponseEntity.status(502).body(Map.of("message", "Stripe error: " + resp.body()));
-
-            ObjectMapper mapper = new ObjectMapper();
-            Map<String, Object> parsed = mapper.readValue(resp.body(), new TypeReference<Map<String, Object>>() {});
-            String paymentIntentId = (String) parsed.get("payment_intent");
-            if (paymentIntentId == null) return ResponseEntity.badRequest().body(Map.of("message", "Payment not completed"));
-
-            // Reuse verify flow by calling verifyPayment-like logic
-            Map<String, String> payload = Map.of("transactionId", paymentIntentId);
-            return verifyPayment(id, payload, request);
-        } catch (Exception e) {
-            return ResponseEntity.status(502).body(Map.of("message", "Stripe error: " + e.getMessage()));
-        }
+                    // Reuse the verify flow; this runs on a gateway thread, so open the transaction here
+                    Map<String, String> payload = Map.of("transactionId", session.paymentIntentId());
+                    return tx.execute(s -> verifyPayment(id, payload, request));
+                })
+                .exceptionally(BookingController::gatewayError);
+    }
+
+    private static ResponseEntity<?> gatewayError(Throwable err) {
+        Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+        if (cause instanceof PaymentGateway.GatewayException ge)
+            return ResponseEntity.status(ge.getStatus()).body(Map.of("message", ge.getMessage()));
+        return ResponseEntity.status(502).body(Map.of("message", "Payment provider error: " + cause.getMessage()));
     }
 
     // -------------------- CONFIG / BOOKING REQUEST --------------------
@@ -375,6 +302,7 @@ public ResponseEntity<?> verifyPayment(
     }
 
     @PostMapping("/request")
+@Transactional
 public ResponseEntity<?> requestBooking(@RequestBody Booking payload, HttpServletRequest request) {
     String email = (String) request.getAttribute("email");
     if (email == null)
@@ -385,6 +313,14 @@ public ResponseEntity<?> requestBooking(@RequestBody Booking payload, HttpServle
         if (ride == null)
             return ResponseEntity.badRequest().body("Ride not found");
 
+        // Reject overlapping bookings (or a second booking on the same ride) before anything is written
+        var conflict = scheduleIndex.reservePassenger(u.getEmail(), ride);
+        if (conflict.isPresent()) {
+            return ResponseEntity.status(409).body(Map.of(
+                    "message", "You already have a booking or hosted ride overlapping this ride",
+                    "conflictingRideId", conflict.get().rideId()));
+        }
+
         Booking b = new Booking();
         b.setRideId(ride.getId());
         b.setRequesterId(u.getId());
@@ -394,38 +330,13 @@ public ResponseEntity<?> requestBooking(@RequestBody Booking payload, HttpServle
         b.setStatus(Booking.Status.PENDING);
 
         Booking saved = bookingService.create(b);
+        surgePricing.recordBookingRequest(ride);
 
-        // 🔔 Notification: Booking Requested to requester (wrap in try-catch to not break the flow)
-        try {
-            notificationService.create(
-                    u,
-                    "Booking Requested",
-                    "Your booking request has been sent to the ride host.",
-                    "BOOKING",
-                    "/my-bookings"
-            );
-        } catch (Exception e) {
-            // Log but don't fail the request
-            System.err.println("Failed to create requester notification: " + e.getMessage());
-        }
-
-        // 🔔 Notify host (driver) by notification + email
-        try {
-            if (ride.getOwnerEmail() != null) {
-                userRepository.findByEmail(ride.getOwnerEmail()).ifPresent(host -> {
-                    notificationService.create(
-                            host,
-                            "New Booking Request",
-                            "You have a new booking request for your ride.",
-                            "BOOKING",
-                            "/hosted"
-                    );
-                });
-                // Fire-and-forget email to host
-                emailService.sendBookingRequestedToHostEmail(saved, ride);
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to notify host: " + e.getMessage());
+        // 🔔 Requester + host notifications and host email, delivered after commit
+        outboxService.notifyUser(u.getId(), "Booking Requested", "Your booking request has been sent to the ride host.", "BOOKING", "/my-bookings");
+        if (ride.getOwnerEmail() != null) {
+            outboxService.notifyByEmail(ride.getOwnerEmail(), "New Booking Request", "You have a new booking request for your ride.", "BOOKING", "/hosted");
+            outboxService.sendEmail(OutboxService.Email.BOOKING_REQUESTED_TO_HOST, saved.getId());
         }
 
         return ResponseEntity.ok(saved);
@@ -433,6 +344,7 @@ public ResponseEntity<?> requestBooking(@RequestBody Booking payload, HttpServle
 }
 
 @PostMapping("/{id}/decide")
+@Transactional
 public ResponseEntity<?> decideBooking(
         @PathVariable Long id,
         @RequestParam("action") String action,
@@ -447,68 +359,70 @@ public ResponseEntity<?> decideBooking(
     if (ride == null || !email.equals(ride.getOwnerEmail()))
         return ResponseEntity.status(403).body("Forbidden");
 
-    if (b.getStatus() == Booking.Status.CONFIRMED)
-        return ResponseEntity.badRequest().body("Confirmed booking cannot be changed");
+    // Paid, cancelled and rejected bookings are final as far as the host is concerned
+    if (b.getStatus() != Booking.Status.PENDING && b.getStatus() != Booking.Status.ACCEPTED)
+        return ResponseEntity.badRequest().body("Booking can no longer be changed");
+    // A booking promoted from the waitlist holds seats until it is paid or turned down
+    boolean heldSeats = waitlistService.holdsSeats(b.getId());
 
     if ("accept".equalsIgnoreCase(action)) {
 
-        if (ride.getSeatsAvailable() < b.getSeatsRequested()) {
+        if (waitlistService.unheldSeats(ride, b.getId()) < b.getSeatsRequested()) {
             return ResponseEntity.badRequest().body("Not enough seats available to accept this request");
         }
 
         b.setStatus(Booking.Status.ACCEPTED);
 
-        try {
-            if (b.getRequesterId() != null) {
-                userRepository.findById(b.getRequesterId()).ifPresent(requester -> {
-                    notificationService.create(
-                            requester,
-                            "Booking Accepted",
-                            "Your booking has been accepted by the host.",
-                            "BOOKING",
-                            "/my-bookings"
-                    );
-                });
-            }
-
-
-            // 📧 EMAIL: Driver accepted
-            emailService.sendBookingAcceptedEmail(b, ride);
-
-        } catch (Exception e) {
-            System.err.println("Accept notification/email failed: " + e.getMessage());
-        }
+        outboxService.notifyUser(b.getRequesterId(), "Booking Accepted", "Your booking has been accepted by the host.", "BOOKING", "/my-bookings");
+        // 📧 EMAIL: Driver accepted
+        outboxService.sendEmail(OutboxService.Email.BOOKING_ACCEPTED, b.getId());
     }
     else {
         b.setStatus(Booking.Status.REJECTED);
 
-        try {
-            userRepository.findById(b.getRequesterId()).ifPresent(requester -> {
-                notificationService.create(
-                        requester,
-                        "Booking Rejected",
-                        "Unfortunately, your booking was rejected by the host.",
-                        "BOOKING",
-                        "/my-bookings"
-                );
-            });
-
-
-            // 📧 EMAIL: Driver rejected
-            emailService.sendBookingRejectedEmail(b, ride);
-
-        } catch (Exception e) {
-            System.err.println("Reject notification/email failed: " + e.getMessage());
-        }
+        outboxService.notifyUser(b.getRequesterId(), "Booking Rejected", "Unfortunately, your booking was rejected by the host.", "BOOKING", "/my-bookings");
+        // 📧 EMAIL: Driver rejected
+        outboxService.sendEmail(OutboxService.Email.BOOKING_REJECTED, b.getId());
     }
 
 
     Booking saved = bookingService.save(b);
+    if (saved.getStatus() == Booking.Status.REJECTED && heldSeats) {
+        // Seats are only deducted at payment, so a rejection frees nothing unless it drops a hold
+        eventPublisher.publishEvent(new SeatsReleasedEvent(ride.getId(), saved.getSeatsRequested()));
+    }
     return ResponseEntity.ok(saved);
 }
+    // -------------------- PASSENGER CANCELLATION --------------------
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<?> cancelBooking(@PathVariable Long id, HttpServletRequest request) {
+        String email = (String) request.getAttribute("email");
+        if (email == null)
+            return ResponseEntity.status(401).build();
+
+        Booking b = bookingService.findById(id).orElse(null);
+        if (b == null)
+            return ResponseEntity.notFound().build();
+        if (!email.equals(b.getRequesterEmail()))
+            return ResponseEntity.status(403).build();
+
+        try {
+            BookingCancellationService.Result result = cancellationService.cancel(b);
+            return ResponseEntity.ok(Map.of(
+                    "status", "CANCELLED",
+                    "seatsRestored", result.seatsRestored(),
+                    "refundEligible", result.refundEligible()
+            ));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+        }
+    }
+
     // -------------------- MARK BOOKING COMPLETED (MANUAL) --------------------
 
     @PostMapping("/{id}/complete")
+    @Transactional
     public ResponseEntity<?> completeBooking(
             @PathVariable Long id,
             HttpServletRequest request
@@ -541,29 +455,11 @@ public ResponseEntity<?> decideBooking(
         b.setStatus(Booking.Status.COMPLETED);
         bookingService.save(b);
 
-        // Notify both passenger and host and send rating-request emails
-        try {
-            Ride rideObj = rideRepository.findById(b.getRideId()).orElse(null);
-            if (rideObj != null) {
-                // Passenger notification
-                if (b.getRequesterId() != null) {
-                    userRepository.findById(b.getRequesterId()).ifPresent(pass -> {
-                        notificationService.create(pass, "Ride Completed", "Your ride is completed — please rate your driver.", "RIDE", "/my-rides");
-                    });
-                }
-                // Host notification
-                if (rideObj.getOwnerEmail() != null) {
-                    userRepository.findByEmail(rideObj.getOwnerEmail()).ifPresent(host -> {
-                        notificationService.create(host, "Ride Completed", "Your ride is completed — please rate your passengers.", "RIDE", "/hosted");
-                    });
-                }
-
-                // Send rating request emails to both
-                emailService.sendRatingRequestEmails(b, rideObj);
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to send completion notifications/emails: " + e.getMessage());
-        }
+        // Notify both passenger and host and send rating-request emails (via outbox)
+        outboxService.notifyUser(b.getRequesterId(), "Ride Completed", "Your ride is completed — please rate your driver.", "RIDE", "/my-rides");
+        outboxService.notifyByEmail(ride.getOwnerEmail(), "Ride Completed", "Your ride is completed — please rate your passengers.", "RIDE", "/hosted");
+        outboxService.sendEmail(OutboxService.Email.RATING_REQUEST_PASSENGER, b.getId());
+        outboxService.sendEmail(OutboxService.Email.RATING_REQUEST_DRIVER, b.getId());
 
         return ResponseEntity.ok(Map.of("status", "COMPLETED"));
     }
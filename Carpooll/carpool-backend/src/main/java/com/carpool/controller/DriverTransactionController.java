@@ -1,86 +1,182 @@
 package com.carpool.controller;
 import com.carpool.dto.DriverTransactionDTO;
-import com.carpool.model.Booking;
-import com.carpool.model.Ride;
-import com.carpool.repository.BookingRepository;
-import com.carpool.repository.RideRepository;
+import com.carpool.service.DriverTransactionService;
+import com.carpool.service.EarningsRollupService;
+import com.carpool.model.LedgerAccount;
+import com.carpool.service.FareEngine;
+import com.carpool.service.LedgerService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/driver")
 @CrossOrigin
 public class DriverTransactionController {
 
-    private final BookingRepository bookingRepository;
-    private final RideRepository rideRepository;
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+    private static final String CSV_HEADER =
+            "bookingId,passenger,source,destination,date,seats,grossFare,platformFee,cgst,sgst,netAmount,transactionId\n";
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final long MAX_SUMMARY_DAYS = 366;
+
+    private final DriverTransactionService driverTransactions;
+    private final LedgerService ledgerService;
+    private final EarningsRollupService earningsRollup;
 
     public DriverTransactionController(
-            BookingRepository bookingRepository,
-            RideRepository rideRepository
+            DriverTransactionService driverTransactions,
+            LedgerService ledgerService,
+            EarningsRollupService earningsRollup
     ) {
-        this.bookingRepository = bookingRepository;
-        this.rideRepository = rideRepository;
+        this.driverTransactions = driverTransactions;
+        this.ledgerService = ledgerService;
+        this.earningsRollup = earningsRollup;
     }
 
     /**
      * DRIVER TRANSACTION HISTORY
-     * Shows only CONFIRMED + PAID bookings for driver's rides
+     * Paid bookings for driver's rides, newest first, one page at a time; pass the returned
+     * nextCursor to get the next page. from/to are inclusive payment dates
+     * (archived bookings only with includeArchived=true)
      */
     @GetMapping("/transactions")
-    public List<DriverTransactionDTO> getDriverTransactions(
-            @RequestParam String driverEmail
+    public ResponseEntity<?> getDriverTransactions(
+            @RequestParam String driverEmail,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeArchived
     ) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "from must not be after to"));
+        }
+        DriverTransactionService.TransactionPage page;
+        try {
+            page = driverTransactions.findDriverTransactions(driverEmail,
+                    from == null ? null : from.atStartOfDay(),
+                    to == null ? null : to.plusDays(1).atStartOfDay(),
+                    cursor, Math.max(1, Math.min(MAX_PAGE_SIZE, limit)), includeArchived);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", page.items());
+        body.put("nextCursor", page.nextCursor());
+        return ResponseEntity.ok(body);
+    }
 
-        List<Ride> driverRides = rideRepository.findByOwnerEmail(driverEmail);
-        List<DriverTransactionDTO> transactions = new ArrayList<>();
-
-        for (Ride ride : driverRides) {
-
-            List<Booking> bookings = bookingRepository.findByRideId(ride.getId());
+    /**
+     * DRIVER TRANSACTION EXPORT
+     * Same rows as /transactions as CSV, written out while they are read from the database
+     */
+    @GetMapping(value = "/transactions/export", produces = "text/csv")
+    public ResponseEntity<StreamingResponseBody> exportDriverTransactions(
+            @RequestParam String driverEmail,
+            @RequestParam(defaultValue = "false") boolean includeArchived
+    ) {
+        StreamingResponseBody body = out -> {
+            Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            w.write(CSV_HEADER);
+            try {
+                driverTransactions.forEachDriverTransaction(driverEmail, includeArchived, t -> writeRow(w, t));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            w.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(TEXT_CSV)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions.csv\"")
+                .body(body);
+    }
 
-            for (Booking booking : bookings) {
+    private static void writeRow(Writer w, DriverTransactionDTO t) {
+        try {
+            w.write(t.getBookingId() + "," + csv(t.getPassengerName()) + "," + csv(t.getSource()) + ","
+                    + csv(t.getDestination()) + "," + (t.getDate() == null ? "" : t.getDate()) + "," + t.getSeats() + ","
+                    + money(t.getGrossFare()) + "," + money(t.getPlatformFee()) + "," + money(t.getCgst()) + ","
+                    + money(t.getSgst()) + "," + money(t.getNetAmount()) + "," + csv(t.getTransactionId()) + "\n");
+        } catch (IOException e) {
+            // Client went away; stops the cursor
+            throw new UncheckedIOException(e);
+        }
+    }
 
-                // Include bookings that have a transaction (transactionId) and are either CONFIRMED or PAID or have paymentCompletedAt set
-                if (booking.getTransactionId() != null && (
-                        booking.getStatus() == Booking.Status.CONFIRMED ||
-                        booking.getStatus() == Booking.Status.PAID ||
-                        booking.getPaymentCompletedAt() != null
-                )) {
+    private static String money(double rupees) {
+        return String.format(Locale.ROOT, "%.2f", rupees);
+    }
 
-                    int seats = booking.getSeatsRequested() > 0 ? booking.getSeatsRequested() : 1;
-                    double base = ride.getPrice() * seats;
-                    double platformFee = base * 0.05; // 5% of base fare
-                    double subtotal = base + platformFee;
-                    double gstTotal = subtotal * 0.036; // 3.6% GST on subtotal (CGST 1.8% + SGST 1.8%)
-                    double cgst = subtotal * 0.018;
-                    double sgst = subtotal * 0.018;
-                    double netToDriver = base - platformFee;
+    // Quote fields containing separators, and neutralise leading formula characters for spreadsheets
+    private static String csv(String s) {
+        if (s == null) return "";
+        if (!s.isEmpty() && "=+-@".indexOf(s.charAt(0)) >= 0) s = "'" + s;
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
 
-                    transactions.add(
-                            new DriverTransactionDTO(
-                                    booking.getId(),
-                                    booking.getRequesterName(),        // Passenger
-                                    ride.getFromLocation(),            // Source
-                                    ride.getToLocation(),              // Destination
-                                    booking.getPaymentCompletedAt(),   // Date (IMPORTANT)
-                                    booking.getSeatsRequested(),
-                                    base,
-                                    platformFee,
-                                    cgst,
-                                    sgst,
-                                    netToDriver,
-                                    booking.getTransactionId()
-                            )
-                    );
+    /**
+     * DRIVER EARNINGS
+     * Total payable to the driver across all confirmed bookings, read from the
+     * driver's ledger account instead of walking every ride and booking
+     */
+    @GetMapping("/earnings")
+    public Map<String, Object> getDriverEarnings(@RequestParam String driverEmail) {
+        LedgerAccount account = ledgerService.account(LedgerService.driverAccount(driverEmail));
+        return Map.of(
+                "driverEmail", driverEmail,
+                "earnedPaise", account.balancePaise(),
+                "earned", FareEngine.Quote.rupees(account.balancePaise()),
+                "payments", account.getEntryCount()
+        );
+    }
 
-                }
-            }
+    /**
+     * DRIVER EARNINGS SUMMARY
+     * Gross, fees, GST and net per day or month (last 30 days / 12 months by default) plus
+     * all-time totals, read from the daily rollups instead of every transaction row
+     */
+    @GetMapping("/earnings/summary")
+    public ResponseEntity<?> getDriverEarningsSummary(
+            @RequestParam String driverEmail,
+            @RequestParam(defaultValue = "month") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        EarningsRollupService.Granularity g;
+        try {
+            g = EarningsRollupService.Granularity.valueOf(granularity.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "granularity must be day or month"));
         }
-
-        return transactions;
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from
+                : g == EarningsRollupService.Granularity.DAY ? end.minusDays(29) : end.minusMonths(11).withDayOfMonth(1);
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "from must not be after to"));
+        }
+        long maxDays = g == EarningsRollupService.Granularity.DAY ? MAX_SUMMARY_DAYS : MAX_SUMMARY_DAYS * 10;
+        if (ChronoUnit.DAYS.between(start, end) >= maxDays) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Range too long for " + g.name().toLowerCase(Locale.ROOT) + " granularity"));
+        }
+        return ResponseEntity.ok(earningsRollup.summary(driverEmail, g, start, end));
     }
 }
-
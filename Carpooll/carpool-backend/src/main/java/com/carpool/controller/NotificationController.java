@@ -1,9 +1,12 @@
 package com.carpool.controller;
 
 import com.carpool.model.User;
+import com.carpool.service.NotificationHub;
 import com.carpool.service.NotificationService;
 import com.carpool.repository.UserRepository;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/notifications")
@@ -12,10 +15,21 @@ public class NotificationController {
 
     private final NotificationService service;
     private final UserRepository userRepo;
+    private final NotificationHub hub;
 
-    public NotificationController(NotificationService service, UserRepository userRepo) {
+    public NotificationController(NotificationService service, UserRepository userRepo, NotificationHub hub) {
         this.service = service;
         this.userRepo = userRepo;
+        this.hub = hub;
+    }
+
+    // 📡 Live stream of new notifications and unread counts (server-sent events); browsers
+    // resume with Last-Event-ID, lastEventId is for clients that reconnect by hand
+    @GetMapping(value = "/stream/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@PathVariable Long userId,
+                             @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                             @RequestParam(required = false) String lastEventId) {
+        return hub.subscribe(userId, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
     }
 
     // 🔔 Get notifications (paginated support)
@@ -30,8 +44,7 @@ public class NotificationController {
     // 🔴 Unread count (for bell badge)
     @GetMapping("/unread-count/{userId}")
     public long unreadCount(@PathVariable Long userId) {
-        User user = userRepo.findById(userId).orElseThrow();
-        return service.getUnreadCount(user);
+        return service.getUnreadCount(userId);
     }
 
     // ✅ Mark one as read
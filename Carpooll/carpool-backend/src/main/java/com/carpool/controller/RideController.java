@@ -31,14 +31,26 @@ public class RideController {
     private final com.carpool.repository.RatingReviewRepository ratingRepository;
     private final com.carpool.service.NotificationService notificationService;
     private final com.carpool.service.EmailService emailService;
-
-    public RideController(RideRepository rideRepository, UserRepository userRepository, com.carpool.repository.BookingRepository bookingRepository, com.carpool.repository.RatingReviewRepository ratingRepository, com.carpool.service.NotificationService notificationService, com.carpool.service.EmailService emailService){
+    private final org.springframework.context.ApplicationEventPublisher eventPublisher;
+    private final com.carpool.service.BookingArchiveService bookingArchive;
+    private final com.carpool.service.ScheduleIndex scheduleIndex;
+    private final com.carpool.service.FareEngine fareEngine;
+    private final com.carpool.service.SurgePricingService surgePricing;
+    private final com.carpool.service.BookingCancellationService cancellationService;
+
+    public RideController(RideRepository rideRepository, UserRepository userRepository, com.carpool.repository.BookingRepository bookingRepository, com.carpool.repository.RatingReviewRepository ratingRepository, com.carpool.service.NotificationService notificationService, com.carpool.service.EmailService emailService, org.springframework.context.ApplicationEventPublisher eventPublisher, com.carpool.service.BookingArchiveService bookingArchive, com.carpool.service.ScheduleIndex scheduleIndex, com.carpool.service.FareEngine fareEngine, com.carpool.service.SurgePricingService surgePricing, com.carpool.service.BookingCancellationService cancellationService){
         this.rideRepository = rideRepository;
         this.userRepository = userRepository;
         this.bookingRepository = bookingRepository;
         this.ratingRepository = ratingRepository;
         this.notificationService = notificationService;
         this.emailService = emailService;
+        this.eventPublisher = eventPublisher;
+        this.bookingArchive = bookingArchive;
+        this.scheduleIndex = scheduleIndex;
+        this.fareEngine = fareEngine;
+        this.surgePricing = surgePricing;
+        this.cancellationService = cancellationService;
     }
 
     @GetMapping
@@ -52,6 +64,7 @@ public class RideController {
         List<Ride> all = rideRepository.findAll();
         
         if (fromLat != null && fromLng != null && toLat != null && toLng != null) {
+            surgePricing.recordSearch(fromLat, fromLng, toLat, toLng);
             return all.stream().filter(r -> {
                 double distPickup = calculateDistance(r.getFromLat(), r.getFromLng(), fromLat, fromLng);
                 double distDrop = calculateDistance(r.getToLat(), r.getToLng(), toLat, toLng);
@@ -95,9 +108,47 @@ public class RideController {
         }
     }
 
+    // Demand multiplier a host could apply to a ride on this corridor right now
+    @GetMapping("/surge")
+    public com.carpool.service.SurgePricingService.Suggestion surge(@RequestParam double fromLat,
+                                                                   @RequestParam double fromLng,
+                                                                   @RequestParam double toLat,
+                                                                   @RequestParam double toLng) {
+        return surgePricing.suggest(fromLat, fromLng, toLat, toLng);
+    }
+
     @PostMapping
-    public Ride create(@RequestBody Ride r){
-        Ride saved = rideRepository.save(r);
+    public ResponseEntity<?> create(@RequestBody Ride r, @RequestParam(defaultValue = "false") boolean applySurge){
+        // Hosts may opt into the current demand multiplier for the corridor; it is fixed at publish time
+        r.setSurgeMultiplier(null);
+        if (applySurge) {
+            double multiplier = surgePricing.suggest(r).multiplier();
+            if (multiplier > 1.0) {
+                r.setPrice(java.math.BigDecimal.valueOf(r.getPrice() * multiplier).setScale(2, java.math.RoundingMode.HALF_UP).doubleValue());
+                r.setSurgeMultiplier(multiplier);
+            }
+        }
+        // A host cannot publish a ride overlapping one they host or are booked on
+        Ride saved;
+        if (r.getOwnerEmail() != null) {
+            var savedRef = new java.util.concurrent.atomic.AtomicReference<Ride>();
+            var conflict = scheduleIndex.withUserLock(r.getOwnerEmail(), () -> {
+                var c = scheduleIndex.findHostConflict(r.getOwnerEmail(), r);
+                if (c.isEmpty()) {
+                    savedRef.set(rideRepository.save(r));
+                    scheduleIndex.addHosted(r.getOwnerEmail(), savedRef.get());
+                }
+                return c;
+            });
+            if (conflict.isPresent()) {
+                return ResponseEntity.status(409).body(Map.of(
+                        "message", "This ride overlaps another ride on your schedule",
+                        "conflictingRideId", conflict.get().rideId()));
+            }
+            saved = savedRef.get();
+        } else {
+            saved = rideRepository.save(r);
+        }
 
         // Notify host that their ride is live (in-app + email)
         try {
@@ -115,7 +166,7 @@ public class RideController {
             }
         } catch (Exception ignored) {}
 
-        return saved;
+        return ResponseEntity.ok(saved);
     }
 
     @GetMapping("/hosted")
@@ -146,6 +197,7 @@ public class RideController {
                     int rows = bookingRepository.updateStatusByRideIdAndCurrentStatuses(r.getId(), com.carpool.model.Booking.Status.COMPLETED, currentStatuses);
                     if (rows > 0) {
                         logger.info("RideController.hosted: ride {} - marked {} bookings as COMPLETED", r.getId(), rows);
+                        eventPublisher.publishEvent(com.carpool.service.BookingChangedEvent.ofRide(r.getId()));
 
                         // Send notifications / emails for those previously collected bookings
                         for (com.carpool.model.Booking b : toNotify) {
@@ -184,12 +236,32 @@ public class RideController {
     public Ride get(@PathVariable Long id){ return rideRepository.findById(id).orElse(null); }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> delete(@PathVariable Long id) {
-        if (rideRepository.existsById(id)) {
-            rideRepository.deleteById(id);
-            return ResponseEntity.noContent().build();
+    public ResponseEntity<?> delete(@PathVariable Long id, HttpServletRequest request) {
+        String email = (String) request.getAttribute("email");
+        if (email == null) return ResponseEntity.status(401).build();
+
+        Ride ride = rideRepository.findById(id).orElse(null);
+        if (ride == null) return ResponseEntity.notFound().build();
+
+        // Permission check: owner or admin/manager/assistant
+        var userOpt = userRepository.findByEmail(email);
+        boolean allowed = false;
+        if (userOpt.isPresent()) {
+            String role = userOpt.get().getRole();
+            if (role != null && (role.equalsIgnoreCase("ADMIN") || role.equalsIgnoreCase("MANAGER") || role.equalsIgnoreCase("ASSISTANT"))) allowed = true;
+        }
+        if (email.equals(ride.getOwnerEmail())) allowed = true;
+        if (!allowed) return ResponseEntity.status(403).build();
+
+        // Active bookings are cancelled with the ride; paid ones are refunded
+        try {
+            cancellationService.cancelRide(ride);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
         }
-        return ResponseEntity.notFound().build();
+        scheduleIndex.removeRide(ride);
+        fareEngine.evict(id);
+        return ResponseEntity.noContent().build();
     }
 
     // Allow host or admin to mark ALL CONFIRMED bookings for a ride as COMPLETED
@@ -218,6 +290,7 @@ public class RideController {
                 com.carpool.model.Booking.Status.PAID
         );
         int updated = bookingRepository.updateStatusByRideIdAndCurrentStatuses(ride.getId(), com.carpool.model.Booking.Status.COMPLETED, currentStatuses);
+        if (updated > 0) eventPublisher.publishEvent(com.carpool.service.BookingChangedEvent.ofRide(ride.getId()));
 
         return ResponseEntity.ok(Map.of("updated", updated));
     }
@@ -282,14 +355,15 @@ public class RideController {
         }
 
         logger.info("RideController.ensureCompleted: ride {} - total bookings marked COMPLETED: {}", ride.getId(), updated);
+        if (updated > 0) eventPublisher.publishEvent(com.carpool.service.BookingChangedEvent.ofRide(ride.getId()));
         return ResponseEntity.ok(Map.of("updated", updated));
     }
 
     // Returns aggregate passenger ratings for a ride and per-booking ratings, and which bookings were rated by current user
     @GetMapping("/{id}/passenger-ratings")
-    public ResponseEntity<?> passengerRatings(@PathVariable Long id, HttpServletRequest request) {
+    public ResponseEntity<?> passengerRatings(@PathVariable Long id, @RequestParam(defaultValue = "false") boolean includeArchived, HttpServletRequest request) {
         try {
-            java.util.List<com.carpool.model.Booking> bookings = bookingRepository.findByRideId(id);
+            java.util.List<com.carpool.model.Booking> bookings = bookingArchive.findByRideId(id, includeArchived);
             java.util.List<Long> bookingIds = bookings.stream()
                     .map(b -> b.getId())
                     .filter(java.util.Objects::nonNull)
@@ -369,9 +443,9 @@ public class RideController {
 
     // Returns aggregate ratings for the driver on this ride (ratings given by passengers), including star counts and reviews (including star-only entries)
     @GetMapping("/{id}/driver-ratings")
-    public ResponseEntity<?> driverRatings(@PathVariable Long id) {
+    public ResponseEntity<?> driverRatings(@PathVariable Long id, @RequestParam(defaultValue = "false") boolean includeArchived) {
         try {
-            java.util.List<com.carpool.model.Booking> bookings = bookingRepository.findByRideId(id);
+            java.util.List<com.carpool.model.Booking> bookings = bookingArchive.findByRideId(id, includeArchived);
             java.util.List<Long> bookingIds = bookings.stream()
                     .map(b -> b.getId())
                     .filter(java.util.Objects::nonNull)
@@ -431,9 +505,9 @@ public class RideController {
 
     // Returns textual reviews (comments) for a ride, with reviewer name, role and stars
     @GetMapping("/{id}/reviews")
-    public ResponseEntity<?> reviews(@PathVariable Long id) {
+    public ResponseEntity<?> reviews(@PathVariable Long id, @RequestParam(defaultValue = "false") boolean includeArchived) {
         try {
-            var bookings = bookingRepository.findByRideId(id);
+            var bookings = bookingArchive.findByRideId(id, includeArchived);
             var bookingIds = bookings.stream().map(b -> b.getId()).filter(java.util.Objects::nonNull).collect(java.util.stream.Collectors.toList());
             if (bookingIds.isEmpty()) return ResponseEntity.ok(java.util.Collections.emptyList());
 
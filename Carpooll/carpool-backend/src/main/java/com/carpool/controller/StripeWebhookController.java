@@ -0,0 +1,36 @@
+package com.carpool.controller;
+
+import com.carpool.service.StripeWebhookService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/payments/stripe")
+public class StripeWebhookController {
+
+    private final StripeWebhookService webhookService;
+
+    public StripeWebhookController(StripeWebhookService webhookService) {
+        this.webhookService = webhookService;
+    }
+
+    /**
+     * Stripe calls this for payment events. The body must be read raw: the signature covers the
+     * exact bytes Stripe sent. Anything but 2xx makes Stripe retry the event later.
+     */
+    @PostMapping("/webhook")
+    public ResponseEntity<?> webhook(
+            @RequestBody String payload,
+            @RequestHeader(value = "Stripe-Signature", required = false) String signature
+    ) {
+        StripeWebhookService.Receipt receipt = webhookService.receive(payload, signature);
+        return switch (receipt) {
+            case ACCEPTED, DUPLICATE, IGNORED -> ResponseEntity.ok(Map.of("received", true, "result", receipt.name()));
+            case BUSY -> ResponseEntity.status(503).body(Map.of("message", "Busy, retry later"));
+            case NOT_CONFIGURED -> ResponseEntity.status(503).body(Map.of("message", "Webhook not configured"));
+            default -> ResponseEntity.badRequest().body(Map.of("message", "Invalid webhook: " + receipt.name()));
+        };
+    }
+}
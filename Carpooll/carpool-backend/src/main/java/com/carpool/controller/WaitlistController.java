@@ -0,0 +1,96 @@
+package com.carpool.controller;
+
+import com.carpool.model.Ride;
+import com.carpool.model.WaitlistEntry;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import com.carpool.service.ScheduleIndex;
+import com.carpool.service.WaitlistService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/waitlist")
+@CrossOrigin(origins = "*")
+public class WaitlistController {
+
+    private final WaitlistService waitlistService;
+    private final RideRepository rideRepository;
+    private final UserRepository userRepository;
+    private final ScheduleIndex scheduleIndex;
+
+    public WaitlistController(WaitlistService waitlistService, RideRepository rideRepository, UserRepository userRepository, ScheduleIndex scheduleIndex) {
+        this.waitlistService = waitlistService;
+        this.rideRepository = rideRepository;
+        this.userRepository = userRepository;
+        this.scheduleIndex = scheduleIndex;
+    }
+
+    // Join the waitlist of a full ride: { "rideId": 1, "seatsRequested": 2 }
+    @PostMapping
+    public ResponseEntity<?> join(@RequestBody Map<String, Object> payload, HttpServletRequest request) {
+        String email = (String) request.getAttribute("email");
+        if (email == null) return ResponseEntity.status(401).body("Unauthorized");
+
+        return userRepository.findByEmail(email).<ResponseEntity<?>>map(u -> {
+            if (payload.get("rideId") == null) return ResponseEntity.badRequest().body(Map.of("message", "rideId required"));
+            Long rideId = Long.valueOf(payload.get("rideId").toString());
+            int seats = payload.get("seatsRequested") == null ? 1 : Integer.parseInt(payload.get("seatsRequested").toString());
+
+            Ride ride = rideRepository.findById(rideId).orElse(null);
+            if (ride == null) return ResponseEntity.badRequest().body(Map.of("message", "Ride not found"));
+            if (email.equals(ride.getOwnerEmail()))
+                return ResponseEntity.badRequest().body(Map.of("message", "You cannot join the waitlist for your own ride"));
+            if (waitlistService.unheldSeats(ride, null) >= Math.max(seats, 1))
+                return ResponseEntity.badRequest().body(Map.of("message", "Seats are available, request a booking instead"));
+            // Same rule as a booking request, so a promotion never lands on an overlapping ride
+            var conflict = scheduleIndex.findPassengerConflict(email, ride);
+            if (conflict.isPresent())
+                return ResponseEntity.status(409).body(Map.of(
+                        "message", "You already have a booking or hosted ride overlapping this ride",
+                        "conflictingRideId", conflict.get().rideId()));
+
+            WaitlistEntry entry = waitlistService.join(rideId, u, seats, null);
+            return ResponseEntity.ok(toResponse(entry));
+        }).orElse(ResponseEntity.status(401).body("Unauthorized"));
+    }
+
+    @GetMapping("/my")
+    public List<Map<String, Object>> my(HttpServletRequest request) {
+        String email = (String) request.getAttribute("email");
+        if (email == null) return List.of();
+        return userRepository.findByEmail(email)
+                .map(u -> waitlistService.findByUserId(u.getId()).stream().map(this::toResponse).toList())
+                .orElse(List.of());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> leave(@PathVariable Long id, HttpServletRequest request) {
+        String email = (String) request.getAttribute("email");
+        if (email == null) return ResponseEntity.status(401).build();
+
+        return userRepository.findByEmail(email).<ResponseEntity<?>>map(u ->
+                waitlistService.leave(id, u.getId())
+                        ? ResponseEntity.noContent().build()
+                        : ResponseEntity.badRequest().body(Map.of("message", "Not on this waitlist"))
+        ).orElse(ResponseEntity.status(401).build());
+    }
+
+    private Map<String, Object> toResponse(WaitlistEntry e) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", e.getId());
+        map.put("rideId", e.getRideId());
+        map.put("seatsRequested", e.getSeatsRequested());
+        map.put("status", e.getStatus());
+        map.put("bookingId", e.getBookingId());
+        map.put("createdAt", e.getCreatedAt());
+        map.put("promotedAt", e.getPromotedAt());
+        map.put("position", waitlistService.position(e));
+        return map;
+    }
+}
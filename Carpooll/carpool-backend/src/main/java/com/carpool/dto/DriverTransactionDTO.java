@@ -1,5 +1,7 @@
 package com.carpool.dto;
 
+import com.carpool.service.FareEngine;
+
 import java.time.LocalDateTime;
 
 public class DriverTransactionDTO {
@@ -45,6 +47,34 @@ public class DriverTransactionDTO {
         this.transactionId = transactionId;
     }
 
+    /**
+     * Row as selected by the driver transaction queries: fees are derived from the ride's unit
+     * price here, with the same formula the passenger was charged by.
+     */
+    public DriverTransactionDTO(
+            Long bookingId,
+            String passengerName,
+            String source,
+            String destination,
+            LocalDateTime date,
+            int seats,
+            double unitPrice,
+            String transactionId
+    ) {
+        this(bookingId, passengerName, source, destination, date, seats, FareEngine.compute(unitPrice, seats), transactionId);
+    }
+
+    private DriverTransactionDTO(Long bookingId, String passengerName, String source, String destination,
+                                 LocalDateTime date, int seats, FareEngine.Quote fare, String transactionId) {
+        this(bookingId, passengerName, source, destination, date, seats,
+                FareEngine.Quote.rupees(fare.basePaise()),
+                FareEngine.Quote.rupees(fare.platformFeePaise()),
+                FareEngine.Quote.rupees(fare.cgstPaise()),
+                FareEngine.Quote.rupees(fare.sgstPaise()),
+                FareEngine.Quote.rupees(fare.netToDriverPaise()),
+                transactionId);
+    }
+
     public Long getBookingId() { return bookingId; }
     public String getPassengerName() { return passengerName; }
     public String getSource() { return source; }
@@ -0,0 +1,92 @@
+package com.carpool.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Cold copy of a terminal {@link Booking} (COMPLETED, REJECTED or CANCELLED) moved out of the
+ * hot booking table by {@link com.carpool.service.BookingArchiveService}. Keeps the original id.
+ */
+@Entity
+@Table(name = "booking_archive", indexes = {
+        @Index(name = "idx_booking_archive_ride", columnList = "rideId"),
+        @Index(name = "idx_booking_archive_driver_paid", columnList = "driverEmail, paymentCompletedAt, id"),
+        @Index(name = "idx_booking_archive_requester", columnList = "requesterId"),
+        @Index(name = "idx_booking_archive_tx", columnList = "transactionId")
+})
+public class ArchivedBooking {
+
+    @Id
+    private Long id;
+
+    private Long rideId;
+    private Long requesterId;
+    private String requesterName;
+    private String requesterEmail;
+
+    @Enumerated(EnumType.STRING)
+    private Booking.Status status;
+
+    private int seatsRequested;
+    private LocalDateTime requestedAt;
+    private String transactionId;
+    private LocalDateTime paymentInitiatedAt;
+    private LocalDateTime paymentCompletedAt;
+    private String driverEmail;
+    private LocalDateTime confirmedAt;
+    private LocalDateTime cancelledAt;
+    private Boolean refundEligible;
+
+    private LocalDateTime archivedAt;
+
+    public ArchivedBooking() {}
+
+    public static ArchivedBooking from(Booking b, LocalDateTime archivedAt) {
+        ArchivedBooking a = new ArchivedBooking();
+        a.id = b.getId();
+        a.rideId = b.getRideId();
+        a.requesterId = b.getRequesterId();
+        a.requesterName = b.getRequesterName();
+        a.requesterEmail = b.getRequesterEmail();
+        a.status = b.getStatus();
+        a.seatsRequested = b.getSeatsRequested();
+        a.requestedAt = b.getRequestedAt();
+        a.transactionId = b.getTransactionId();
+        a.paymentInitiatedAt = b.getPaymentInitiatedAt();
+        a.paymentCompletedAt = b.getPaymentCompletedAt();
+        a.driverEmail = b.getDriverEmail();
+        a.confirmedAt = b.getConfirmedAt();
+        a.cancelledAt = b.getCancelledAt();
+        a.refundEligible = b.getRefundEligible();
+        a.archivedAt = archivedAt;
+        return a;
+    }
+
+    // Detached Booking for read paths that treat hot and archived rows alike
+    public Booking toBooking() {
+        Booking b = new Booking();
+        b.setId(id);
+        b.setRideId(rideId);
+        b.setRequesterId(requesterId);
+        b.setRequesterName(requesterName);
+        b.setRequesterEmail(requesterEmail);
+        b.setStatus(status);
+        b.setSeatsRequested(seatsRequested);
+        b.setRequestedAt(requestedAt);
+        b.setTransactionId(transactionId);
+        b.setPaymentInitiatedAt(paymentInitiatedAt);
+        b.setPaymentCompletedAt(paymentCompletedAt);
+        b.setDriverEmail(driverEmail);
+        b.setConfirmedAt(confirmedAt);
+        b.setCancelledAt(cancelledAt);
+        b.setRefundEligible(refundEligible);
+        return b;
+    }
+
+    public Long getId() { return id; }
+    public Long getRideId() { return rideId; }
+    public Long getRequesterId() { return requesterId; }
+    public Booking.Status getStatus() { return status; }
+    public String getTransactionId() { return transactionId; }
+    public LocalDateTime getArchivedAt() { return archivedAt; }
+}
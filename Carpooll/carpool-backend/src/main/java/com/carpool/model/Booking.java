@@ -1,5 +1,6 @@
 package com.carpool.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
@@ -7,6 +8,17 @@ import java.time.LocalDateTime;
  * Enhanced Booking model with multi-stage payment tracking fields.
  */
 @Entity
+@Table(
+        indexes = {
+                @Index(name = "idx_booking_ride", columnList = "rideId"),
+                @Index(name = "idx_booking_requester", columnList = "requesterId"),
+                @Index(name = "idx_booking_payment_completed", columnList = "paymentCompletedAt"),
+                @Index(name = "idx_booking_driver_paid", columnList = "driverEmail, paymentCompletedAt, id")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_booking_transaction_id", columnNames = {"transactionId"})
+        }
+)
 public class Booking {
     @Id 
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -25,17 +37,36 @@ public class Booking {
 
     // Functional Payment Tracking Fields
     private String transactionId; // Stores the 12-digit UTR
-    private LocalDateTime paymentInitiatedAt;
+    private LocalDateTime paymentInitiatedAt; // when the current payment intent was created
     private LocalDateTime paymentCompletedAt;
+    @JsonIgnore
+    private String driverEmail; // the ride's host when it was paid, so a driver's transactions are one index range
     private LocalDateTime confirmedAt;
 
+    // Payment intent handed to the passenger, reused by later initiate-payment calls
+    private String paymentIntentId;
+    @JsonIgnore
+    private String paymentIntentSecret;
+    @JsonIgnore
+    private Long paymentIntentAmountPaise; // amount the intent was created for
+    @JsonIgnore
+    private LocalDateTime reconciledAt; // first matched to a succeeded provider payment by the reconciliation job
+
+    // Cancellation Tracking Fields
+    private LocalDateTime cancelledAt;
+    private Boolean refundEligible; // null until cancelled; true when a paid booking was cancelled before departure
+    @Enumerated(EnumType.STRING)
+    private Refund.Status refundStatus; // null unless a refund was enqueued
+    private LocalDateTime refundedAt;
+
     public static enum Status { 
         PENDING,   // Request sent to host
         ACCEPTED,  // Approved by host, awaiting passenger payment
         REJECTED,  // Declined
         PAID,      // Receipt submitted, awaiting verification (optional step)
         CONFIRMED,  // Verified by system, seats deducted, journey secured
-        COMPLETED
+        COMPLETED,
+        CANCELLED  // Withdrawn by passenger, seats restored if they were deducted
         }
 
     public Booking(){}
@@ -59,11 +90,29 @@ public class Booking {
     public void setRequestedAt(LocalDateTime requestedAt) { this.requestedAt = requestedAt; }
     public String getTransactionId() { return transactionId; }
     public void setTransactionId(String transactionId) { this.transactionId = transactionId; }
+    public String getDriverEmail() { return driverEmail; }
+    public void setDriverEmail(String driverEmail) { this.driverEmail = driverEmail; }
     
     public LocalDateTime getPaymentInitiatedAt() { return paymentInitiatedAt; }
     public void setPaymentInitiatedAt(LocalDateTime paymentInitiatedAt) { this.paymentInitiatedAt = paymentInitiatedAt; }
     public LocalDateTime getPaymentCompletedAt() { return paymentCompletedAt; }
     public void setPaymentCompletedAt(LocalDateTime paymentCompletedAt) { this.paymentCompletedAt = paymentCompletedAt; }
+    public String getPaymentIntentId() { return paymentIntentId; }
+    public void setPaymentIntentId(String paymentIntentId) { this.paymentIntentId = paymentIntentId; }
+    public String getPaymentIntentSecret() { return paymentIntentSecret; }
+    public void setPaymentIntentSecret(String paymentIntentSecret) { this.paymentIntentSecret = paymentIntentSecret; }
+    public Long getPaymentIntentAmountPaise() { return paymentIntentAmountPaise; }
+    public void setPaymentIntentAmountPaise(Long paymentIntentAmountPaise) { this.paymentIntentAmountPaise = paymentIntentAmountPaise; }
+    public LocalDateTime getReconciledAt() { return reconciledAt; }
+    public void setReconciledAt(LocalDateTime reconciledAt) { this.reconciledAt = reconciledAt; }
     public LocalDateTime getConfirmedAt() { return confirmedAt; }
     public void setConfirmedAt(LocalDateTime confirmedAt) { this.confirmedAt = confirmedAt; }
+    public LocalDateTime getCancelledAt() { return cancelledAt; }
+    public void setCancelledAt(LocalDateTime cancelledAt) { this.cancelledAt = cancelledAt; }
+    public Boolean getRefundEligible() { return refundEligible; }
+    public void setRefundEligible(Boolean refundEligible) { this.refundEligible = refundEligible; }
+    public Refund.Status getRefundStatus() { return refundStatus; }
+    public void setRefundStatus(Refund.Status refundStatus) { this.refundStatus = refundStatus; }
+    public LocalDateTime getRefundedAt() { return refundedAt; }
+    public void setRefundedAt(LocalDateTime refundedAt) { this.refundedAt = refundedAt; }
 }
\ No newline at end of file
@@ -4,6 +4,9 @@ package com.carpool.model;
 import jakarta.persistence.*;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_car_owner", columnList = "ownerId")
+})
 public class Car {
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -0,0 +1,74 @@
+package com.carpool.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One driver's earnings for one day: payments posted to the ledger that day, less refunds issued
+ * that day for the driver's bookings. Maintained incrementally by
+ * {@link com.carpool.service.EarningsRollupService}; never written by request code.
+ */
+@Entity
+@Table(name = "driver_earnings_day", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_driver_earnings_day", columnNames = {"driverEmail", "earnedOn"})
+})
+public class DriverEarningsDay {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 320)
+    private String driverEmail;
+
+    private LocalDate earnedOn;
+
+    private long payments;
+    private long refunds;
+    private long grossPaise;       // base fare
+    private long platformFeePaise; // commission kept from the driver's share
+    private long gstPaise;         // CGST + SGST collected on the driver's bookings
+    private long netPaise;         // what the driver is owed
+    private long refundedPaise;    // charged amounts returned to passengers
+    private LocalDateTime updatedAt;
+
+    public DriverEarningsDay() {}
+
+    public DriverEarningsDay(String driverEmail, LocalDate earnedOn) {
+        this.driverEmail = driverEmail;
+        this.earnedOn = earnedOn;
+    }
+
+    public void addPayment(long gross, long platformFee, long gst, long net, LocalDateTime at) {
+        payments++;
+        grossPaise += gross;
+        platformFeePaise += platformFee;
+        gstPaise += gst;
+        netPaise += net;
+        updatedAt = at;
+    }
+
+    // A refunded booking's shares come off the day the refund was issued
+    public void addRefund(long gross, long platformFee, long gst, long net, long refunded, LocalDateTime at) {
+        refunds++;
+        grossPaise -= gross;
+        platformFeePaise -= platformFee;
+        gstPaise -= gst;
+        netPaise -= net;
+        refundedPaise += refunded;
+        updatedAt = at;
+    }
+
+    public Long getId() { return id; }
+    public String getDriverEmail() { return driverEmail; }
+    public LocalDate getEarnedOn() { return earnedOn; }
+    public long getPayments() { return payments; }
+    public long getRefunds() { return refunds; }
+    public long getGrossPaise() { return grossPaise; }
+    public long getPlatformFeePaise() { return platformFeePaise; }
+    public long getGstPaise() { return gstPaise; }
+    public long getNetPaise() { return netPaise; }
+    public long getRefundedPaise() { return refundedPaise; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+}
@@ -0,0 +1,44 @@
+package com.carpool.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Running totals of every {@link LedgerEntry} applied to one account, so a balance is a single
+ * row read. Maintained by {@link com.carpool.service.LedgerService}; never written by request code.
+ */
+@Entity
+@Table(name = "ledger_account")
+public class LedgerAccount {
+
+    @Id
+    @Column(length = 320)
+    private String account;
+
+    private long debitsPaise;
+    private long creditsPaise;
+    private long entryCount;
+    private LocalDateTime updatedAt;
+
+    public LedgerAccount() {}
+
+    public LedgerAccount(String account) {
+        this.account = account;
+    }
+
+    public void apply(LedgerEntry e, LocalDateTime at) {
+        debitsPaise += e.getDebitPaise();
+        creditsPaise += e.getCreditPaise();
+        entryCount++;
+        updatedAt = at;
+    }
+
+    /** Credits minus debits: what the account holder is owed (or, for the platform, has earned). */
+    public long balancePaise() { return creditsPaise - debitsPaise; }
+
+    public String getAccount() { return account; }
+    public long getDebitsPaise() { return debitsPaise; }
+    public long getCreditsPaise() { return creditsPaise; }
+    public long getEntryCount() { return entryCount; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+}
@@ -0,0 +1,106 @@
+package com.carpool.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One line of a double-entry posting. A confirmed booking's payment is posted once as a set of
+ * lines whose debits and credits balance, and a refund of it once as the mirror image of those
+ * lines under the matching {@code REFUND_*} types; lines are never updated afterwards except for
+ * {@code appliedAt}, which records when the line was folded into its {@link LedgerAccount} balance,
+ * and, on the driver's line, {@code rolledUpAt}, when it was added to the driver's daily earnings.
+ */
+@Entity
+// appliedAt and rolledUpAt are set by different workers; only write the column that changed
+@org.hibernate.annotations.DynamicUpdate
+@Table(name = "ledger_entry", indexes = {
+        @Index(name = "idx_ledger_entry_applied", columnList = "appliedAt, id"),
+        @Index(name = "idx_ledger_entry_account", columnList = "account"),
+        @Index(name = "idx_ledger_entry_rollup", columnList = "type, rolledUpAt, id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_ledger_entry_booking_type", columnNames = {"bookingId", "type"})
+})
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long bookingId;
+
+    @Column(length = 320)
+    private String account;
+
+    @Enumerated(EnumType.STRING)
+    private Type type;
+
+    private long debitPaise;
+    private long creditPaise;
+
+    private String transactionId;
+    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime appliedAt;
+    private LocalDateTime rolledUpAt;
+
+    public enum Type {
+        PASSENGER_CHARGE,  // Money received from the passenger through the payment provider
+        PLATFORM_FEE,      // 5% fee charged to the passenger on top of the fare
+        DRIVER_COMMISSION, // 5% kept from the driver's share of the fare
+        CGST,
+        SGST,
+        DRIVER_PAYABLE,    // What the platform owes the driver
+        REFUND_PASSENGER_CHARGE, // The lines above, reversed when the payment is refunded
+        REFUND_PLATFORM_FEE,
+        REFUND_DRIVER_COMMISSION,
+        REFUND_CGST,
+        REFUND_SGST,
+        REFUND_DRIVER_PAYABLE;
+
+        /** The type that reverses a payment line of this type. */
+        public Type reversal() {
+            return switch (this) {
+                case PASSENGER_CHARGE -> REFUND_PASSENGER_CHARGE;
+                case PLATFORM_FEE -> REFUND_PLATFORM_FEE;
+                case DRIVER_COMMISSION -> REFUND_DRIVER_COMMISSION;
+                case CGST -> REFUND_CGST;
+                case SGST -> REFUND_SGST;
+                case DRIVER_PAYABLE -> REFUND_DRIVER_PAYABLE;
+                default -> throw new IllegalStateException(this + " is already a reversal");
+            };
+        }
+    }
+
+    public LedgerEntry() {}
+
+    public LedgerEntry(Long bookingId, String account, Type type, long debitPaise, long creditPaise, String transactionId) {
+        this.bookingId = bookingId;
+        this.account = account;
+        this.type = type;
+        this.debitPaise = debitPaise;
+        this.creditPaise = creditPaise;
+        this.transactionId = transactionId;
+    }
+
+    public LedgerEntry(Long bookingId, String account, Type type, long debitPaise, long creditPaise, String transactionId,
+                       LocalDateTime createdAt) {
+        this(bookingId, account, type, debitPaise, creditPaise, transactionId);
+        this.createdAt = createdAt;
+    }
+
+    /** This line reversed: same booking and account, debit and credit swapped, dated {@code at}. */
+    public LedgerEntry reversed(String transactionId, LocalDateTime at) {
+        return new LedgerEntry(bookingId, account, type.reversal(), creditPaise, debitPaise, transactionId, at);
+    }
+
+    public Long getId() { return id; }
+    public Long getBookingId() { return bookingId; }
+    public String getAccount() { return account; }
+    public Type getType() { return type; }
+    public long getDebitPaise() { return debitPaise; }
+    public long getCreditPaise() { return creditPaise; }
+    public String getTransactionId() { return transactionId; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getAppliedAt() { return appliedAt; }
+    public void setAppliedAt(LocalDateTime appliedAt) { this.appliedAt = appliedAt; }
+    public LocalDateTime getRolledUpAt() { return rolledUpAt; }
+}
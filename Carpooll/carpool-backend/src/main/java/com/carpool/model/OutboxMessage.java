@@ -0,0 +1,76 @@
+package com.carpool.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A side effect (in-app notification or email) recorded in the same transaction as the
+ * booking change that caused it, and delivered later by the outbox dispatcher.
+ */
+@Entity
+@Table(name = "outbox_message", indexes = {
+        @Index(name = "idx_outbox_status_next", columnList = "status, nextAttemptAt, id")
+})
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private Kind kind;
+
+    @Column(length = 4000)
+    private String payload; // JSON
+
+    @Enumerated(EnumType.STRING)
+    private Status status = Status.PENDING;
+
+    private int attempts = 0;
+
+    // Earliest time the message may be (re)claimed; also acts as the lease while in flight
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime processedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    public enum Kind {
+        NOTIFICATION,
+        EMAIL
+    }
+
+    public enum Status {
+        PENDING,  // Waiting for (re)delivery
+        SENT,     // Delivered
+        FAILED    // Gave up after max attempts
+    }
+
+    public OutboxMessage() {}
+
+    public OutboxMessage(Kind kind, String payload) {
+        this.kind = kind;
+        this.payload = payload;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Kind getKind() { return kind; }
+    public void setKind(Kind kind) { this.kind = kind; }
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public LocalDateTime getProcessedAt() { return processedAt; }
+    public void setProcessedAt(LocalDateTime processedAt) { this.processedAt = processedAt; }
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+}
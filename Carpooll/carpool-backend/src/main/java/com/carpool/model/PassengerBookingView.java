@@ -0,0 +1,135 @@
+package com.carpool.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Denormalized row per booking for the passenger's "my bookings" screens: the booking itself,
+ * a ride summary and the driver's contact details. Maintained by
+ * {@link com.carpool.service.PassengerBookingViewProjector}; never written by request code.
+ * Ride images and other LOB columns are deliberately left out.
+ */
+@Entity
+@Table(name = "passenger_booking_view", indexes = {
+        @Index(name = "idx_pbv_requester_requested", columnList = "requesterId, requestedAt, bookingId"),
+        @Index(name = "idx_pbv_ride", columnList = "rideId")
+})
+public class PassengerBookingView {
+
+    @Id
+    private Long bookingId;
+
+    // Booking
+    private Long requesterId;
+    private String requesterEmail;
+    @Enumerated(EnumType.STRING)
+    private Booking.Status status;
+    private int seatsRequested;
+    private LocalDateTime requestedAt;
+    private LocalDateTime paymentCompletedAt;
+    private LocalDateTime confirmedAt;
+    private LocalDateTime cancelledAt;
+    private String transactionId;
+    private Boolean refundEligible;
+    @Enumerated(EnumType.STRING)
+    private Refund.Status refundStatus;
+    private LocalDateTime refundedAt;
+
+    // Ride summary
+    private Long rideId;
+    private String fromLocation;
+    private String toLocation;
+    private String dateTime;
+    private String estimatedCompletionDateTime;
+    private double price;
+    private double distanceKm;
+    private double fromLat;
+    private double fromLng;
+    private double toLat;
+    private double toLng;
+    private String carName;
+    private String vehicleNumber;
+
+    // Driver
+    private Long driverId;
+    private String driverName;
+    private String driverEmail;
+    private String driverPhone;
+    private Double driverRating;
+
+    private LocalDateTime refreshedAt;
+
+    public PassengerBookingView() {}
+
+    public PassengerBookingView(Long bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    public Long getBookingId() { return bookingId; }
+    public void setBookingId(Long bookingId) { this.bookingId = bookingId; }
+    public Long getRequesterId() { return requesterId; }
+    public void setRequesterId(Long requesterId) { this.requesterId = requesterId; }
+    public String getRequesterEmail() { return requesterEmail; }
+    public void setRequesterEmail(String requesterEmail) { this.requesterEmail = requesterEmail; }
+    public Booking.Status getStatus() { return status; }
+    public void setStatus(Booking.Status status) { this.status = status; }
+    public int getSeatsRequested() { return seatsRequested; }
+    public void setSeatsRequested(int seatsRequested) { this.seatsRequested = seatsRequested; }
+    public LocalDateTime getRequestedAt() { return requestedAt; }
+    public void setRequestedAt(LocalDateTime requestedAt) { this.requestedAt = requestedAt; }
+    public LocalDateTime getPaymentCompletedAt() { return paymentCompletedAt; }
+    public void setPaymentCompletedAt(LocalDateTime paymentCompletedAt) { this.paymentCompletedAt = paymentCompletedAt; }
+    public LocalDateTime getConfirmedAt() { return confirmedAt; }
+    public void setConfirmedAt(LocalDateTime confirmedAt) { this.confirmedAt = confirmedAt; }
+    public LocalDateTime getCancelledAt() { return cancelledAt; }
+    public void setCancelledAt(LocalDateTime cancelledAt) { this.cancelledAt = cancelledAt; }
+    public String getTransactionId() { return transactionId; }
+    public void setTransactionId(String transactionId) { this.transactionId = transactionId; }
+    public Boolean getRefundEligible() { return refundEligible; }
+    public void setRefundEligible(Boolean refundEligible) { this.refundEligible = refundEligible; }
+    public Refund.Status getRefundStatus() { return refundStatus; }
+    public void setRefundStatus(Refund.Status refundStatus) { this.refundStatus = refundStatus; }
+    public LocalDateTime getRefundedAt() { return refundedAt; }
+    public void setRefundedAt(LocalDateTime refundedAt) { this.refundedAt = refundedAt; }
+
+    public Long getRideId() { return rideId; }
+    public void setRideId(Long rideId) { this.rideId = rideId; }
+    public String getFromLocation() { return fromLocation; }
+    public void setFromLocation(String fromLocation) { this.fromLocation = fromLocation; }
+    public String getToLocation() { return toLocation; }
+    public void setToLocation(String toLocation) { this.toLocation = toLocation; }
+    public String getDateTime() { return dateTime; }
+    public void setDateTime(String dateTime) { this.dateTime = dateTime; }
+    public String getEstimatedCompletionDateTime() { return estimatedCompletionDateTime; }
+    public void setEstimatedCompletionDateTime(String estimatedCompletionDateTime) { this.estimatedCompletionDateTime = estimatedCompletionDateTime; }
+    public double getPrice() { return price; }
+    public void setPrice(double price) { this.price = price; }
+    public double getDistanceKm() { return distanceKm; }
+    public void setDistanceKm(double distanceKm) { this.distanceKm = distanceKm; }
+    public double getFromLat() { return fromLat; }
+    public void setFromLat(double fromLat) { this.fromLat = fromLat; }
+    public double getFromLng() { return fromLng; }
+    public void setFromLng(double fromLng) { this.fromLng = fromLng; }
+    public double getToLat() { return toLat; }
+    public void setToLat(double toLat) { this.toLat = toLat; }
+    public double getToLng() { return toLng; }
+    public void setToLng(double toLng) { this.toLng = toLng; }
+    public String getCarName() { return carName; }
+    public void setCarName(String carName) { this.carName = carName; }
+    public String getVehicleNumber() { return vehicleNumber; }
+    public void setVehicleNumber(String vehicleNumber) { this.vehicleNumber = vehicleNumber; }
+
+    public Long getDriverId() { return driverId; }
+    public void setDriverId(Long driverId) { this.driverId = driverId; }
+    public String getDriverName() { return driverName; }
+    public void setDriverName(String driverName) { this.driverName = driverName; }
+    public String getDriverEmail() { return driverEmail; }
+    public void setDriverEmail(String driverEmail) { this.driverEmail = driverEmail; }
+    public String getDriverPhone() { return driverPhone; }
+    public void setDriverPhone(String driverPhone) { this.driverPhone = driverPhone; }
+    public Double getDriverRating() { return driverRating; }
+    public void setDriverRating(Double driverRating) { this.driverRating = driverRating; }
+
+    public LocalDateTime getRefreshedAt() { return refreshedAt; }
+    public void setRefreshedAt(LocalDateTime refreshedAt) { this.refreshedAt = refreshedAt; }
+}
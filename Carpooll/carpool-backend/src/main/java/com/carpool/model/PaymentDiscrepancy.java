@@ -0,0 +1,50 @@
+package com.carpool.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A payment the provider and the booking table disagree about, found by the nightly
+ * reconciliation. Recorded once per kind and transaction however many runs see it.
+ */
+@Entity
+@Table(name = "payment_discrepancy", indexes = {
+        @Index(name = "idx_payment_discrepancy_detected", columnList = "detectedAt")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_payment_discrepancy_kind_tx", columnNames = {"kind", "transactionId"})
+})
+public class PaymentDiscrepancy {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private Kind kind;
+
+    private String transactionId;
+    private Long bookingId;
+    private Long amountPaise;
+    private LocalDateTime detectedAt = LocalDateTime.now();
+
+    public enum Kind {
+        PAID_NOT_CONFIRMED, // The provider took the money but no booking carries the payment
+        CONFIRMED_NOT_PAID  // A booking was confirmed on a payment the provider does not report as succeeded
+    }
+
+    public PaymentDiscrepancy() {}
+
+    public PaymentDiscrepancy(Kind kind, String transactionId, Long bookingId, Long amountPaise) {
+        this.kind = kind;
+        this.transactionId = transactionId;
+        this.bookingId = bookingId;
+        this.amountPaise = amountPaise;
+    }
+
+    public Long getId() { return id; }
+    public Kind getKind() { return kind; }
+    public String getTransactionId() { return transactionId; }
+    public Long getBookingId() { return bookingId; }
+    public Long getAmountPaise() { return amountPaise; }
+    public LocalDateTime getDetectedAt() { return detectedAt; }
+}
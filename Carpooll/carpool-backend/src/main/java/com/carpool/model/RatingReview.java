@@ -7,6 +7,10 @@ import java.time.LocalDateTime;
 @Table(
         uniqueConstraints = {
                 @UniqueConstraint(columnNames = {"bookingId", "reviewerId"})
+        },
+        // bookingId lookups use the unique (bookingId, reviewerId) index above
+        indexes = {
+                @Index(name = "idx_rating_review_reviewee", columnList = "revieweeId")
         }
 )
 public class RatingReview {
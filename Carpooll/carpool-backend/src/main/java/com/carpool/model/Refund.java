@@ -0,0 +1,86 @@
+package com.carpool.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A refund owed to a passenger, enqueued in the same transaction as the cancellation that caused
+ * it and issued later through the payment gateway by the refund processor. At most one per booking.
+ */
+@Entity
+@Table(name = "refund", indexes = {
+        @Index(name = "idx_refund_status_next", columnList = "status, nextAttemptAt, id"),
+        @Index(name = "idx_refund_rollup", columnList = "status, rolledUpAt, id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_refund_booking", columnNames = {"bookingId"})
+})
+public class Refund {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long bookingId;
+    private String paymentIntentId;
+    private long amountPaise;
+
+    @Enumerated(EnumType.STRING)
+    private Reason reason;
+
+    @Enumerated(EnumType.STRING)
+    private Status status = Status.PENDING;
+
+    private int attempts = 0;
+
+    // Earliest time the refund may be (re)claimed; also acts as the lease while in flight
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    private String providerRefundId;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime completedAt;
+    // When a succeeded refund was taken off the driver's daily earnings
+    private LocalDateTime rolledUpAt;
+
+    public enum Reason {
+        PASSENGER_CANCELLED, // Passenger cancelled a paid booking before departure
+        RIDE_CANCELLED       // Host deleted the ride
+    }
+
+    public enum Status {
+        PENDING,   // Waiting to be (re)issued
+        SUCCEEDED, // Refunded by the provider
+        FAILED     // Gave up after max attempts; needs manual follow-up
+    }
+
+    public Refund() {}
+
+    public Refund(Long bookingId, String paymentIntentId, long amountPaise, Reason reason) {
+        this.bookingId = bookingId;
+        this.paymentIntentId = paymentIntentId;
+        this.amountPaise = amountPaise;
+        this.reason = reason;
+    }
+
+    /** Sent with every attempt so a retried refund is never issued twice. */
+    public String idempotencyKey() {
+        return "refund-booking-" + bookingId;
+    }
+
+    public Long getId() { return id; }
+    public Long getBookingId() { return bookingId; }
+    public String getPaymentIntentId() { return paymentIntentId; }
+    public long getAmountPaise() { return amountPaise; }
+    public Reason getReason() { return reason; }
+    public Status getStatus() { return status; }
+    public int getAttempts() { return attempts; }
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public String getProviderRefundId() { return providerRefundId; }
+    public String getLastError() { return lastError; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public LocalDateTime getRolledUpAt() { return rolledUpAt; }
+}
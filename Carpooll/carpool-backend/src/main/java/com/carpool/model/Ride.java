@@ -6,6 +6,9 @@ import java.util.List;
 import java.util.ArrayList;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_ride_owner_email", columnList = "ownerEmail")
+})
 public class Ride {
 
     @Id
@@ -29,6 +32,8 @@ public class Ride {
 
     private int seatsAvailable;
     private double price;
+    // Demand multiplier the host opted into when publishing; already included in price
+    private Double surgeMultiplier;
 
     @Version
     private Integer version;
@@ -87,6 +92,8 @@ public class Ride {
     public void setSeatsAvailable(int seatsAvailable) { this.seatsAvailable = seatsAvailable; }
     public double getPrice() { return price; }
     public void setPrice(double price) { this.price = price; }
+    public Double getSurgeMultiplier() { return surgeMultiplier; }
+    public void setSurgeMultiplier(Double surgeMultiplier) { this.surgeMultiplier = surgeMultiplier; }
 
     public Integer getVersion() { return version; }
     public void setVersion(Integer version) { this.version = version; }
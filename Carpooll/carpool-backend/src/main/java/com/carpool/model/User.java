@@ -26,6 +26,10 @@ public class User {
     private double ratingSum = 0.0;
     private int ratingCount = 0;
 
+    // Unread notifications, kept by NotificationService with bulk updates only (null until first counted)
+    @Column(insertable = false, updatable = false)
+    private Long unreadNotifications;
+
     public User(){}
 
     public User(String fullname, String email, String password, String role, String phone, String gender) {
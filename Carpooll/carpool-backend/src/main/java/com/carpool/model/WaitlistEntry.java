@@ -0,0 +1,68 @@
+package com.carpool.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A passenger queued for seats on a full ride. Entries are served FIFO (by id)
+ * whenever seats are released on the ride. A promoted entry holds its seats for
+ * {@code waitlist.hold.ttl-minutes} after {@code promotedAt}.
+ */
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_waitlist_ride_status", columnList = "rideId, status, id"),
+        @Index(name = "idx_waitlist_user", columnList = "userId"),
+        @Index(name = "idx_waitlist_status_promoted", columnList = "status, promotedAt")
+})
+public class WaitlistEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long rideId;
+    private Long userId;
+    private String userName;
+    private String userEmail;
+
+    private int seatsRequested = 1;
+
+    // Set when the passenger already holds an ACCEPTED booking that failed at payment for lack of seats
+    private Long bookingId;
+
+    @Enumerated(EnumType.STRING)
+    private Status status = Status.WAITING;
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime promotedAt;
+
+    public enum Status {
+        WAITING,   // Queued, waiting for seats
+        PROMOTED,  // Seats freed up, passenger notified and booking moved forward
+        LEFT,      // Passenger left the waitlist, or the ride was deleted
+        EXPIRED    // Promoted, but not paid for (or decided by the host) before the hold lapsed
+    }
+
+    public WaitlistEntry() {}
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getRideId() { return rideId; }
+    public void setRideId(Long rideId) { this.rideId = rideId; }
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public String getUserName() { return userName; }
+    public void setUserName(String userName) { this.userName = userName; }
+    public String getUserEmail() { return userEmail; }
+    public void setUserEmail(String userEmail) { this.userEmail = userEmail; }
+    public int getSeatsRequested() { return seatsRequested; }
+    public void setSeatsRequested(int seatsRequested) { this.seatsRequested = seatsRequested; }
+    public Long getBookingId() { return bookingId; }
+    public void setBookingId(Long bookingId) { this.bookingId = bookingId; }
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public LocalDateTime getPromotedAt() { return promotedAt; }
+    public void setPromotedAt(LocalDateTime promotedAt) { this.promotedAt = promotedAt; }
+}
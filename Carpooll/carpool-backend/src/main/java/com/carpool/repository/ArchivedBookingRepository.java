@@ -0,0 +1,69 @@
+package com.carpool.repository;
+
+import com.carpool.dto.DriverTransactionDTO;
+import com.carpool.model.ArchivedBooking;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface ArchivedBookingRepository extends JpaRepository<ArchivedBooking, Long> {
+    List<ArchivedBooking> findByRideId(Long rideId);
+    List<ArchivedBooking> findByRequesterId(Long requesterId);
+    boolean existsByTransactionId(String transactionId);
+
+    @Query("SELECT a.transactionId FROM ArchivedBooking a WHERE a.transactionId IN :ids")
+    List<String> findTransactionIdsIn(@Param("ids") Collection<String> ids);
+
+    // Same as BookingRepository.findPaidWithoutLedger, from the archive
+    @Query("SELECT a FROM ArchivedBooking a WHERE a.transactionId IS NOT NULL AND a.id > :afterId"
+            + " AND NOT EXISTS (SELECT 1 FROM LedgerEntry e WHERE e.bookingId = a.id) ORDER BY a.id")
+    List<ArchivedBooking> findPaidWithoutLedger(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Same rows as BookingRepository.DRIVER_TRANSACTIONS, from the archive
+    String DRIVER_TRANSACTIONS = """
+        select new com.carpool.dto.DriverTransactionDTO(b.id, b.requesterName, r.fromLocation, r.toLocation,
+                       b.paymentCompletedAt, b.seatsRequested, r.price, b.transactionId)
+        from ArchivedBooking b join Ride r on r.id = b.rideId
+        where b.driverEmail = :driverEmail and b.transactionId is not null
+          and not exists (select 1 from Refund f where f.bookingId = b.id and f.status = com.carpool.model.Refund$Status.SUCCEEDED)
+          and (b.status in (com.carpool.model.Booking$Status.CONFIRMED, com.carpool.model.Booking$Status.PAID)
+               or b.paymentCompletedAt is not null)
+        order by b.id
+    """;
+
+    @Query(DRIVER_TRANSACTIONS)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<DriverTransactionDTO> streamDriverTransactions(@Param("driverEmail") String driverEmail);
+
+    // Same pages as BookingRepository.DRIVER_TRANSACTIONS_PAGE, from the archive
+    String DRIVER_TRANSACTIONS_PAGE = """
+        select new com.carpool.dto.DriverTransactionDTO(b.id, b.requesterName, r.fromLocation, r.toLocation,
+                       b.paymentCompletedAt, b.seatsRequested, r.price, b.transactionId)
+        from ArchivedBooking b join Ride r on r.id = b.rideId
+        where b.driverEmail = :driverEmail and b.transactionId is not null
+          and not exists (select 1 from Refund f where f.bookingId = b.id and f.status = com.carpool.model.Refund$Status.SUCCEEDED)
+          and b.paymentCompletedAt <= :beforePaidAt
+          and (b.paymentCompletedAt < :beforePaidAt or b.id < :beforeId)
+    """;
+    String NEWEST_PAID_FIRST = " order by b.paymentCompletedAt desc, b.id desc";
+
+    @Query(DRIVER_TRANSACTIONS_PAGE + NEWEST_PAID_FIRST)
+    List<DriverTransactionDTO> findDriverTransactionsPage(@Param("driverEmail") String driverEmail, @Param("beforePaidAt") LocalDateTime beforePaidAt, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query(DRIVER_TRANSACTIONS_PAGE + " and b.paymentCompletedAt >= :from" + NEWEST_PAID_FIRST)
+    List<DriverTransactionDTO> findDriverTransactionsPageFrom(@Param("driverEmail") String driverEmail, @Param("from") LocalDateTime from, @Param("beforePaidAt") LocalDateTime beforePaidAt, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE ArchivedBooking a SET a.driverEmail = (SELECT r.ownerEmail FROM Ride r WHERE r.id = a.rideId) WHERE a.driverEmail IS NULL AND a.transactionId IS NOT NULL AND EXISTS (SELECT 1 FROM Ride r WHERE r.id = a.rideId AND r.ownerEmail IS NOT NULL)")
+    int fillDriverEmail();
+}
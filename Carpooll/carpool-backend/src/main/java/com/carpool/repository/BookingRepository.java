@@ -9,6 +9,14 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     List<Booking> findByRequesterId(Long requesterId);
     List<Booking> findByRideId(Long rideId);
     boolean existsByTransactionId(String transactionId);
+    boolean existsByRideIdAndStatusAndTransactionIdIsNotNull(Long rideId, Booking.Status status);
+    List<Booking> findByRequesterEmailAndStatusIn(String requesterEmail, java.util.Collection<Booking.Status> statuses);
+
+    // Oldest terminal bookings first; the archiver always reads page 0 since archived rows are deleted.
+    // A booking whose refund is still queued or in flight stays put: the refund processor updates it.
+    @org.springframework.data.jpa.repository.Query("SELECT b FROM Booking b WHERE b.status IN :statuses AND b.requestedAt < :cutoff"
+            + " AND NOT EXISTS (SELECT 1 FROM Refund r WHERE r.bookingId = b.id AND r.status = :openRefund) ORDER BY b.id")
+    List<Booking> findArchivable(@org.springframework.data.repository.query.Param("statuses") java.util.Collection<Booking.Status> statuses, @org.springframework.data.repository.query.Param("cutoff") java.time.LocalDateTime cutoff, @org.springframework.data.repository.query.Param("openRefund") com.carpool.model.Refund.Status openRefund, org.springframework.data.domain.Pageable pageable);
 
     @org.springframework.data.jpa.repository.Modifying(clearAutomatically = true)
     @org.springframework.data.jpa.repository.Query("UPDATE Booking b SET b.status = :status WHERE b.id = :id")
@@ -18,7 +26,79 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     @org.springframework.data.jpa.repository.Query(value = "UPDATE booking SET status = :status WHERE id = :id", nativeQuery = true)
     int updateStatusByIdNative(@org.springframework.data.repository.query.Param("id") Long id, @org.springframework.data.repository.query.Param("status") String status);
 
+    // Compare-and-set cancellation: only succeeds if the booking is still in the status the caller saw
+    @org.springframework.data.jpa.repository.Modifying(clearAutomatically = true)
+    @org.springframework.data.jpa.repository.Query("UPDATE Booking b SET b.status = com.carpool.model.Booking$Status.CANCELLED, b.cancelledAt = :at, b.refundEligible = :refundEligible WHERE b.id = :id AND b.status = :expected")
+    int cancelIfStatus(@org.springframework.data.repository.query.Param("id") Long id, @org.springframework.data.repository.query.Param("expected") Booking.Status expected, @org.springframework.data.repository.query.Param("at") java.time.LocalDateTime at, @org.springframework.data.repository.query.Param("refundEligible") Boolean refundEligible);
+
     @org.springframework.data.jpa.repository.Modifying(clearAutomatically = true)
     @org.springframework.data.jpa.repository.Query("UPDATE Booking b SET b.status = :status WHERE b.rideId = :rideId AND b.status IN :currentStatuses")
     int updateStatusByRideIdAndCurrentStatuses(@org.springframework.data.repository.query.Param("rideId") Long rideId, @org.springframework.data.repository.query.Param("status") Booking.Status status, @org.springframework.data.repository.query.Param("currentStatuses") java.util.List<Booking.Status> currentStatuses);
+
+    // Touches only the payment intent columns so a concurrent confirmation is never overwritten
+    @org.springframework.data.jpa.repository.Modifying(flushAutomatically = true, clearAutomatically = true)
+    @org.springframework.data.jpa.repository.Query("UPDATE Booking b SET b.paymentIntentId = :intentId, b.paymentIntentSecret = :secret, b.paymentIntentAmountPaise = :amountPaise, b.paymentInitiatedAt = :at WHERE b.id = :id")
+    int recordPaymentIntent(@org.springframework.data.repository.query.Param("id") Long id, @org.springframework.data.repository.query.Param("intentId") String intentId, @org.springframework.data.repository.query.Param("secret") String secret, @org.springframework.data.repository.query.Param("amountPaise") Long amountPaise, @org.springframework.data.repository.query.Param("at") java.time.LocalDateTime at);
+
+    // Probe side of the reconciliation join: which of a page of provider intent ids a booking carries
+    @org.springframework.data.jpa.repository.Query("SELECT b.transactionId FROM Booking b WHERE b.transactionId IN :ids")
+    List<String> findTransactionIdsIn(@org.springframework.data.repository.query.Param("ids") java.util.Collection<String> ids);
+
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("UPDATE Booking b SET b.reconciledAt = :at WHERE b.transactionId IN :ids AND b.reconciledAt IS NULL")
+    int markReconciled(@org.springframework.data.repository.query.Param("ids") java.util.Collection<String> ids, @org.springframework.data.repository.query.Param("at") java.time.LocalDateTime at);
+
+    // Paid bookings never matched to a succeeded provider payment, keyset-paged by id
+    @org.springframework.data.jpa.repository.Query("SELECT b FROM Booking b WHERE b.transactionId IS NOT NULL AND b.reconciledAt IS NULL AND b.paymentCompletedAt >= :from AND b.paymentCompletedAt < :to AND b.id > :afterId ORDER BY b.id")
+    List<Booking> findUnreconciledPayments(@org.springframework.data.repository.query.Param("from") java.time.LocalDateTime from, @org.springframework.data.repository.query.Param("to") java.time.LocalDateTime to, @org.springframework.data.repository.query.Param("afterId") Long afterId, org.springframework.data.domain.Pageable pageable);
+
+    // Paid bookings with no ledger lines (confirmed before the ledger existed), keyset-paged by id
+    @org.springframework.data.jpa.repository.Query("SELECT b FROM Booking b WHERE b.transactionId IS NOT NULL AND b.id > :afterId AND NOT EXISTS (SELECT 1 FROM LedgerEntry e WHERE e.bookingId = b.id) ORDER BY b.id")
+    List<Booking> findPaidWithoutLedger(@org.springframework.data.repository.query.Param("afterId") Long afterId, org.springframework.data.domain.Pageable pageable);
+
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("UPDATE Booking b SET b.refundStatus = :status, b.refundedAt = :at WHERE b.id = :id")
+    int updateRefundStatus(@org.springframework.data.repository.query.Param("id") Long id, @org.springframework.data.repository.query.Param("status") com.carpool.model.Refund.Status status, @org.springframework.data.repository.query.Param("at") java.time.LocalDateTime at);
+
+    // Paid bookings on a driver's rides, one row per booking with the ride joined in. A booking whose
+    // refund went through is no longer an earning, as in the earnings summary.
+    String DRIVER_TRANSACTIONS = """
+        select new com.carpool.dto.DriverTransactionDTO(b.id, b.requesterName, r.fromLocation, r.toLocation,
+                       b.paymentCompletedAt, b.seatsRequested, r.price, b.transactionId)
+        from Booking b join Ride r on r.id = b.rideId
+        where b.driverEmail = :driverEmail and b.transactionId is not null
+          and not exists (select 1 from Refund f where f.bookingId = b.id and f.status = com.carpool.model.Refund$Status.SUCCEEDED)
+          and (b.status in (com.carpool.model.Booking$Status.CONFIRMED, com.carpool.model.Booking$Status.PAID)
+               or b.paymentCompletedAt is not null)
+        order by b.id
+    """;
+
+    @org.springframework.data.jpa.repository.Query(DRIVER_TRANSACTIONS)
+    @org.springframework.data.jpa.repository.QueryHints(@jakarta.persistence.QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    java.util.stream.Stream<com.carpool.dto.DriverTransactionDTO> streamDriverTransactions(@org.springframework.data.repository.query.Param("driverEmail") String driverEmail);
+
+    // One page of a driver's paid bookings, newest first, keyed on (paymentCompletedAt, id). The keyset
+    // is written as a range on paymentCompletedAt so idx_booking_driver_paid seeks straight to the cursor.
+    String DRIVER_TRANSACTIONS_PAGE = """
+        select new com.carpool.dto.DriverTransactionDTO(b.id, b.requesterName, r.fromLocation, r.toLocation,
+                       b.paymentCompletedAt, b.seatsRequested, r.price, b.transactionId)
+        from Booking b join Ride r on r.id = b.rideId
+        where b.driverEmail = :driverEmail and b.transactionId is not null
+          and not exists (select 1 from Refund f where f.bookingId = b.id and f.status = com.carpool.model.Refund$Status.SUCCEEDED)
+          and b.paymentCompletedAt <= :beforePaidAt
+          and (b.paymentCompletedAt < :beforePaidAt or b.id < :beforeId)
+    """;
+    String NEWEST_PAID_FIRST = " order by b.paymentCompletedAt desc, b.id desc";
+
+    @org.springframework.data.jpa.repository.Query(DRIVER_TRANSACTIONS_PAGE + NEWEST_PAID_FIRST)
+    List<com.carpool.dto.DriverTransactionDTO> findDriverTransactionsPage(@org.springframework.data.repository.query.Param("driverEmail") String driverEmail, @org.springframework.data.repository.query.Param("beforePaidAt") java.time.LocalDateTime beforePaidAt, @org.springframework.data.repository.query.Param("beforeId") Long beforeId, org.springframework.data.domain.Pageable pageable);
+
+    // The same page bounded below, so the seek also stops at the start of the range
+    @org.springframework.data.jpa.repository.Query(DRIVER_TRANSACTIONS_PAGE + " and b.paymentCompletedAt >= :from" + NEWEST_PAID_FIRST)
+    List<com.carpool.dto.DriverTransactionDTO> findDriverTransactionsPageFrom(@org.springframework.data.repository.query.Param("driverEmail") String driverEmail, @org.springframework.data.repository.query.Param("from") java.time.LocalDateTime from, @org.springframework.data.repository.query.Param("beforePaidAt") java.time.LocalDateTime beforePaidAt, @org.springframework.data.repository.query.Param("beforeId") Long beforeId, org.springframework.data.domain.Pageable pageable);
+
+    // Fills driverEmail on paid bookings from before it was recorded; bookings whose ride is gone keep null
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("UPDATE Booking b SET b.driverEmail = (SELECT r.ownerEmail FROM Ride r WHERE r.id = b.rideId) WHERE b.driverEmail IS NULL AND b.transactionId IS NOT NULL AND EXISTS (SELECT 1 FROM Ride r WHERE r.id = b.rideId AND r.ownerEmail IS NOT NULL)")
+    int fillDriverEmail();
 }
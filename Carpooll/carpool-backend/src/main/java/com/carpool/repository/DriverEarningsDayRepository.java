@@ -0,0 +1,25 @@
+package com.carpool.repository;
+
+import com.carpool.model.DriverEarningsDay;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface DriverEarningsDayRepository extends JpaRepository<DriverEarningsDay, Long> {
+
+    Optional<DriverEarningsDay> findByDriverEmailAndEarnedOn(String driverEmail, LocalDate earnedOn);
+
+    List<DriverEarningsDay> findByDriverEmailAndEarnedOnBetweenOrderByEarnedOn(String driverEmail, LocalDate from, LocalDate to);
+
+    // {payments, refunds, gross, platformFee, gst, net, refunded} over every day; nulls when there are none
+    @Query("""
+        select sum(d.payments), sum(d.refunds), sum(d.grossPaise), sum(d.platformFeePaise),
+               sum(d.gstPaise), sum(d.netPaise), sum(d.refundedPaise)
+        from DriverEarningsDay d where d.driverEmail = :driverEmail
+    """)
+    List<Object[]> totals(@Param("driverEmail") String driverEmail);
+}
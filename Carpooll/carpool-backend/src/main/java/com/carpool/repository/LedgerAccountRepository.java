@@ -0,0 +1,7 @@
+package com.carpool.repository;
+
+import com.carpool.model.LedgerAccount;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface LedgerAccountRepository extends JpaRepository<LedgerAccount, String> {
+}
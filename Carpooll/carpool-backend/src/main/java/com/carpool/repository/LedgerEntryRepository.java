@@ -0,0 +1,47 @@
+package com.carpool.repository;
+
+import com.carpool.model.LedgerEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    boolean existsByBookingId(Long bookingId);
+
+    List<LedgerEntry> findByBookingIdOrderById(Long bookingId);
+
+    Optional<LedgerEntry> findByBookingIdAndType(Long bookingId, LedgerEntry.Type type);
+
+    @Query("select e from LedgerEntry e where e.appliedAt is null order by e.id")
+    List<LedgerEntry> findUnapplied(Pageable pageable);
+
+    List<LedgerEntry> findByBookingIdIn(Collection<Long> bookingIds);
+
+    @Query("select e from LedgerEntry e where e.type = :type and e.rolledUpAt is null order by e.id")
+    List<LedgerEntry> findNotRolledUp(@Param("type") LedgerEntry.Type type, Pageable pageable);
+
+    @Modifying
+    @Query("update LedgerEntry e set e.rolledUpAt = :at where e.id in :ids")
+    int markRolledUp(@Param("ids") Collection<Long> ids, @Param("at") LocalDateTime at);
+
+    @Query("select coalesce(max(e.id), 0) from LedgerEntry e")
+    long maxId();
+
+    // {year, month, type, lines, paise} for the given line types in one id range of the ledger
+    @Query("""
+        select year(e.createdAt), month(e.createdAt), e.type, count(e), sum(e.debitPaise + e.creditPaise)
+        from LedgerEntry e
+        where e.id > :afterId and e.id <= :toId and e.type in :types
+        group by year(e.createdAt), month(e.createdAt), e.type
+    """)
+    List<Object[]> sumByMonthAndType(@Param("afterId") long afterId, @Param("toId") long toId,
+                                     @Param("types") Collection<LedgerEntry.Type> types);
+}
@@ -14,4 +14,12 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     org.springframework.data.domain.Page<Notification> findByUserOrderByCreatedAtDesc(User user, org.springframework.data.domain.Pageable pageable);
 
     long countByUserAndIsReadFalse(User user);
+
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("update Notification n set n.isRead = true where n.id = :id and n.isRead = false")
+    int markRead(@org.springframework.data.repository.query.Param("id") Long id);
+
+    @org.springframework.data.jpa.repository.Modifying
+    @org.springframework.data.jpa.repository.Query("update Notification n set n.isRead = true where n.user.id = :userId and n.isRead = false")
+    int markAllRead(@org.springframework.data.repository.query.Param("userId") Long userId);
 }
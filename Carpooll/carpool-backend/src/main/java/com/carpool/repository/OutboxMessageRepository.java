@@ -0,0 +1,51 @@
+package com.carpool.repository;
+
+import com.carpool.model.OutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    @Query("""
+        select m from OutboxMessage m
+        where m.status = com.carpool.model.OutboxMessage$Status.PENDING and m.nextAttemptAt <= :now
+        order by m.id
+    """)
+    List<OutboxMessage> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Claim a message by pushing its next attempt past the lease; only one dispatcher wins
+    @Modifying
+    @Query("""
+        update OutboxMessage m
+        set m.nextAttemptAt = :leaseUntil, m.attempts = m.attempts + 1
+        where m.id = :id and m.status = com.carpool.model.OutboxMessage$Status.PENDING and m.nextAttemptAt <= :now
+    """)
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("""
+        update OutboxMessage m
+        set m.status = com.carpool.model.OutboxMessage$Status.SENT, m.processedAt = :at, m.lastError = null
+        where m.id = :id
+    """)
+    int markSent(@Param("id") Long id, @Param("at") LocalDateTime at);
+
+    @Modifying
+    @Query("""
+        update OutboxMessage m
+        set m.status = :status, m.nextAttemptAt = :nextAttemptAt, m.lastError = :error
+        where m.id = :id
+    """)
+    int markFailedAttempt(@Param("id") Long id,
+                          @Param("status") OutboxMessage.Status status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                          @Param("error") String error);
+
+    long countByStatus(OutboxMessage.Status status);
+}
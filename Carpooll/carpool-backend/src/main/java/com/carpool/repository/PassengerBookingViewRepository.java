@@ -0,0 +1,22 @@
+package com.carpool.repository;
+
+import com.carpool.model.PassengerBookingView;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface PassengerBookingViewRepository extends JpaRepository<PassengerBookingView, Long> {
+
+    Page<PassengerBookingView> findByRequesterIdOrderByRequestedAtDescBookingIdDesc(Long requesterId, Pageable pageable);
+
+    // Bookings that have no projection row yet (startup backfill)
+    @Query("""
+        select b.id from Booking b
+        where not exists (select 1 from PassengerBookingView v where v.bookingId = b.id)
+        order by b.id
+    """)
+    List<Long> findUnprojectedBookingIds(Pageable pageable);
+}
@@ -0,0 +1,15 @@
+package com.carpool.repository;
+
+import com.carpool.model.PaymentDiscrepancy;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface PaymentDiscrepancyRepository extends JpaRepository<PaymentDiscrepancy, Long> {
+
+    boolean existsByKindAndTransactionId(PaymentDiscrepancy.Kind kind, String transactionId);
+
+    List<PaymentDiscrepancy> findByTransactionIdIn(List<String> transactionIds);
+
+    List<PaymentDiscrepancy> findTop100ByOrderByIdDesc();
+}
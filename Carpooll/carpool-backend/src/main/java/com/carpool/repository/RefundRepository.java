@@ -0,0 +1,73 @@
+package com.carpool.repository;
+
+import com.carpool.model.Refund;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface RefundRepository extends JpaRepository<Refund, Long> {
+
+    boolean existsByBookingId(Long bookingId);
+
+    Optional<Refund> findByBookingId(Long bookingId);
+
+    @Query("""
+        select r from Refund r
+        where r.status = com.carpool.model.Refund$Status.PENDING and r.nextAttemptAt <= :now
+        order by r.id
+    """)
+    List<Refund> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Claim a refund by pushing its next attempt past the lease; only one processor wins
+    @Modifying
+    @Query("""
+        update Refund r
+        set r.nextAttemptAt = :leaseUntil, r.attempts = r.attempts + 1
+        where r.id = :id and r.status = com.carpool.model.Refund$Status.PENDING and r.nextAttemptAt <= :now
+    """)
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("""
+        update Refund r
+        set r.status = com.carpool.model.Refund$Status.SUCCEEDED, r.providerRefundId = :providerRefundId,
+            r.completedAt = :at, r.lastError = null
+        where r.id = :id
+    """)
+    int markSucceeded(@Param("id") Long id, @Param("providerRefundId") String providerRefundId, @Param("at") LocalDateTime at);
+
+    @Modifying
+    @Query("""
+        update Refund r
+        set r.status = :status, r.nextAttemptAt = :nextAttemptAt, r.lastError = :error
+        where r.id = :id
+    """)
+    int markFailedAttempt(@Param("id") Long id,
+                          @Param("status") Refund.Status status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                          @Param("error") String error);
+
+    long countByStatus(Refund.Status status);
+
+    @Query("""
+        select r from Refund r
+        where r.status = com.carpool.model.Refund$Status.SUCCEEDED and r.rolledUpAt is null
+        order by r.id
+    """)
+    List<Refund> findNotRolledUp(Pageable pageable);
+
+    @Modifying
+    @Query("update Refund r set r.rolledUpAt = :at where r.id in :ids")
+    int markRolledUp(@Param("ids") Collection<Long> ids, @Param("at") LocalDateTime at);
+
+    @Modifying
+    @Query("update Refund r set r.rolledUpAt = null where r.id = :id")
+    int clearRolledUp(@Param("id") Long id);
+}
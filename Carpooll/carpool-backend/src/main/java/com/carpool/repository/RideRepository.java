@@ -1,13 +1,18 @@
 package com.carpool.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import com.carpool.model.Booking;
 import com.carpool.model.Ride;
+import com.carpool.model.WaitlistEntry;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface RideRepository extends JpaRepository<Ride, Long> {
 
@@ -23,6 +28,48 @@ public interface RideRepository extends JpaRepository<Ride, Long> {
     int deductSeatsIfAvailable(@Param("rideId") Long rideId,
                                @Param("seats") int seats);
 
+    // As deductSeatsIfAvailable, but seats held for promoted waitlist passengers stay off limits
+    // to every booking other than the one holding them (bookingId)
+    @Modifying(clearAutomatically = true)
+    @Query("""
+        update Ride r
+        set r.seatsAvailable = r.seatsAvailable - :seats
+        where r.id = :rideId
+          and r.seatsAvailable - :seats >= (
+              select coalesce(sum(w.seatsRequested), 0)
+              from WaitlistEntry w, Booking b
+              where w.rideId = :rideId
+                and w.status = :promoted
+                and b.id = w.bookingId
+                and b.status in :holding
+                and (:bookingId is null or b.id <> :bookingId)
+          )
+    """)
+    int deductUnheldSeats(@Param("rideId") Long rideId,
+                          @Param("bookingId") Long bookingId,
+                          @Param("seats") int seats,
+                          @Param("promoted") WaitlistEntry.Status promoted,
+                          @Param("holding") List<Booking.Status> holding);
+
+    // Atomically give seats back (mirror of deductSeatsIfAvailable)
+    @Modifying(clearAutomatically = true)
+    @Query("""
+        update Ride r
+        set r.seatsAvailable = r.seatsAvailable + :seats
+        where r.id = :rideId
+    """)
+    int restoreSeats(@Param("rideId") Long rideId,
+                     @Param("seats") int seats);
+
+    // Committed seat count without loading the entity (seat allocator cache refresh)
+    @Query("select r.seatsAvailable from Ride r where r.id = :id")
+    Integer findSeatsAvailable(@Param("id") Long id);
+
+    // Row lock used to serialize waitlist promotion passes for one ride
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Ride r where r.id = :id")
+    Optional<Ride> findByIdForUpdate(@Param("id") Long id);
+
     // ✅ FIXED: Find rides whose estimated completion time has passed OR (no estimated completion time and dateTime has passed)
     @Query("""
         select r.id
@@ -3,8 +3,36 @@ package com.carpool.repository;
 
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.carpool.model.User;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
+
+    // Unread notification counter: null means not counted yet, and is left alone by the deltas below
+    // -1 while not counted yet
+    @Query("select coalesce(u.unreadNotifications, -1) from User u where u.id = :id")
+    Optional<Long> findUnreadNotifications(@Param("id") Long id);
+
+    @Modifying
+    @Query("""
+        update User u set u.unreadNotifications =
+            (select count(n) from Notification n where n.user.id = u.id and n.isRead = false)
+        where u.id = :id and u.unreadNotifications is null
+    """)
+    int countUnreadNotifications(@Param("id") Long id);
+
+    @Modifying
+    @Query("update User u set u.unreadNotifications = u.unreadNotifications + :n where u.id = :id and u.unreadNotifications is not null")
+    int addUnreadNotifications(@Param("id") Long id, @Param("n") long n);
+
+    @Modifying
+    @Query("""
+        update User u set u.unreadNotifications =
+            case when u.unreadNotifications > :n then u.unreadNotifications - :n else 0 end
+        where u.id = :id and u.unreadNotifications is not null
+    """)
+    int subtractUnreadNotifications(@Param("id") Long id, @Param("n") long n);
 }
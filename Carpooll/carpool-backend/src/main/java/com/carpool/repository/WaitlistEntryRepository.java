@@ -0,0 +1,71 @@
+package com.carpool.repository;
+
+import com.carpool.model.Booking;
+import com.carpool.model.WaitlistEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    // FIFO queue for a ride
+    List<WaitlistEntry> findByRideIdAndStatusOrderByIdAsc(Long rideId, WaitlistEntry.Status status);
+
+    List<WaitlistEntry> findByUserIdOrderByIdDesc(Long userId);
+
+    Optional<WaitlistEntry> findFirstByRideIdAndUserIdAndStatus(Long rideId, Long userId, WaitlistEntry.Status status);
+
+    // 1-based position = number of waiting entries queued before this one + 1
+    long countByRideIdAndStatusAndIdLessThan(Long rideId, WaitlistEntry.Status status, Long id);
+
+    // Seats already handed to promoted passengers whose booking has not been paid or turned down yet,
+    // leaving out the hold of booking exceptBookingId (null counts every hold)
+    @Query("""
+        select coalesce(sum(w.seatsRequested), 0)
+        from WaitlistEntry w, Booking b
+        where w.rideId = :rideId
+          and w.status = :promoted
+          and b.id = w.bookingId
+          and b.status in :holding
+          and (:exceptBookingId is null or b.id <> :exceptBookingId)
+    """)
+    int sumSeatsHeldByPromoted(@Param("rideId") Long rideId,
+                               @Param("promoted") WaitlistEntry.Status promoted,
+                               @Param("holding") List<Booking.Status> holding,
+                               @Param("exceptBookingId") Long exceptBookingId);
+
+    // Promotions made before cutoff whose booking still holds seats, oldest first
+    @Query("""
+        select w
+        from WaitlistEntry w, Booking b
+        where w.status = :promoted
+          and w.promotedAt < :cutoff
+          and b.id = w.bookingId
+          and b.status in :holding
+        order by w.id
+    """)
+    List<WaitlistEntry> findExpiredHolds(@Param("promoted") WaitlistEntry.Status promoted,
+                                         @Param("holding") List<Booking.Status> holding,
+                                         @Param("cutoff") LocalDateTime cutoff,
+                                         Pageable pageable);
+
+    boolean existsByBookingIdAndStatus(Long bookingId, WaitlistEntry.Status status);
+
+    // Conditional transition so an entry is only ever claimed once, even by concurrent promotion passes
+    @Modifying(clearAutomatically = true)
+    @Query("""
+        update WaitlistEntry w
+        set w.status = :to, w.promotedAt = :at
+        where w.id = :id and w.status = :from
+    """)
+    int transition(@Param("id") Long id,
+                   @Param("from") WaitlistEntry.Status from,
+                   @Param("to") WaitlistEntry.Status to,
+                   @Param("at") LocalDateTime at);
+}
@@ -0,0 +1,126 @@
+package com.carpool.service;
+
+import com.carpool.model.ArchivedBooking;
+import com.carpool.model.Booking;
+import com.carpool.model.Refund;
+import com.carpool.repository.ArchivedBookingRepository;
+import com.carpool.repository.BookingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Moves terminal bookings older than the retention window from the hot booking table into
+ * booking_archive, one chunk per transaction. Cancelled bookings wait until their refund is done. Read paths that need old history opt in to the
+ * archive through the {@code includeArchived} lookups below; everything else sees only the hot table.
+ */
+@Service
+public class BookingArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingArchiveService.class);
+
+    static final Set<Booking.Status> TERMINAL =
+            EnumSet.of(Booking.Status.COMPLETED, Booking.Status.REJECTED, Booking.Status.CANCELLED);
+
+    private final BookingRepository bookingRepository;
+    private final ArchivedBookingRepository archiveRepository;
+    private final TransactionTemplate tx;
+
+    @Value("${booking.archive.retention-days:180}")
+    private int retentionDays = 180;
+
+    @Value("${booking.archive.batch-size:500}")
+    private int batchSize = 500;
+
+    public BookingArchiveService(
+            BookingRepository bookingRepository,
+            ArchivedBookingRepository archiveRepository,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.bookingRepository = bookingRepository;
+        this.archiveRepository = archiveRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${booking.archive.cron:0 30 3 * * *}")
+    public void scheduledArchive() {
+        try {
+            int moved = archiveOlderThan(LocalDateTime.now().minusDays(retentionDays));
+            if (moved > 0) log.info("Archived {} terminal bookings", moved);
+        } catch (Exception ex) {
+            log.warn("Booking archival failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Archive every terminal booking requested before the cutoff. Each chunk is copied and
+     * deleted in its own transaction, so an interrupted run leaves no booking in both tables.
+     */
+    public int archiveOlderThan(LocalDateTime cutoff) {
+        int total = 0;
+        while (true) {
+            Integer moved = tx.execute(s -> archiveChunk(cutoff));
+            if (moved == null || moved == 0) break;
+            total += moved;
+            if (moved < batchSize) break;
+        }
+        return total;
+    }
+
+    private int archiveChunk(LocalDateTime cutoff) {
+        List<Booking> chunk = bookingRepository.findArchivable(TERMINAL, cutoff, Refund.Status.PENDING, PageRequest.of(0, batchSize));
+        if (chunk.isEmpty()) return 0;
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ArchivedBooking> copies = new ArrayList<>(chunk.size());
+        List<Long> ids = new ArrayList<>(chunk.size());
+        for (Booking b : chunk) {
+            copies.add(ArchivedBooking.from(b, now));
+            ids.add(b.getId());
+        }
+        archiveRepository.saveAll(copies);
+        bookingRepository.deleteAllByIdInBatch(ids);
+        return chunk.size();
+    }
+
+    public List<Booking> findByRideId(Long rideId, boolean includeArchived) {
+        List<Booking> bookings = bookingRepository.findByRideId(rideId);
+        if (!includeArchived) return bookings;
+        List<Booking> all = new ArrayList<>(bookings);
+        archiveRepository.findByRideId(rideId).forEach(a -> all.add(a.toBooking()));
+        return all;
+    }
+
+    public List<Booking> findByRequesterId(Long requesterId, boolean includeArchived) {
+        List<Booking> bookings = bookingRepository.findByRequesterId(requesterId);
+        if (!includeArchived) return bookings;
+        List<Booking> all = new ArrayList<>(bookings);
+        archiveRepository.findByRequesterId(requesterId).forEach(a -> all.add(a.toBooking()));
+        return all;
+    }
+
+    // Hot table first; the archive is only consulted on a miss
+    public Optional<Booking> findById(Long id, boolean includeArchived) {
+        Optional<Booking> hot = bookingRepository.findById(id);
+        if (hot.isPresent() || !includeArchived) return hot;
+        return archiveRepository.findById(id).map(ArchivedBooking::toBooking);
+    }
+
+    // Duplicate-payment checks must still see archived transaction ids
+    public boolean transactionIdExists(String transactionId) {
+        return bookingRepository.existsByTransactionId(transactionId)
+                || archiveRepository.existsByTransactionId(transactionId);
+    }
+}
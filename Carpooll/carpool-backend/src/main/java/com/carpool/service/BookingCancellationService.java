@@ -0,0 +1,188 @@
+package com.carpool.service;
+
+import com.carpool.model.Booking;
+import com.carpool.model.Refund;
+import com.carpool.model.Ride;
+import com.carpool.model.WaitlistEntry;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.WaitlistEntryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Passenger-initiated cancellation, and cancellation of every booking on a ride the host deletes. The status change is a compare-and-set on the booking row
+ * and seats go back through a single atomic increment, so concurrent cancels of the same booking
+ * restore seats exactly once and never race with seat deduction for other bookings on the ride.
+ * Refunds for paid bookings and notifications are enqueued in the same transaction, and sent by
+ * {@link RefundProcessor} and {@link OutboxDispatcher} once it commits.
+ */
+@Service
+public class BookingCancellationService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingCancellationService.class);
+
+    private static final Set<Booking.Status> CANCELLABLE =
+            EnumSet.of(Booking.Status.PENDING, Booking.Status.ACCEPTED, Booking.Status.CONFIRMED);
+
+    private final BookingRepository bookingRepository;
+    private final RideRepository rideRepository;
+    private final OutboxService outboxService;
+    private final RefundService refundService;
+    private final WaitlistEntryRepository waitlistRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public BookingCancellationService(
+            BookingRepository bookingRepository,
+            RideRepository rideRepository,
+            OutboxService outboxService,
+            RefundService refundService,
+            WaitlistEntryRepository waitlistRepository,
+            ApplicationEventPublisher eventPublisher
+    ) {
+        this.bookingRepository = bookingRepository;
+        this.rideRepository = rideRepository;
+        this.outboxService = outboxService;
+        this.refundService = refundService;
+        this.waitlistRepository = waitlistRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public record Result(Booking booking, boolean seatsRestored, boolean refundEligible) {}
+
+    public record RideCancellation(int bookingsCancelled, int refundsEnqueued, int waitlistClosed) {}
+
+    /**
+     * Cancel a booking on behalf of its passenger.
+     *
+     * @throws IllegalStateException if the booking is not in a cancellable status, or changed
+     *                               status concurrently (e.g. a parallel cancel won)
+     */
+    @Transactional
+    public Result cancel(Booking b) {
+        Booking.Status current = b.getStatus();
+        if (!CANCELLABLE.contains(current)) {
+            throw new IllegalStateException("Booking cannot be cancelled in status " + current);
+        }
+
+        Ride ride = rideRepository.findById(b.getRideId()).orElse(null);
+        // Seats are only deducted at payment confirmation
+        boolean seatsHeld = current == Booking.Status.CONFIRMED;
+        // ...but a booking promoted from the waitlist holds its seats until then
+        boolean promotionHold = !seatsHeld && waitlistRepository.existsByBookingIdAndStatus(b.getId(), WaitlistEntry.Status.PROMOTED);
+        boolean refundEligible = seatsHeld && b.getTransactionId() != null && !hasDeparted(ride);
+
+        LocalDateTime now = LocalDateTime.now();
+        int rows = bookingRepository.cancelIfStatus(b.getId(), current, now, refundEligible);
+        if (rows == 0) {
+            throw new IllegalStateException("Booking was modified concurrently, please retry");
+        }
+        if (refundEligible) refundService.enqueue(b, ride, Refund.Reason.PASSENGER_CANCELLED);
+
+        boolean restored = false;
+        if (seatsHeld && ride != null) {
+            restored = rideRepository.restoreSeats(ride.getId(), b.getSeatsRequested()) == 1;
+        }
+
+        if (restored || promotionHold) {
+            eventPublisher.publishEvent(new SeatsReleasedEvent(b.getRideId(), b.getSeatsRequested()));
+        }
+        eventPublisher.publishEvent(new BookingChangedEvent(b.getId(), b.getRideId()));
+
+        Booking fresh = bookingRepository.findById(b.getId()).orElse(b);
+        notifyParties(fresh, ride, refundEligible);
+        log.info("Booking {} cancelled from {} (seatsRestored={}, refundEligible={})", b.getId(), current, restored, refundEligible);
+        return new Result(fresh, restored, refundEligible);
+    }
+
+    /**
+     * Cancel every active booking on a ride and delete the ride, enqueueing refunds for paid
+     * bookings, and take everyone still waiting off its waitlist. A booking or entry that changes
+     * status concurrently is left as the other writer set it.
+     *
+     * @throws IllegalStateException if the ride has departed with paid passengers: it took place,
+     *                               so it is completed rather than deleted
+     */
+    @Transactional
+    public RideCancellation cancelRide(Ride ride) {
+        if (hasDeparted(ride) && bookingRepository.existsByRideIdAndStatusAndTransactionIdIsNotNull(ride.getId(), Booking.Status.CONFIRMED)) {
+            throw new IllegalStateException("This ride has departed with paid passengers and cannot be deleted");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int cancelled = 0, refunds = 0;
+        for (Booking b : bookingRepository.findByRideId(ride.getId())) {
+            Booking.Status current = b.getStatus();
+            if (!CANCELLABLE.contains(current)) continue;
+            boolean refundEligible = current == Booking.Status.CONFIRMED && b.getTransactionId() != null;
+            if (bookingRepository.cancelIfStatus(b.getId(), current, now, refundEligible) == 0) continue;
+            cancelled++;
+            if (refundEligible && refundService.enqueue(b, ride, Refund.Reason.RIDE_CANCELLED)) refunds++;
+            notifyPassenger(b, "Ride Cancelled",
+                    "Your ride from " + ride.getFromLocation() + " to " + ride.getToLocation() + " was cancelled by the host."
+                            + (refundEligible ? " Your payment will be refunded." : ""));
+        }
+
+        int waitlistClosed = 0;
+        for (WaitlistEntry e : waitlistRepository.findByRideIdAndStatusOrderByIdAsc(ride.getId(), WaitlistEntry.Status.WAITING)) {
+            if (waitlistRepository.transition(e.getId(), WaitlistEntry.Status.WAITING, WaitlistEntry.Status.LEFT, null) == 0) continue;
+            waitlistClosed++;
+            outboxService.notifyUser(e.getUserId(), "Ride Cancelled",
+                    "The ride from " + ride.getFromLocation() + " to " + ride.getToLocation()
+                            + " you were waiting for was cancelled by the host.",
+                    "BOOKING", "/my-bookings");
+        }
+        rideRepository.deleteById(ride.getId());
+
+        eventPublisher.publishEvent(BookingChangedEvent.ofRide(ride.getId()));
+        log.info("Ride {} deleted, {} bookings cancelled, {} refunds enqueued, {} left on the waitlist",
+                ride.getId(), cancelled, refunds, waitlistClosed);
+        return new RideCancellation(cancelled, refunds, waitlistClosed);
+    }
+
+    private void notifyPassenger(Booking b, String title, String message) {
+        if (b.getRequesterId() != null) {
+            outboxService.notifyUser(b.getRequesterId(), title, message, "BOOKING", "/my-bookings");
+        } else {
+            outboxService.notifyByEmail(b.getRequesterEmail(), title, message, "BOOKING", "/my-bookings");
+        }
+    }
+
+    private void notifyParties(Booking b, Ride ride, boolean refundEligible) {
+        notifyPassenger(b, "Booking Cancelled", refundEligible
+                ? "Your booking was cancelled. You are eligible for a refund."
+                : "Your booking was cancelled.");
+        if (ride != null) {
+            outboxService.notifyByEmail(ride.getOwnerEmail(), "Booking Cancelled",
+                    "A passenger cancelled their booking on your ride.", "BOOKING", "/hosted");
+        }
+    }
+
+    private boolean hasDeparted(Ride ride) {
+        if (ride == null) return true;
+        return parseDateTime(ride.getDateTime())
+                .map(dt -> dt.isBefore(LocalDateTime.now()))
+                .orElse(false);
+    }
+
+    private Optional<LocalDateTime> parseDateTime(String s) {
+        if (s == null) return Optional.empty();
+        try {
+            return Optional.of(LocalDateTime.parse(s));
+        } catch (Exception e) {
+            try {
+                return Optional.of(OffsetDateTime.parse(s).toLocalDateTime());
+            } catch (Exception ex) {
+                return Optional.empty();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.carpool.service;
+
+/**
+ * Published after a booking (or every booking on a ride, when {@code bookingId} is null) was
+ * written. {@code rideId} may be null when the publisher does not have it to hand. Consumed after
+ * commit by {@link PassengerBookingViewProjector}.
+ */
+public record BookingChangedEvent(Long bookingId, Long rideId) {
+
+    public static BookingChangedEvent ofRide(Long rideId) {
+        return new BookingChangedEvent(null, rideId);
+    }
+}
@@ -4,6 +4,7 @@ import com.carpool.model.Booking;
 import com.carpool.repository.BookingRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,13 +20,15 @@ public class BookingCompletionService {
     private final EmailService emailService;
     private final com.carpool.repository.RideRepository rideRepository;
     private final com.carpool.repository.UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public BookingCompletionService(BookingRepository bookingRepository, NotificationService notificationService, EmailService emailService, com.carpool.repository.RideRepository rideRepository, com.carpool.repository.UserRepository userRepository) {
+    public BookingCompletionService(BookingRepository bookingRepository, NotificationService notificationService, EmailService emailService, com.carpool.repository.RideRepository rideRepository, com.carpool.repository.UserRepository userRepository, ApplicationEventPublisher eventPublisher) {
         this.bookingRepository = bookingRepository;
         this.notificationService = notificationService;
         this.emailService = emailService;
         this.rideRepository = rideRepository;
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -66,6 +69,7 @@ public class BookingCompletionService {
                 // keep going for other bookings; don't fail the whole ride.
             }
         }
+        if (updated > 0) eventPublisher.publishEvent(BookingChangedEvent.ofRide(rideId));
                 return updated;
     }
 
@@ -0,0 +1,146 @@
+package com.carpool.service;
+
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.model.WaitlistEntry;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Confirms a booking once its payment has succeeded. Shared by the passenger-driven
+ * verify-payment / confirm-checkout calls and the Stripe webhook, which may report the same
+ * payment concurrently: the booking row is locked first, so it is confirmed (and its seats
+ * deducted) exactly once whichever path gets there first.
+ */
+@Service
+public class BookingPaymentService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingPaymentService.class);
+
+    public enum Outcome {
+        CONFIRMED,
+        ALREADY_CONFIRMED,
+        NOT_FOUND,
+        INVALID_TRANSACTION,
+        DUPLICATE_TRANSACTION,
+        RIDE_NOT_FOUND,
+        SEATS_UNAVAILABLE
+    }
+
+    public record Result(Outcome outcome, Booking booking, WaitlistEntry waitlistEntry) {
+        public boolean confirmed() {
+            return outcome == Outcome.CONFIRMED || outcome == Outcome.ALREADY_CONFIRMED;
+        }
+    }
+
+    private final BookingRepository bookingRepository;
+    private final RideRepository rideRepository;
+    private final UserRepository userRepository;
+    private final BookingService bookingService;
+    private final BookingArchiveService bookingArchive;
+    private final SeatAllocator seatAllocator;
+    private final WaitlistService waitlistService;
+    private final OutboxService outboxService;
+    private final LedgerService ledgerService;
+    private final EntityManager em;
+
+    public BookingPaymentService(
+            BookingRepository bookingRepository,
+            RideRepository rideRepository,
+            UserRepository userRepository,
+            BookingService bookingService,
+            BookingArchiveService bookingArchive,
+            SeatAllocator seatAllocator,
+            WaitlistService waitlistService,
+            OutboxService outboxService,
+            LedgerService ledgerService,
+            EntityManager em
+    ) {
+        this.bookingRepository = bookingRepository;
+        this.rideRepository = rideRepository;
+        this.userRepository = userRepository;
+        this.bookingService = bookingService;
+        this.bookingArchive = bookingArchive;
+        this.seatAllocator = seatAllocator;
+        this.waitlistService = waitlistService;
+        this.outboxService = outboxService;
+        this.ledgerService = ledgerService;
+        this.em = em;
+    }
+
+    /**
+     * Confirm {@code bookingId} as paid by Stripe payment intent {@code transactionId}. Callers are
+     * responsible for checking who is asking; this only enforces the payment rules.
+     */
+    @Transactional
+    public Result confirm(Long bookingId, String transactionId) {
+        Booking b = bookingRepository.findById(bookingId).orElse(null);
+        if (b == null) return new Result(Outcome.NOT_FOUND, null, null);
+        // Re-read under a row lock: a concurrent confirmation may have committed since the caller looked
+        em.refresh(b, LockModeType.PESSIMISTIC_WRITE);
+
+        if (b.getStatus() == Booking.Status.CONFIRMED) {
+            return new Result(Outcome.ALREADY_CONFIRMED, b, null);
+        }
+
+        String email = b.getRequesterEmail();
+        if (transactionId == null || !transactionId.startsWith("pi_")) {
+            outboxService.notifyByEmail(email, "Payment Failed", "Invalid transaction ID provided.", "PAYMENT", "/my-bookings");
+            return new Result(Outcome.INVALID_TRANSACTION, b, null);
+        }
+
+        if (bookingArchive.transactionIdExists(transactionId)) {
+            outboxService.notifyByEmail(email, "Payment Failed", "Duplicate transaction detected.", "PAYMENT", "/my-bookings");
+            return new Result(Outcome.DUPLICATE_TRANSACTION, b, null);
+        }
+
+        Ride ride = rideRepository.findById(b.getRideId()).orElse(null);
+        if (ride == null) {
+            return new Result(Outcome.RIDE_NOT_FOUND, b, null);
+        }
+
+        // Admission goes through the per-ride allocator so sold-out rides fail without a row lock
+        if (!seatAllocator.tryAllocate(ride.getId(), b.getId(), b.getSeatsRequested())) {
+            // Queue the passenger so they are promoted automatically once seats free up
+            WaitlistEntry entry = null;
+            try {
+                entry = email == null ? null : userRepository.findByEmail(email)
+                        .map(u -> waitlistService.join(ride.getId(), u, b.getSeatsRequested(), b.getId()))
+                        .orElse(null);
+            } catch (Exception e) {
+                log.warn("Failed to add booking {} to waitlist: {}", b.getId(), e.getMessage());
+            }
+            outboxService.notifyByEmail(email, "Payment Failed", "Seats unavailable at the time of confirmation. You have been added to the waitlist.", "PAYMENT", "/my-bookings");
+            return new Result(Outcome.SEATS_UNAVAILABLE, b, entry);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        b.setTransactionId(transactionId);
+        b.setPaymentCompletedAt(now);
+        b.setDriverEmail(ride.getOwnerEmail());
+        b.setConfirmedAt(now);
+        b.setStatus(Booking.Status.CONFIRMED);
+        Booking saved = bookingService.save(b);
+        ledgerService.postBookingPayment(saved, ride);
+
+        // 📧 EMAILS + NOTIFICATIONS go out via the outbox once this transaction commits
+        outboxService.sendEmail(OutboxService.Email.RIDE_CONFIRMED, saved.getId());
+        outboxService.sendEmail(OutboxService.Email.INVOICE, saved.getId());
+        outboxService.notifyByEmail(email, "Payment Successful", "Your payment was successful and booking is confirmed.", "PAYMENT", "/my-bookings");
+        if (ride.getOwnerEmail() != null && !ride.getOwnerEmail().isBlank()) {
+            outboxService.notifyByEmail(ride.getOwnerEmail(), "Passenger Paid", "A passenger has paid for a booking on your ride.", "PAYMENT", "/hosted");
+            // driver email informing passenger payment received
+            outboxService.sendEmail(OutboxService.Email.PASSENGER_PAID, saved.getId());
+        }
+        return new Result(Outcome.CONFIRMED, saved, null);
+    }
+}
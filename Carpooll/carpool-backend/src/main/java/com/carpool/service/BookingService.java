@@ -1,6 +1,7 @@
 // src/main/java/com/carpool/service/BookingService.java
 package com.carpool.service;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,13 +16,16 @@ public class BookingService {
 
     private final BookingRepository bookingRepository;
     private final NotificationService notificationService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public BookingService(
             BookingRepository bookingRepository,
-            NotificationService notificationService
+            NotificationService notificationService,
+            ApplicationEventPublisher eventPublisher
     ) {
         this.bookingRepository = bookingRepository;
         this.notificationService = notificationService;
+        this.eventPublisher = eventPublisher;
     }
 
     /* ==========================
@@ -29,7 +33,7 @@ public class BookingService {
        ========================== */
 
     public Booking create(Booking b) {
-        return bookingRepository.save(b);
+        return save(b);
     }
 
     public Optional<Booking> findById(Long id) {
@@ -49,7 +53,9 @@ public class BookingService {
     }
 
     public Booking save(Booking b) {
-        return bookingRepository.save(b);
+        Booking saved = bookingRepository.save(b);
+        eventPublisher.publishEvent(new BookingChangedEvent(saved.getId(), saved.getRideId()));
+        return saved;
     }
 
 
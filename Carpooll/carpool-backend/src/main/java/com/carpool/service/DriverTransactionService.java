@@ -0,0 +1,133 @@
+package com.carpool.service;
+
+import com.carpool.dto.DriverTransactionDTO;
+import com.carpool.repository.ArchivedBookingRepository;
+import com.carpool.repository.BookingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A driver's paid bookings, as pages for the transactions screen and as a stream for the CSV
+ * export. Archived bookings are only read when the caller asks for them. Bookings carry their
+ * driver's email from payment on, so both read one (driverEmail, paymentCompletedAt, id) index
+ * range; bookings paid before it was recorded are filled in from their ride on startup.
+ */
+@Service
+public class DriverTransactionService {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverTransactionService.class);
+
+    private final BookingRepository bookingRepository;
+    private final ArchivedBookingRepository archiveRepository;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readOnlyTx;
+
+    public DriverTransactionService(
+            BookingRepository bookingRepository,
+            ArchivedBookingRepository archiveRepository,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.bookingRepository = bookingRepository;
+        this.archiveRepository = archiveRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void fillDriverEmailsOnStartup() {
+        Integer n = tx.execute(s -> bookingRepository.fillDriverEmail() + archiveRepository.fillDriverEmail());
+        if (n != null && n > 0) log.info("Recorded the driver on {} paid bookings", n);
+    }
+
+    /**
+     * One page of a driver's paid bookings, newest payment first, optionally limited to payments
+     * in [{@code from}, {@code to}). Pages are keyed on (paymentCompletedAt, bookingId) rather than
+     * offset, so each page is an index seek whatever the driver's history. With the archive
+     * included, both tables are read up to the page size and merged on the same key.
+     *
+     * @throws IllegalArgumentException if {@code cursor} was not issued by this method
+     */
+    public TransactionPage findDriverTransactions(String driverEmail, LocalDateTime from, LocalDateTime to,
+                                                  String cursor, int limit, boolean includeArchived) {
+        TransactionCursor after = cursor == null || cursor.isBlank() ? TransactionCursor.FIRST : TransactionCursor.decode(cursor);
+        // The end of the range is a cursor that has passed every payment made at or after it
+        if (to != null && !after.paidAt().isBefore(to)) after = new TransactionCursor(to, Long.MIN_VALUE);
+        PageRequest page = PageRequest.of(0, limit + 1);
+        LocalDateTime beforePaidAt = after.paidAt();
+        long beforeId = after.bookingId();
+        List<DriverTransactionDTO> rows = from == null
+                ? bookingRepository.findDriverTransactionsPage(driverEmail, beforePaidAt, beforeId, page)
+                : bookingRepository.findDriverTransactionsPageFrom(driverEmail, from, beforePaidAt, beforeId, page);
+        if (includeArchived) {
+            List<DriverTransactionDTO> merged = new ArrayList<>(rows);
+            merged.addAll(from == null
+                    ? archiveRepository.findDriverTransactionsPage(driverEmail, beforePaidAt, beforeId, page)
+                    : archiveRepository.findDriverTransactionsPageFrom(driverEmail, from, beforePaidAt, beforeId, page));
+            merged.sort(TransactionCursor.NEWEST_FIRST);
+            rows = merged;
+        }
+        if (rows.size() <= limit) return new TransactionPage(rows, null);
+        List<DriverTransactionDTO> items = new ArrayList<>(rows.subList(0, limit));
+        DriverTransactionDTO last = items.get(limit - 1);
+        return new TransactionPage(items, new TransactionCursor(last.getDate(), last.getBookingId()).encode());
+    }
+
+    public record TransactionPage(List<DriverTransactionDTO> items, String nextCursor) {}
+
+    // Position after the last row of a page, handed to clients as an opaque base64url token
+    record TransactionCursor(LocalDateTime paidAt, long bookingId) {
+
+        // Sorts after any real payment time, so the first page needs no separate query
+        static final TransactionCursor FIRST = new TransactionCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+
+        static final Comparator<DriverTransactionDTO> NEWEST_FIRST =
+                Comparator.comparing(DriverTransactionDTO::getDate).thenComparing(DriverTransactionDTO::getBookingId).reversed();
+
+        String encode() {
+            String raw = paidAt + "|" + bookingId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static TransactionCursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int bar = raw.indexOf('|');
+                return new TransactionCursor(LocalDateTime.parse(raw.substring(0, bar)), Long.parseLong(raw.substring(bar + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+
+    /**
+     * Hand every driver transaction row to {@code sink} straight off a database cursor, hot table
+     * first, in one read-only transaction; nothing but the current row is held in memory.
+     */
+    public void forEachDriverTransaction(String driverEmail, boolean includeArchived, Consumer<DriverTransactionDTO> sink) {
+        readOnlyTx.executeWithoutResult(s -> {
+            try (Stream<DriverTransactionDTO> rows = bookingRepository.streamDriverTransactions(driverEmail)) {
+                rows.forEach(sink);
+            }
+            if (!includeArchived) return;
+            try (Stream<DriverTransactionDTO> rows = archiveRepository.streamDriverTransactions(driverEmail)) {
+                rows.forEach(sink);
+            }
+        });
+    }
+}
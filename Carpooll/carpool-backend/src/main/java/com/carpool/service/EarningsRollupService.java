@@ -0,0 +1,204 @@
+package com.carpool.service;
+
+import com.carpool.model.DriverEarningsDay;
+import com.carpool.model.LedgerEntry;
+import com.carpool.model.Refund;
+import com.carpool.repository.DriverEarningsDayRepository;
+import com.carpool.repository.LedgerEntryRepository;
+import com.carpool.repository.RefundRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-driver, per-day earnings built incrementally from the ledger. A payment is added on the day
+ * its driver line was posted, and a refund comes off on the day the provider confirmed it, using
+ * the shares the ledger recorded for that booking. Like the ledger balances, rollups are advanced
+ * after commit on the async executor under one lock, from lines and refunds not yet rolled up, so
+ * each is counted exactly once and whatever a crash left behind is picked up on the next start.
+ * Bookings paid before the ledger existed are in them once the ledger has backfilled their lines.
+ */
+@Service
+public class EarningsRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(EarningsRollupService.class);
+
+    private static final int CHUNK = 500;
+
+    public enum Granularity { DAY, MONTH }
+
+    public record Period(String period, long payments, long refunds, double gross, double platformFee,
+                         double gst, double net, double refunded) {}
+
+    public record Summary(String driverEmail, Granularity granularity, LocalDate from, LocalDate to,
+                          Period allTime, List<Period> periods) {}
+
+    private record DayKey(String driverEmail, LocalDate day) {}
+
+    // A booking's shares as the ledger posted them
+    private record Shares(long gross, long platformFee, long gst, long net) {}
+
+    private final DriverEarningsDayRepository dayRepository;
+    private final LedgerEntryRepository entryRepository;
+    private final RefundRepository refundRepository;
+    private final TransactionTemplate tx;
+    private final ReentrantLock rollupLock = new ReentrantLock();
+
+    public EarningsRollupService(
+            DriverEarningsDayRepository dayRepository,
+            LedgerEntryRepository entryRepository,
+            RefundRepository refundRepository,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.dayRepository = dayRepository;
+        this.entryRepository = entryRepository;
+        this.refundRepository = refundRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPosted(LedgerPostedEvent event) {
+        rollUpPending();
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRefunded(RefundIssuedEvent event) {
+        rollUpPending();
+    }
+
+    // Also backfills ledger postings made before the rollups existed
+    @EventListener(ApplicationReadyEvent.class)
+    public void rollUpPendingOnStartup() {
+        int n = rollUpPending();
+        if (n > 0) log.info("Rolled up {} pending payments and refunds", n);
+    }
+
+    /** Add every payment and refund not yet rolled up to its driver's day; returns how many were added. */
+    public int rollUpPending() {
+        int total = 0;
+        rollupLock.lock();
+        try {
+            while (true) {
+                Integer n = tx.execute(s -> rollUpChunk());
+                if (n == null || n == 0) break;
+                total += n;
+            }
+        } catch (Exception ex) {
+            // Lines and refunds stay pending and are picked up by the next event or restart
+            log.warn("Earnings rollup stopped after {}: {}", total, ex.getMessage());
+        } finally {
+            rollupLock.unlock();
+        }
+        return total;
+    }
+
+    private int rollUpChunk() {
+        List<LedgerEntry> payables = entryRepository.findNotRolledUp(LedgerEntry.Type.DRIVER_PAYABLE, PageRequest.of(0, CHUNK));
+        List<Refund> refunds = refundRepository.findNotRolledUp(PageRequest.of(0, CHUNK));
+        if (payables.isEmpty() && refunds.isEmpty()) return 0;
+
+        Set<Long> bookingIds = new HashSet<>();
+        payables.forEach(e -> bookingIds.add(e.getBookingId()));
+        refunds.forEach(r -> bookingIds.add(r.getBookingId()));
+        Map<Long, Map<LedgerEntry.Type, LedgerEntry>> lines = new HashMap<>();
+        for (LedgerEntry e : entryRepository.findByBookingIdIn(bookingIds)) {
+            lines.computeIfAbsent(e.getBookingId(), k -> new EnumMap<>(LedgerEntry.Type.class)).put(e.getType(), e);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<DayKey, DriverEarningsDay> days = new HashMap<>();
+        for (LedgerEntry payable : payables) {
+            Shares s = shares(lines.get(payable.getBookingId()));
+            day(days, LedgerService.driverOf(payable.getAccount()), payable.getCreatedAt().toLocalDate())
+                    .addPayment(s.gross(), s.platformFee(), s.gst(), s.net(), now);
+        }
+        for (Refund r : refunds) {
+            Map<LedgerEntry.Type, LedgerEntry> booking = lines.get(r.getBookingId());
+            LedgerEntry payable = booking == null ? null : booking.get(LedgerEntry.Type.DRIVER_PAYABLE);
+            if (payable != null) {
+                Shares s = shares(booking);
+                LocalDateTime refundedAt = r.getCompletedAt() != null ? r.getCompletedAt() : now;
+                day(days, LedgerService.driverOf(payable.getAccount()), refundedAt.toLocalDate())
+                        .addRefund(s.gross(), s.platformFee(), s.gst(), s.net(), r.getAmountPaise(), now);
+            }
+        }
+        dayRepository.saveAll(days.values());
+        // Marked with targeted updates: the ledger and the refund processor write these rows too
+        if (!payables.isEmpty()) entryRepository.markRolledUp(payables.stream().map(LedgerEntry::getId).toList(), now);
+        if (!refunds.isEmpty()) refundRepository.markRolledUp(refunds.stream().map(Refund::getId).toList(), now);
+        return payables.size() + refunds.size();
+    }
+
+    private DriverEarningsDay day(Map<DayKey, DriverEarningsDay> days, String driverEmail, LocalDate day) {
+        return days.computeIfAbsent(new DayKey(driverEmail, day), k ->
+                dayRepository.findByDriverEmailAndEarnedOn(driverEmail, day).orElseGet(() -> new DriverEarningsDay(driverEmail, day)));
+    }
+
+    private static Shares shares(Map<LedgerEntry.Type, LedgerEntry> lines) {
+        long net = credit(lines, LedgerEntry.Type.DRIVER_PAYABLE);
+        long commission = credit(lines, LedgerEntry.Type.DRIVER_COMMISSION);
+        return new Shares(net + commission, commission,
+                credit(lines, LedgerEntry.Type.CGST) + credit(lines, LedgerEntry.Type.SGST), net);
+    }
+
+    private static long credit(Map<LedgerEntry.Type, LedgerEntry> lines, LedgerEntry.Type type) {
+        LedgerEntry e = lines == null ? null : lines.get(type);
+        return e == null ? 0 : e.getCreditPaise();
+    }
+
+    /**
+     * The driver's earnings per day or month over [{@code from}, {@code to}], with all-time totals.
+     */
+    public Summary summary(String driverEmail, Granularity granularity, LocalDate from, LocalDate to) {
+        Map<String, long[]> periods = new LinkedHashMap<>();
+        for (DriverEarningsDay d : dayRepository.findByDriverEmailAndEarnedOnBetweenOrderByEarnedOn(driverEmail, from, to)) {
+            String key = granularity == Granularity.MONTH ? YearMonth.from(d.getEarnedOn()).toString() : d.getEarnedOn().toString();
+            long[] t = periods.computeIfAbsent(key, k -> new long[7]);
+            t[0] += d.getPayments();
+            t[1] += d.getRefunds();
+            t[2] += d.getGrossPaise();
+            t[3] += d.getPlatformFeePaise();
+            t[4] += d.getGstPaise();
+            t[5] += d.getNetPaise();
+            t[6] += d.getRefundedPaise();
+        }
+        List<Period> rows = new ArrayList<>(periods.size());
+        periods.forEach((k, t) -> rows.add(period(k, t)));
+
+        long[] all = new long[7];
+        List<Object[]> totals = dayRepository.totals(driverEmail);
+        if (!totals.isEmpty()) {
+            Object[] t = totals.get(0);
+            for (int i = 0; i < all.length; i++) all[i] = t[i] == null ? 0 : ((Number) t[i]).longValue();
+        }
+        return new Summary(driverEmail, granularity, from, to, period("all", all), rows);
+    }
+
+    private static Period period(String key, long[] t) {
+        return new Period(key, t[0], t[1], FareEngine.Quote.rupees(t[2]), FareEngine.Quote.rupees(t[3]),
+                FareEngine.Quote.rupees(t[4]), FareEngine.Quote.rupees(t[5]), FareEngine.Quote.rupees(t[6]));
+    }
+}
@@ -10,18 +10,24 @@ import org.springframework.stereotype.Service;
 import com.carpool.model.Booking;
 import com.carpool.model.Ride;
 import com.carpool.model.User; // used for host notifications
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 
 @Service
 public class EmailService {
 
+    private static final Logger log = LoggerFactory.getLogger(EmailService.class);
+
     private final JavaMailSender mailSender;
     private final com.carpool.repository.UserRepository userRepository;
+    private final FareEngine fareEngine;
 
-    public EmailService(JavaMailSender mailSender, com.carpool.repository.UserRepository userRepository) {
+    public EmailService(JavaMailSender mailSender, com.carpool.repository.UserRepository userRepository, FareEngine fareEngine) {
         this.mailSender = mailSender;
         this.userRepository = userRepository;
+        this.fareEngine = fareEngine;
     }
 
     // ✅ Keep this for text mails (forgot password etc.)
@@ -101,97 +107,108 @@ public class EmailService {
     @Async
     public void sendRideConfirmedEmail(Booking booking, Ride ride) {
         try {
-            if (booking.getRequesterEmail() == null || booking.getRequesterEmail().isBlank()) {
-                // No recipient, skip sending
-                return;
-            }
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setTo(booking.getRequesterEmail());
-            helper.setSubject("✅ Ride Confirmed – Your trip is booked!");
-
-            String html = """
-        <!DOCTYPE html>
-        <html>
-        <head>
-          <style>
-            body { font-family: Arial, sans-serif; background:#f4f6f8; padding:20px; }
-            .card { max-width:600px; margin:auto; background:white; border-radius:10px; overflow:hidden; box-shadow:0 4px 10px rgba(0,0,0,0.08); }
-            .header { background:#0d6efd; color:white; padding:20px; text-align:center; }
-            .content { padding:20px; color:#333; }
-            .ride-box { background:#f1f5f9; padding:15px; border-radius:8px; margin:15px 0; }
-            .btn { display:inline-block; padding:12px 20px; background:#0d6efd; color:white; text-decoration:none; border-radius:6px; margin-top:15px; }
-            .footer { text-align:center; font-size:12px; color:#777; padding:15px; }
-          </style>
-        </head>
-        <body>
-          <div class="card">
-            <div class="header">
-              <h2>🚗 Ride Confirmed!</h2>
-              <p>Your booking is successfully confirmed</p>
-            </div>
-
-            <div class="content">
-              <p>Hi <b>%s</b>,</p>
-              <p>Your seat has been successfully booked. Here are your ride details:</p>
+            deliverRideConfirmedEmail(booking, ride);
+        } catch (Exception e) {
+            System.err.println("Ride confirmation email failed: " + e.getMessage());
+        }
+    }
 
-              <div class="ride-box">
-                <p><b>Ride ID:</b> %d</p>
-                <p><b>Seats Booked:</b> %d</p>
-                <p><b>Status:</b> CONFIRMED</p>
-                <p><b>Confirmed At:</b> %s</p>
-              </div>
+    // The deliver* methods send on the calling thread and throw on failure, so the outbox can retry;
+    // the @Async send* wrappers are for callers that do not care whether the mail went out
+    public void deliverRideConfirmedEmail(Booking booking, Ride ride) throws MessagingException {
+        if (booking.getRequesterEmail() == null || booking.getRequesterEmail().isBlank()) {
+            // No recipient, skip sending
+            return;
+        }
 
-              <p>Please be on time and carry any required identification.</p>
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
 
-              <a class="btn" href="http://localhost:3000/my-rides">View My Bookings</a>
-            </div>
+        helper.setTo(booking.getRequesterEmail());
+        helper.setSubject("✅ Ride Confirmed – Your trip is booked!");
 
-            <div class="footer">
-              <p>Thank you for choosing our carpool service.</p>
-              <p>Safe travels 🚀</p>
-            </div>
+        String html = """
+    <!DOCTYPE html>
+    <html>
+    <head>
+      <style>
+        body { font-family: Arial, sans-serif; background:#f4f6f8; padding:20px; }
+        .card { max-width:600px; margin:auto; background:white; border-radius:10px; overflow:hidden; box-shadow:0 4px 10px rgba(0,0,0,0.08); }
+        .header { background:#0d6efd; color:white; padding:20px; text-align:center; }
+        .content { padding:20px; color:#333; }
+        .ride-box { background:#f1f5f9; padding:15px; border-radius:8px; margin:15px 0; }
+        .btn { display:inline-block; padding:12px 20px; background:#0d6efd; color:white; text-decoration:none; border-radius:6px; margin-top:15px; }
+        .footer { text-align:center; font-size:12px; color:#777; padding:15px; }
+      </style>
+    </head>
+    <body>
+      <div class="card">
+        <div class="header">
+          <h2>🚗 Ride Confirmed!</h2>
+          <p>Your booking is successfully confirmed</p>
+        </div>
+
+        <div class="content">
+          <p>Hi <b>%s</b>,</p>
+          <p>Your seat has been successfully booked. Here are your ride details:</p>
+
+          <div class="ride-box">
+            <p><b>Ride ID:</b> %d</p>
+            <p><b>Seats Booked:</b> %d</p>
+            <p><b>Status:</b> CONFIRMED</p>
+            <p><b>Confirmed At:</b> %s</p>
           </div>
-        </body>
-        </html>
-        """.formatted(
-                    booking.getRequesterName(),
-                    booking.getRideId(),
-                    booking.getSeatsRequested(),
-                    booking.getConfirmedAt()
-            );
 
-            helper.setText(html, true);
-            mailSender.send(message);
+          <p>Please be on time and carry any required identification.</p>
+
+          <a class="btn" href="http://localhost:3000/my-rides">View My Bookings</a>
+        </div>
+
+        <div class="footer">
+          <p>Thank you for choosing our carpool service.</p>
+          <p>Safe travels 🚀</p>
+        </div>
+      </div>
+    </body>
+    </html>
+    """.formatted(
+                booking.getRequesterName(),
+                booking.getRideId(),
+                booking.getSeatsRequested(),
+                booking.getConfirmedAt()
+        );
+
+        helper.setText(html, true);
+        mailSender.send(message);
 
-        } catch (Exception e) {
-            System.err.println("Ride confirmation email failed: " + e.getMessage());
-        }
     }
     @Async
     public void sendInvoiceEmail(Booking booking, Ride ride) {
         try {
-            System.out.println("✅ INVOICE EMAIL TRIGGERED for " + booking.getRequesterEmail());
-            int seats = booking.getSeatsRequested();
-
-            double baseFare = ride.getPrice() * seats;
-            double platformFee = baseFare * 0.05; // 5% platform fee
-            double subtotal = baseFare + platformFee;
-            // Tax policy: CGST 1.8% + SGST 1.8% = 3.6% total on subtotal
-            double cgst = subtotal * 0.018; // 1.8%
-            double sgst = subtotal * 0.018; // 1.8%
-            double gstTotal = cgst + sgst; // 3.6% total
-            double total = subtotal + gstTotal;
+            deliverInvoiceEmail(booking, ride);
+        } catch (Exception e) {
+            System.err.println("Invoice email failed: " + e.getMessage());
+        }
+    }
 
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+    public void deliverInvoiceEmail(Booking booking, Ride ride) throws MessagingException {
+        log.debug("Sending invoice email for booking {} to {}", booking.getId(), booking.getRequesterEmail());
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
 
-            helper.setTo(booking.getRequesterEmail());
-            helper.setSubject("🧾 VeloCity Invoice – Payment Successful");
+        helper.setTo(booking.getRequesterEmail());
+        helper.setSubject("🧾 VeloCity Invoice – Payment Successful");
+        helper.setText(invoiceHtml(booking, ride), true);
+        mailSender.send(message);
 
-            String html = """
+    }
+
+    // Same quote the passenger was charged, so the lines add up to the amount paid
+    String invoiceHtml(Booking booking, Ride ride) {
+        FareEngine.Quote fare = fareEngine.quote(ride, booking.getSeatsRequested());
+        int seats = fare.seats();
+
+        return """
 <!DOCTYPE html>
 <html>
 <body style="margin:0;padding:0;background:#f4f6f8;font-family:Arial,sans-serif;">
@@ -238,7 +255,7 @@ public class EmailService {
       </tr>
     </table>
 
-    <p style="margin-top:20px; color:#333;"><b>Note:</b> 5% from the amount will be taken as a platform fees from driver and passanger to maintain the platform significantly.</p>
+    <p style="margin-top:20px; color:#333;"><b>Note:</b> 5%% from the amount will be taken as a platform fees from driver and passanger to maintain the platform significantly.</p>
 
     <p style="margin-top:20px;">
       Payment Status: <b style="color:green;">SUCCESS</b><br>
@@ -270,223 +287,219 @@ public class EmailService {
                     booking.getTransactionId(),
                     booking.getId(),
                     seats, seats > 1 ? "s" : "",
-                    baseFare,
-                    platformFee,
-                    cgst,
-                    sgst,
-                    total,
+                    FareEngine.Quote.rupees(fare.basePaise()),
+                    FareEngine.Quote.rupees(fare.platformFeePaise()),
+                    FareEngine.Quote.rupees(fare.cgstPaise()),
+                    FareEngine.Quote.rupees(fare.sgstPaise()),
+                    FareEngine.Quote.rupees(fare.totalPaise()),
                     booking.getConfirmedAt());
-
-            helper.setText(html, true);
-            mailSender.send(message);
-
-        } catch (Exception e) {
-            System.err.println("Invoice email failed: " + e.getMessage());
-        }
     }
 
     @Async
     public void sendPassengerPaidEmail(Booking booking, Ride ride) {
         try {
-            String driverEmail = ride.getOwnerEmail();
-            if (driverEmail == null || driverEmail.isBlank()) {
-                // No driver email configured; skip sending
-                return;
-            }
-
-            int seats = booking.getSeatsRequested() > 0 ? booking.getSeatsRequested() : 1;
-            double base = ride.getPrice() * seats;
-            double platformFee = base * 0.05; // 5%
-            double subtotal = base + platformFee;
-            // CGST 1.8% + SGST 1.8% = 3.6% total on subtotal
-            double cgst = subtotal * 0.018; // 1.8%
-            double sgst = subtotal * 0.018; // 1.8%
-            double gstTotal = cgst + sgst; // 3.6% total
-            double total = subtotal + gstTotal;
-            double netToDriver = base - platformFee; // driver receives base minus platform fee
-
-            // try to fetch driver phone if available
-            String driverPhone = userRepository.findByEmail(driverEmail).map(u -> u.getPhone()).orElse("—");
+            deliverPassengerPaidEmail(booking, ride);
+        } catch (Exception e) {
+            System.err.println("sendPassengerPaidEmail failed: " + e.getMessage());
+        }
+    }
 
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+    public void deliverPassengerPaidEmail(Booking booking, Ride ride) throws MessagingException {
+        String driverEmail = ride.getOwnerEmail();
+        if (driverEmail == null || driverEmail.isBlank()) {
+            // No driver email configured; skip sending
+            return;
+        }
 
-            helper.setTo(driverEmail);
-            helper.setSubject("💳 Passenger Paid – VeloCity");
+        FareEngine.Quote fare = fareEngine.quote(ride, booking.getSeatsRequested());
 
-            String html = """
+        // try to fetch driver phone if available
+        String driverPhone = userRepository.findByEmail(driverEmail).map(u -> u.getPhone()).orElse("—");
+
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+
+        helper.setTo(driverEmail);
+        helper.setSubject("💳 Passenger Paid – VeloCity");
+
+        String html = """
 <!DOCTYPE html>
 <html>
 <body style="margin:0;padding:0;background:#f4f6f8;font-family:Arial,sans-serif;">
 <div style="max-width:600px;margin:30px auto;background:#ffffff;border-radius:10px;overflow:hidden;box-shadow:0 4px 10px rgba(0,0,0,0.08);">
   <div style="background:#0d6efd;color:white;padding:20px;text-align:center;">
-    <h2 style="margin:0;">💳 Passenger Payment Received</h2>
-    <p>Passenger <b>%s</b> has paid for Booking <b>%d</b>.</p>
+<h2 style="margin:0;">💳 Passenger Payment Received</h2>
+<p>Passenger <b>%s</b> has paid for Booking <b>%d</b>.</p>
   </div>
   <div style="padding:20px;color:#333;">
-    <p><b>Payment Summary</b></p>
-    <p>Amount paid by passenger (Total): <b>₹%.2f</b></p>
-    <p>Platform fee (5%%): <b>₹%.2f</b></p>
-    <p>CGST (1.8%%): ₹%.2f &nbsp; SGST (1.8%%): ₹%.2f &nbsp; <b>Total GST: ₹%.2f</b></p>
-    <p style="margin-top:8px;"><b>Amount credited to driver: ₹%.2f</b></p>
-
-    <hr style="border:none;border-top:1px solid #eee;margin:12px 0;" />
-
-    <p><b>Driver details</b></p>
-    <p>Name: %s</p>
-    <p>Email: %s</p>
-    <p>Phone: %s</p>
-    <p>Vehicle: %s</p>
-
-    <div style="text-align:center;margin:20px 0;">
-      <a href="http://localhost:3000/hosted" style="background:#0d6efd;color:white;padding:12px 20px;text-decoration:none;border-radius:6px;display:inline-block;">View Bookings</a>
-    </div>
+<p><b>Payment Summary</b></p>
+<p>Amount paid by passenger (Total): <b>₹%.2f</b></p>
+<p>Platform fee (5%%): <b>₹%.2f</b></p>
+<p>CGST (1.8%%): ₹%.2f &nbsp; SGST (1.8%%): ₹%.2f &nbsp; <b>Total GST: ₹%.2f</b></p>
+<p style="margin-top:8px;"><b>Amount credited to driver: ₹%.2f</b></p>
+
+<hr style="border:none;border-top:1px solid #eee;margin:12px 0;" />
+
+<p><b>Driver details</b></p>
+<p>Name: %s</p>
+<p>Email: %s</p>
+<p>Phone: %s</p>
+<p>Vehicle: %s</p>
+
+<div style="text-align:center;margin:20px 0;">
+  <a href="http://localhost:3000/hosted" style="background:#0d6efd;color:white;padding:12px 20px;text-decoration:none;border-radius:6px;display:inline-block;">View Bookings</a>
+</div>
 
-    <p style="font-size:13px;color:#777;margin-top:18px;">– Team VeloCity</p>
+<p style="font-size:13px;color:#777;margin-top:18px;">– Team VeloCity</p>
   </div>
 </div>
 </body>
 </html>
 """.formatted(
-                    booking.getRequesterName(),
-                    booking.getId(),
-                    total,
-                    platformFee,
-                    cgst,
-                    sgst,
-                    gstTotal,
-                    netToDriver,
-                    ride.getDriverName() == null ? "N/A" : ride.getDriverName(),
-                    driverEmail,
-                    driverPhone,
-                    ride.getVehicleNumber() == null ? "—" : ride.getVehicleNumber()
-            );
-
-            helper.setText(html, true);
-            mailSender.send(message);
-        } catch (Exception e) {
-            System.err.println("sendPassengerPaidEmail failed: " + e.getMessage());
-        }
+                booking.getRequesterName(),
+                booking.getId(),
+                FareEngine.Quote.rupees(fare.totalPaise()),
+                FareEngine.Quote.rupees(fare.platformFeePaise()),
+                FareEngine.Quote.rupees(fare.cgstPaise()),
+                FareEngine.Quote.rupees(fare.sgstPaise()),
+                FareEngine.Quote.rupees(fare.gstPaise()),
+                FareEngine.Quote.rupees(fare.netToDriverPaise()),
+                ride.getDriverName() == null ? "N/A" : ride.getDriverName(),
+                driverEmail,
+                driverPhone,
+                ride.getVehicleNumber() == null ? "—" : ride.getVehicleNumber()
+        );
+
+        helper.setText(html, true);
+        mailSender.send(message);
     }    @Async
     public void sendBookingAcceptedEmail(Booking booking, Ride ride) {
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+            deliverBookingAcceptedEmail(booking, ride);
+        } catch (Exception e) {
+            System.err.println("Accepted email failed");
+            e.printStackTrace();
+        }
+    }
+
+    public void deliverBookingAcceptedEmail(Booking booking, Ride ride) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
 
-            helper.setTo(booking.getRequesterEmail());
-            helper.setSubject("✅ Ride Request Accepted – VeloCity");
+        helper.setTo(booking.getRequesterEmail());
+        helper.setSubject("✅ Ride Request Accepted – VeloCity");
 
-            String html = """
+        String html = """
 <!DOCTYPE html>
 <html>
 <body style="margin:0;padding:0;background:#f4f6f8;font-family:Arial,sans-serif;">
 <div style="max-width:600px;margin:30px auto;background:#ffffff;border-radius:10px;overflow:hidden;box-shadow:0 4px 10px rgba(0,0,0,0.08);">
 
   <div style="background:#16a34a;color:white;padding:20px;text-align:center;">
-    <h2 style="margin:0;">✅ Ride Accepted</h2>
-    <p>Your request has been approved by the driver</p>
+<h2 style="margin:0;">✅ Ride Accepted</h2>
+<p>Your request has been approved by the driver</p>
   </div>
 
   <div style="padding:24px;color:#333;">
-    <p>Hi <b>%s</b>,</p>
+<p>Hi <b>%s</b>,</p>
 
-    <p>Good news 🎉 Your ride request has been <b>accepted</b>.</p>
+<p>Good news 🎉 Your ride request has been <b>accepted</b>.</p>
 
-    <div style="background:#f1f5f9;padding:14px;border-radius:8px;">
-      <p><b>Ride ID:</b> %d</p>
-      <p><b>Seats:</b> %d</p>
-      <p><b>Status:</b> ACCEPTED</p>
-    </div>
+<div style="background:#f1f5f9;padding:14px;border-radius:8px;">
+  <p><b>Ride ID:</b> %d</p>
+  <p><b>Seats:</b> %d</p>
+  <p><b>Status:</b> ACCEPTED</p>
+</div>
 
-    <div style="text-align:center;margin:25px 0;">
-      <a href="http://localhost:3000/my-rides"
-         style="background:#0d6efd;color:white;padding:12px 24px;text-decoration:none;border-radius:6px;">
-        View My Rides
-      </a>
-    </div>
+<div style="text-align:center;margin:25px 0;">
+  <a href="http://localhost:3000/my-rides"
+     style="background:#0d6efd;color:white;padding:12px 24px;text-decoration:none;border-radius:6px;">
+    View My Rides
+  </a>
+</div>
 
-    <p>We wish you a safe and pleasant journey 🚗</p>
-    <p><b>– Team VeloCity</b></p>
+<p>We wish you a safe and pleasant journey 🚗</p>
+<p><b>– Team VeloCity</b></p>
   </div>
 
 </div>
 </body>
 </html>
 """.formatted(
-                    booking.getRequesterName(),
-                    booking.getRideId(),
-                    booking.getSeatsRequested()
-            );
+                booking.getRequesterName(),
+                booking.getRideId(),
+                booking.getSeatsRequested()
+        );
 
-            helper.setText(html, true);
-            mailSender.send(message);
+        helper.setText(html, true);
+        mailSender.send(message);
 
-        } catch (Exception e) {
-            System.err.println("Accepted email failed");
-            e.printStackTrace();
-        }
     }
     @Async
     public void sendBookingRejectedEmail(Booking booking, Ride ride) {
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+            deliverBookingRejectedEmail(booking, ride);
+        } catch (Exception e) {
+            System.err.println("Rejected email failed");
+            e.printStackTrace();
+        }
+    }
 
-            helper.setTo(booking.getRequesterEmail());
-            helper.setSubject("❌ Ride Request Rejected – VeloCity");
+    public void deliverBookingRejectedEmail(Booking booking, Ride ride) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
 
-            String html = """
+        helper.setTo(booking.getRequesterEmail());
+        helper.setSubject("❌ Ride Request Rejected – VeloCity");
+
+        String html = """
 <!DOCTYPE html>
 <html>
 <body style="margin:0;padding:0;background:#f4f6f8;font-family:Arial,sans-serif;">
 <div style="max-width:600px;margin:30px auto;background:#ffffff;border-radius:10px;overflow:hidden;box-shadow:0 4px 10px rgba(0,0,0,0.08);">
 
   <div style="background:#dc2626;color:white;padding:20px;text-align:center;">
-    <h2 style="margin:0;">❌ Ride Rejected</h2>
-    <p>Your ride request was not approved</p>
+<h2 style="margin:0;">❌ Ride Rejected</h2>
+<p>Your ride request was not approved</p>
   </div>
 
   <div style="padding:24px;color:#333;">
-    <p>Hi <b>%s</b>,</p>
+<p>Hi <b>%s</b>,</p>
 
-    <p>Unfortunately, the driver has <b>rejected</b> your ride request.</p>
+<p>Unfortunately, the driver has <b>rejected</b> your ride request.</p>
 
-    <div style="background:#f1f5f9;padding:14px;border-radius:8px;">
-      <p><b>Ride ID:</b> %d</p>
-      <p><b>Seats:</b> %d</p>
-      <p><b>Status:</b> REJECTED</p>
-    </div>
+<div style="background:#f1f5f9;padding:14px;border-radius:8px;">
+  <p><b>Ride ID:</b> %d</p>
+  <p><b>Seats:</b> %d</p>
+  <p><b>Status:</b> REJECTED</p>
+</div>
 
-    <p style="margin-top:18px;">
-      Don’t worry — you can explore other rides and book again anytime.
-    </p>
+<p style="margin-top:18px;">
+  Don’t worry — you can explore other rides and book again anytime.
+</p>
 
-    <div style="text-align:center;margin:25px 0;">
-      <a href="http://localhost:3000/rides"
-         style="background:#0d6efd;color:white;padding:12px 24px;text-decoration:none;border-radius:6px;">
-        Find Other Rides
-      </a>
-    </div>
+<div style="text-align:center;margin:25px 0;">
+  <a href="http://localhost:3000/rides"
+     style="background:#0d6efd;color:white;padding:12px 24px;text-decoration:none;border-radius:6px;">
+    Find Other Rides
+  </a>
+</div>
 
-    <p><b>– Team VeloCity</b></p>
+<p><b>– Team VeloCity</b></p>
   </div>
 
 </div>
 </body>
 </html>
 """.formatted(
-                    booking.getRequesterName(),
-                    booking.getRideId(),
-                    booking.getSeatsRequested()
-            );
+                booking.getRequesterName(),
+                booking.getRideId(),
+                booking.getSeatsRequested()
+        );
 
-            helper.setText(html, true);
-            mailSender.send(message);
+        helper.setText(html, true);
+        mailSender.send(message);
 
-        } catch (Exception e) {
-            System.err.println("Rejected email failed");
-            e.printStackTrace();
-        }
     }
 
     // --------------------- ADDITIONAL EMAILS FOR NOTIFICATIONS ---------------------
@@ -530,99 +543,111 @@ public class EmailService {
     @Async
     public void sendBookingRequestedToHostEmail(Booking booking, Ride ride) {
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setTo(ride.getOwnerEmail());
-            helper.setSubject("📬 New Booking Request – VeloCity");
+            deliverBookingRequestedToHostEmail(booking, ride);
+        } catch (Exception e) {
+            System.err.println("sendBookingRequestedToHostEmail failed: " + e.getMessage());
+        }
+    }
 
-            String html = """
+    public void deliverBookingRequestedToHostEmail(Booking booking, Ride ride) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo(ride.getOwnerEmail());
+        helper.setSubject("📬 New Booking Request – VeloCity");
+
+        String html = """
 <!DOCTYPE html>
 <html>
 <body style="margin:0;padding:0;background:#f4f6f8;font-family:Arial,sans-serif;">
 <div style="max-width:600px;margin:30px auto;background:#ffffff;border-radius:10px;overflow:hidden;box-shadow:0 4px 10px rgba(0,0,0,0.08);">
   <div style="background:#0d6efd;color:white;padding:20px;text-align:center;">
-    <h2 style="margin:0;">📬 New Booking Request</h2>
-    <p>You have a new booking request for ride %d</p>
+<h2 style="margin:0;">📬 New Booking Request</h2>
+<p>You have a new booking request for ride %d</p>
   </div>
   <div style="padding:20px;color:#333;">
-    <p>Passenger: <b>%s</b> (%s)</p>
-    <p>Seats requested: %d</p>
-    <a href="http://localhost:3000/hosted" style="background:#0d6efd;color:white;padding:12px 20px;text-decoration:none;border-radius:6px;display:inline-block;margin-top:12px;">Review Requests</a>
-    <p style="font-size:13px;color:#777;margin-top:18px;">– Team VeloCity</p>
+<p>Passenger: <b>%s</b> (%s)</p>
+<p>Seats requested: %d</p>
+<a href="http://localhost:3000/hosted" style="background:#0d6efd;color:white;padding:12px 20px;text-decoration:none;border-radius:6px;display:inline-block;margin-top:12px;">Review Requests</a>
+<p style="font-size:13px;color:#777;margin-top:18px;">– Team VeloCity</p>
   </div>
 </div>
 </body>
 </html>
 """.formatted(booking.getRideId(), booking.getRequesterName(), booking.getRequesterEmail(), booking.getSeatsRequested());
 
-            helper.setText(html, true);
-            mailSender.send(message);
-        } catch (Exception e) {
-            System.err.println("sendBookingRequestedToHostEmail failed: " + e.getMessage());
-        }
+        helper.setText(html, true);
+        mailSender.send(message);
     }
 
     @Async
     public void sendRatingRequestEmails(Booking booking, Ride ride) {
         try {
-            // Passenger email
-            if (booking.getRequesterEmail() != null && !booking.getRequesterEmail().isBlank()) {
-                MimeMessage pMsg = mailSender.createMimeMessage();
-                MimeMessageHelper pHelper = new MimeMessageHelper(pMsg, true, "UTF-8");
-                pHelper.setTo(booking.getRequesterEmail());
-                pHelper.setSubject("⭐ Please rate your recent ride – VeloCity");
-                String passengerName = booking.getRequesterName() == null ? "" : booking.getRequesterName();
-                String pHtml = """
+            deliverRatingRequestEmails(booking, ride);
+        } catch (Exception e) {
+            System.err.println("sendRatingRequestEmails failed: " + e.getMessage());
+        }
+    }
+
+    public void deliverRatingRequestEmails(Booking booking, Ride ride) throws MessagingException {
+        deliverPassengerRatingRequestEmail(booking, ride);
+        deliverDriverRatingRequestEmail(booking, ride);
+    }
+
+    public void deliverPassengerRatingRequestEmail(Booking booking, Ride ride) throws MessagingException {
+        if (booking.getRequesterEmail() != null && !booking.getRequesterEmail().isBlank()) {
+            MimeMessage pMsg = mailSender.createMimeMessage();
+            MimeMessageHelper pHelper = new MimeMessageHelper(pMsg, true, "UTF-8");
+            pHelper.setTo(booking.getRequesterEmail());
+            pHelper.setSubject("⭐ Please rate your recent ride – VeloCity");
+            String passengerName = booking.getRequesterName() == null ? "" : booking.getRequesterName();
+            String pHtml = """
 <!DOCTYPE html>
 <html>
 <body style="margin:0;padding:0;background:#f4f6f8;font-family:Arial,sans-serif;">
 <div style="max-width:600px;margin:30px auto;background:#ffffff;border-radius:10px;overflow:hidden;box-shadow:0 4px 10px rgba(0,0,0,0.08);">
   <div style="background:#0d6efd;color:white;padding:20px;text-align:center;">
-    <h2 style="margin:0;">⭐ Please rate your ride</h2>
+<h2 style="margin:0;">⭐ Please rate your ride</h2>
   </div>
   <div style="padding:20px;color:#333;">
-    <p>Hi <b>%s</b>,</p>
-    <p>Your ride (ID: %d) is now completed. Please take a moment to rate your driver and share feedback.</p>
-    <a href="http://localhost:3000/my-rides" style="background:#0d6efd;color:white;padding:12px 20px;text-decoration:none;border-radius:6px;display:inline-block;margin-top:12px;">Rate Now</a>
-    <p style="font-size:13px;color:#777;margin-top:18px;">– Team VeloCity</p>
+<p>Hi <b>%s</b>,</p>
+<p>Your ride (ID: %d) is now completed. Please take a moment to rate your driver and share feedback.</p>
+<a href="http://localhost:3000/my-rides" style="background:#0d6efd;color:white;padding:12px 20px;text-decoration:none;border-radius:6px;display:inline-block;margin-top:12px;">Rate Now</a>
+<p style="font-size:13px;color:#777;margin-top:18px;">– Team VeloCity</p>
   </div>
 </div>
 </body>
 </html>
 """.formatted(passengerName, booking.getRideId());
-                pHelper.setText(pHtml, true);
-                mailSender.send(pMsg);
-            }
-
-            // Driver email
-            if (ride.getOwnerEmail() != null && !ride.getOwnerEmail().isBlank()) {
-                MimeMessage dMsg = mailSender.createMimeMessage();
-                MimeMessageHelper dHelper = new MimeMessageHelper(dMsg, true, "UTF-8");
-                dHelper.setTo(ride.getOwnerEmail());
-                dHelper.setSubject("⭐ Please rate your passenger – VeloCity");
-                String dHtml = """
+            pHelper.setText(pHtml, true);
+            mailSender.send(pMsg);
+        }
+    }
+
+    public void deliverDriverRatingRequestEmail(Booking booking, Ride ride) throws MessagingException {
+        if (ride.getOwnerEmail() != null && !ride.getOwnerEmail().isBlank()) {
+            MimeMessage dMsg = mailSender.createMimeMessage();
+            MimeMessageHelper dHelper = new MimeMessageHelper(dMsg, true, "UTF-8");
+            dHelper.setTo(ride.getOwnerEmail());
+            dHelper.setSubject("⭐ Please rate your passenger – VeloCity");
+            String dHtml = """
 <!DOCTYPE html>
 <html>
 <body style="margin:0;padding:0;background:#f4f6f8;font-family:Arial,sans-serif;">
 <div style="max-width:600px;margin:30px auto;background:#ffffff;border-radius:10px;overflow:hidden;box-shadow:0 4px 10px rgba(0,0,0,0.08);">
   <div style="background:#0d6efd;color:white;padding:20px;text-align:center;">
-    <h2 style="margin:0;">⭐ Please rate your passenger</h2>
+<h2 style="margin:0;">⭐ Please rate your passenger</h2>
   </div>
   <div style="padding:20px;color:#333;">
-    <p>Your ride (ID: %d) is now completed. Please rate your passengers.</p>
-    <a href="http://localhost:3000/hosted" style="background:#0d6efd;color:white;padding:12px 20px;text-decoration:none;border-radius:6px;display:inline-block;margin-top:12px;">Rate Passengers</a>
-    <p style="font-size:13px;color:#777;margin-top:18px;">– Team VeloCity</p>
+<p>Your ride (ID: %d) is now completed. Please rate your passengers.</p>
+<a href="http://localhost:3000/hosted" style="background:#0d6efd;color:white;padding:12px 20px;text-decoration:none;border-radius:6px;display:inline-block;margin-top:12px;">Rate Passengers</a>
+<p style="font-size:13px;color:#777;margin-top:18px;">– Team VeloCity</p>
   </div>
 </div>
 </body>
 </html>
 """.formatted(booking.getRideId());
-                dHelper.setText(dHtml, true);
-                mailSender.send(dMsg);
-            }
-
-        } catch (Exception e) {
-            System.err.println("sendRatingRequestEmails failed: " + e.getMessage());
+            dHelper.setText(dHtml, true);
+            mailSender.send(dMsg);
         }
     }
 
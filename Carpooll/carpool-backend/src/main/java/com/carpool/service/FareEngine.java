@@ -0,0 +1,93 @@
+package com.carpool.service;
+
+import com.carpool.model.Ride;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The one place the fare formula lives. Base fare = price x seats, plus a 5% platform fee, plus
+ * CGST 1.8% and SGST 1.8% on that subtotal. Amounts are whole paise (rounded half-up once per
+ * line), so the invoice lines always add up to exactly what the passenger is charged.
+ *
+ * Quotes are cached per ride and seat count. Each cache entry remembers the price it was computed
+ * from and is rebuilt as soon as the ride's price differs; {@link #evict} drops a ride entirely.
+ */
+@Service
+public class FareEngine {
+
+    static final int PLATFORM_FEE_PERCENT = 5;
+    static final int CGST_PER_MILLE = 18;
+    static final int SGST_PER_MILLE = 18;
+    // Bookings for more seats than this are computed on every call
+    static final int MAX_CACHED_SEATS = 8;
+
+    public record Quote(int seats, long unitPaise, long basePaise, long platformFeePaise, long cgstPaise, long sgstPaise) {
+        public long subtotalPaise() { return basePaise + platformFeePaise; }
+        public long gstPaise() { return cgstPaise + sgstPaise; }
+        public long totalPaise() { return subtotalPaise() + gstPaise(); }
+        /** What the driver receives: base fare minus the platform fee. */
+        public long netToDriverPaise() { return basePaise - platformFeePaise; }
+
+        public static double rupees(long paise) { return paise / 100.0; }
+    }
+
+    // Quote[seats] for one ride; slots are filled lazily and Quote is immutable, so races only recompute
+    private record RideQuotes(double price, Quote[] bySeats) {}
+
+    private final ConcurrentHashMap<Long, RideQuotes> cache = new ConcurrentHashMap<>();
+    private final int maxRides;
+
+    public FareEngine(@Value("${fare.cache.max-rides:10000}") int maxRides) {
+        this.maxRides = maxRides;
+    }
+
+    /** Fare for {@code seats} seats on {@code ride}; fewer than one seat is charged as one. */
+    public Quote quote(Ride ride, int seats) {
+        int n = Math.max(1, seats);
+        Long rideId = ride.getId();
+        if (rideId == null || n > MAX_CACHED_SEATS) return compute(ride.getPrice(), n);
+
+        double price = ride.getPrice();
+        RideQuotes entry = cache.get(rideId);
+        if (entry == null || Double.compare(entry.price(), price) != 0) {
+            // Cheap bound: rides are few compared to lookups, so start over rather than track recency
+            if (cache.size() >= maxRides) cache.clear();
+            entry = new RideQuotes(price, new Quote[MAX_CACHED_SEATS + 1]);
+            cache.put(rideId, entry);
+        }
+        Quote quote = entry.bySeats()[n];
+        if (quote == null) {
+            quote = compute(price, n);
+            entry.bySeats()[n] = quote;
+        }
+        return quote;
+    }
+
+    public void evict(Long rideId) {
+        if (rideId != null) cache.remove(rideId);
+    }
+
+    int cachedRides() {
+        return cache.size();
+    }
+
+    /** Uncached fare computation. */
+    public static Quote compute(double unitPrice, int seats) {
+        if (unitPrice < 0) throw new IllegalArgumentException("Negative price: " + unitPrice);
+        int n = Math.max(1, seats);
+        long unit = BigDecimal.valueOf(unitPrice).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        long base = Math.multiplyExact(unit, n);
+        long fee = percentOf(base, PLATFORM_FEE_PERCENT, 100);
+        long subtotal = base + fee;
+        return new Quote(n, unit, base, fee, percentOf(subtotal, CGST_PER_MILLE, 1000), percentOf(subtotal, SGST_PER_MILLE, 1000));
+    }
+
+    // amount * rate / scale, rounded half-up; amounts are never negative
+    private static long percentOf(long amount, int rate, int scale) {
+        return (Math.multiplyExact(amount, rate) + scale / 2) / scale;
+    }
+}
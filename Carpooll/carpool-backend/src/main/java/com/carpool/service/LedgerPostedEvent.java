@@ -0,0 +1,8 @@
+package com.carpool.service;
+
+/**
+ * Published when a booking's payment was posted to the ledger. Consumed after commit by
+ * {@link LedgerService}, which folds the new entries into the account balances.
+ */
+public record LedgerPostedEvent(Long bookingId) {
+}
@@ -0,0 +1,252 @@
+package com.carpool.service;
+
+import com.carpool.model.ArchivedBooking;
+import com.carpool.model.Booking;
+import com.carpool.model.LedgerAccount;
+import com.carpool.model.LedgerEntry;
+import com.carpool.model.Refund;
+import com.carpool.model.Ride;
+import com.carpool.repository.ArchivedBookingRepository;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.LedgerAccountRepository;
+import com.carpool.repository.LedgerEntryRepository;
+import com.carpool.repository.RefundRepository;
+import com.carpool.repository.RideRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only double-entry ledger for booking payments. When a booking is confirmed its fare is
+ * posted once, in the confirming transaction:
+ *
+ *   debit  payments:clearing   total charged to the passenger
+ *   credit platform:fees       platform fee (passenger side) and commission (driver side)
+ *   credit tax:cgst / tax:sgst GST collected
+ *   credit driver:{email}      base fare minus commission
+ *
+ * When the payment is refunded the same lines are posted again reversed, under the REFUND_* types,
+ * in the transaction that records the refund. Paid bookings with no lines, confirmed before the
+ * ledger existed, are posted on startup (dated when they were paid), along with their refund.
+ *
+ * Balances live in {@link LedgerAccount} rows and are advanced after commit by folding in entries
+ * not yet applied, so reading a driver's earnings or the platform's revenue is one row. Folding
+ * runs on the async executor under one lock: every posting touches the platform accounts, and
+ * doing it inside the booking transaction would serialize all confirmations on those rows.
+ */
+@Service
+public class LedgerService {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerService.class);
+
+    public static final String PAYMENTS_CLEARING = "payments:clearing";
+    public static final String PLATFORM_FEES = "platform:fees";
+    public static final String CGST_PAYABLE = "tax:cgst";
+    public static final String SGST_PAYABLE = "tax:sgst";
+
+    private static final int APPLY_CHUNK = 500;
+    private static final int BACKFILL_CHUNK = 200;
+
+    private final LedgerEntryRepository entryRepository;
+    private final LedgerAccountRepository accountRepository;
+    private final FareEngine fareEngine;
+    private final BookingRepository bookingRepository;
+    private final ArchivedBookingRepository archivedBookingRepository;
+    private final RideRepository rideRepository;
+    private final RefundRepository refundRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate tx;
+    private final ReentrantLock applyLock = new ReentrantLock();
+
+    public LedgerService(
+            LedgerEntryRepository entryRepository,
+            LedgerAccountRepository accountRepository,
+            FareEngine fareEngine,
+            BookingRepository bookingRepository,
+            ArchivedBookingRepository archivedBookingRepository,
+            RideRepository rideRepository,
+            RefundRepository refundRepository,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.entryRepository = entryRepository;
+        this.accountRepository = accountRepository;
+        this.fareEngine = fareEngine;
+        this.bookingRepository = bookingRepository;
+        this.archivedBookingRepository = archivedBookingRepository;
+        this.rideRepository = rideRepository;
+        this.refundRepository = refundRepository;
+        this.eventPublisher = eventPublisher;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    private static final String DRIVER_PREFIX = "driver:";
+
+    public static String driverAccount(String driverEmail) {
+        return DRIVER_PREFIX + driverEmail;
+    }
+
+    /** The driver's email for a {@link #driverAccount} name, or null for other accounts. */
+    public static String driverOf(String account) {
+        return account != null && account.startsWith(DRIVER_PREFIX) ? account.substring(DRIVER_PREFIX.length()) : null;
+    }
+
+    /**
+     * Post the payment for a just-confirmed booking. Must run in the confirming transaction; a
+     * booking that already has entries is left alone.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void postBookingPayment(Booking b, Ride ride) {
+        if (entryRepository.existsByBookingId(b.getId())) return;
+        post(b, ride, LocalDateTime.now());
+    }
+
+    private void post(Booking b, Ride ride, LocalDateTime at) {
+        FareEngine.Quote fare = fareEngine.quote(ride, b.getSeatsRequested());
+        String tx = b.getTransactionId();
+        Long id = b.getId();
+        entryRepository.saveAll(List.of(
+                new LedgerEntry(id, PAYMENTS_CLEARING, LedgerEntry.Type.PASSENGER_CHARGE, fare.totalPaise(), 0, tx, at),
+                new LedgerEntry(id, PLATFORM_FEES, LedgerEntry.Type.PLATFORM_FEE, 0, fare.platformFeePaise(), tx, at),
+                new LedgerEntry(id, PLATFORM_FEES, LedgerEntry.Type.DRIVER_COMMISSION, 0, fare.platformFeePaise(), tx, at),
+                new LedgerEntry(id, CGST_PAYABLE, LedgerEntry.Type.CGST, 0, fare.cgstPaise(), tx, at),
+                new LedgerEntry(id, SGST_PAYABLE, LedgerEntry.Type.SGST, 0, fare.sgstPaise(), tx, at),
+                new LedgerEntry(id, driverAccount(ride.getOwnerEmail()), LedgerEntry.Type.DRIVER_PAYABLE, 0, fare.netToDriverPaise(), tx, at)
+        ));
+        eventPublisher.publishEvent(new LedgerPostedEvent(id));
+    }
+
+    /**
+     * Reverse a refunded booking's payment lines. Must run in the transaction that records the
+     * refund; a booking with no payment lines, or already reversed, is left alone.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void postRefund(Long bookingId, String providerRefundId, LocalDateTime at) {
+        List<LedgerEntry> lines = entryRepository.findByBookingIdOrderById(bookingId);
+        if (lines.isEmpty() || lines.stream().anyMatch(e -> e.getType() == LedgerEntry.Type.REFUND_PASSENGER_CHARGE)) return;
+        entryRepository.saveAll(lines.stream().map(e -> e.reversed(providerRefundId, at)).toList());
+        eventPublisher.publishEvent(new LedgerPostedEvent(bookingId));
+    }
+
+    /**
+     * Post every paid booking that has no ledger lines, hot or archived, as of when it was paid,
+     * and reverse it if it has been refunded. Bookings whose ride is gone cannot be priced and are
+     * skipped. Returns how many bookings were posted.
+     */
+    public int backfillUnposted() {
+        return backfill(after -> bookingRepository.findPaidWithoutLedger(after, PageRequest.of(0, BACKFILL_CHUNK)))
+                + backfill(after -> archivedBookingRepository.findPaidWithoutLedger(after, PageRequest.of(0, BACKFILL_CHUNK))
+                        .stream().map(ArchivedBooking::toBooking).toList());
+    }
+
+    private int backfill(Function<Long, List<Booking>> page) {
+        int posted = 0;
+        long after = 0;
+        while (true) {
+            long from = after;
+            int[] counts = new int[1];
+            Long last = tx.execute(s -> {
+                List<Booking> chunk = page.apply(from);
+                for (Booking b : chunk) {
+                    Ride ride = rideRepository.findById(b.getRideId()).orElse(null);
+                    if (ride == null) continue;
+                    post(b, ride, paidAt(b));
+                    refundRepository.findByBookingId(b.getId())
+                            .filter(r -> r.getStatus() == Refund.Status.SUCCEEDED)
+                            .ifPresent(r -> {
+                                postRefund(b.getId(), r.getProviderRefundId(), r.getCompletedAt() != null ? r.getCompletedAt() : paidAt(b));
+                                // Rolled up while the booking had no lines, so it came off nothing; count it again
+                                refundRepository.clearRolledUp(r.getId());
+                            });
+                    counts[0]++;
+                }
+                return chunk.isEmpty() ? null : chunk.get(chunk.size() - 1).getId();
+            });
+            posted += counts[0];
+            if (last == null) return posted;
+            after = last;
+        }
+    }
+
+    private static LocalDateTime paidAt(Booking b) {
+        if (b.getPaymentCompletedAt() != null) return b.getPaymentCompletedAt();
+        if (b.getConfirmedAt() != null) return b.getConfirmedAt();
+        return b.getRequestedAt() != null ? b.getRequestedAt() : LocalDateTime.now();
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPosted(LedgerPostedEvent event) {
+        applyPending();
+    }
+
+    // Entries whose async apply never ran (crash, failure) are folded in on the next start
+    @EventListener(ApplicationReadyEvent.class)
+    public void applyPendingOnStartup() {
+        try {
+            int posted = backfillUnposted();
+            if (posted > 0) log.info("Posted ledger entries for {} bookings paid before the ledger", posted);
+        } catch (Exception ex) {
+            // Bookings left unposted are picked up on the next start
+            log.warn("Ledger backfill failed: {}", ex.getMessage(), ex);
+        }
+        int n = applyPending();
+        if (n > 0) log.info("Applied {} pending ledger entries", n);
+    }
+
+    /** Fold every unapplied entry into its account balance; returns how many were applied. */
+    public int applyPending() {
+        int total = 0;
+        applyLock.lock();
+        try {
+            while (true) {
+                Integer n = tx.execute(s -> applyChunk());
+                if (n == null || n == 0) break;
+                total += n;
+                if (n < APPLY_CHUNK) break;
+            }
+        } catch (Exception ex) {
+            // Entries stay unapplied and are picked up by the next posting or restart
+            log.warn("Applying ledger entries stopped after {}: {}", total, ex.getMessage());
+        } finally {
+            applyLock.unlock();
+        }
+        return total;
+    }
+
+    private int applyChunk() {
+        List<LedgerEntry> entries = entryRepository.findUnapplied(PageRequest.of(0, APPLY_CHUNK));
+        if (entries.isEmpty()) return 0;
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, LedgerAccount> accounts = new HashMap<>();
+        for (LedgerEntry e : entries) {
+            accounts.computeIfAbsent(e.getAccount(),
+                    a -> accountRepository.findById(a).orElseGet(() -> new LedgerAccount(a))).apply(e, now);
+            e.setAppliedAt(now);
+        }
+        accountRepository.saveAll(accounts.values());
+        return entries.size();
+    }
+
+    public LedgerAccount account(String account) {
+        return accountRepository.findById(account).orElseGet(() -> new LedgerAccount(account));
+    }
+}
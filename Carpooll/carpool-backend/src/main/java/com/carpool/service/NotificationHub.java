@@ -0,0 +1,323 @@
+package com.carpool.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process fan-out of notification events to users' open server-sent event streams.
+ *
+ * Publishing never blocks: an event is appended to the user's replay ring (the last
+ * {@code notifications.stream.replay-size} events) and offered to each of the user's connections,
+ * whose bounded buffer ({@code buffer-size}) is written out by a small sender pool. A connection
+ * whose buffer is full is closed rather than allowed to hold events back; the browser reconnects
+ * with {@code Last-Event-ID} and the missed events are replayed from the ring. When they have
+ * already left the ring, or the id is from before a restart, the stream sends {@code resync} and
+ * the client reloads over REST. Every stream opens with a {@code ready} event carrying the current
+ * id, so a reconnect can always say where it left off. Idle streams get a comment every
+ * {@code heartbeat-ms} so proxies keep them open and dead ones are noticed.
+ *
+ * Users are only tracked once they have connected; events for anyone else are dropped, as their
+ * client loads the current state when it opens.
+ */
+@Service
+public class NotificationHub {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationHub.class);
+
+    public static final String READY = "ready";
+    public static final String RESYNC = "resync";
+
+    private record Event(long seq, String name, Object data) {}
+
+    private final int bufferSize;
+    private final int replaySize;
+    private final int maxConnectionsPerUser;
+    private final int maxUsers;
+    private final long timeoutMs;
+    private final ExecutorService senders;
+    // Event ids are "<epoch>-<seq>": ids from an earlier run never match and force a resync
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong seq = new AtomicLong();
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    @Autowired
+    public NotificationHub(
+            @Value("${notifications.stream.buffer-size:64}") int bufferSize,
+            @Value("${notifications.stream.replay-size:50}") int replaySize,
+            @Value("${notifications.stream.max-connections-per-user:5}") int maxConnectionsPerUser,
+            @Value("${notifications.stream.max-users:10000}") int maxUsers,
+            @Value("${notifications.stream.timeout-ms:1800000}") long timeoutMs,
+            @Value("${notifications.stream.senders:2}") int senderCount
+    ) {
+        this.replaySize = Math.max(1, replaySize);
+        // A reconnect's replay, resync and ready event must fit in a fresh buffer
+        this.bufferSize = Math.max(bufferSize, this.replaySize + 2);
+        this.maxConnectionsPerUser = Math.max(1, maxConnectionsPerUser);
+        this.maxUsers = Math.max(1, maxUsers);
+        this.timeoutMs = timeoutMs;
+        AtomicInteger n = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senderCount), r -> {
+            Thread t = new Thread(r, "notification-stream-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Open a stream for {@code userId}. With {@code lastEventId} (the browser's Last-Event-ID on
+     * reconnect) the events after it are sent first, or {@code resync} if they are gone.
+     */
+    public SseEmitter subscribe(Long userId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Connection conn = new Connection(userId, emitter);
+        emitter.onCompletion(() -> remove(conn));
+        emitter.onTimeout(() -> remove(conn));
+        emitter.onError(e -> remove(conn));
+
+        if (!channels.containsKey(userId) && channels.size() >= maxUsers) evictIdle();
+        Connection evicted = null;
+        while (true) {
+            Channel channel = channels.computeIfAbsent(userId, id -> new Channel(seq.get()));
+            synchronized (channel) {
+                // Lost a race with evictIdle; take the channel that replaced it
+                if (channel.removed) continue;
+                // Events published from here on reach the connection; the replay covers those before
+                if (lastEventId != null && !lastEventId.isBlank()) {
+                    List<Event> missed = channel.after(parse(lastEventId));
+                    if (missed == null) {
+                        conn.offer(SseEmitter.event().name(RESYNC).data(""));
+                    } else {
+                        missed.forEach(e -> conn.offer(build(e)));
+                    }
+                }
+                // Gives the browser a Last-Event-ID to resume from even if nothing else arrives
+                conn.offer(SseEmitter.event().id(epoch + "-" + seq.get()).name(READY).data(""));
+                channel.connections.add(conn);
+                if (channel.connections.size() > maxConnectionsPerUser) evicted = channel.connections.remove(0);
+                break;
+            }
+        }
+        if (evicted != null) evicted.close();
+        conn.schedule();
+        return emitter;
+    }
+
+    // Only queues the event, so it is cheap enough to run on the committing thread
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChanged(NotificationStreamEvent event) {
+        publish(event.userId(), event.name(), event.data());
+    }
+
+    /** Send {@code data} as event {@code name} to every open stream of {@code userId}. */
+    public void publish(Long userId, String name, Object data) {
+        Channel channel = channels.get(userId);
+        if (channel == null) return;
+        List<Connection> slow = null;
+        List<Connection> targets;
+        synchronized (channel) {
+            Event event = new Event(seq.incrementAndGet(), name, data);
+            channel.append(event, replaySize);
+            targets = List.copyOf(channel.connections);
+            for (Connection c : targets) {
+                if (!c.offer(build(event))) {
+                    if (slow == null) slow = new ArrayList<>();
+                    slow.add(c);
+                }
+            }
+        }
+        for (Connection c : targets) c.schedule();
+        if (slow != null) {
+            // The client reconnects and catches up from the replay ring
+            dropped.add(slow.size());
+            slow.forEach(Connection::close);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Channel channel : channels.values()) {
+            List<Connection> targets;
+            synchronized (channel) {
+                targets = List.copyOf(channel.connections);
+            }
+            for (Connection c : targets) {
+                // A full buffer already has something to send
+                if (c.offer(SseEmitter.event().comment("heartbeat"))) c.schedule();
+            }
+        }
+    }
+
+    public int connections() {
+        int n = 0;
+        for (Channel channel : channels.values()) {
+            synchronized (channel) {
+                n += channel.connections.size();
+            }
+        }
+        return n;
+    }
+
+    /** Connections closed because their buffer was full. */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    private SseEmitter.SseEventBuilder build(Event e) {
+        return SseEmitter.event().id(epoch + "-" + e.seq()).name(e.name()).data(e.data());
+    }
+
+    // Sequence number of one of our ids, or -1 for an id from another run or not ours
+    private long parse(String id) {
+        int dash = id.lastIndexOf('-');
+        if (dash < 0 || !id.substring(0, dash).equals(epoch)) return -1;
+        try {
+            return Long.parseLong(id.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void remove(Connection conn) {
+        Channel channel = channels.get(conn.userId);
+        if (channel == null) return;
+        synchronized (channel) {
+            channel.connections.remove(conn);
+        }
+    }
+
+    // Forget users with no open stream, their replay ring included, to make room for new ones
+    private void evictIdle() {
+        for (Iterator<Channel> it = channels.values().iterator(); it.hasNext(); ) {
+            Channel channel = it.next();
+            synchronized (channel) {
+                if (channel.connections.isEmpty()) {
+                    channel.removed = true;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        senders.shutdownNow();
+        for (Channel channel : channels.values()) {
+            List<Connection> open;
+            synchronized (channel) {
+                open = List.copyOf(channel.connections);
+            }
+            open.forEach(Connection::close);
+        }
+    }
+
+    /** One user's replay ring and open connections; guarded by its own monitor. */
+    private static final class Channel {
+        private final ArrayDeque<Event> ring = new ArrayDeque<>();
+        private final List<Connection> connections = new ArrayList<>();
+        // Events up to here may be missing: published before the channel existed, or trimmed from the ring
+        private long horizon;
+        private boolean removed;
+
+        Channel(long horizon) {
+            this.horizon = horizon;
+        }
+
+        void append(Event event, int capacity) {
+            ring.addLast(event);
+            while (ring.size() > capacity) horizon = ring.removeFirst().seq();
+        }
+
+        // Events after seq, or null when some of them may be gone
+        List<Event> after(long seq) {
+            if (seq < horizon) return null;
+            List<Event> missed = new ArrayList<>();
+            for (Event e : ring) {
+                if (e.seq() > seq) missed.add(e);
+            }
+            return missed;
+        }
+    }
+
+    /** An open stream with a bounded buffer, written out by one sender task at a time. */
+    private final class Connection {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Connection(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        boolean offer(SseEmitter.SseEventBuilder event) {
+            return !closed && buffer.offer(event);
+        }
+
+        void schedule() {
+            if (closed || buffer.isEmpty() || !draining.compareAndSet(false, true)) return;
+            try {
+                senders.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder next;
+                while (!closed && (next = buffer.poll()) != null) {
+                    emitter.send(next);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away or the emitter already completed
+                log.debug("Notification stream for user {} closed: {}", userId, e.getMessage());
+                closed = true;
+                remove(this);
+            } finally {
+                draining.set(false);
+            }
+            // Events offered while the flag was still set
+            if (!buffer.isEmpty()) schedule();
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            remove(this);
+            buffer.clear();
+            try {
+                emitter.complete();
+            } catch (IllegalStateException ignored) {
+                // Already completed
+            }
+        }
+    }
+}
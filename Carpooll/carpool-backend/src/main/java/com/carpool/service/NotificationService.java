@@ -3,25 +3,45 @@ package com.carpool.service;
 import com.carpool.model.Notification;
 import com.carpool.model.User;
 import com.carpool.repository.NotificationRepository;
+import com.carpool.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Each user's unread count is kept on their row and moved by the number of notifications a
+ * statement actually created or flipped to read, in the same transaction, so the bell badge is a
+ * primary-key read. Every writer touches the notifications before the user row, so concurrent
+ * creates and reads of one user's notifications queue on that row instead of deadlocking.
+ *
+ * Every change is also pushed, after commit, to the user's open streams through
+ * {@link NotificationHub}, with the new unread count, so the bell does not poll.
+ */
 @Service
 public class NotificationService {
 
     private final NotificationRepository repo;
+    private final UserRepository userRepo;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public NotificationService(NotificationRepository repo) {
+    public NotificationService(NotificationRepository repo, UserRepository userRepo, ApplicationEventPublisher eventPublisher) {
         this.repo = repo;
+        this.userRepo = userRepo;
+        this.eventPublisher = eventPublisher;
     }
 
     // ✅ SAFE default creator (use this most of the time)
+    @Transactional
     public Notification create(User user, String title, String message) {
         return create(user, title, message, "GENERAL", "/notifications");
     }
 
     // ✅ FULL creator
+    @Transactional
     public Notification create(User user, String title, String message, String type, String redirectUrl) {
         Notification n = new Notification();
         n.setUser(user);
@@ -30,7 +50,19 @@ public class NotificationService {
         n.setType(type);
         n.setRedirectUrl(redirectUrl);
         n.setRead(false);
-        return repo.save(n);
+        Notification saved = repo.save(n);
+        userRepo.addUnreadNotifications(user.getId(), 1);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", saved.getId());
+        data.put("title", saved.getTitle());
+        data.put("message", saved.getMessage());
+        data.put("type", saved.getType());
+        data.put("redirectUrl", saved.getRedirectUrl());
+        data.put("createdAt", saved.getCreatedAt());
+        data.put("read", false);
+        push(user.getId(), "notification", data);
+        return saved;
     }
 
     // ✅ Get all for user (non-paginated)
@@ -44,22 +76,46 @@ public class NotificationService {
         return repo.findByUserOrderByCreatedAtDesc(user, pg);
     }
 
-    // ✅ Unread count
+    // ✅ Unread count (counted once from the notifications, then kept up to date)
+    @Transactional
     public long getUnreadCount(User user) {
-        return repo.countByUserAndIsReadFalse(user);
+        return getUnreadCount(user.getId());
+    }
+
+    @Transactional
+    public long getUnreadCount(Long userId) {
+        long unread = userRepo.findUnreadNotifications(userId).orElseThrow();
+        if (unread >= 0) return unread;
+        userRepo.countUnreadNotifications(userId);
+        return userRepo.findUnreadNotifications(userId).orElseThrow();
     }
 
     // ✅ Mark one as read
+    @Transactional
     public void markAsRead(Long id) {
         Notification n = repo.findById(id).orElseThrow();
-        n.setRead(true);
-        repo.save(n);
+        if (repo.markRead(id) == 0) return;
+        userRepo.subtractUnreadNotifications(n.getUser().getId(), 1);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", id);
+        push(n.getUser().getId(), "read", data);
     }
 
     // ✅ Mark all as read
+    @Transactional
     public void markAllAsRead(User user) {
-        List<Notification> list = repo.findByUserOrderByCreatedAtDesc(user);
-        list.forEach(n -> n.setRead(true));
-        repo.saveAll(list);
+        int read = repo.markAllRead(user.getId());
+        if (read == 0) return;
+        userRepo.subtractUnreadNotifications(user.getId(), read);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("all", true);
+        push(user.getId(), "read", data);
+    }
+
+    // Unread is null while the counter has not been seeded; the client then keeps its own count
+    private void push(Long userId, String name, Map<String, Object> data) {
+        long unread = userRepo.findUnreadNotifications(userId).orElse(-1L);
+        data.put("unread", unread >= 0 ? unread : null);
+        eventPublisher.publishEvent(new NotificationStreamEvent(userId, name, data));
     }
 }
@@ -0,0 +1,10 @@
+package com.carpool.service;
+
+import java.util.Map;
+
+/**
+ * Published when a user's notifications change. Consumed after commit by {@link NotificationHub},
+ * which pushes it to the user's open streams as event {@code name}.
+ */
+public record NotificationStreamEvent(Long userId, String name, Map<String, Object> data) {
+}
@@ -0,0 +1,182 @@
+package com.carpool.service;
+
+import com.carpool.model.Booking;
+import com.carpool.model.OutboxMessage;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.OutboxMessageRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.mail.MessagingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Drains the outbox in batches. Each message is claimed with a short lease before delivery,
+ * so a crashed node's in-flight messages are picked up again once the lease runs out, and
+ * two nodes never deliver the same message concurrently. Delivery is at-least-once.
+ */
+@Service
+public class OutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private static final Duration LEASE = Duration.ofMinutes(2);
+    private static final int MAX_BATCHES_PER_RUN = 50;
+    private static final TypeReference<Map<String, Object>> PAYLOAD = new TypeReference<>() {};
+
+    private final OutboxMessageRepository repo;
+    private final UserRepository userRepository;
+    private final BookingRepository bookingRepository;
+    private final RideRepository rideRepository;
+    private final NotificationService notificationService;
+    private final EmailService emailService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate tx;
+
+    @Value("${outbox.dispatch.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${outbox.dispatch.max-attempts:8}")
+    private int maxAttempts = 8;
+
+    public OutboxDispatcher(
+            OutboxMessageRepository repo,
+            UserRepository userRepository,
+            BookingRepository bookingRepository,
+            RideRepository rideRepository,
+            NotificationService notificationService,
+            EmailService emailService,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.repo = repo;
+        this.userRepository = userRepository;
+        this.bookingRepository = bookingRepository;
+        this.rideRepository = rideRepository;
+        this.notificationService = notificationService;
+        this.emailService = emailService;
+        this.objectMapper = objectMapper;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.dispatch.interval-ms:1000}")
+    public void scheduledDrain() {
+        try {
+            int n = drain();
+            if (n > 0) log.debug("Outbox: dispatched {} messages", n);
+        } catch (Exception ex) {
+            log.warn("Outbox drain failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Deliver everything that is currently due. Returns the number of messages delivered.
+     */
+    public int drain() {
+        int delivered = 0;
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxMessage> due = tx.execute(s -> repo.findDue(now, PageRequest.of(0, batchSize)));
+            if (due == null || due.isEmpty()) break;
+            for (OutboxMessage m : due) {
+                if (dispatch(m, now)) delivered++;
+            }
+            if (due.size() < batchSize) break;
+        }
+        return delivered;
+    }
+
+    private boolean dispatch(OutboxMessage m, LocalDateTime now) {
+        Boolean claimed = tx.execute(s -> repo.claim(m.getId(), now, now.plus(LEASE)) == 1);
+        if (!Boolean.TRUE.equals(claimed)) return false;
+
+        try {
+            tx.executeWithoutResult(s -> {
+                deliver(m);
+                repo.markSent(m.getId(), LocalDateTime.now());
+            });
+            return true;
+        } catch (Exception ex) {
+            int attempts = m.getAttempts() + 1;
+            boolean giveUp = attempts >= maxAttempts;
+            LocalDateTime next = LocalDateTime.now().plusSeconds(Math.min(1L << attempts, 3600));
+            String error = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+            tx.executeWithoutResult(s -> repo.markFailedAttempt(m.getId(),
+                    giveUp ? OutboxMessage.Status.FAILED : OutboxMessage.Status.PENDING,
+                    next, error.length() > 1000 ? error.substring(0, 1000) : error));
+            log.warn("Outbox message {} ({}) failed attempt {}{}: {}", m.getId(), m.getKind(), attempts,
+                    giveUp ? ", giving up" : "", error);
+            return false;
+        }
+    }
+
+    private void deliver(OutboxMessage m) {
+        Map<String, Object> p;
+        try {
+            p = objectMapper.readValue(m.getPayload(), PAYLOAD);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable outbox payload", e);
+        }
+        switch (m.getKind()) {
+            case NOTIFICATION -> deliverNotification(p);
+            case EMAIL -> {
+                try {
+                    deliverEmail(p);
+                } catch (MessagingException e) {
+                    throw new MailPreparationException(e);
+                }
+            }
+        }
+    }
+
+    private void deliverNotification(Map<String, Object> p) {
+        Optional<User> user = p.get("userId") != null
+                ? userRepository.findById(((Number) p.get("userId")).longValue())
+                : userRepository.findByEmail((String) p.get("email"));
+        if (user.isEmpty()) {
+            log.debug("Outbox: notification recipient not found, dropping: {}", p);
+            return;
+        }
+        notificationService.create(user.get(), (String) p.get("title"), (String) p.get("message"),
+                (String) p.get("type"), (String) p.get("redirectUrl"));
+    }
+
+    // Sends on this thread so a mail server failure fails the attempt and the message is retried
+    private void deliverEmail(Map<String, Object> p) throws MessagingException {
+        Long bookingId = ((Number) p.get("bookingId")).longValue();
+        Booking b = bookingRepository.findById(bookingId).orElse(null);
+        if (b == null) return;
+        Ride ride = rideRepository.findById(b.getRideId()).orElse(null);
+        if (ride == null) return;
+
+        switch (OutboxService.Email.valueOf((String) p.get("template"))) {
+            case RIDE_CONFIRMED -> emailService.deliverRideConfirmedEmail(b, ride);
+            case INVOICE -> emailService.deliverInvoiceEmail(b, ride);
+            case PASSENGER_PAID -> emailService.deliverPassengerPaidEmail(b, ride);
+            case BOOKING_ACCEPTED -> emailService.deliverBookingAcceptedEmail(b, ride);
+            case BOOKING_REJECTED -> emailService.deliverBookingRejectedEmail(b, ride);
+            case BOOKING_REQUESTED_TO_HOST -> emailService.deliverBookingRequestedToHostEmail(b, ride);
+            case RATING_REQUEST -> emailService.deliverRatingRequestEmails(b, ride);
+            case RATING_REQUEST_PASSENGER -> emailService.deliverPassengerRatingRequestEmail(b, ride);
+            case RATING_REQUEST_DRIVER -> emailService.deliverDriverRatingRequestEmail(b, ride);
+        }
+    }
+}
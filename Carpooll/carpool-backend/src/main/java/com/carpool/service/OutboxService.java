@@ -0,0 +1,86 @@
+package com.carpool.service;
+
+import com.carpool.model.OutboxMessage;
+import com.carpool.repository.OutboxMessageRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records booking-side notifications and emails in the caller's transaction. Nothing is sent
+ * here; {@link OutboxDispatcher} delivers the messages once the transaction has committed.
+ * Recipients are stored by id or email so the request thread does not have to load users.
+ */
+@Service
+public class OutboxService {
+
+    public enum Email {
+        RIDE_CONFIRMED,
+        INVOICE,
+        PASSENGER_PAID,
+        BOOKING_ACCEPTED,
+        BOOKING_REJECTED,
+        BOOKING_REQUESTED_TO_HOST,
+        // Queued before rating requests were split per recipient; delivers both emails
+        RATING_REQUEST,
+        RATING_REQUEST_PASSENGER,
+        RATING_REQUEST_DRIVER
+    }
+
+    private final OutboxMessageRepository repo;
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(OutboxMessageRepository repo, ObjectMapper objectMapper) {
+        this.repo = repo;
+        this.objectMapper = objectMapper;
+    }
+
+    // In-app notification for a user id
+    @Transactional
+    public void notifyUser(Long userId, String title, String message, String type, String redirectUrl) {
+        if (userId == null) return;
+        Map<String, Object> p = notification(title, message, type, redirectUrl);
+        p.put("userId", userId);
+        enqueue(OutboxMessage.Kind.NOTIFICATION, p);
+    }
+
+    // In-app notification for the user registered with this email
+    @Transactional
+    public void notifyByEmail(String email, String title, String message, String type, String redirectUrl) {
+        if (email == null || email.isBlank()) return;
+        Map<String, Object> p = notification(title, message, type, redirectUrl);
+        p.put("email", email);
+        enqueue(OutboxMessage.Kind.NOTIFICATION, p);
+    }
+
+    // Templated email about a booking; booking and ride are re-read at delivery time
+    @Transactional
+    public void sendEmail(Email template, Long bookingId) {
+        if (bookingId == null) return;
+        Map<String, Object> p = new HashMap<>();
+        p.put("template", template.name());
+        p.put("bookingId", bookingId);
+        enqueue(OutboxMessage.Kind.EMAIL, p);
+    }
+
+    private Map<String, Object> notification(String title, String message, String type, String redirectUrl) {
+        Map<String, Object> p = new HashMap<>();
+        p.put("title", title);
+        p.put("message", message);
+        p.put("type", type);
+        p.put("redirectUrl", redirectUrl);
+        return p;
+    }
+
+    private void enqueue(OutboxMessage.Kind kind, Map<String, Object> payload) {
+        try {
+            repo.save(new OutboxMessage(kind, objectMapper.writeValueAsString(payload)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unserializable outbox payload", e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.carpool.service;
+
+import com.carpool.model.ArchivedBooking;
+import com.carpool.model.Booking;
+import com.carpool.model.PassengerBookingView;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.repository.ArchivedBookingRepository;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.PassengerBookingViewRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps {@link PassengerBookingView} in step with bookings. Rows are rebuilt from the committed
+ * booking, ride and driver after every {@link BookingChangedEvent}, so a projection failure never
+ * affects the booking write itself; missing rows are backfilled on startup. Projection runs on the
+ * async executor: doing it on the request thread would need a second pooled connection while the
+ * booking transaction still holds its first, which starves the pool under concurrent bookings.
+ */
+@Service
+public class PassengerBookingViewProjector {
+
+    private static final Logger log = LoggerFactory.getLogger(PassengerBookingViewProjector.class);
+
+    private static final int BACKFILL_CHUNK = 500;
+    private static final int STRIPES = 64;
+
+    private final PassengerBookingViewRepository viewRepository;
+    private final BookingRepository bookingRepository;
+    private final ArchivedBookingRepository archivedBookingRepository;
+    private final RideRepository rideRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate tx;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public PassengerBookingViewProjector(
+            PassengerBookingViewRepository viewRepository,
+            BookingRepository bookingRepository,
+            ArchivedBookingRepository archivedBookingRepository,
+            RideRepository rideRepository,
+            UserRepository userRepository,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.viewRepository = viewRepository;
+        this.bookingRepository = bookingRepository;
+        this.archivedBookingRepository = archivedBookingRepository;
+        this.rideRepository = rideRepository;
+        this.userRepository = userRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        // Events for one ride are applied one at a time, so two workers never insert the same row.
+        // Always keyed by ride: a ride-wide refresh and a single-booking one must share a lock.
+        Long key = event.rideId() != null ? event.rideId() : rideOf(event.bookingId());
+        ReentrantLock lock = locks[Math.floorMod(Objects.hashCode(key), STRIPES)];
+        lock.lock();
+        try {
+            tx.executeWithoutResult(s -> {
+                if (event.bookingId() != null) {
+                    refresh(event.bookingId());
+                } else if (event.rideId() != null) {
+                    Ride ride = rideRepository.findById(event.rideId()).orElse(null);
+                    for (Booking b : bookingRepository.findByRideId(event.rideId())) {
+                        project(b, ride);
+                    }
+                }
+            });
+        } catch (Exception ex) {
+            // The next change to the booking (or a restart) rebuilds the row
+            log.warn("Failed to refresh passenger booking view for {}: {}", event, ex.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rebuild the view row for one booking from its current state.
+     */
+    @Transactional
+    public void refresh(Long bookingId) {
+        Booking b = bookingRepository.findById(bookingId).orElse(null);
+        if (b == null) {
+            // Archived bookings keep their row; only a booking that is gone altogether loses it
+            if (!archivedBookingRepository.existsById(bookingId)) {
+                viewRepository.findById(bookingId).ifPresent(viewRepository::delete);
+            }
+            return;
+        }
+        project(b, b.getRideId() == null ? null : rideRepository.findById(b.getRideId()).orElse(null));
+    }
+
+    private Long rideOf(Long bookingId) {
+        if (bookingId == null) return null;
+        return bookingRepository.findById(bookingId).map(Booking::getRideId)
+                .or(() -> archivedBookingRepository.findById(bookingId).map(ArchivedBooking::getRideId))
+                .orElse(null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        int total = 0;
+        try {
+            while (true) {
+                Integer n = tx.execute(s -> {
+                    List<Long> ids = viewRepository.findUnprojectedBookingIds(PageRequest.of(0, BACKFILL_CHUNK));
+                    ids.forEach(this::refresh);
+                    return ids.size();
+                });
+                if (n == null || n == 0) break;
+                total += n;
+                if (n < BACKFILL_CHUNK) break;
+            }
+        } catch (Exception ex) {
+            log.warn("Passenger booking view backfill stopped after {} rows: {}", total, ex.getMessage());
+        }
+        if (total > 0) log.info("Backfilled {} passenger booking view rows", total);
+    }
+
+    private void project(Booking b, Ride ride) {
+        PassengerBookingView v = viewRepository.findById(b.getId()).orElseGet(() -> new PassengerBookingView(b.getId()));
+
+        v.setRequesterId(b.getRequesterId());
+        v.setRequesterEmail(b.getRequesterEmail());
+        v.setStatus(b.getStatus());
+        v.setSeatsRequested(b.getSeatsRequested());
+        v.setRequestedAt(b.getRequestedAt());
+        v.setPaymentCompletedAt(b.getPaymentCompletedAt());
+        v.setConfirmedAt(b.getConfirmedAt());
+        v.setCancelledAt(b.getCancelledAt());
+        v.setTransactionId(b.getTransactionId());
+        v.setRefundEligible(b.getRefundEligible());
+        v.setRefundStatus(b.getRefundStatus());
+        v.setRefundedAt(b.getRefundedAt());
+        v.setRideId(b.getRideId());
+
+        // A deleted ride keeps the last summary we saw
+        if (ride != null) {
+            v.setFromLocation(ride.getFromLocation());
+            v.setToLocation(ride.getToLocation());
+            v.setDateTime(ride.getDateTime());
+            v.setEstimatedCompletionDateTime(ride.getEstimatedCompletionDateTime());
+            v.setPrice(ride.getPrice());
+            v.setDistanceKm(ride.getDistanceKm());
+            v.setFromLat(ride.getFromLat());
+            v.setFromLng(ride.getFromLng());
+            v.setToLat(ride.getToLat());
+            v.setToLng(ride.getToLng());
+            v.setCarName(ride.getCarName());
+            v.setVehicleNumber(ride.getVehicleNumber());
+            v.setDriverName(ride.getDriverName());
+            v.setDriverEmail(ride.getOwnerEmail());
+            v.setDriverId(ride.getOwnerId());
+
+            User driver = ride.getOwnerId() != null
+                    ? userRepository.findById(ride.getOwnerId()).orElse(null)
+                    : ride.getOwnerEmail() != null ? userRepository.findByEmail(ride.getOwnerEmail()).orElse(null) : null;
+            if (driver != null) {
+                v.setDriverId(driver.getId());
+                if (v.getDriverName() == null) v.setDriverName(driver.getFullname());
+                v.setDriverPhone(driver.getPhone());
+                v.setDriverRating(driver.getAverageRating());
+            }
+        }
+
+        v.setRefreshedAt(LocalDateTime.now());
+        viewRepository.save(v);
+    }
+}
@@ -0,0 +1,78 @@
+package com.carpool.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Payment provider used by the booking payment endpoints. {@link StripePaymentGateway} talks to
+ * Stripe; {@link SimulatedPaymentGateway} is an in-process stand-in for local runs, CI and load
+ * tests. Which one is active is chosen by {@code payments.gateway} (see PaymentGatewayConfig).
+ * All calls are non-blocking; failures complete the future with a {@link GatewayException}.
+ * Cancelling a returned future stops the provider call where the implementation can (Stripe's
+ * HTTP exchange is aborted, a simulated call is dropped).
+ */
+public interface PaymentGateway {
+
+    record PaymentIntent(String id, String clientSecret) {}
+
+    record CheckoutSession(String id, String url) {}
+
+    record CheckoutStatus(String sessionId, boolean paid, String paymentIntentId) {}
+
+    /** A payment intent as listed by the provider; {@code bookingId} comes from its metadata and may be null. */
+    record IntentSummary(String id, long amountPaise, boolean succeeded, Long bookingId, long createdEpochSecond) {}
+
+    record RefundReceipt(String id, String paymentIntentId, long amountPaise) {}
+
+    /** One page of {@link #listPaymentIntents}; {@code nextCursor} is null on the last page. */
+    record IntentPage(List<IntentSummary> intents, String nextCursor) {}
+
+    /** Failed gateway call; {@code status} is the HTTP status to answer the caller with. */
+    class GatewayException extends RuntimeException {
+        private final int status;
+
+        public GatewayException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * {@code dependent}, which cancels {@code source} when it is cancelled itself, so cancellation
+     * reaches the provider call through a chain of {@code thenApply} stages.
+     */
+    static <T> CompletableFuture<T> cancelling(CompletableFuture<?> source, CompletableFuture<T> dependent) {
+        dependent.whenComplete((value, err) -> {
+            if (dependent.isCancelled()) source.cancel(true);
+        });
+        return dependent;
+    }
+
+    String name();
+
+    CompletableFuture<PaymentIntent> createPaymentIntent(Long bookingId, long amountPaise, String description, String receiptEmail);
+
+    CompletableFuture<CheckoutSession> createCheckoutSession(Long bookingId, long amountPaise, String productName);
+
+    CompletableFuture<CheckoutStatus> retrieveCheckoutSession(String sessionId);
+
+    /**
+     * One page of the payment intents created in [{@code createdFrom}, {@code createdTo}) (epoch
+     * seconds). Pass the previous page's {@code nextCursor} to continue, null to start.
+     */
+    CompletableFuture<IntentPage> listPaymentIntents(long createdFrom, long createdTo, String cursor, int limit);
+
+    /**
+     * Refund {@code amountPaise} of a succeeded payment intent. Calls repeated with the same
+     * {@code idempotencyKey} return the original refund instead of refunding again.
+     */
+    CompletableFuture<RefundReceipt> refund(String paymentIntentId, long amountPaise, String idempotencyKey);
+
+    /** Releases threads the gateway owns; called when the application context closes. */
+    default void shutdown() {
+    }
+}
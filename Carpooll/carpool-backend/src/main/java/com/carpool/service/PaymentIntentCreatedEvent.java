@@ -0,0 +1,10 @@
+package com.carpool.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by {@link PaymentIntentService} once the gateway has created an intent for a booking;
+ * recorded on the booking off the gateway's threads.
+ */
+public record PaymentIntentCreatedEvent(Long bookingId, String intentId, String clientSecret, long amountPaise, LocalDateTime createdAt) {
+}
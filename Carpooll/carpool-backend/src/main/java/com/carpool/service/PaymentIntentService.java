@@ -0,0 +1,128 @@
+package com.carpool.service;
+
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.repository.BookingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One payment intent per booking. The intent is stored on the booking and handed out again while
+ * it is still valid (same amount, younger than payments.intent.reuse-minutes), so double clicks and
+ * retries do not create extra intents at the provider. Concurrent initiations for the same booking
+ * share a single in-flight gateway call.
+ */
+@Service
+public class PaymentIntentService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentIntentService.class);
+
+    private final BookingRepository bookingRepository;
+    private final PaymentGateway paymentGateway;
+    private final FareEngine fareEngine;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration reuseFor;
+
+    // Booking id -> the initiation currently talking to the gateway
+    private final ConcurrentHashMap<Long, CompletableFuture<PaymentGateway.PaymentIntent>> inFlight = new ConcurrentHashMap<>();
+
+    public PaymentIntentService(
+            BookingRepository bookingRepository,
+            PaymentGateway paymentGateway,
+            FareEngine fareEngine,
+            TransactionTemplate tx,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${payments.intent.reuse-minutes:1440}") long reuseMinutes
+    ) {
+        this.bookingRepository = bookingRepository;
+        this.paymentGateway = paymentGateway;
+        this.fareEngine = fareEngine;
+        this.tx = tx;
+        this.eventPublisher = eventPublisher;
+        this.reuseFor = Duration.ofMinutes(reuseMinutes);
+    }
+
+    public CompletableFuture<PaymentGateway.PaymentIntent> intentFor(Long bookingId, Ride ride) {
+        CompletableFuture<PaymentGateway.PaymentIntent> mine = new CompletableFuture<>();
+        CompletableFuture<PaymentGateway.PaymentIntent> running = inFlight.putIfAbsent(bookingId, mine);
+        if (running != null) return running;
+
+        try {
+            // Read after joining the flight, so an initiation that just finished is reused
+            Booking b = bookingRepository.findById(bookingId).orElse(null);
+            if (b == null) {
+                finish(bookingId, mine, null, new PaymentGateway.GatewayException(404, "Booking not found"));
+                return mine;
+            }
+            long amount = fareEngine.quote(ride, b.getSeatsRequested()).totalPaise();
+            if (reusable(b, amount)) {
+                finish(bookingId, mine, new PaymentGateway.PaymentIntent(b.getPaymentIntentId(), b.getPaymentIntentSecret()), null);
+                return mine;
+            }
+            paymentGateway.createPaymentIntent(bookingId, amount, "Carpool booking: rideId=" + ride.getId(), b.getRequesterEmail())
+                    .whenComplete((intent, err) -> {
+                        if (err != null) {
+                            finish(bookingId, mine, null, err);
+                            return;
+                        }
+                        mine.complete(intent);
+                        try {
+                            eventPublisher.publishEvent(new PaymentIntentCreatedEvent(
+                                    bookingId, intent.id(), intent.clientSecret(), amount, LocalDateTime.now()));
+                        } catch (RuntimeException e) {
+                            inFlight.remove(bookingId, mine);
+                            throw e;
+                        }
+                    });
+        } catch (RuntimeException e) {
+            finish(bookingId, mine, null, e);
+        }
+        return mine;
+    }
+
+    /**
+     * Stores a new intent on its booking. Runs on the async pool rather than the gateway's threads:
+     * with open-in-view every waiting initiate-payment request holds a connection, so a gateway
+     * thread blocking on the pool could stall the very responses that would free one.
+     */
+    @Async
+    @EventListener
+    public void onIntentCreated(PaymentIntentCreatedEvent event) {
+        try {
+            tx.executeWithoutResult(s -> bookingRepository.recordPaymentIntent(
+                    event.bookingId(), event.intentId(), event.clientSecret(), event.amountPaise(), event.createdAt()));
+        } catch (RuntimeException e) {
+            log.warn("Could not record payment intent {} on booking {}: {}", event.intentId(), event.bookingId(), e.getMessage());
+        } finally {
+            // Until committed, retries joined the flight; from here on they read the booking
+            inFlight.remove(event.bookingId());
+        }
+    }
+
+    private void finish(Long bookingId, CompletableFuture<PaymentGateway.PaymentIntent> flight, PaymentGateway.PaymentIntent intent, Throwable err) {
+        inFlight.remove(bookingId, flight);
+        if (err != null) flight.completeExceptionally(err);
+        else flight.complete(intent);
+    }
+
+    private boolean reusable(Booking b, long amountPaise) {
+        return b.getPaymentIntentId() != null
+                && b.getPaymentIntentSecret() != null
+                && b.getPaymentIntentAmountPaise() != null
+                && b.getPaymentIntentAmountPaise() == amountPaise
+                && b.getPaymentInitiatedAt() != null
+                && b.getPaymentInitiatedAt().plus(reuseFor).isAfter(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,212 @@
+package com.carpool.service;
+
+import com.carpool.model.Booking;
+import com.carpool.model.PaymentDiscrepancy;
+import com.carpool.repository.ArchivedBookingRepository;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.PaymentDiscrepancyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Nightly check that the payment provider and the booking table agree. Two streaming passes, each
+ * holding one page in memory whatever the volume:
+ * <ol>
+ *   <li>Provider intents created in the window are listed page by page. Each page's succeeded
+ *       intents are hashed by id and probed against bookings with one {@code transactionId IN}
+ *       query; matched bookings are stamped {@code reconciledAt}, and intents no booking (hot or
+ *       archived) carries are flagged PAID_NOT_CONFIRMED.</li>
+ *   <li>Bookings paid in the window that were never stamped are read in keyset order and flagged
+ *       CONFIRMED_NOT_PAID.</li>
+ * </ol>
+ * Bookings are only checked from {@code payments.intent.reuse-minutes} into the window, so the
+ * intent they were paid with was created inside it; the newest {@code settle-minutes} are left to
+ * the next run, while their webhook may still be on its way. The look-back spans two nights, so a
+ * failed run is covered by the next one.
+ */
+@Service
+public class PaymentReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentReconciliationService.class);
+
+    public record Report(
+            LocalDateTime intentsFrom,
+            LocalDateTime confirmedFrom,
+            LocalDateTime to,
+            long pages,
+            long intentsScanned,
+            long matched,
+            long paidNotConfirmed,
+            long confirmedNotPaid,
+            long durationMs
+    ) {}
+
+    private final PaymentGateway gateway;
+    private final BookingRepository bookingRepository;
+    private final ArchivedBookingRepository archiveRepository;
+    private final PaymentDiscrepancyRepository discrepancyRepository;
+    private final TransactionTemplate tx;
+    private final int pageSize;
+    private final int lookbackHours;
+    private final int settleMinutes;
+    private final int intentReuseMinutes;
+    private final ReentrantLock running = new ReentrantLock();
+    private volatile Report lastReport;
+
+    public PaymentReconciliationService(
+            PaymentGateway gateway,
+            BookingRepository bookingRepository,
+            ArchivedBookingRepository archiveRepository,
+            PaymentDiscrepancyRepository discrepancyRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${payments.reconciliation.page-size:100}") int pageSize,
+            @Value("${payments.reconciliation.lookback-hours:48}") int lookbackHours,
+            @Value("${payments.reconciliation.settle-minutes:15}") int settleMinutes,
+            @Value("${payments.intent.reuse-minutes:1440}") int intentReuseMinutes
+    ) {
+        this.gateway = gateway;
+        this.bookingRepository = bookingRepository;
+        this.archiveRepository = archiveRepository;
+        this.discrepancyRepository = discrepancyRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.pageSize = pageSize;
+        this.lookbackHours = lookbackHours;
+        this.settleMinutes = settleMinutes;
+        this.intentReuseMinutes = intentReuseMinutes;
+    }
+
+    @Scheduled(cron = "${payments.reconciliation.cron:0 0 2 * * *}")
+    public void scheduledReconcile() {
+        // The simulator forgets its payments on restart, so there is nothing to reconcile against
+        if ("simulator".equals(gateway.name())) return;
+        try {
+            reconcileRecent();
+        } catch (Exception ex) {
+            log.warn("Payment reconciliation failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /** Reconcile the configured look-back window ending {@code settle-minutes} ago. */
+    public Report reconcileRecent() {
+        LocalDateTime to = LocalDateTime.now().minusMinutes(settleMinutes);
+        LocalDateTime intentsFrom = to.minusHours(lookbackHours);
+        return reconcile(intentsFrom, intentsFrom.plusMinutes(intentReuseMinutes), to);
+    }
+
+    /**
+     * Match provider intents created in [{@code intentsFrom}, {@code to}) against bookings, and
+     * check bookings paid in [{@code confirmedFrom}, {@code to}) were matched.
+     *
+     * @throws IllegalStateException if a run is already in progress
+     */
+    public Report reconcile(LocalDateTime intentsFrom, LocalDateTime confirmedFrom, LocalDateTime to) {
+        if (!running.tryLock()) throw new IllegalStateException("Reconciliation already running");
+        try {
+            long start = System.nanoTime();
+            LocalDateTime runAt = LocalDateTime.now();
+            long pages = 0, scanned = 0, matched = 0, paidNotConfirmed = 0, confirmedNotPaid = 0;
+
+            long fromEpoch = epochSecond(intentsFrom);
+            long toEpoch = epochSecond(to);
+            String cursor = null;
+            do {
+                PaymentGateway.IntentPage page = fetch(fromEpoch, toEpoch, cursor);
+                pages++;
+                scanned += page.intents().size();
+                Map<String, PaymentGateway.IntentSummary> paid = new HashMap<>();
+                for (PaymentGateway.IntentSummary pi : page.intents()) {
+                    if (pi.succeeded()) paid.put(pi.id(), pi);
+                }
+                if (!paid.isEmpty()) {
+                    int[] joined = tx.execute(s -> joinPage(paid, runAt));
+                    matched += joined[0];
+                    paidNotConfirmed += joined[1];
+                }
+                cursor = page.nextCursor();
+            } while (cursor != null);
+
+            long afterId = 0;
+            while (true) {
+                long after = afterId;
+                List<Booking> unmatched = bookingRepository.findUnreconciledPayments(
+                        confirmedFrom, to, after, PageRequest.of(0, pageSize));
+                if (unmatched.isEmpty()) break;
+                tx.executeWithoutResult(s -> {
+                    for (Booking b : unmatched) {
+                        flag(PaymentDiscrepancy.Kind.CONFIRMED_NOT_PAID, b.getTransactionId(), b.getId(), b.getPaymentIntentAmountPaise());
+                    }
+                });
+                confirmedNotPaid += unmatched.size();
+                afterId = unmatched.get(unmatched.size() - 1).getId();
+                if (unmatched.size() < pageSize) break;
+            }
+
+            Report report = new Report(intentsFrom, confirmedFrom, to, pages, scanned, matched,
+                    paidNotConfirmed, confirmedNotPaid, (System.nanoTime() - start) / 1_000_000);
+            lastReport = report;
+            if (paidNotConfirmed > 0 || confirmedNotPaid > 0) {
+                log.warn("Payment reconciliation: {} paid but not confirmed, {} confirmed but not paid ({} intents in {} pages)",
+                        paidNotConfirmed, confirmedNotPaid, scanned, pages);
+            } else {
+                log.info("Payment reconciliation: {} intents in {} pages, {} matched", scanned, pages, matched);
+            }
+            return report;
+        } finally {
+            running.unlock();
+        }
+    }
+
+    public Report lastReport() {
+        return lastReport;
+    }
+
+    private PaymentGateway.IntentPage fetch(long fromEpoch, long toEpoch, String cursor) {
+        try {
+            return gateway.listPaymentIntents(fromEpoch, toEpoch, cursor, pageSize).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    // Returns {matched, flagged} for one page of succeeded intents
+    private int[] joinPage(Map<String, PaymentGateway.IntentSummary> paid, LocalDateTime runAt) {
+        List<String> known = bookingRepository.findTransactionIdsIn(paid.keySet());
+        if (!known.isEmpty()) bookingRepository.markReconciled(known, runAt);
+
+        Set<String> missing = new HashSet<>(paid.keySet());
+        known.forEach(missing::remove);
+        if (!missing.isEmpty()) archiveRepository.findTransactionIdsIn(new ArrayList<>(missing)).forEach(missing::remove);
+        for (String id : missing) {
+            PaymentGateway.IntentSummary pi = paid.get(id);
+            flag(PaymentDiscrepancy.Kind.PAID_NOT_CONFIRMED, id, pi.bookingId(), pi.amountPaise());
+        }
+        return new int[]{paid.size() - missing.size(), missing.size()};
+    }
+
+    private void flag(PaymentDiscrepancy.Kind kind, String transactionId, Long bookingId, Long amountPaise) {
+        if (discrepancyRepository.existsByKindAndTransactionId(kind, transactionId)) return;
+        discrepancyRepository.save(new PaymentDiscrepancy(kind, transactionId, bookingId, amountPaise));
+    }
+
+    private static long epochSecond(LocalDateTime t) {
+        return t.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+}
@@ -10,18 +10,18 @@ public class RatingReviewService {
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RatingReviewService.class);
 
     private final RatingReviewRepository ratingRepo;
-    private final BookingRepository bookingRepo;
+    private final BookingArchiveService bookingArchive;
     private final RideRepository rideRepo;
     private final UserRepository userRepo;
 
     public RatingReviewService(
             RatingReviewRepository ratingRepo,
-            BookingRepository bookingRepo,
+            BookingArchiveService bookingArchive,
             RideRepository rideRepo,
             UserRepository userRepo
     ) {
         this.ratingRepo = ratingRepo;
-        this.bookingRepo = bookingRepo;
+        this.bookingArchive = bookingArchive;
         this.rideRepo = rideRepo;
         this.userRepo = userRepo;
     }
@@ -36,7 +36,8 @@ public class RatingReviewService {
         if (stars < 1 || stars > 5)
             throw new RuntimeException("Stars must be between 1 and 5");
 
-        Booking booking = bookingRepo.findById(bookingId)
+        // Old bookings may already have been archived; they can still be rated
+        Booking booking = bookingArchive.findById(bookingId, true)
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
 
 
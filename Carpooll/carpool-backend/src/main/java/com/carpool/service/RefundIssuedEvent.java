@@ -0,0 +1,8 @@
+package com.carpool.service;
+
+/**
+ * Published when the provider confirmed a refund. Consumed after commit by
+ * {@link EarningsRollupService}, which takes the refunded booking off the driver's earnings.
+ */
+public record RefundIssuedEvent(Long bookingId) {
+}
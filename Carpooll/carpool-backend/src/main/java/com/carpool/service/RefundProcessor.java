@@ -0,0 +1,176 @@
+package com.carpool.service;
+
+import com.carpool.model.Booking;
+import com.carpool.model.Refund;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RefundRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Issues pending refunds in batches. A batch is claimed with a lease in one transaction, its
+ * refunds are sent to the provider concurrently (the gateway's bulkhead bounds how many are in
+ * flight), and each outcome is recorded in its own transaction. Every attempt for a refund carries
+ * the same idempotency key, so a refund whose answer was lost is replayed by the provider rather
+ * than issued twice. A success reverses the booking's ledger lines in the transaction that records it. Failed refunds back off like outbox messages and are marked FAILED after
+ * {@code refunds.dispatch.max-attempts}.
+ */
+@Service
+public class RefundProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(RefundProcessor.class);
+
+    private static final Duration LEASE = Duration.ofMinutes(2);
+    private static final int MAX_BATCHES_PER_RUN = 20;
+
+    private final PaymentGateway gateway;
+    private final RefundRepository refundRepository;
+    private final BookingRepository bookingRepository;
+    private final OutboxService outboxService;
+    private final LedgerService ledgerService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final int maxAttempts;
+
+    public RefundProcessor(
+            PaymentGateway gateway,
+            RefundRepository refundRepository,
+            BookingRepository bookingRepository,
+            OutboxService outboxService,
+            LedgerService ledgerService,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager,
+            @Value("${refunds.dispatch.batch-size:20}") int batchSize,
+            @Value("${refunds.dispatch.max-attempts:8}") int maxAttempts
+    ) {
+        this.gateway = gateway;
+        this.refundRepository = refundRepository;
+        this.bookingRepository = bookingRepository;
+        this.outboxService = outboxService;
+        this.ledgerService = ledgerService;
+        this.eventPublisher = eventPublisher;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Scheduled(fixedDelayString = "${refunds.dispatch.interval-ms:5000}")
+    public void scheduledProcess() {
+        try {
+            int n = processDue();
+            if (n > 0) log.info("Refunds: issued {}", n);
+        } catch (Exception ex) {
+            log.warn("Refund processing failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Issue every refund that is currently due. Returns the number that succeeded.
+     */
+    public int processDue() {
+        int succeeded = 0;
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            LocalDateTime now = LocalDateTime.now();
+            List<Refund> due = tx.execute(s -> refundRepository.findDue(now, PageRequest.of(0, batchSize)));
+            if (due == null || due.isEmpty()) break;
+
+            List<Refund> claimed = tx.execute(s -> {
+                List<Refund> won = new ArrayList<>();
+                for (Refund r : due) {
+                    if (refundRepository.claim(r.getId(), now, now.plus(LEASE)) == 1) won.add(r);
+                }
+                return won;
+            });
+            if (claimed == null) claimed = List.of();
+
+            List<CompletableFuture<PaymentGateway.RefundReceipt>> calls = new ArrayList<>(claimed.size());
+            for (Refund r : claimed) {
+                calls.add(send(r));
+            }
+            for (int j = 0; j < claimed.size(); j++) {
+                if (record(claimed.get(j), calls.get(j))) succeeded++;
+            }
+            if (due.size() < batchSize) break;
+        }
+        return succeeded;
+    }
+
+    private CompletableFuture<PaymentGateway.RefundReceipt> send(Refund r) {
+        try {
+            return gateway.refund(r.getPaymentIntentId(), r.getAmountPaise(), r.idempotencyKey());
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    private boolean record(Refund r, CompletableFuture<PaymentGateway.RefundReceipt> call) {
+        PaymentGateway.RefundReceipt receipt;
+        try {
+            receipt = call.join();
+        } catch (CompletionException ex) {
+            failed(r, ex.getCause() != null ? ex.getCause() : ex);
+            return false;
+        }
+        try {
+            tx.executeWithoutResult(s -> {
+                LocalDateTime at = LocalDateTime.now();
+                refundRepository.markSucceeded(r.getId(), receipt.id(), at);
+                bookingRepository.updateRefundStatus(r.getBookingId(), Refund.Status.SUCCEEDED, at);
+                ledgerService.postRefund(r.getBookingId(), receipt.id(), at);
+                notifyPassenger(r);
+                eventPublisher.publishEvent(new BookingChangedEvent(r.getBookingId(), null));
+                eventPublisher.publishEvent(new RefundIssuedEvent(r.getBookingId()));
+            });
+            return true;
+        } catch (Exception ex) {
+            // The provider refunded; the next attempt replays the same refund and records it
+            failed(r, ex);
+            return false;
+        }
+    }
+
+    private void failed(Refund r, Throwable ex) {
+        int attempts = r.getAttempts() + 1;
+        boolean giveUp = attempts >= maxAttempts;
+        LocalDateTime next = LocalDateTime.now().plusSeconds(Math.min(1L << attempts, 3600));
+        String error = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+        tx.executeWithoutResult(s -> {
+            refundRepository.markFailedAttempt(r.getId(),
+                    giveUp ? Refund.Status.FAILED : Refund.Status.PENDING,
+                    next, error.length() > 1000 ? error.substring(0, 1000) : error);
+            if (giveUp) {
+                bookingRepository.updateRefundStatus(r.getBookingId(), Refund.Status.FAILED, null);
+                eventPublisher.publishEvent(new BookingChangedEvent(r.getBookingId(), null));
+            }
+        });
+        log.warn("Refund {} for booking {} failed attempt {}{}: {}", r.getId(), r.getBookingId(), attempts,
+                giveUp ? ", giving up" : "", error);
+    }
+
+    private void notifyPassenger(Refund r) {
+        Booking b = bookingRepository.findById(r.getBookingId()).orElse(null);
+        if (b == null) return;
+        String message = String.format("A refund of ₹%.2f for your cancelled booking has been issued.",
+                FareEngine.Quote.rupees(r.getAmountPaise()));
+        if (b.getRequesterId() != null) {
+            outboxService.notifyUser(b.getRequesterId(), "Refund Issued", message, "BOOKING", "/my-bookings");
+        } else if (b.getRequesterEmail() != null) {
+            outboxService.notifyByEmail(b.getRequesterEmail(), "Refund Issued", message, "BOOKING", "/my-bookings");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.carpool.service;
+
+import com.carpool.model.Booking;
+import com.carpool.model.LedgerEntry;
+import com.carpool.model.Refund;
+import com.carpool.model.Ride;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.LedgerEntryRepository;
+import com.carpool.repository.RefundRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Enqueues refunds for cancelled paid bookings. The refund row is written in the cancelling
+ * transaction, so a cancellation never commits without its refund; {@link RefundProcessor} issues
+ * it through the payment gateway afterwards.
+ */
+@Service
+public class RefundService {
+
+    private static final Logger log = LoggerFactory.getLogger(RefundService.class);
+
+    private final RefundRepository refundRepository;
+    private final BookingRepository bookingRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final FareEngine fareEngine;
+
+    public RefundService(
+            RefundRepository refundRepository,
+            BookingRepository bookingRepository,
+            LedgerEntryRepository ledgerEntryRepository,
+            FareEngine fareEngine
+    ) {
+        this.refundRepository = refundRepository;
+        this.bookingRepository = bookingRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.fareEngine = fareEngine;
+    }
+
+    /**
+     * Enqueue a full refund of what the passenger was charged. Must run in the cancelling
+     * transaction; unpaid bookings and bookings already refunded are left alone.
+     *
+     * @return whether a refund was enqueued
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean enqueue(Booking b, Ride ride, Refund.Reason reason) {
+        if (b.getTransactionId() == null || refundRepository.existsByBookingId(b.getId())) return false;
+
+        long amount = chargedPaise(b, ride);
+        if (amount <= 0) {
+            log.warn("Booking {} has no charge to refund", b.getId());
+            return false;
+        }
+        refundRepository.save(new Refund(b.getId(), b.getTransactionId(), amount, reason));
+        bookingRepository.updateRefundStatus(b.getId(), Refund.Status.PENDING, null);
+        return true;
+    }
+
+    // The ledger records what was actually charged; the intent amount and a fresh quote are fallbacks
+    private long chargedPaise(Booking b, Ride ride) {
+        return ledgerEntryRepository.findByBookingIdAndType(b.getId(), LedgerEntry.Type.PASSENGER_CHARGE)
+                .map(LedgerEntry::getDebitPaise)
+                .orElseGet(() -> {
+                    if (b.getPaymentIntentAmountPaise() != null) return b.getPaymentIntentAmountPaise();
+                    return ride == null ? 0L : fareEngine.quote(ride, b.getSeatsRequested()).totalPaise();
+                });
+    }
+}
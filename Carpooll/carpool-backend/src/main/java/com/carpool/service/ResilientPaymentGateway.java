@@ -0,0 +1,239 @@
+package com.carpool.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Guards every call to the payment provider with three things, in this order:
+ * <ul>
+ *   <li>a bulkhead: at most {@code maxConcurrent} calls in flight, the rest fail at once with 503;</li>
+ *   <li>a circuit breaker: when at least {@code failureRatePercent} of the last {@code windowSize}
+ *       calls failed (5xx or timeout), calls fail at once with 503 for {@code openMs}; then a
+ *       single probe call is let through and its outcome closes or re-opens the circuit;</li>
+ *   <li>a per-operation timeout, answered with 504.</li>
+ * </ul>
+ * So a slow or failing provider costs callers milliseconds instead of a full HTTP timeout. A
+ * bulkhead permit is held until the provider call itself has ended, not just until the caller was
+ * answered, so {@code maxConcurrent} bounds real provider calls. A call that times out is cancelled,
+ * which aborts the underlying request (see {@link PaymentGateway}).
+ */
+public class ResilientPaymentGateway implements PaymentGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(ResilientPaymentGateway.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public record Settings(
+            int maxConcurrent,
+            int windowSize,
+            int minimumCalls,
+            int failureRatePercent,
+            long openMs,
+            long createIntentTimeoutMs,
+            long createCheckoutTimeoutMs,
+            long retrieveCheckoutTimeoutMs,
+            long listIntentsTimeoutMs,
+            long refundTimeoutMs
+    ) {}
+
+    private final PaymentGateway delegate;
+    private final Settings settings;
+    private final Semaphore bulkhead;
+
+    // Circuit state, guarded by this
+    private State state = State.CLOSED;
+    private final boolean[] window;
+    private int windowNext;
+    private int windowCalls;
+    private int windowFailures;
+    private long openUntilNanos;
+    private boolean probeInFlight;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejectedOpen = new LongAdder();
+    private final LongAdder rejectedBulkhead = new LongAdder();
+    private final LongAdder circuitOpened = new LongAdder();
+
+    public ResilientPaymentGateway(PaymentGateway delegate, Settings settings) {
+        this.delegate = delegate;
+        this.settings = settings;
+        this.bulkhead = new Semaphore(settings.maxConcurrent());
+        this.window = new boolean[Math.max(1, settings.windowSize())];
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public CompletableFuture<PaymentIntent> createPaymentIntent(Long bookingId, long amountPaise, String description, String receiptEmail) {
+        return guard(settings.createIntentTimeoutMs(),
+                () -> delegate.createPaymentIntent(bookingId, amountPaise, description, receiptEmail));
+    }
+
+    @Override
+    public CompletableFuture<CheckoutSession> createCheckoutSession(Long bookingId, long amountPaise, String productName) {
+        return guard(settings.createCheckoutTimeoutMs(),
+                () -> delegate.createCheckoutSession(bookingId, amountPaise, productName));
+    }
+
+    @Override
+    public CompletableFuture<CheckoutStatus> retrieveCheckoutSession(String sessionId) {
+        return guard(settings.retrieveCheckoutTimeoutMs(),
+                () -> delegate.retrieveCheckoutSession(sessionId));
+    }
+
+    @Override
+    public CompletableFuture<IntentPage> listPaymentIntents(long createdFrom, long createdTo, String cursor, int limit) {
+        return guard(settings.listIntentsTimeoutMs(),
+                () -> delegate.listPaymentIntents(createdFrom, createdTo, cursor, limit));
+    }
+
+    @Override
+    public CompletableFuture<RefundReceipt> refund(String paymentIntentId, long amountPaise, String idempotencyKey) {
+        return guard(settings.refundTimeoutMs(),
+                () -> delegate.refund(paymentIntentId, amountPaise, idempotencyKey));
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    private <T> CompletableFuture<T> guard(long timeoutMs, Supplier<CompletableFuture<T>> call) {
+        if (!bulkhead.tryAcquire()) {
+            rejectedBulkhead.increment();
+            return CompletableFuture.failedFuture(new GatewayException(503, "Payment provider busy, please retry"));
+        }
+        boolean probe;
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openUntilNanos >= 0) {
+                state = State.HALF_OPEN;
+                probeInFlight = false;
+                log.info("Payment gateway circuit half-open, probing {}", delegate.name());
+            }
+            probe = state == State.HALF_OPEN && !probeInFlight;
+            if (state == State.OPEN || (state == State.HALF_OPEN && !probe)) {
+                bulkhead.release();
+                rejectedOpen.increment();
+                return CompletableFuture.failedFuture(new GatewayException(503, "Payment provider unavailable, please retry shortly"));
+            }
+            if (probe) probeInFlight = true;
+        }
+
+        calls.increment();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<T> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> pending = started;
+        // The permit follows the provider call, which may outlive the caller's timeout
+        pending.whenComplete((value, err) -> bulkhead.release());
+        pending.copy().orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((value, err) -> {
+                    if (err == null) {
+                        successes.increment();
+                        record(true, probe);
+                        result.complete(value);
+                        return;
+                    }
+                    Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                    if (cause instanceof TimeoutException) {
+                        timeouts.increment();
+                        // Nobody is waiting for the answer any more; stop the request
+                        pending.cancel(true);
+                        cause = new GatewayException(504, "Payment provider timed out");
+                    }
+                    boolean providerFault = !(cause instanceof GatewayException g) || g.getStatus() >= 500;
+                    if (providerFault) failures.increment();
+                    record(!providerFault, probe);
+                    result.completeExceptionally(cause);
+                });
+        return result;
+    }
+
+    private synchronized void record(boolean success, boolean probe) {
+        if (probe) {
+            probeInFlight = false;
+            if (success) {
+                state = State.CLOSED;
+                resetWindow();
+                log.info("Payment gateway circuit closed, {} recovered", delegate.name());
+            } else {
+                open();
+            }
+            return;
+        }
+        if (state != State.CLOSED) return;
+
+        if (windowCalls == window.length) {
+            if (!window[windowNext]) windowFailures--;
+        } else {
+            windowCalls++;
+        }
+        window[windowNext] = success;
+        if (!success) windowFailures++;
+        windowNext = (windowNext + 1) % window.length;
+
+        if (windowCalls >= settings.minimumCalls() && windowFailures * 100 >= settings.failureRatePercent() * windowCalls) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.openMs());
+        resetWindow();
+        circuitOpened.increment();
+        log.warn("Payment gateway circuit opened for {} ms, {} is failing", settings.openMs(), delegate.name());
+    }
+
+    private void resetWindow() {
+        windowNext = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+    }
+
+    public synchronized State state() {
+        // An expired OPEN reads as HALF_OPEN: the next call will be the probe
+        if (state == State.OPEN && System.nanoTime() - openUntilNanos >= 0) return State.HALF_OPEN;
+        return state;
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("provider", delegate.name());
+        m.put("state", state());
+        synchronized (this) {
+            m.put("windowCalls", windowCalls);
+            m.put("windowFailures", windowFailures);
+        }
+        m.put("inFlight", settings.maxConcurrent() - bulkhead.availablePermits());
+        m.put("maxConcurrent", settings.maxConcurrent());
+        m.put("calls", calls.sum());
+        m.put("successes", successes.sum());
+        m.put("failures", failures.sum());
+        m.put("timeouts", timeouts.sum());
+        m.put("rejectedOpen", rejectedOpen.sum());
+        m.put("rejectedBulkhead", rejectedBulkhead.sum());
+        m.put("circuitOpened", circuitOpened.sum());
+        return m;
+    }
+}
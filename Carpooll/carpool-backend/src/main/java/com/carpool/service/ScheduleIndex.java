@@ -0,0 +1,361 @@
+package com.carpool.service;
+
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Per-user index of upcoming time windows: rides the user is booked on (as passenger) and rides
+ * they host. Windows are kept in a TreeMap by start time, so an overlap check only looks at
+ * windows starting within one "longest window" before the candidate's end, an O(log n) seek.
+ *
+ * A user's schedule is loaded from the database on first use. Reservations made inside a
+ * transaction are dropped again if it rolls back; booking status changes are applied after commit.
+ * A periodic sweep forgets users who have not been looked up for a while and prunes windows
+ * that have ended.
+ *
+ * The index only sees writes made through this node. With more than one instance, a booking or
+ * ride created elsewhere is invisible here until the user's schedule is reloaded, which happens
+ * at most {@code schedule.reload-after-ms} after it was loaded. Until then the database is the
+ * only source of truth, so running several nodes requires a short reload interval (or a shared
+ * store) to keep overlap checks meaningful.
+ */
+@Service
+public class ScheduleIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleIndex.class);
+
+    private static final int STRIPES = 64;
+
+    // Bookings in these statuses occupy the passenger's time
+    static final Set<Booking.Status> ACTIVE = EnumSet.of(
+            Booking.Status.PENDING, Booking.Status.ACCEPTED, Booking.Status.PAID, Booking.Status.CONFIRMED);
+
+    public record Window(String key, Long rideId, LocalDateTime start, LocalDateTime end) {
+        boolean overlaps(LocalDateTime s, LocalDateTime e) {
+            return start.isBefore(e) && s.isBefore(end);
+        }
+    }
+
+    private static final class Schedule {
+        final TreeMap<LocalDateTime, List<Window>> byStart = new TreeMap<>();
+        final Map<String, Window> byKey = new HashMap<>();
+        // Keys reserved by transactions that have not completed yet; kept across reloads
+        final Map<String, Window> pending = new HashMap<>();
+        Duration longest = Duration.ZERO;
+        boolean loaded;
+        long loadedAt;
+        volatile long lastAccess = System.currentTimeMillis();
+
+        void add(Window w) {
+            remove(w.key());
+            byKey.put(w.key(), w);
+            byStart.computeIfAbsent(w.start(), k -> new ArrayList<>(1)).add(w);
+            Duration d = Duration.between(w.start(), w.end());
+            if (d.compareTo(longest) > 0) longest = d;
+        }
+
+        void remove(String key) {
+            Window old = byKey.remove(key);
+            if (old == null) return;
+            List<Window> at = byStart.get(old.start());
+            if (at != null) {
+                at.removeIf(w -> w.key().equals(key));
+                if (at.isEmpty()) byStart.remove(old.start());
+            }
+        }
+
+        Optional<Window> conflict(LocalDateTime start, LocalDateTime end) {
+            // Anything that overlaps must start after (start - longest) and before end
+            for (List<Window> ws : byStart.subMap(start.minus(longest), false, end, false).values()) {
+                for (Window w : ws) {
+                    if (w.overlaps(start, end)) return Optional.of(w);
+                }
+            }
+            return Optional.empty();
+        }
+
+        // Drop windows that ended before now; longest can only shrink
+        void prune(LocalDateTime now) {
+            byKey.values().removeIf(w -> !w.end().isAfter(now) && !pending.containsKey(w.key()));
+            byStart.clear();
+            longest = Duration.ZERO;
+            for (Window w : byKey.values()) {
+                byStart.computeIfAbsent(w.start(), k -> new ArrayList<>(1)).add(w);
+                Duration d = Duration.between(w.start(), w.end());
+                if (d.compareTo(longest) > 0) longest = d;
+            }
+        }
+
+        void clear() {
+            byStart.clear();
+            byKey.clear();
+            longest = Duration.ZERO;
+            loaded = false;
+        }
+    }
+
+    private final BookingRepository bookingRepository;
+    private final RideRepository rideRepository;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final ConcurrentHashMap<String, Schedule> schedules = new ConcurrentHashMap<>();
+
+    @Value("${schedule.default-ride-hours:2}")
+    private long defaultRideHours = 2;
+
+    @Value("${schedule.idle-evict-ms:1800000}")
+    private long idleEvictMs = 1_800_000;
+
+    @Value("${schedule.reload-after-ms:600000}")
+    private long reloadAfterMs = 600_000;
+
+    public ScheduleIndex(BookingRepository bookingRepository, RideRepository rideRepository) {
+        this.bookingRepository = bookingRepository;
+        this.rideRepository = rideRepository;
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    /**
+     * Reserve the ride's window for a passenger. Returns the conflicting window if the passenger
+     * is already booked on, or hosting, an overlapping ride (including this same ride).
+     */
+    public Optional<Window> reservePassenger(String email, Ride ride) {
+        Optional<Window> w = window("P:" + ride.getId(), ride);
+        if (email == null || w.isEmpty()) return Optional.empty();
+        return withUserLock(email, () -> {
+            Schedule s = schedule(email);
+            Optional<Window> conflict = s.conflict(w.get().start(), w.get().end());
+            if (conflict.isPresent()) return conflict;
+            reserve(email, s, w.get());
+            return Optional.empty();
+        });
+    }
+
+    /**
+     * The window that would stop {@code email} booking the ride, without reserving anything. Used
+     * where a booking may come later, such as joining the ride's waitlist.
+     */
+    public Optional<Window> findPassengerConflict(String email, Ride ride) {
+        Optional<Window> w = window("P:" + ride.getId(), ride);
+        if (email == null || w.isEmpty()) return Optional.empty();
+        return withUserLock(email, () -> schedule(email).conflict(w.get().start(), w.get().end()));
+    }
+
+    /**
+     * First overlapping window for a host about to publish a ride, or empty when it fits.
+     * Call under {@link #withUserLock} together with {@link #addHosted} to make check and insert atomic.
+     */
+    public Optional<Window> findHostConflict(String email, Ride ride) {
+        Optional<Window> w = window("H:new", ride);
+        if (email == null || w.isEmpty()) return Optional.empty();
+        return withUserLock(email, () -> schedule(email).conflict(w.get().start(), w.get().end()));
+    }
+
+    public void addHosted(String email, Ride saved) {
+        Optional<Window> w = window("H:" + saved.getId(), saved);
+        if (email == null || w.isEmpty()) return;
+        withUserLock(email, () -> {
+            Schedule s = schedule(email);
+            reserve(email, s, w.get());
+            return null;
+        });
+    }
+
+    public void removeRide(Ride ride) {
+        if (ride.getOwnerEmail() != null) {
+            withUserLock(ride.getOwnerEmail(), () -> {
+                Schedule s = schedules.get(key(ride.getOwnerEmail()));
+                if (s != null) s.remove("H:" + ride.getId());
+                return null;
+            });
+        }
+        for (Booking b : bookingRepository.findByRideId(ride.getId())) {
+            if (b.getRequesterEmail() == null) continue;
+            withUserLock(b.getRequesterEmail(), () -> {
+                Schedule s = schedules.get(key(b.getRequesterEmail()));
+                if (s != null) s.remove("P:" + ride.getId());
+                return null;
+            });
+        }
+    }
+
+    public <T> T withUserLock(String email, Supplier<T> body) {
+        ReentrantLock lock = locks[Math.floorMod(key(email).hashCode(), STRIPES)];
+        lock.lock();
+        try {
+            return body.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Passenger windows follow booking status: terminal statuses free the slot, active ones hold it
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        List<Booking> bookings = event.bookingId() != null
+                ? bookingRepository.findById(event.bookingId()).map(List::of).orElse(List.of())
+                : bookingRepository.findByRideId(event.rideId());
+        for (Booking b : bookings) {
+            if (b.getRequesterEmail() == null) continue;
+            withUserLock(b.getRequesterEmail(), () -> {
+                Schedule s = schedules.get(key(b.getRequesterEmail()));
+                if (s == null || !s.loaded) return null;
+                String k = "P:" + b.getRideId();
+                if (!ACTIVE.contains(b.getStatus())) {
+                    s.remove(k);
+                } else if (!s.byKey.containsKey(k)) {
+                    rideRepository.findById(b.getRideId()).flatMap(r -> window(k, r)).ifPresent(s::add);
+                }
+                return null;
+            });
+        }
+    }
+
+    // Caller holds the user's lock
+    private void reserve(String email, Schedule s, Window w) {
+        s.add(w);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        s.pending.put(w.key(), w);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                withUserLock(email, () -> {
+                    s.pending.remove(w.key());
+                    if (status != STATUS_COMMITTED) s.remove(w.key());
+                    return null;
+                });
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${schedule.sweep-interval-ms:60000}")
+    public void scheduledSweep() {
+        try {
+            int evicted = sweep(System.currentTimeMillis(), LocalDateTime.now());
+            if (evicted > 0) log.debug("Schedule index: {} idle users evicted, {} cached", evicted, schedules.size());
+        } catch (Exception ex) {
+            log.warn("Schedule index sweep failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Forget users not looked up within {@code schedule.idle-evict-ms} and prune ended windows
+     * from the rest. Schedules with reservations from open transactions are kept. Returns the
+     * number of users evicted.
+     */
+    int sweep(long nowMillis, LocalDateTime now) {
+        int evicted = 0;
+        for (Iterator<String> it = schedules.keySet().iterator(); it.hasNext(); ) {
+            String k = it.next();
+            boolean removed = withUserLock(k, () -> {
+                Schedule s = schedules.get(k);
+                if (s == null) return false;
+                if (s.pending.isEmpty() && nowMillis - s.lastAccess >= idleEvictMs) {
+                    schedules.remove(k);
+                    return true;
+                }
+                s.prune(now);
+                return false;
+            });
+            if (removed) evicted++;
+        }
+        return evicted;
+    }
+
+    int cachedUsers() {
+        return schedules.size();
+    }
+
+    // Caller holds the user's lock
+    private Schedule schedule(String email) {
+        Schedule s = schedules.computeIfAbsent(key(email), k -> new Schedule());
+        long nowMillis = System.currentTimeMillis();
+        s.lastAccess = nowMillis;
+        // Reload now and then to pick up writes this node did not see
+        if (s.loaded && nowMillis - s.loadedAt >= reloadAfterMs) s.clear();
+        if (s.loaded) return s;
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Booking> bookings = bookingRepository.findByRequesterEmailAndStatusIn(email, ACTIVE);
+        Map<Long, Ride> rides = new HashMap<>();
+        rideRepository.findAllById(bookings.stream().map(Booking::getRideId).distinct().toList())
+                .forEach(r -> rides.put(r.getId(), r));
+        for (Booking b : bookings) {
+            Ride r = rides.get(b.getRideId());
+            if (r != null) window("P:" + r.getId(), r).filter(w -> w.end().isAfter(now)).ifPresent(s::add);
+        }
+        for (Ride r : rideRepository.findByOwnerEmail(email)) {
+            window("H:" + r.getId(), r).filter(w -> w.end().isAfter(now)).ifPresent(s::add);
+        }
+        s.pending.values().forEach(s::add);
+        s.loaded = true;
+        s.loadedAt = nowMillis;
+
+        // What we just read may include this transaction's own uncommitted rows
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) return;
+                    withUserLock(email, () -> {
+                        s.clear();
+                        return null;
+                    });
+                }
+            });
+        }
+        return s;
+    }
+
+    Optional<Window> window(String key, Ride ride) {
+        Optional<LocalDateTime> start = parseDateTime(ride.getDateTime());
+        if (start.isEmpty()) return Optional.empty();
+        LocalDateTime end = parseDateTime(ride.getEstimatedCompletionDateTime())
+                .filter(e -> e.isAfter(start.get()))
+                .orElse(start.get().plusHours(defaultRideHours));
+        return Optional.of(new Window(key, ride.getId(), start.get(), end));
+    }
+
+    private static String key(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    private Optional<LocalDateTime> parseDateTime(String s) {
+        if (s == null || s.isBlank()) return Optional.empty();
+        try {
+            return Optional.of(LocalDateTime.parse(s));
+        } catch (Exception e) {
+            try {
+                return Optional.of(OffsetDateTime.parse(s).toLocalDateTime());
+            } catch (Exception ex) {
+                return Optional.empty();
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.carpool.service;
+
+import com.carpool.model.WaitlistEntry;
+import com.carpool.repository.RideRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process admission for seat deductions. Each ride keeps a cached count of remaining seats,
+ * guarded by one of a fixed set of striped locks, so concurrent payments for the same ride reserve
+ * their seats in memory before running {@link RideRepository#deductUnheldSeats} in their own
+ * booking transaction.
+ *
+ * Once a ride is sold out, callers are turned away from the cache without touching the ride row,
+ * so a flash sale costs one conditional update per seat sold rather than one per buyer. That only
+ * happens when the count is exact: loaded while nothing was in flight on this node, and changed
+ * since only by this allocator. A sold-out verdict is also only trusted for
+ * {@code seats.allocator.sold-out-ttl-ms} after the count was read, except while this node still
+ * has deductions in flight; after that the committed count is read again (a plain select, no row
+ * lock). Seats freed elsewhere (another node, a host edit) can therefore be missed for that long,
+ * and a passenger turned away meanwhile is put on the waitlist, which is promoted from the database.
+ *
+ * The database stays the authority for seats that are granted. The cached count does not know about
+ * seats held for promoted waitlist passengers; when the conditional update misses, the reservation
+ * is undone and the count reloaded. A reservation whose transaction rolls back is returned to the
+ * cache.
+ */
+@Service
+public class SeatAllocator {
+
+    private static final int STRIPES = 64;
+
+    private static final class Entry {
+        int remaining;
+        // Seats deducted by transactions that have not completed yet
+        int inFlight;
+        long loadedAt;
+        // remaining was read with nothing in flight and has only changed through this allocator since
+        boolean exact;
+    }
+
+    private final RideRepository rideRepository;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder rowUpdates = new LongAdder();
+    private final LongAdder soldOutRejections = new LongAdder();
+
+    @Value("${seats.allocator.cache-ttl-ms:5000}")
+    private long cacheTtlMs = 5000;
+
+    @Value("${seats.allocator.sold-out-ttl-ms:250}")
+    private long soldOutTtlMs = 250;
+
+    public SeatAllocator(RideRepository rideRepository) {
+        this.rideRepository = rideRepository;
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    /**
+     * Deduct seats from a ride for {@code bookingId}. Returns false when the ride does not have
+     * enough seats outside those held for other bookings. Must be called inside the transaction
+     * that records the booking.
+     */
+    public boolean tryAllocate(Long rideId, Long bookingId, int seats) {
+        if (rideId == null) return false;
+        if (seats <= 0) return deduct(rideId, bookingId, seats);
+
+        boolean reserved;
+        ReentrantLock lock = stripe(rideId);
+        lock.lock();
+        try {
+            Entry e = current(rideId, cacheTtlMs);
+            if (e == null) return false; // no such ride
+            if (e.remaining < seats) {
+                // Only a recent, exact count may turn a caller away
+                e = current(rideId, soldOutTtlMs);
+                if (e == null) return false;
+                if (e.remaining < seats && e.exact) {
+                    soldOutRejections.increment();
+                    return false;
+                }
+            }
+            reserved = e.remaining >= seats;
+            if (reserved) {
+                e.remaining -= seats;
+                e.inFlight += seats;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!reserved) return deductPastCache(rideId, bookingId, seats);
+
+        boolean deducted = false;
+        try {
+            deducted = deduct(rideId, bookingId, seats);
+        } finally {
+            if (!deducted) {
+                // Cache was ahead of the database (e.g. the host edited the ride, or the seats are held): undo and reload
+                settle(rideId, seats, true);
+                invalidate(rideId);
+            }
+        }
+        if (!deducted) return false;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    settle(rideId, seats, status != STATUS_COMMITTED);
+                }
+            });
+        } else {
+            settle(rideId, seats, false);
+        }
+        return true;
+    }
+
+    /** Conditional seat updates run against ride rows. */
+    public long rowUpdates() {
+        return rowUpdates.sum();
+    }
+
+    /** Allocations refused from the cache because the ride was sold out. */
+    public long soldOutRejections() {
+        return soldOutRejections.sum();
+    }
+
+    /**
+     * Drop the cached count for a ride so the next allocation re-reads it from the database.
+     */
+    public void invalidate(Long rideId) {
+        if (rideId == null) return;
+        ReentrantLock lock = stripe(rideId);
+        lock.lock();
+        try {
+            Entry e = entries.get(rideId);
+            if (e == null) return;
+            if (e.inFlight == 0) {
+                entries.remove(rideId);
+            } else {
+                e.loadedAt = 0;
+                e.exact = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Cancellations and rejections change seatsAvailable outside the allocator
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSeatsReleased(SeatsReleasedEvent event) {
+        invalidate(event.rideId());
+    }
+
+    // The cache says the ride is full but is not exact, so only the conditional update can say so
+    private boolean deductPastCache(Long rideId, Long bookingId, int seats) {
+        if (!deduct(rideId, bookingId, seats)) return false;
+        // The cached count was behind: reload it once this deduction is visible
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(rideId);
+                }
+            });
+        } else {
+            invalidate(rideId);
+        }
+        return true;
+    }
+
+    private boolean deduct(Long rideId, Long bookingId, int seats) {
+        rowUpdates.increment();
+        return rideRepository.deductUnheldSeats(rideId, bookingId, seats, WaitlistEntry.Status.PROMOTED, WaitlistService.HOLDING) == 1;
+    }
+
+    private void settle(Long rideId, int seats, boolean giveBack) {
+        ReentrantLock lock = stripe(rideId);
+        lock.lock();
+        try {
+            Entry e = entries.get(rideId);
+            if (e == null) return;
+            e.inFlight = Math.max(0, e.inFlight - seats);
+            if (giveBack) e.remaining += seats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the stripe lock. An exact count is kept while deductions are in flight: the
+    // committed count would already include those that committed but have not settled yet
+    private Entry current(Long rideId, long maxAgeMs) {
+        Entry e = entries.get(rideId);
+        long now = System.currentTimeMillis();
+        if (e != null && (now - e.loadedAt <= maxAgeMs || (e.exact && e.inFlight > 0))) return e;
+
+        Integer committed = rideRepository.findSeatsAvailable(rideId);
+        if (committed == null) {
+            if (e != null && e.inFlight == 0) entries.remove(rideId);
+            return null;
+        }
+        if (e == null) {
+            e = new Entry();
+            entries.put(rideId, e);
+        }
+        // Deductions still in flight are not visible in the committed count yet
+        e.remaining = Math.max(0, committed - e.inFlight);
+        e.exact = e.inFlight == 0;
+        e.loadedAt = now;
+        return e;
+    }
+
+    private ReentrantLock stripe(Long rideId) {
+        return locks[Math.floorMod(Long.hashCode(rideId), STRIPES)];
+    }
+}
@@ -0,0 +1,8 @@
+package com.carpool.service;
+
+/**
+ * Published whenever seats on a ride may have become available again
+ * (booking rejected, cancelled, ...). Consumed after commit by {@link WaitlistService}.
+ */
+public record SeatsReleasedEvent(Long rideId, int seats) {
+}
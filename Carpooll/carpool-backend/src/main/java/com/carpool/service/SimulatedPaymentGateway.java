@@ -0,0 +1,226 @@
+package com.carpool.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process stand-in for Stripe. Every call answers after {@code latencyMs} plus up to
+ * {@code jitterMs} of random delay (without holding a thread while it waits), fails with 502 at
+ * {@code failureRate}, and is rejected with 503 beyond {@code maxPerSecond} calls a second
+ * (0 = unlimited). Checkout sessions are paid as soon as they are created; a plain payment intent
+ * stays unpaid until {@link #succeedPaymentIntent} plays the passenger's card step. Created intents
+ * (the most recent ones) can be listed like Stripe's. Refunds always succeed and, like Stripe's,
+ * are replayed for a repeated idempotency key. A call whose future is cancelled is dropped
+ * before it answers. Latency and failures can be changed at
+ * runtime with {@link #injectFaults} to play through a provider incident.
+ */
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    private static final int SESSION_CAPACITY = 10_000;
+    private static final int INTENT_CAPACITY = 100_000;
+    // Callers continue on these threads (confirm-checkout confirms the booking there), so more than one
+    private static final int THREADS = 4;
+
+    private volatile long latencyMs;
+    private volatile long jitterMs;
+    private volatile double failureRate;
+    private final int maxPerSecond;
+    private final String successUrl;
+    private final ScheduledExecutorService timer;
+    // Checkout session id -> payment intent id, most recent sessions only
+    private final Map<String, String> sessions = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > SESSION_CAPACITY;
+        }
+    });
+
+    // Idempotency key -> refund, most recent refunds only
+    private final Map<String, RefundReceipt> refunds = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RefundReceipt> eldest) {
+            return size() > SESSION_CAPACITY;
+        }
+    });
+    private final AtomicLong refundsIssued = new AtomicLong();
+
+    // Payment intents in creation order, keyed by sequence number (the listing cursor)
+    private final ConcurrentSkipListMap<Long, IntentSummary> intents = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> intentSeq = new ConcurrentHashMap<>();
+    private final AtomicLong nextSeq = new AtomicLong();
+
+    private long windowStart;
+    private int callsInWindow;
+
+    public SimulatedPaymentGateway(long latencyMs, long jitterMs, double failureRate, int maxPerSecond, String successUrl) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.failureRate = failureRate;
+        this.maxPerSecond = maxPerSecond;
+        this.successUrl = successUrl;
+        this.windowStart = System.nanoTime();
+        AtomicInteger n = new AtomicInteger();
+        this.timer = Executors.newScheduledThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "payment-simulator-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public String name() {
+        return "simulator";
+    }
+
+    @Override
+    public CompletableFuture<PaymentIntent> createPaymentIntent(Long bookingId, long amountPaise, String description, String receiptEmail) {
+        return respond(() -> {
+            String id = "pi_sim_" + shortId();
+            storeIntent(new IntentSummary(id, amountPaise, false, bookingId, nowEpochSecond()));
+            return new PaymentIntent(id, id + "_secret_" + shortId());
+        });
+    }
+
+    @Override
+    public CompletableFuture<CheckoutSession> createCheckoutSession(Long bookingId, long amountPaise, String productName) {
+        return respond(() -> {
+            String id = "cs_sim_" + shortId();
+            String pi = "pi_sim_" + shortId();
+            sessions.put(id, pi);
+            storeIntent(new IntentSummary(pi, amountPaise, true, bookingId, nowEpochSecond()));
+            return new CheckoutSession(id, successUrl.replace("{CHECKOUT_SESSION_ID}", id));
+        });
+    }
+
+    @Override
+    public CompletableFuture<CheckoutStatus> retrieveCheckoutSession(String sessionId) {
+        return respond(() -> {
+            String pi = sessions.get(sessionId);
+            if (pi == null) throw new GatewayException(502, "No such checkout session: " + sessionId);
+            return new CheckoutStatus(sessionId, true, pi);
+        });
+    }
+
+    @Override
+    public CompletableFuture<IntentPage> listPaymentIntents(long createdFrom, long createdTo, String cursor, int limit) {
+        return respond(() -> {
+            Map<Long, IntentSummary> after = cursor == null ? intents : intents.tailMap(Long.parseLong(cursor), false);
+            List<IntentSummary> page = new ArrayList<>();
+            Long last = null;
+            for (Map.Entry<Long, IntentSummary> e : after.entrySet()) {
+                IntentSummary pi = e.getValue();
+                if (pi.createdEpochSecond() < createdFrom || pi.createdEpochSecond() >= createdTo) continue;
+                if (page.size() == limit) return new IntentPage(page, String.valueOf(last));
+                page.add(pi);
+                last = e.getKey();
+            }
+            return new IntentPage(page, null);
+        });
+    }
+
+    @Override
+    public CompletableFuture<RefundReceipt> refund(String paymentIntentId, long amountPaise, String idempotencyKey) {
+        return respond(() -> refunds.computeIfAbsent(idempotencyKey, k -> {
+            refundsIssued.incrementAndGet();
+            return new RefundReceipt("re_sim_" + shortId(), paymentIntentId, amountPaise);
+        }));
+    }
+
+    /** Refunds actually issued; replays of an idempotency key are not counted. */
+    public long refundsIssued() {
+        return refundsIssued.get();
+    }
+
+    /** Completes a payment intent as if the passenger had paid; false if it is unknown. */
+    public boolean succeedPaymentIntent(String intentId) {
+        Long seq = intentSeq.get(intentId);
+        if (seq == null) return false;
+        return intents.computeIfPresent(seq, (k, pi) ->
+                new IntentSummary(pi.id(), pi.amountPaise(), true, pi.bookingId(), pi.createdEpochSecond())) != null;
+    }
+
+    private void storeIntent(IntentSummary pi) {
+        long seq = nextSeq.incrementAndGet();
+        intents.put(seq, pi);
+        intentSeq.put(pi.id(), seq);
+        while (intents.size() > INTENT_CAPACITY) {
+            Map.Entry<Long, IntentSummary> eldest = intents.pollFirstEntry();
+            if (eldest == null) break;
+            intentSeq.remove(eldest.getValue().id());
+        }
+    }
+
+    private <T> CompletableFuture<T> respond(Supplier<T> answer) {
+        if (!admit()) {
+            return CompletableFuture.failedFuture(new GatewayException(503, "Payment provider busy, please retry"));
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long jitter = jitterMs;
+        long delay = latencyMs + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+        double failures = failureRate;
+        Runnable complete = () -> {
+            try {
+                if (failures > 0 && ThreadLocalRandom.current().nextDouble() < failures) {
+                    throw new GatewayException(502, "Simulated payment provider failure");
+                }
+                result.complete(answer.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        };
+        if (delay <= 0) {
+            complete.run();
+        } else {
+            ScheduledFuture<?> pending = timer.schedule(complete, delay, TimeUnit.MILLISECONDS);
+            result.whenComplete((value, err) -> {
+                if (result.isCancelled()) pending.cancel(false);
+            });
+        }
+        return result;
+    }
+
+    // Fixed one-second window; good enough to model a provider-side rate limit
+    private synchronized boolean admit() {
+        if (maxPerSecond <= 0) return true;
+        long now = System.nanoTime();
+        if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+            windowStart = now;
+            callsInWindow = 0;
+        }
+        return ++callsInWindow <= maxPerSecond;
+    }
+
+    public void injectFaults(long latencyMs, long jitterMs, double failureRate) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private static long nowEpochSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static String shortId() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+    }
+}
@@ -0,0 +1,146 @@
+package com.carpool.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared, non-blocking client for the Stripe REST API. One HttpClient (and its connection pool)
+ * is reused for every call, responses are handled on a small dedicated pool, and the number of
+ * calls in flight is capped so a slow Stripe fails fast with 503 instead of piling up requests.
+ * Cancelling a returned future aborts its HTTP exchange and frees its in-flight slot.
+ */
+@Service
+public class StripeClient {
+
+    private static final String API = "https://api.stripe.com/v1/";
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<>() {};
+
+    /** Failed Stripe call; {@code status} is the HTTP status to answer the caller with. */
+    public static class StripeException extends PaymentGateway.GatewayException {
+        public StripeException(int status, String message) {
+            super(status, message);
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final HttpClient http;
+    private final Semaphore inFlight;
+    private final Duration requestTimeout;
+
+    public StripeClient(
+            ObjectMapper objectMapper,
+            @Value("${stripe.http.threads:8}") int threads,
+            @Value("${stripe.http.max-in-flight:64}") int maxInFlight,
+            @Value("${stripe.http.connect-timeout-ms:3000}") long connectTimeoutMs,
+            @Value("${stripe.http.request-timeout-ms:10000}") long requestTimeoutMs
+    ) {
+        this.objectMapper = objectMapper;
+        AtomicInteger n = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "stripe-http-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.http = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.inFlight = new Semaphore(maxInFlight);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+    }
+
+    public boolean isConfigured() {
+        String key = secretKey();
+        return key != null && !key.isBlank();
+    }
+
+    /** POST a form to {@code path} (relative to /v1/) and parse the JSON response. */
+    public CompletableFuture<Map<String, Object>> post(String path, String form) {
+        return send(request(path)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(BodyPublishers.ofString(form)));
+    }
+
+    /** As {@link #post(String, String)}, letting Stripe replay the first response for a repeated key. */
+    public CompletableFuture<Map<String, Object>> post(String path, String form, String idempotencyKey) {
+        return send(request(path)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("Idempotency-Key", idempotencyKey)
+                .POST(BodyPublishers.ofString(form)));
+    }
+
+    public CompletableFuture<Map<String, Object>> get(String path) {
+        return send(request(path).GET());
+    }
+
+    public static String encode(String value) {
+        return URLEncoder.encode(value == null ? "" : value, StandardCharsets.UTF_8);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(API + path))
+                .timeout(requestTimeout)
+                .header("Authorization", "Bearer " + secretKey());
+    }
+
+    private CompletableFuture<Map<String, Object>> send(HttpRequest.Builder builder) {
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(new StripeException(503, "Payment provider busy, please retry"));
+        }
+        CompletableFuture<HttpResponse<String>> call;
+        try {
+            call = http.sendAsync(builder.build(), BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        call.whenComplete((resp, err) -> inFlight.release());
+        return PaymentGateway.cancelling(call, call.handle((resp, err) -> {
+            if (err != null) throw translate(err);
+            if (resp.statusCode() >= 400) throw new StripeException(502, "Stripe error: " + resp.body());
+            try {
+                return objectMapper.readValue(resp.body(), JSON_OBJECT);
+            } catch (Exception e) {
+                throw new StripeException(502, "Stripe error: " + e.getMessage());
+            }
+        }));
+    }
+
+    private static StripeException translate(Throwable err) {
+        Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+        if (cause instanceof HttpTimeoutException) return new StripeException(504, "Stripe timed out");
+        return new StripeException(502, "Stripe error: " + cause.getMessage());
+    }
+
+    private static String secretKey() {
+        return System.getenv("STRIPE_SECRET_KEY");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,116 @@
+package com.carpool.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * {@link PaymentGateway} backed by the Stripe REST API through the shared {@link StripeClient}.
+ */
+public class StripePaymentGateway implements PaymentGateway {
+
+    private final StripeClient stripe;
+    private final String successUrl;
+    private final String cancelUrl;
+
+    public StripePaymentGateway(StripeClient stripe, String successUrl, String cancelUrl) {
+        this.stripe = stripe;
+        this.successUrl = successUrl;
+        this.cancelUrl = cancelUrl;
+    }
+
+    @Override
+    public String name() {
+        return "stripe";
+    }
+
+    @Override
+    public CompletableFuture<PaymentIntent> createPaymentIntent(Long bookingId, long amountPaise, String description, String receiptEmail) {
+        String form = "amount=" + amountPaise
+                + "&currency=inr"
+                + "&description=" + StripeClient.encode(description)
+                + "&receipt_email=" + StripeClient.encode(receiptEmail)
+                + "&metadata[bookingId]=" + bookingId;
+        return map(stripe.post("payment_intents", form),
+                parsed -> new PaymentIntent((String) parsed.get("id"), (String) parsed.get("client_secret")));
+    }
+
+    @Override
+    public CompletableFuture<CheckoutSession> createCheckoutSession(Long bookingId, long amountPaise, String productName) {
+        String form = "line_items[0][price_data][currency]=inr"
+                + "&line_items[0][price_data][unit_amount]=" + amountPaise
+                + "&line_items[0][price_data][product_data][name]=" + StripeClient.encode(productName)
+                + "&line_items[0][quantity]=1"
+                + "&mode=payment"
+                // Lets the checkout.session.completed webhook find the booking
+                + "&client_reference_id=" + bookingId
+                + "&metadata[bookingId]=" + bookingId
+                + "&payment_intent_data[metadata][bookingId]=" + bookingId
+                + "&success_url=" + StripeClient.encode(successUrl)
+                + "&cancel_url=" + StripeClient.encode(cancelUrl);
+        return map(stripe.post("checkout/sessions", form),
+                parsed -> new CheckoutSession((String) parsed.get("id"), (String) parsed.get("url")));
+    }
+
+    @Override
+    public CompletableFuture<CheckoutStatus> retrieveCheckoutSession(String sessionId) {
+        return map(stripe.get("checkout/sessions/" + StripeClient.encode(sessionId)),
+                parsed -> new CheckoutStatus(
+                        sessionId,
+                        "paid".equals(parsed.get("payment_status")),
+                        (String) parsed.get("payment_intent")));
+    }
+
+    @Override
+    public CompletableFuture<RefundReceipt> refund(String paymentIntentId, long amountPaise, String idempotencyKey) {
+        String form = "payment_intent=" + StripeClient.encode(paymentIntentId) + "&amount=" + amountPaise;
+        return map(stripe.post("refunds", form, idempotencyKey),
+                parsed -> new RefundReceipt(
+                        (String) parsed.get("id"),
+                        paymentIntentId,
+                        parsed.get("amount") instanceof Number n ? n.longValue() : amountPaise));
+    }
+
+    @Override
+    public CompletableFuture<IntentPage> listPaymentIntents(long createdFrom, long createdTo, String cursor, int limit) {
+        String query = "payment_intents?limit=" + Math.min(Math.max(limit, 1), 100)
+                + "&created[gte]=" + createdFrom
+                + "&created[lt]=" + createdTo
+                + (cursor == null ? "" : "&starting_after=" + StripeClient.encode(cursor));
+        return map(stripe.get(query), parsed -> {
+            List<IntentSummary> intents = new ArrayList<>();
+            Object data = parsed.get("data");
+            if (data instanceof List<?> items) {
+                for (Object item : items) {
+                    if (item instanceof Map<?, ?> pi) intents.add(summary(pi));
+                }
+            }
+            boolean more = Boolean.TRUE.equals(parsed.get("has_more")) && !intents.isEmpty();
+            return new IntentPage(intents, more ? intents.get(intents.size() - 1).id() : null);
+        });
+    }
+
+    // Parses the response; cancelling the result aborts the HTTP call to Stripe
+    private static <T> CompletableFuture<T> map(CompletableFuture<Map<String, Object>> call, Function<Map<String, Object>, T> parse) {
+        return PaymentGateway.cancelling(call, call.thenApply(parse));
+    }
+
+    private static IntentSummary summary(Map<?, ?> pi) {
+        Long bookingId = null;
+        if (pi.get("metadata") instanceof Map<?, ?> metadata && metadata.get("bookingId") instanceof String id) {
+            try {
+                bookingId = Long.valueOf(id);
+            } catch (NumberFormatException ignored) {
+                // Not one of ours
+            }
+        }
+        return new IntentSummary(
+                (String) pi.get("id"),
+                pi.get("amount") instanceof Number n ? n.longValue() : 0,
+                "succeeded".equals(pi.get("status")),
+                bookingId,
+                pi.get("created") instanceof Number n ? n.longValue() : 0);
+    }
+}
@@ -0,0 +1,177 @@
+package com.carpool.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingests Stripe webhook events. The request thread only verifies the signature, drops events
+ * already seen (by event id, in a bounded LRU set) and queues the event; confirmations are applied
+ * to bookings on a small worker pool through {@link BookingPaymentService}, which is idempotent,
+ * so an event re-delivered after it left the dedup window is still harmless.
+ */
+@Service
+public class StripeWebhookService {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeWebhookService.class);
+
+    public enum Receipt { ACCEPTED, DUPLICATE, IGNORED, INVALID_SIGNATURE, MALFORMED, BUSY, NOT_CONFIGURED }
+
+    private final BookingPaymentService bookingPayments;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, Boolean> seen;
+
+    @Value("${stripe.webhook.secret:}")
+    private String secret = "";
+
+    @Value("${stripe.webhook.tolerance-seconds:300}")
+    private long toleranceSeconds = 300;
+
+    public StripeWebhookService(
+            BookingPaymentService bookingPayments,
+            ObjectMapper objectMapper,
+            @Value("${stripe.webhook.workers:4}") int workerCount,
+            @Value("${stripe.webhook.queue-capacity:1000}") int queueCapacity,
+            @Value("${stripe.webhook.dedup-capacity:10000}") int dedupCapacity
+    ) {
+        this.bookingPayments = bookingPayments;
+        this.objectMapper = objectMapper;
+        AtomicInteger n = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "stripe-webhook-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.seen = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > dedupCapacity;
+            }
+        });
+    }
+
+    public Receipt receive(String payload, String signatureHeader) {
+        if (secret == null || secret.isBlank()) return Receipt.NOT_CONFIGURED;
+        if (!signatureValid(payload, signatureHeader, System.currentTimeMillis() / 1000)) return Receipt.INVALID_SIGNATURE;
+
+        JsonNode event;
+        try {
+            event = objectMapper.readTree(payload);
+        } catch (Exception e) {
+            return Receipt.MALFORMED;
+        }
+        String id = event.path("id").asText(null);
+        String type = event.path("type").asText("");
+        if (id == null) return Receipt.MALFORMED;
+        if (!type.equals("payment_intent.succeeded") && !type.equals("checkout.session.completed")) return Receipt.IGNORED;
+
+        if (seen.putIfAbsent(id, Boolean.TRUE) != null) return Receipt.DUPLICATE;
+        try {
+            workers.execute(() -> process(id, type, event.path("data").path("object")));
+        } catch (RejectedExecutionException e) {
+            // Let Stripe redeliver it later
+            seen.remove(id);
+            return Receipt.BUSY;
+        }
+        return Receipt.ACCEPTED;
+    }
+
+    /**
+     * Checks a {@code Stripe-Signature} header ({@code t=<unix time>,v1=<hex hmac>[,v1=...]}): one
+     * v1 value must be the HMAC-SHA256 of {@code "<t>.<payload>"} under the endpoint secret, and t
+     * must be within the tolerance of {@code nowEpochSeconds} so captured requests cannot be replayed.
+     */
+    boolean signatureValid(String payload, String header, long nowEpochSeconds) {
+        if (payload == null || header == null) return false;
+        long timestamp = -1;
+        List<String> signatures = new ArrayList<>(2);
+        for (String part : header.split(",")) {
+            int eq = part.indexOf('=');
+            if (eq < 0) continue;
+            String k = part.substring(0, eq).trim();
+            String v = part.substring(eq + 1).trim();
+            if (k.equals("t")) {
+                try {
+                    timestamp = Long.parseLong(v);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            } else if (k.equals("v1")) {
+                signatures.add(v);
+            }
+        }
+        if (timestamp < 0 || signatures.isEmpty()) return false;
+        if (Math.abs(nowEpochSeconds - timestamp) > toleranceSeconds) return false;
+
+        byte[] expected;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            expected = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+        for (String sig : signatures) {
+            byte[] given;
+            try {
+                given = HexFormat.of().parseHex(sig);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (MessageDigest.isEqual(expected, given)) return true;
+        }
+        return false;
+    }
+
+    private void process(String eventId, String type, JsonNode object) {
+        String transactionId;
+        String bookingRef;
+        if (type.equals("checkout.session.completed")) {
+            if (!"paid".equals(object.path("payment_status").asText())) return;
+            transactionId = object.path("payment_intent").asText(null);
+            bookingRef = object.path("metadata").path("bookingId").asText(object.path("client_reference_id").asText(null));
+        } else {
+            transactionId = object.path("id").asText(null);
+            bookingRef = object.path("metadata").path("bookingId").asText(null);
+        }
+        if (transactionId == null || bookingRef == null) {
+            log.warn("Stripe event {} ({}) has no booking reference, ignored", eventId, type);
+            return;
+        }
+        try {
+            BookingPaymentService.Result result = bookingPayments.confirm(Long.valueOf(bookingRef), transactionId);
+            log.info("Stripe event {} ({}) for booking {}: {}", eventId, type, bookingRef, result.outcome());
+        } catch (Exception e) {
+            // The passenger's own verify-payment call is still there as a fallback
+            seen.remove(eventId);
+            log.warn("Stripe event {} for booking {} failed: {}", eventId, bookingRef, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
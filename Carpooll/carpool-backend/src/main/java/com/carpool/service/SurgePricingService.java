@@ -0,0 +1,240 @@
+package com.carpool.service;
+
+import com.carpool.model.Ride;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Suggests a price multiplier per corridor from recent demand. A corridor is the pair of grid
+ * cells ({@code surge.cell-degrees} square) a trip starts and ends in; demand is the ride searches
+ * and booking requests seen for it over a sliding window of {@code surge.window-buckets} buckets of
+ * {@code surge.bucket-seconds}.
+ *
+ * Request threads only drop a signal into one of a few lock-free hand-off queues (picked by thread,
+ * so concurrent searches rarely touch the same queue tail); when the queues are full the signal is
+ * dropped and counted. {@link #drain} folds the queues into per-corridor {@link LongAdder} buckets
+ * every {@code surge.drain-interval-ms}, and suggestions read those without locking.
+ */
+@Service
+public class SurgePricingService {
+
+    public record Suggestion(double multiplier, long searches, long bookingRequests, long windowSeconds) {}
+
+    private record Signal(long corridor, boolean booking) {}
+
+    private static final int STRIPES = 8;
+    // Cells are indexed in 16 bits per coordinate, which holds longitude at 0.01 degrees
+    private static final double MIN_CELL_DEGREES = 0.01;
+
+    private final double cellDegrees;
+    private final int windowBuckets;
+    private final long bucketMillis;
+    private final int maxCorridors;
+    private final int maxPending;
+    private final double baselineDemand;
+    private final int bookingWeight;
+    private final double sensitivity;
+    private final double maxMultiplier;
+    private final Clock clock;
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentLinkedQueue<Signal>[] pending = new ConcurrentLinkedQueue[STRIPES];
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final Map<Long, CorridorWindow> corridors = new ConcurrentHashMap<>();
+    private long lastEvictionBucket;
+
+    @Autowired
+    public SurgePricingService(
+            @Value("${surge.cell-degrees:0.05}") double cellDegrees,
+            @Value("${surge.bucket-seconds:60}") int bucketSeconds,
+            @Value("${surge.window-buckets:15}") int windowBuckets,
+            @Value("${surge.max-corridors:50000}") int maxCorridors,
+            @Value("${surge.max-pending:65536}") int maxPending,
+            @Value("${surge.baseline-demand:30}") double baselineDemand,
+            @Value("${surge.booking-weight:5}") int bookingWeight,
+            @Value("${surge.sensitivity:0.25}") double sensitivity,
+            @Value("${surge.max-multiplier:2.0}") double maxMultiplier
+    ) {
+        this(cellDegrees, bucketSeconds, windowBuckets, maxCorridors, maxPending, baselineDemand,
+                bookingWeight, sensitivity, maxMultiplier, Clock.systemUTC());
+    }
+
+    SurgePricingService(double cellDegrees, int bucketSeconds, int windowBuckets, int maxCorridors, int maxPending,
+                        double baselineDemand, int bookingWeight, double sensitivity, double maxMultiplier, Clock clock) {
+        this.cellDegrees = Math.max(MIN_CELL_DEGREES, cellDegrees);
+        this.bucketMillis = Math.max(1, bucketSeconds) * 1000L;
+        this.windowBuckets = Math.max(1, windowBuckets);
+        this.maxCorridors = maxCorridors;
+        this.maxPending = maxPending;
+        this.baselineDemand = Math.max(1, baselineDemand);
+        this.bookingWeight = bookingWeight;
+        this.sensitivity = sensitivity;
+        this.maxMultiplier = Math.max(1, maxMultiplier);
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) pending[i] = new ConcurrentLinkedQueue<>();
+    }
+
+    public void recordSearch(double fromLat, double fromLng, double toLat, double toLng) {
+        offer(new Signal(corridor(fromLat, fromLng, toLat, toLng), false));
+    }
+
+    public void recordBookingRequest(Ride ride) {
+        if (!hasRoute(ride)) return;
+        offer(new Signal(corridor(ride.getFromLat(), ride.getFromLng(), ride.getToLat(), ride.getToLng()), true));
+    }
+
+    private void offer(Signal signal) {
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        pending[(int) (Thread.currentThread().getId() & (STRIPES - 1))].offer(signal);
+    }
+
+    /** Fold queued signals into the corridor counters; returns how many were applied. */
+    @Scheduled(fixedDelayString = "${surge.drain-interval-ms:200}")
+    public synchronized int drain() {
+        long bucket = currentBucket();
+        int applied = 0;
+        for (ConcurrentLinkedQueue<Signal> queue : pending) {
+            Signal s;
+            while ((s = queue.poll()) != null) {
+                pendingCount.decrementAndGet();
+                CorridorWindow w = corridors.get(s.corridor());
+                if (w == null) {
+                    if (corridors.size() >= maxCorridors) {
+                        dropped.increment();
+                        continue;
+                    }
+                    w = corridors.computeIfAbsent(s.corridor(), k -> new CorridorWindow(windowBuckets));
+                }
+                w.add(bucket, s.booking());
+                applied++;
+            }
+        }
+        if (bucket != lastEvictionBucket) {
+            lastEvictionBucket = bucket;
+            // Corridors with nothing left in the window are forgotten
+            for (Iterator<CorridorWindow> it = corridors.values().iterator(); it.hasNext(); ) {
+                if (it.next().latestBucket() <= bucket - windowBuckets) it.remove();
+            }
+        }
+        return applied;
+    }
+
+    public Suggestion suggest(double fromLat, double fromLng, double toLat, double toLng) {
+        CorridorWindow w = corridors.get(corridor(fromLat, fromLng, toLat, toLng));
+        if (w == null) return neutral();
+        long bucket = currentBucket();
+        long searches = w.sum(bucket, false);
+        long bookings = w.sum(bucket, true);
+        return new Suggestion(multiplier(searches + (long) bookingWeight * bookings), searches, bookings, windowSeconds());
+    }
+
+    public Suggestion suggest(Ride ride) {
+        if (!hasRoute(ride)) return neutral();
+        return suggest(ride.getFromLat(), ride.getFromLng(), ride.getToLat(), ride.getToLng());
+    }
+
+    private Suggestion neutral() {
+        return new Suggestion(1.0, 0, 0, windowSeconds());
+    }
+
+    private long windowSeconds() {
+        return windowBuckets * bucketMillis / 1000;
+    }
+
+    // 1.0 up to the baseline, then rising with the log of demand over baseline, in steps of 0.05
+    double multiplier(long demand) {
+        if (demand <= baselineDemand) return 1.0;
+        double raw = 1 + sensitivity * (Math.log(demand / baselineDemand) / Math.log(2));
+        double stepped = Math.floor(raw * 20 + 1e-9) / 20;
+        return Math.min(maxMultiplier, stepped);
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    int trackedCorridors() {
+        return corridors.size();
+    }
+
+    public static boolean hasRoute(Ride ride) {
+        return ride != null && !(ride.getFromLat() == 0 && ride.getFromLng() == 0 && ride.getToLat() == 0 && ride.getToLng() == 0);
+    }
+
+    private long currentBucket() {
+        return clock.millis() / bucketMillis;
+    }
+
+    long corridor(double fromLat, double fromLng, double toLat, double toLng) {
+        return (cell(fromLat, 90) << 48) | (cell(fromLng, 180) << 32) | (cell(toLat, 90) << 16) | cell(toLng, 180);
+    }
+
+    private long cell(double degrees, double range) {
+        double clamped = Math.max(-range, Math.min(range, degrees));
+        return ((long) Math.floor((clamped + range) / cellDegrees)) & 0xFFFF;
+    }
+
+    /**
+     * Ring of per-bucket counters for one corridor. Only the drainer writes; a slot is reset when
+     * it is reused for a newer bucket, and readers skip slots outside the window.
+     */
+    private static final class CorridorWindow {
+        private final AtomicLongArray bucketOf;
+        private final LongAdder[] searches;
+        private final LongAdder[] bookings;
+        private volatile long latest;
+
+        CorridorWindow(int size) {
+            bucketOf = new AtomicLongArray(size);
+            searches = new LongAdder[size];
+            bookings = new LongAdder[size];
+            for (int i = 0; i < size; i++) {
+                bucketOf.set(i, -1);
+                searches[i] = new LongAdder();
+                bookings[i] = new LongAdder();
+            }
+        }
+
+        void add(long bucket, boolean booking) {
+            int slot = (int) (bucket % searches.length);
+            if (bucketOf.get(slot) != bucket) {
+                // Mark the slot stale while it is reset so readers never count old totals
+                bucketOf.set(slot, -1);
+                searches[slot].reset();
+                bookings[slot].reset();
+                bucketOf.set(slot, bucket);
+            }
+            (booking ? bookings : searches)[slot].increment();
+            latest = bucket;
+        }
+
+        long sum(long now, boolean booking) {
+            long total = 0;
+            for (int slot = 0; slot < searches.length; slot++) {
+                long b = bucketOf.get(slot);
+                if (b > now - searches.length && b <= now) total += (booking ? bookings : searches)[slot].sum();
+            }
+            return total;
+        }
+
+        long latestBucket() {
+            return latest;
+        }
+    }
+}
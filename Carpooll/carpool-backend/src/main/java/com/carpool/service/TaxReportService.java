@@ -0,0 +1,177 @@
+package com.carpool.service;
+
+import com.carpool.model.LedgerEntry;
+import com.carpool.repository.LedgerEntryRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Monthly GST and platform-fee totals for every confirmed booking, read from the ledger rather
+ * than recomputed from bookings. The ledger is split into id ranges of {@code reports.tax.chunk-size}
+ * lines; each range is summed by month and line type in the database on one of
+ * {@code reports.tax.workers} threads, and the per-range partials are merged here. Only the partials
+ * are held in memory, and a range is an index walk on the primary key whatever the ledger's size.
+ *
+ * A booking's lines fall in the month it was confirmed (when they were posted). A refund's reversal
+ * lines fall in the month it completed and are netted off that month's amounts, so a month can come
+ * out negative when it refunds more than it collects. {@code bookings} counts payments and
+ * {@code refunds} the refunds among them.
+ */
+@Service
+public class TaxReportService {
+
+    public record Month(
+            YearMonth month,
+            long bookings,
+            long refunds,
+            long collectedPaise,
+            long platformFeePaise,
+            long driverCommissionPaise,
+            long cgstPaise,
+            long sgstPaise
+    ) {
+        public long platformRevenuePaise() {
+            return platformFeePaise + driverCommissionPaise;
+        }
+
+        public long gstPaise() {
+            return cgstPaise + sgstPaise;
+        }
+    }
+
+    public record Report(List<Month> months, int chunks, long durationMs) {}
+
+    private static final Set<LedgerEntry.Type> TYPES = EnumSet.of(
+            LedgerEntry.Type.PASSENGER_CHARGE, LedgerEntry.Type.PLATFORM_FEE, LedgerEntry.Type.DRIVER_COMMISSION,
+            LedgerEntry.Type.CGST, LedgerEntry.Type.SGST,
+            LedgerEntry.Type.REFUND_PASSENGER_CHARGE, LedgerEntry.Type.REFUND_PLATFORM_FEE,
+            LedgerEntry.Type.REFUND_DRIVER_COMMISSION, LedgerEntry.Type.REFUND_CGST, LedgerEntry.Type.REFUND_SGST);
+
+    private final LedgerEntryRepository entryRepository;
+    private final ExecutorService workers;
+    private final int chunkSize;
+    private final ReentrantLock running = new ReentrantLock();
+
+    @Autowired
+    public TaxReportService(
+            LedgerEntryRepository entryRepository,
+            @Value("${reports.tax.workers:4}") int workerCount,
+            @Value("${reports.tax.chunk-size:20000}") int chunkSize
+    ) {
+        this.entryRepository = entryRepository;
+        this.chunkSize = Math.max(1, chunkSize);
+        AtomicInteger n = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workerCount), r -> {
+            Thread t = new Thread(r, "tax-report-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Totals per calendar month, oldest first.
+     *
+     * @throws IllegalStateException if a report is already being generated
+     */
+    public Report monthly() {
+        if (!running.tryLock()) throw new IllegalStateException("Tax report already running");
+        try {
+            long start = System.nanoTime();
+            long maxId = entryRepository.maxId();
+            List<CompletableFuture<Map<YearMonth, long[]>>> partials = new ArrayList<>();
+            for (long after = 0; after < maxId; after += chunkSize) {
+                long from = after, to = Math.min(after + chunkSize, maxId);
+                partials.add(CompletableFuture.supplyAsync(() -> sumChunk(from, to), workers));
+            }
+
+            Map<YearMonth, long[]> totals = new TreeMap<>();
+            try {
+                for (CompletableFuture<Map<YearMonth, long[]>> partial : partials) {
+                    join(partial).forEach((month, sums) -> {
+                        long[] into = totals.computeIfAbsent(month, m -> new long[Slot.COUNT]);
+                        for (int i = 0; i < sums.length; i++) into[i] += sums[i];
+                    });
+                }
+            } catch (RuntimeException e) {
+                // Ranges not yet started are dropped rather than left to run after the report failed
+                partials.forEach(p -> p.cancel(false));
+                throw e;
+            }
+
+            List<Month> months = new ArrayList<>(totals.size());
+            totals.forEach((month, t) -> months.add(new Month(month, t[Slot.BOOKINGS], t[Slot.REFUNDS], t[Slot.COLLECTED],
+                    t[Slot.PLATFORM_FEE], t[Slot.DRIVER_COMMISSION], t[Slot.CGST], t[Slot.SGST])));
+            return new Report(months, partials.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            running.unlock();
+        }
+    }
+
+    // Per-month sums for ledger ids in (afterId, toId]
+    private Map<YearMonth, long[]> sumChunk(long afterId, long toId) {
+        Map<YearMonth, long[]> sums = new HashMap<>();
+        for (Object[] row : entryRepository.sumByMonthAndType(afterId, toId, TYPES)) {
+            YearMonth month = YearMonth.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+            LedgerEntry.Type type = (LedgerEntry.Type) row[2];
+            long paise = row[4] == null ? 0 : ((Number) row[4]).longValue();
+            long[] s = sums.computeIfAbsent(month, m -> new long[Slot.COUNT]);
+            switch (type) {
+                case PASSENGER_CHARGE -> {
+                    s[Slot.BOOKINGS] += ((Number) row[3]).longValue();
+                    s[Slot.COLLECTED] += paise;
+                }
+                case PLATFORM_FEE -> s[Slot.PLATFORM_FEE] += paise;
+                case DRIVER_COMMISSION -> s[Slot.DRIVER_COMMISSION] += paise;
+                case CGST -> s[Slot.CGST] += paise;
+                case SGST -> s[Slot.SGST] += paise;
+                case REFUND_PASSENGER_CHARGE -> {
+                    s[Slot.REFUNDS] += ((Number) row[3]).longValue();
+                    s[Slot.COLLECTED] -= paise;
+                }
+                case REFUND_PLATFORM_FEE -> s[Slot.PLATFORM_FEE] -= paise;
+                case REFUND_DRIVER_COMMISSION -> s[Slot.DRIVER_COMMISSION] -= paise;
+                case REFUND_CGST -> s[Slot.CGST] -= paise;
+                case REFUND_SGST -> s[Slot.SGST] -= paise;
+                default -> { }
+            }
+        }
+        return sums;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    // Positions in a month's running sums
+    private static final class Slot {
+        static final int BOOKINGS = 0, REFUNDS = 1, COLLECTED = 2, PLATFORM_FEE = 3, DRIVER_COMMISSION = 4, CGST = 5, SGST = 6;
+        static final int COUNT = 7;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
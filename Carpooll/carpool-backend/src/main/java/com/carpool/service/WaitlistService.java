@@ -0,0 +1,253 @@
+package com.carpool.service;
+
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.model.WaitlistEntry;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.WaitlistEntryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-ride FIFO waitlist. Promotion is driven by {@link SeatsReleasedEvent}s, so only
+ * the ride whose seats changed is ever looked at. A promoted passenger's seats are held for
+ * {@code waitlist.hold.ttl-minutes}; holds still unpaid (or undecided by the host) after that are
+ * dropped by a periodic sweep and the seats offered to the next in the queue.
+ */
+@Service
+public class WaitlistService {
+
+    private static final Logger log = LoggerFactory.getLogger(WaitlistService.class);
+
+    // Booking statuses in which a promoted passenger's seats are held for them
+    static final List<Booking.Status> HOLDING = List.of(Booking.Status.PENDING, Booking.Status.ACCEPTED);
+
+    private static final int EXPIRY_BATCH = 100;
+    private static final int MAX_EXPIRY_BATCHES_PER_RUN = 10;
+
+    private final WaitlistEntryRepository waitlistRepository;
+    private final RideRepository rideRepository;
+    private final BookingRepository bookingRepository;
+    private final OutboxService outboxService;
+    private final ScheduleIndex scheduleIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate tx;
+    private final Duration holdTtl;
+
+    public WaitlistService(
+            WaitlistEntryRepository waitlistRepository,
+            RideRepository rideRepository,
+            BookingRepository bookingRepository,
+            OutboxService outboxService,
+            ScheduleIndex scheduleIndex,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager,
+            @Value("${waitlist.hold.ttl-minutes:30}") long holdTtlMinutes
+    ) {
+        this.waitlistRepository = waitlistRepository;
+        this.rideRepository = rideRepository;
+        this.bookingRepository = bookingRepository;
+        this.outboxService = outboxService;
+        this.scheduleIndex = scheduleIndex;
+        this.eventPublisher = eventPublisher;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.holdTtl = Duration.ofMinutes(Math.max(1, holdTtlMinutes));
+    }
+
+    /**
+     * Queue a passenger on a ride. Joining twice returns the existing waiting entry.
+     */
+    @Transactional
+    public WaitlistEntry join(Long rideId, User user, int seats, Long bookingId) {
+        return waitlistRepository.findFirstByRideIdAndUserIdAndStatus(rideId, user.getId(), WaitlistEntry.Status.WAITING)
+                .orElseGet(() -> {
+                    WaitlistEntry e = new WaitlistEntry();
+                    e.setRideId(rideId);
+                    e.setUserId(user.getId());
+                    e.setUserName(user.getFullname());
+                    e.setUserEmail(user.getEmail());
+                    e.setSeatsRequested(seats > 0 ? seats : 1);
+                    e.setBookingId(bookingId);
+                    return waitlistRepository.save(e);
+                });
+    }
+
+    // 1-based queue position, 0 when the entry is no longer waiting
+    public long position(WaitlistEntry e) {
+        if (e.getStatus() != WaitlistEntry.Status.WAITING) return 0;
+        return waitlistRepository.countByRideIdAndStatusAndIdLessThan(e.getRideId(), WaitlistEntry.Status.WAITING, e.getId()) + 1;
+    }
+
+    /**
+     * Seats on the ride that are neither sold nor held for promoted passengers. The hold of
+     * {@code exceptBookingId}, if it has one, counts as free since it is that booking's own.
+     */
+    public int unheldSeats(Ride ride, Long exceptBookingId) {
+        return ride.getSeatsAvailable() - waitlistRepository.sumSeatsHeldByPromoted(
+                ride.getId(), WaitlistEntry.Status.PROMOTED, HOLDING, exceptBookingId);
+    }
+
+    // True when the booking was created or revived by a promotion, i.e. it holds seats until paid or dropped
+    public boolean holdsSeats(Long bookingId) {
+        return bookingId != null && waitlistRepository.existsByBookingIdAndStatus(bookingId, WaitlistEntry.Status.PROMOTED);
+    }
+
+    public List<WaitlistEntry> findByUserId(Long userId) {
+        return waitlistRepository.findByUserIdOrderByIdDesc(userId);
+    }
+
+    @Transactional
+    public boolean leave(Long entryId, Long userId) {
+        WaitlistEntry e = waitlistRepository.findById(entryId).orElse(null);
+        if (e == null || !e.getUserId().equals(userId)) return false;
+        return waitlistRepository.transition(entryId, WaitlistEntry.Status.WAITING, WaitlistEntry.Status.LEFT, LocalDateTime.now()) == 1;
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onSeatsReleased(SeatsReleasedEvent event) {
+        List<WaitlistEntry> promoted = promote(event.rideId());
+        if (!promoted.isEmpty()) {
+            log.info("Ride {} → {} waitlisted passengers promoted", event.rideId(), promoted.size());
+        }
+    }
+
+    /**
+     * Promote waiting passengers, oldest first, while their requests fit in the free seats.
+     * The ride row is locked for the duration so two promotion passes for the same ride
+     * cannot hand out the same seats twice.
+     */
+    @Transactional
+    public List<WaitlistEntry> promote(Long rideId) {
+        Ride ride = rideRepository.findByIdForUpdate(rideId).orElse(null);
+        if (ride == null) return List.of();
+
+        int budget = unheldSeats(ride, null);
+        List<WaitlistEntry> promoted = new ArrayList<>();
+        if (budget <= 0) return promoted;
+
+        for (WaitlistEntry e : waitlistRepository.findByRideIdAndStatusOrderByIdAsc(rideId, WaitlistEntry.Status.WAITING)) {
+            if (budget <= 0) break;
+            // Skip requests that do not fit; a smaller request further back may still be eligible
+            if (e.getSeatsRequested() > budget) continue;
+
+            LocalDateTime now = LocalDateTime.now();
+            if (waitlistRepository.transition(e.getId(), WaitlistEntry.Status.WAITING, WaitlistEntry.Status.PROMOTED, now) == 0) {
+                continue; // left the queue or claimed concurrently
+            }
+            Booking existing = e.getBookingId() == null ? null : bookingRepository.findById(e.getBookingId()).orElse(null);
+            boolean revive = existing != null && existing.getStatus() == Booking.Status.ACCEPTED;
+            // A new booking must fit the passenger's schedule; one who has since booked an overlapping
+            // ride is passed over and keeps their place in the queue
+            if (!revive && scheduleIndex.reservePassenger(e.getUserEmail(), ride).isPresent()) {
+                waitlistRepository.transition(e.getId(), WaitlistEntry.Status.PROMOTED, WaitlistEntry.Status.WAITING, null);
+                continue;
+            }
+            e.setStatus(WaitlistEntry.Status.PROMOTED);
+            e.setPromotedAt(now);
+            budget -= e.getSeatsRequested();
+
+            moveBookingForward(e, ride, revive);
+            promoted.add(e);
+        }
+        return promoted;
+    }
+
+    @Scheduled(fixedDelayString = "${waitlist.hold.sweep-interval-ms:60000}")
+    public void scheduledExpiry() {
+        try {
+            int n = expireHolds(LocalDateTime.now());
+            if (n > 0) log.info("Waitlist: {} promotion holds expired", n);
+        } catch (Exception ex) {
+            log.warn("Waitlist hold expiry failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Drop every promotion hold made more than the hold TTL before {@code now}: the entry becomes
+     * EXPIRED, the booking holding the seats is cancelled, and the seats are released to the
+     * queue. A booking paid or turned down concurrently keeps the outcome the other writer set.
+     * Returns the number of holds dropped.
+     */
+    public int expireHolds(LocalDateTime now) {
+        LocalDateTime cutoff = now.minus(holdTtl);
+        int expired = 0;
+        for (int i = 0; i < MAX_EXPIRY_BATCHES_PER_RUN; i++) {
+            List<WaitlistEntry> due = waitlistRepository.findExpiredHolds(
+                    WaitlistEntry.Status.PROMOTED, HOLDING, cutoff, PageRequest.of(0, EXPIRY_BATCH));
+            for (WaitlistEntry e : due) {
+                if (Boolean.TRUE.equals(tx.execute(s -> expire(e, now, s)))) expired++;
+            }
+            if (due.size() < EXPIRY_BATCH) break;
+        }
+        return expired;
+    }
+
+    private boolean expire(WaitlistEntry e, LocalDateTime now, TransactionStatus status) {
+        Booking b = bookingRepository.findById(e.getBookingId()).orElse(null);
+        if (b == null || !HOLDING.contains(b.getStatus())) return false;
+        // Compare-and-set on the booking row, so a payment confirming it at the same time wins or loses cleanly
+        if (bookingRepository.cancelIfStatus(b.getId(), b.getStatus(), now, false) == 0) return false;
+        if (waitlistRepository.transition(e.getId(), WaitlistEntry.Status.PROMOTED, WaitlistEntry.Status.EXPIRED, e.getPromotedAt()) == 0) {
+            status.setRollbackOnly();
+            return false;
+        }
+
+        eventPublisher.publishEvent(new BookingChangedEvent(b.getId(), b.getRideId()));
+        eventPublisher.publishEvent(new SeatsReleasedEvent(e.getRideId(), e.getSeatsRequested()));
+        outboxService.notifyUser(e.getUserId(), "Waitlist Hold Expired",
+                "The seats held for you after leaving the waitlist were released because the booking was not completed in time.",
+                "BOOKING", "/my-bookings");
+        log.info("Waitlist entry {} hold on ride {} expired, booking {} cancelled", e.getId(), e.getRideId(), b.getId());
+        return true;
+    }
+
+    private void moveBookingForward(WaitlistEntry e, Ride ride, boolean revive) {
+        if (revive) {
+            // Passenger was already accepted but lost the race at payment: let them pay again
+            outboxService.notifyUser(e.getUserId(), "Seats Available",
+                    "Seats have opened up on your waitlisted ride. Complete your payment to confirm.", "BOOKING", "/my-bookings");
+            return;
+        }
+
+        Booking b = new Booking();
+        b.setRideId(ride.getId());
+        b.setRequesterId(e.getUserId());
+        b.setRequesterName(e.getUserName());
+        b.setRequesterEmail(e.getUserEmail());
+        b.setSeatsRequested(e.getSeatsRequested());
+        b.setStatus(Booking.Status.PENDING);
+        Booking saved = bookingRepository.save(b);
+        eventPublisher.publishEvent(new BookingChangedEvent(saved.getId(), saved.getRideId()));
+
+        e.setBookingId(saved.getId());
+        waitlistRepository.save(e);
+
+        // Delivered by the outbox once the promotion commits
+        outboxService.notifyUser(e.getUserId(), "Promoted from Waitlist",
+                "Seats opened up and your booking request has been sent to the ride host.", "BOOKING", "/my-bookings");
+        outboxService.notifyByEmail(ride.getOwnerEmail(), "New Booking Request",
+                "A waitlisted passenger has requested seats on your ride.", "BOOKING", "/hosted");
+    }
+}
@@ -0,0 +1,81 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Indexes for the repository finder columns. Written in Java rather than SQL because Flyway runs
+ * before Hibernate's ddl-auto: on a fresh database some tables (or columns) do not exist yet, and
+ * those indexes are then created by Hibernate from the matching {@code @Table(indexes = ...)}.
+ * Index names here and in the entities must stay identical.
+ */
+public class V4__add_lookup_indexes extends BaseJavaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(V4__add_lookup_indexes.class);
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection c = context.getConnection();
+
+        index(c, "BOOKING", "IDX_BOOKING_RIDE", "RIDE_ID");
+        index(c, "BOOKING", "IDX_BOOKING_REQUESTER", "REQUESTER_ID");
+        uniqueTransactionId(c);
+        index(c, "RIDE", "IDX_RIDE_OWNER_EMAIL", "OWNER_EMAIL");
+        index(c, "NOTIFICATIONS", "IDX_NOTIFICATIONS_USER_CREATED", "USER_ID", "CREATED_AT");
+        index(c, "RATING_REVIEW", "IDX_RATING_REVIEW_REVIEWEE", "REVIEWEE_ID");
+        index(c, "CAR", "IDX_CAR_OWNER", "OWNER_ID");
+    }
+
+    private void index(Connection c, String table, String name, String... columns) throws SQLException {
+        if (!hasColumns(c, table, columns)) {
+            log.info("V4: skipping {} ({} not present yet)", name, table);
+            return;
+        }
+        try (Statement s = c.createStatement()) {
+            s.execute("CREATE INDEX IF NOT EXISTS " + name + " ON " + table + " (" + String.join(", ", columns) + ")");
+        }
+    }
+
+    // Payment ids must be unique. Duplicates mean one payment confirmed two bookings; that needs a
+    // person to reconcile, so refuse to migrate and name them instead of guessing which row keeps it
+    private void uniqueTransactionId(Connection c) throws SQLException {
+        if (!hasColumns(c, "BOOKING", "TRANSACTION_ID")) return;
+        List<String> duplicates = new ArrayList<>();
+        try (Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery(
+                     "SELECT TRANSACTION_ID, COUNT(*) FROM BOOKING WHERE TRANSACTION_ID IS NOT NULL "
+                             + "GROUP BY TRANSACTION_ID HAVING COUNT(*) > 1 ORDER BY TRANSACTION_ID")) {
+            while (rs.next()) duplicates.add(rs.getString(1) + " (" + rs.getLong(2) + " bookings)");
+        }
+        if (!duplicates.isEmpty()) {
+            throw new IllegalStateException("V4: cannot add UK_BOOKING_TRANSACTION_ID, booking.transaction_id has "
+                    + duplicates.size() + " duplicated values: "
+                    + String.join(", ", duplicates.subList(0, Math.min(20, duplicates.size())))
+                    + (duplicates.size() > 20 ? ", ..." : "")
+                    + ". Clear or correct the transaction id on all but one booking per payment, then restart.");
+        }
+        try (Statement s = c.createStatement()) {
+            s.execute("ALTER TABLE BOOKING ADD CONSTRAINT IF NOT EXISTS UK_BOOKING_TRANSACTION_ID UNIQUE (TRANSACTION_ID)");
+        }
+    }
+
+    private boolean hasColumns(Connection c, String table, String... columns) throws SQLException {
+        DatabaseMetaData md = c.getMetaData();
+        for (String column : columns) {
+            try (ResultSet rs = md.getColumns(null, null, table, column)) {
+                if (!rs.next()) return false;
+            }
+        }
+        return true;
+    }
+}
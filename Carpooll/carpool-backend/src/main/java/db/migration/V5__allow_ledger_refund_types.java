@@ -0,0 +1,61 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hibernate created ledger_entry.type with a check constraint listing the line types of the day, and
+ * ddl-auto never widens it, so refund reversal lines would be rejected. The constraint is replaced
+ * with one that also allows the REFUND_* types. On a fresh database the table does not exist yet
+ * and Hibernate creates it with the full list.
+ */
+public class V5__allow_ledger_refund_types extends BaseJavaMigration {
+
+    private static final String TYPES = "'PASSENGER_CHARGE','PLATFORM_FEE','DRIVER_COMMISSION','CGST','SGST','DRIVER_PAYABLE',"
+            + "'REFUND_PASSENGER_CHARGE','REFUND_PLATFORM_FEE','REFUND_DRIVER_COMMISSION','REFUND_CGST','REFUND_SGST',"
+            + "'REFUND_DRIVER_PAYABLE'";
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection c = context.getConnection();
+        if (!hasTable(c)) return;
+        List<String> existing = typeConstraints(c);
+
+        try (Statement s = c.createStatement()) {
+            for (String name : existing) {
+                s.execute("ALTER TABLE LEDGER_ENTRY DROP CONSTRAINT IF EXISTS \"" + name + "\"");
+            }
+            s.execute("ALTER TABLE LEDGER_ENTRY ADD CONSTRAINT CK_LEDGER_ENTRY_TYPE CHECK (TYPE IN (" + TYPES + "))");
+        }
+    }
+
+    // Names of the check constraints on LEDGER_ENTRY that restrict TYPE; Hibernate's are auto-named
+    private List<String> typeConstraints(Connection c) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT cc.CONSTRAINT_NAME, cc.CHECK_CLAUSE FROM INFORMATION_SCHEMA.CHECK_CONSTRAINTS cc"
+                        + " JOIN INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc ON tc.CONSTRAINT_NAME = cc.CONSTRAINT_NAME"
+                        + " AND tc.CONSTRAINT_SCHEMA = cc.CONSTRAINT_SCHEMA WHERE tc.TABLE_NAME = 'LEDGER_ENTRY'")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getString(2).contains("\"TYPE\"")) names.add(rs.getString(1));
+                }
+            }
+        }
+        return names;
+    }
+
+    private boolean hasTable(Connection c) throws SQLException {
+        try (ResultSet rs = c.getMetaData().getColumns(null, null, "LEDGER_ENTRY", "TYPE")) {
+            return rs.next();
+        }
+    }
+}
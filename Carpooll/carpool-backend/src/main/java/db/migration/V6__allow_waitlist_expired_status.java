@@ -0,0 +1,58 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * As V5 for waitlist_entry.status: Hibernate's check constraint predates EXPIRED, the status a
+ * promotion hold moves to when it lapses. On a fresh database the table does not exist yet and
+ * Hibernate creates it with the full list.
+ */
+public class V6__allow_waitlist_expired_status extends BaseJavaMigration {
+
+    private static final String STATUSES = "'WAITING','PROMOTED','LEFT','EXPIRED'";
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection c = context.getConnection();
+        if (!hasTable(c)) return;
+        List<String> existing = statusConstraints(c);
+
+        try (Statement s = c.createStatement()) {
+            for (String name : existing) {
+                s.execute("ALTER TABLE WAITLIST_ENTRY DROP CONSTRAINT IF EXISTS \"" + name + "\"");
+            }
+            s.execute("ALTER TABLE WAITLIST_ENTRY ADD CONSTRAINT CK_WAITLIST_ENTRY_STATUS CHECK (STATUS IN (" + STATUSES + "))");
+        }
+    }
+
+    // Names of the check constraints on WAITLIST_ENTRY that restrict STATUS; Hibernate's are auto-named
+    private List<String> statusConstraints(Connection c) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT cc.CONSTRAINT_NAME, cc.CHECK_CLAUSE FROM INFORMATION_SCHEMA.CHECK_CONSTRAINTS cc"
+                        + " JOIN INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc ON tc.CONSTRAINT_NAME = cc.CONSTRAINT_NAME"
+                        + " AND tc.CONSTRAINT_SCHEMA = cc.CONSTRAINT_SCHEMA WHERE tc.TABLE_NAME = 'WAITLIST_ENTRY'")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getString(2).contains("\"STATUS\"")) names.add(rs.getString(1));
+                }
+            }
+        }
+        return names;
+    }
+
+    private boolean hasTable(Connection c) throws SQLException {
+        try (ResultSet rs = c.getMetaData().getColumns(null, null, "WAITLIST_ENTRY", "STATUS")) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- Ensure booking.status allows CANCELLED (passenger cancellation)
+ALTER TABLE BOOKING DROP CONSTRAINT IF EXISTS CONSTRAINT_2;
+ALTER TABLE BOOKING ADD CONSTRAINT CONSTRAINT_2 CHECK (
+  STATUS IN ('PENDING','ACCEPTED','REJECTED','PAID','CONFIRMED','COMPLETED','CANCELLED')
+);
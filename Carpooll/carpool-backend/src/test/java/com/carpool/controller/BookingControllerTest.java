@@ -12,16 +12,20 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.context.annotation.Import;
 import com.carpool.config.TestMailConfig; 
 import jakarta.persistence.EntityManager;
 
 import com.carpool.repository.NotificationRepository;
+import com.carpool.service.OutboxDispatcher;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -48,6 +52,9 @@ public class BookingControllerTest {
     @Autowired
     private EntityManager em;
 
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
     @Test
     public void hostCanCompleteBooking() throws Exception {
         User host = new User();
@@ -72,6 +79,7 @@ public class BookingControllerTest {
                 .andExpect(jsonPath("$.status").value("COMPLETED"));
 
         // Clear persistence context so we see DB updates from the controller's transaction
+        outboxDispatcher.drain();
         em.flush();
         em.clear();
 
@@ -104,6 +112,7 @@ public class BookingControllerTest {
         mvc.perform(post("/api/bookings/request").requestAttr("email", passenger.getEmail()).contentType(MediaType.APPLICATION_JSON).content("{\"rideId\":"+ride.getId()+",\"seatsRequested\":1}"))
                 .andExpect(status().isOk());
 
+        outboxDispatcher.drain();
         em.flush();
         em.clear();
 
@@ -144,6 +153,7 @@ public class BookingControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("COMPLETED"));
 
+        outboxDispatcher.drain();
         em.flush();
         em.clear();
 
@@ -187,6 +197,7 @@ public class BookingControllerTest {
                 .andExpect(jsonPath("$.updated").value(2));
 
         // Ensure we see DB updates performed by controller
+        outboxDispatcher.drain();
         em.flush();
         em.clear();
 
@@ -221,6 +232,7 @@ public class BookingControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("COMPLETED"));
 
+        outboxDispatcher.drain();
         em.flush();
         em.clear();
 
@@ -241,6 +253,7 @@ public class BookingControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("CONFIRMED"));
 
+        outboxDispatcher.drain();
         em.flush(); em.clear();
 
         var pNotes = notificationRepository.findByUserOrderByCreatedAtDesc(passenger);
@@ -260,11 +273,28 @@ public class BookingControllerTest {
         mvc.perform(post("/api/bookings/" + b.getId() + "/verify-payment").requestAttr("email", passenger.getEmail()).contentType(MediaType.APPLICATION_JSON).content("{\"transactionId\":\"invalid_tx\"}"))
                 .andExpect(status().isBadRequest());
 
+        outboxDispatcher.drain();
         em.flush(); em.clear();
         var pNotes = notificationRepository.findByUserOrderByCreatedAtDesc(passenger);
         assertFalse(pNotes.isEmpty());
         assertEquals("Payment Failed", pNotes.get(0).getTitle());
     }
 
+    @Test
+    public void initiatePaymentCompletesAsynchronously() throws Exception {
+        User passenger = new User(); passenger.setEmail("p-init@example.com"); passenger.setFullname("InitPassenger"); passenger.setRole("USER"); userRepository.save(passenger);
+        Ride ride = new Ride(); ride.setOwnerEmail("driver-init@example.com"); ride.setPrice(80.0); ride.setDateTime(java.time.LocalDateTime.now().plusHours(1).toString()); rideRepository.save(ride);
+        Booking b = new Booking(); b.setRideId(ride.getId()); b.setRequesterId(passenger.getId()); b.setRequesterEmail(passenger.getEmail()); b.setSeatsRequested(1); b.setStatus(Booking.Status.ACCEPTED); bookingRepository.save(b);
+
+        MvcResult started = mvc.perform(post("/api/bookings/" + b.getId() + "/initiate-payment").requestAttr("email", passenger.getEmail()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("INITIATED"));
 
+        MvcResult forbidden = mvc.perform(post("/api/bookings/" + b.getId() + "/initiate-payment").requestAttr("email", "someone-else@example.com"))
+                .andReturn();
+        mvc.perform(asyncDispatch(forbidden)).andExpect(status().isForbidden());
+    }
 }
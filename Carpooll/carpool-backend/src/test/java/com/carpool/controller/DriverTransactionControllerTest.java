@@ -1,16 +1,30 @@
 package com.carpool.controller;
 
+import com.carpool.dto.DriverTransactionDTO;
 import com.carpool.model.Booking;
+import com.carpool.model.Refund;
 import com.carpool.model.Ride;
 import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RefundRepository;
 import com.carpool.repository.RideRepository;
+import com.carpool.service.DriverTransactionService;
+import com.carpool.service.EarningsRollupService;
+import com.carpool.service.LedgerService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import com.carpool.config.TestMailConfig;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -23,6 +37,21 @@ public class DriverTransactionControllerTest {
     @Autowired
     private RideRepository rideRepository;
 
+    @Autowired
+    private DriverTransactionService driverTransactions;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private EarningsRollupService earningsRollup;
+
+    @Autowired
+    private RefundRepository refundRepository;
+
+    @Autowired
+    private TransactionTemplate tx;
+
     @Test
     public void computesFeesAndTaxesCorrectly() {
         Ride ride = new Ride();
@@ -41,9 +70,12 @@ public class DriverTransactionControllerTest {
         b.setStatus(Booking.Status.CONFIRMED);
         b.setPaymentCompletedAt(LocalDateTime.now());
         bookingRepository.save(b);
+        // Paid before bookings recorded their driver: picked up by the startup fill
+        driverTransactions.fillDriverEmailsOnStartup();
+        assertEquals("driver@example.com", bookingRepository.findById(b.getId()).orElseThrow().getDriverEmail());
 
-        DriverTransactionController ctrl = new DriverTransactionController(bookingRepository, rideRepository);
-        var txs = ctrl.getDriverTransactions("driver@example.com");
+        DriverTransactionController ctrl = new DriverTransactionController(driverTransactions, ledgerService, earningsRollup);
+        var txs = items(ctrl.getDriverTransactions("driver@example.com", null, null, null, 50, false));
         assertEquals(1, txs.size());
 
         var t = txs.get(0);
@@ -53,4 +85,113 @@ public class DriverTransactionControllerTest {
         assertEquals(3.78, t.getSgst(), 0.0001);
         assertEquals(190.0, t.getNetAmount()); // 200 - 10
     }
-}
\ No newline at end of file
+
+    @Test
+    public void exportsPaidBookingsAsCsv() throws Exception {
+        Ride ride = new Ride();
+        ride.setOwnerEmail("csv-driver@example.com");
+        ride.setFromLocation("Pune, MH");
+        ride.setToLocation("Mumbai");
+        ride.setPrice(100.0);
+        ride.setDateTime(LocalDateTime.now().toString());
+        rideRepository.save(ride);
+
+        for (int i = 0; i < 3; i++) {
+            Booking b = new Booking();
+            b.setRideId(ride.getId());
+            b.setRequesterName(i == 0 ? "=cmd" : "Passenger \"" + i + "\"");
+            b.setSeatsRequested(2);
+            b.setStatus(i < 2 ? Booking.Status.CONFIRMED : Booking.Status.ACCEPTED);
+            b.setTransactionId(i < 2 ? "tx_csv_" + i : null);
+            b.setPaymentCompletedAt(i < 2 ? LocalDateTime.now() : null);
+            b.setDriverEmail(ride.getOwnerEmail());
+            bookingRepository.save(b);
+        }
+        // Paid, then cancelled and refunded: no longer an earning
+        Booking refunded = new Booking();
+        refunded.setRideId(ride.getId());
+        refunded.setRequesterName("Refunded");
+        refunded.setSeatsRequested(1);
+        refunded.setStatus(Booking.Status.CANCELLED);
+        refunded.setTransactionId("tx_csv_refunded");
+        refunded.setPaymentCompletedAt(LocalDateTime.now());
+        refunded.setDriverEmail(ride.getOwnerEmail());
+        bookingRepository.save(refunded);
+        Refund refund = refundRepository.save(new Refund(refunded.getId(), "tx_csv_refunded", 10_500, Refund.Reason.PASSENGER_CANCELLED));
+        tx.executeWithoutResult(s -> refundRepository.markSucceeded(refund.getId(), "re_csv", LocalDateTime.now()));
+
+        DriverTransactionController ctrl = new DriverTransactionController(driverTransactions, ledgerService, earningsRollup);
+        StreamingResponseBody body = ctrl.exportDriverTransactions("csv-driver@example.com", false).getBody();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+
+        assertEquals(3, lines.length); // header + the two paid bookings still paid
+        assertTrue(lines[0].startsWith("bookingId,passenger,"));
+        assertTrue(lines[1].contains(",'=cmd,\"Pune, MH\",Mumbai,"));
+        assertTrue(lines[1].endsWith(",2,200.00,10.00,3.78,3.78,190.00,tx_csv_0"));
+        assertTrue(lines[2].contains(",\"Passenger \"\"1\"\"\","));
+    }
+
+    @Test
+    public void pagesNewestFirstByCursorWithinDateRange() {
+        Ride ride = new Ride();
+        ride.setOwnerEmail("page-driver@example.com");
+        ride.setFromLocation("A");
+        ride.setToLocation("B");
+        ride.setPrice(100.0);
+        ride.setDateTime(LocalDateTime.now().toString());
+        rideRepository.save(ride);
+
+        // Seven payments over three days, two sharing a timestamp so the id breaks the tie
+        LocalDateTime base = LocalDateTime.of(2024, 3, 10, 9, 0);
+        LocalDateTime[] paidAt = {
+                base, base.plusHours(1), base.plusHours(1), base.plusDays(1),
+                base.plusDays(1).plusHours(2), base.plusDays(2), base.plusDays(2).plusMinutes(5)
+        };
+        for (int i = 0; i < paidAt.length; i++) {
+            Booking b = new Booking();
+            b.setRideId(ride.getId());
+            b.setRequesterName("P" + i);
+            b.setSeatsRequested(1);
+            b.setTransactionId("tx_page_" + i);
+            b.setStatus(Booking.Status.CONFIRMED);
+            b.setPaymentCompletedAt(paidAt[i]);
+            b.setDriverEmail(ride.getOwnerEmail());
+            bookingRepository.save(b);
+        }
+
+        DriverTransactionController ctrl = new DriverTransactionController(driverTransactions, ledgerService, earningsRollup);
+        List<DriverTransactionDTO> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ResponseEntity<?> res = ctrl.getDriverTransactions("page-driver@example.com", null, null, cursor, 3, false);
+            seen.addAll(items(res));
+            cursor = (String) ((Map<?, ?>) res.getBody()).get("nextCursor");
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(paidAt.length, seen.size());
+        assertEquals(paidAt.length, seen.stream().map(DriverTransactionDTO::getBookingId).distinct().count());
+        for (int i = 1; i < seen.size(); i++) {
+            DriverTransactionDTO prev = seen.get(i - 1), cur = seen.get(i);
+            assertTrue(prev.getDate().isAfter(cur.getDate())
+                    || prev.getDate().equals(cur.getDate()) && prev.getBookingId() > cur.getBookingId());
+        }
+
+        // Dates are inclusive: the middle day only
+        LocalDate day = base.toLocalDate().plusDays(1);
+        var middle = items(ctrl.getDriverTransactions("page-driver@example.com", day, day, null, 50, false));
+        assertEquals(List.of("tx_page_4", "tx_page_3"), middle.stream().map(DriverTransactionDTO::getTransactionId).toList());
+
+        assertEquals(400, ctrl.getDriverTransactions("page-driver@example.com", null, null, "not-a-cursor", 50, false).getStatusCode().value());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DriverTransactionDTO> items(ResponseEntity<?> res) {
+        assertEquals(200, res.getStatusCode().value());
+        return (List<DriverTransactionDTO>) ((Map<String, Object>) res.getBody()).get("items");
+    }
+}
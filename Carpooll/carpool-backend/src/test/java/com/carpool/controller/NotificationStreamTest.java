@@ -0,0 +1,89 @@
+package com.carpool.controller;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Notification;
+import com.carpool.model.User;
+import com.carpool.repository.UserRepository;
+import com.carpool.service.NotificationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+// Not @Transactional: events are pushed after the notification commits
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(TestMailConfig.class)
+public class NotificationStreamTest {
+
+    private static final Pattern READY_ID = Pattern.compile("id:(\\S+)\\nevent:ready");
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    public void pushesNotificationsAndReplaysThemOnReconnect() throws Exception {
+        User u = new User();
+        u.setEmail("stream-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com");
+        u.setFullname("Stream");
+        u.setRole("USER");
+        userRepository.save(u);
+        notificationService.getUnreadCount(u.getId());
+
+        MockHttpServletResponse live = open(u.getId(), null);
+        String body = await(live, "event:ready");
+        Matcher ready = READY_ID.matcher(body);
+        assertTrue(ready.find(), body);
+        String readyId = ready.group(1);
+
+        Notification n = notificationService.create(u, "Seat confirmed", "Your seat is confirmed", "BOOKING", "/my-rides");
+        body = await(live, "\"read\":false,\"unread\":1}");
+        assertTrue(body.contains("event:notification\ndata:{\"id\":" + n.getId()), body);
+
+        notificationService.markAsRead(n.getId());
+        await(live, "event:read\ndata:{\"id\":" + n.getId() + ",\"unread\":0}");
+
+        // A reconnect from the ready event gets both events it would have missed
+        String replayed = await(open(u.getId(), readyId), "\"unread\":0}");
+        assertTrue(replayed.indexOf("Seat confirmed") < replayed.indexOf("event:read"), replayed);
+
+        // An id from another run cannot be replayed
+        await(open(u.getId(), "old-run-7"), "event:resync");
+    }
+
+    private MockHttpServletResponse open(Long userId, String lastEventId) throws Exception {
+        var req = get("/api/notifications/stream/" + userId);
+        if (lastEventId != null) req = req.header("Last-Event-ID", lastEventId);
+        MvcResult result = mvc.perform(req).andExpect(request().asyncStarted()).andReturn();
+        return result.getResponse();
+    }
+
+    private static String await(MockHttpServletResponse response, String text) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        String body = response.getContentAsString();
+        while (!body.contains(text) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            body = response.getContentAsString();
+        }
+        assertTrue(body.contains(text), body);
+        return body;
+    }
+}
@@ -0,0 +1,121 @@
+package com.carpool.controller;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Plays a provider incident through the real endpoints: the simulator answers far slower than
+ * the configured timeout. More payment calls are left waiting than the connection pool has
+ * connections, yet the rest of the API keeps answering; the calls time out, the circuit opens and
+ * later payment calls are turned away immediately.
+ */
+// Not @Transactional: waiting requests must not share the test's connection
+@SpringBootTest(properties = {
+        "payments.gateway=simulator",
+        "payments.simulator.latency-ms=1500",
+        "payments.simulator.jitter-ms=0",
+        "payments.resilience.max-concurrent=64",
+        "payments.resilience.window-size=10",
+        "payments.resilience.minimum-calls=10",
+        "payments.resilience.timeout.create-intent-ms=600"
+})
+@AutoConfigureMockMvc
+@Import(TestMailConfig.class)
+public class PaymentProviderIncidentTest {
+
+    // Above the default pool size of 10
+    private static final int WAITING_PAYMENTS = 16;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Test
+    public void slowProviderDoesNotStallTheApiAndTripsTheBreaker() throws Exception {
+        String passenger = "incident-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com";
+        Ride ride = new Ride();
+        ride.setOwnerEmail("incident-host@example.com");
+        ride.setPrice(120.0);
+        ride.setSeatsAvailable(WAITING_PAYMENTS + 1);
+        ride.setDateTime(LocalDateTime.now().plusDays(1).toString());
+        rideRepository.save(ride);
+
+        List<Long> bookingIds = new ArrayList<>();
+        for (int i = 0; i <= WAITING_PAYMENTS; i++) {
+            Booking b = new Booking();
+            b.setRideId(ride.getId());
+            b.setRequesterEmail(passenger);
+            b.setStatus(Booking.Status.ACCEPTED);
+            bookingIds.add(bookingRepository.save(b).getId());
+        }
+
+        List<MvcResult> waiting = new ArrayList<>();
+        for (int i = 0; i < WAITING_PAYMENTS; i++) {
+            waiting.add(mvc.perform(post("/api/bookings/" + bookingIds.get(i) + "/initiate-payment").requestAttr("email", passenger))
+                    .andExpect(request().asyncStarted())
+                    .andReturn());
+        }
+
+        // The provider is still thinking; everything else answers straight away
+        long start = System.nanoTime();
+        mvc.perform(get("/api/rides/" + ride.getId())).andExpect(status().isOk());
+        mvc.perform(get("/api/admin/payments/gateway"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inFlight").value(WAITING_PAYMENTS));
+        assertTrue(elapsedMs(start) < 500, "API stalled behind the payment provider");
+
+        for (MvcResult r : waiting) {
+            r.getAsyncResult(5_000);
+            mvc.perform(asyncDispatch(r)).andExpect(status().isGatewayTimeout());
+        }
+
+        // Enough timeouts to open the circuit: the next payment call fails fast
+        mvc.perform(get("/api/admin/payments/gateway"))
+                .andExpect(jsonPath("$.state").value("OPEN"))
+                .andExpect(jsonPath("$.timeouts").value(WAITING_PAYMENTS));
+        start = System.nanoTime();
+        MvcResult rejected = mvc.perform(post("/api/bookings/" + bookingIds.get(WAITING_PAYMENTS) + "/initiate-payment").requestAttr("email", passenger))
+                .andReturn();
+        mvc.perform(asyncDispatch(rejected)).andExpect(status().isServiceUnavailable());
+        assertTrue(elapsedMs(start) < 500, "open circuit still waited for the provider");
+        assertEquals(1, ((Number) readMetric("rejectedOpen")).intValue());
+    }
+
+    private Object readMetric(String name) throws Exception {
+        String body = mvc.perform(get("/api/admin/payments/gateway")).andReturn().getResponse().getContentAsString();
+        return com.jayway.jsonpath.JsonPath.read(body, "$." + name);
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
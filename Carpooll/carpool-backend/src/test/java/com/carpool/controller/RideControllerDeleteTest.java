@@ -0,0 +1,94 @@
+package com.carpool.controller;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@Import(TestMailConfig.class)
+@AutoConfigureMockMvc
+@Transactional
+public class RideControllerDeleteTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    public void onlyTheHostOrStaffCanDeleteARide() throws Exception {
+        User stranger = new User();
+        stranger.setEmail("delete-stranger@example.com");
+        stranger.setFullname("Stranger");
+        stranger.setRole("USER");
+        userRepository.save(stranger);
+        User admin = new User();
+        admin.setEmail("delete-admin@example.com");
+        admin.setFullname("Admin");
+        admin.setRole("ADMIN");
+        userRepository.save(admin);
+
+        Ride ride = new Ride();
+        ride.setOwnerEmail("delete-host@example.com");
+        ride.setDateTime(java.time.LocalDateTime.now().plusDays(1).toString());
+        rideRepository.save(ride);
+        Ride other = new Ride();
+        other.setOwnerEmail("delete-host@example.com");
+        other.setDateTime(java.time.LocalDateTime.now().plusDays(2).toString());
+        rideRepository.save(other);
+
+        mvc.perform(delete("/api/rides/" + ride.getId())).andExpect(status().isUnauthorized());
+        mvc.perform(delete("/api/rides/" + ride.getId()).requestAttr("email", "delete-stranger@example.com"))
+                .andExpect(status().isForbidden());
+        assertTrue(rideRepository.existsById(ride.getId()));
+
+        mvc.perform(delete("/api/rides/" + ride.getId()).requestAttr("email", "delete-host@example.com"))
+                .andExpect(status().isNoContent());
+        assertFalse(rideRepository.existsById(ride.getId()));
+
+        mvc.perform(delete("/api/rides/" + other.getId()).requestAttr("email", "delete-admin@example.com"))
+                .andExpect(status().isNoContent());
+        assertFalse(rideRepository.existsById(other.getId()));
+    }
+
+    @Test
+    public void departedRideWithPaidPassengersIsConflict() throws Exception {
+        Ride ride = new Ride();
+        ride.setOwnerEmail("delete-departed@example.com");
+        ride.setDateTime(java.time.LocalDateTime.now().minusHours(2).toString());
+        rideRepository.save(ride);
+        Booking paid = new Booking();
+        paid.setRideId(ride.getId());
+        paid.setSeatsRequested(1);
+        paid.setStatus(Booking.Status.CONFIRMED);
+        paid.setTransactionId("pi_delete_departed_" + ride.getId());
+        bookingRepository.save(paid);
+
+        mvc.perform(delete("/api/rides/" + ride.getId()).requestAttr("email", "delete-departed@example.com"))
+                .andExpect(status().isConflict());
+        assertTrue(rideRepository.existsById(ride.getId()));
+    }
+}
@@ -0,0 +1,61 @@
+package com.carpool.controller;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.service.SurgePricingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@Import(TestMailConfig.class)
+@AutoConfigureMockMvc
+@Transactional
+public class RideControllerSurgeTest {
+
+    // A corridor no other test searches
+    private static final String ROUTE = "fromLat=26.912&fromLng=75.787&toLat=27.176&toLng=78.008";
+    private static final String RIDE = """
+            {"fromLocation":"Jaipur","toLocation":"Agra","fromLat":26.912,"fromLng":75.787,"toLat":27.176,"toLng":78.008,
+             "dateTime":"2031-03-01T09:00","seatsAvailable":3,"price":200.0,"surgeMultiplier":3.0}""";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private SurgePricingService surgePricing;
+
+    @Test
+    public void hostsOptIntoTheCorridorMultiplierDrivenBySearches() throws Exception {
+        mvc.perform(get("/api/rides/surge?" + ROUTE)).andExpect(jsonPath("$.multiplier").value(1.0));
+
+        // Twice the baseline demand of 30 searches
+        for (int i = 0; i < 60; i++) {
+            mvc.perform(get("/api/rides?" + ROUTE)).andExpect(status().isOk());
+        }
+        surgePricing.drain();
+        mvc.perform(get("/api/rides/surge?" + ROUTE))
+                .andExpect(jsonPath("$.searches").value(60))
+                .andExpect(jsonPath("$.multiplier").value(1.25));
+
+        // Without opting in the host's price stands, and a client-sent multiplier is ignored
+        mvc.perform(post("/api/rides").contentType(MediaType.APPLICATION_JSON).content(RIDE))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(200.0))
+                .andExpect(jsonPath("$.surgeMultiplier").doesNotExist());
+
+        mvc.perform(post("/api/rides?applySurge=true").contentType(MediaType.APPLICATION_JSON).content(RIDE))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(250.0))
+                .andExpect(jsonPath("$.surgeMultiplier").value(1.25));
+    }
+}
@@ -0,0 +1,287 @@
+package com.carpool.loadtest;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Drives concurrent request -> decide -> initiate-payment -> verify-payment flows through
+ * BookingController and checks the booking invariants afterwards: no ride is oversold, no
+ * transaction id is used twice, and every ride's seats are conserved (seats left + seats
+ * confirmed = seats offered).
+ *
+ * Runs against a private in-memory H2 database. Mail goes to the no-op sender from
+ * TestMailConfig and payment intents come from the in-process SimulatedPaymentGateway (latency
+ * set by -Dloadtest.gateway-latency-ms), so no network is involved. Defaults are small enough
+ * for the regular build; scale up with system properties, e.g.
+ *
+ *   mvn -B test -Dtest=BookingFlowLoadTest -Dloadtest.rides=50 -Dloadtest.passengers-per-ride=40 -Dloadtest.threads=128
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:booking-load;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "payments.gateway=simulator",
+        "payments.simulator.latency-ms=${loadtest.gateway-latency-ms:20}",
+        "payments.simulator.jitter-ms=${loadtest.gateway-jitter-ms:20}"
+})
+@AutoConfigureMockMvc
+@Import(TestMailConfig.class)
+public class BookingFlowLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingFlowLoadTest.class);
+
+    private static final int RIDES = Integer.getInteger("loadtest.rides", 8);
+    private static final int SEATS_PER_RIDE = Integer.getInteger("loadtest.seats-per-ride", 4);
+    private static final int PASSENGERS_PER_RIDE = Integer.getInteger("loadtest.passengers-per-ride", 12);
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 32);
+    // Share of passengers that first try to pay with a transaction id another passenger already used
+    private static final int REPLAY_PERCENT = Integer.getInteger("loadtest.replay-percent", 10);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, ConcurrentLinkedQueue<Long>> latencies = new ConcurrentHashMap<>();
+    private final AtomicInteger confirmed = new AtomicInteger();
+    private final AtomicInteger turnedAway = new AtomicInteger();
+    private final AtomicInteger replaysAccepted = new AtomicInteger();
+    private final AtomicInteger replaysRejected = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+
+    private record RideUnderLoad(Ride ride, String hostEmail, AtomicReference<String> lastTransactionId) {}
+
+    @Test
+    public void concurrentBookingFlowsKeepSeatAndPaymentInvariants() throws Exception {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        LocalDateTime departure = LocalDateTime.now().plusDays(2).withNano(0);
+
+        List<RideUnderLoad> rides = new ArrayList<>();
+        List<Runnable> flows = new ArrayList<>();
+        for (int r = 0; r < RIDES; r++) {
+            String hostEmail = "load-host-" + run + "-" + r + "@example.com";
+            user(hostEmail);
+            Ride ride = new Ride();
+            ride.setOwnerEmail(hostEmail);
+            ride.setSeatsAvailable(SEATS_PER_RIDE);
+            ride.setPrice(100.0);
+            ride.setDateTime(departure.toString());
+            RideUnderLoad target = new RideUnderLoad(rideRepository.save(ride), hostEmail, new AtomicReference<>());
+            rides.add(target);
+
+            for (int p = 0; p < PASSENGERS_PER_RIDE; p++) {
+                String passengerEmail = "load-pass-" + run + "-" + r + "-" + p + "@example.com";
+                user(passengerEmail);
+                flows.add(() -> flow(target, passengerEmail));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable flow : flows) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                flow.run();
+                return null;
+            }));
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) f.get(300, TimeUnit.SECONDS);
+        long elapsedNanos = System.nanoTime() - t0;
+        pool.shutdown();
+
+        report(flows.size(), elapsedNanos);
+
+        assertEquals(0, errors.get(), "booking flows failed with exceptions; see the log");
+
+        // Correctness: no oversell and seats conserved per ride
+        Set<String> transactionIds = new HashSet<>();
+        int confirmedBookings = 0;
+        for (RideUnderLoad target : rides) {
+            Long rideId = target.ride().getId();
+            int left = rideRepository.findSeatsAvailable(rideId);
+            int sold = 0;
+            for (Booking b : bookingRepository.findByRideId(rideId)) {
+                if (b.getStatus() != Booking.Status.CONFIRMED) continue;
+                sold += b.getSeatsRequested();
+                confirmedBookings++;
+                assertTrue(b.getTransactionId() != null && transactionIds.add(b.getTransactionId()),
+                        "duplicate or missing transaction id on booking " + b.getId());
+            }
+            assertTrue(left >= 0, "ride " + rideId + " oversold: " + left + " seats left");
+            assertEquals(SEATS_PER_RIDE, left + sold, "seats not conserved on ride " + rideId);
+        }
+        assertEquals(0, replaysAccepted.get(), "a replayed transaction id was accepted");
+        assertEquals(confirmed.get(), confirmedBookings);
+        // Every ride is oversubscribed, so a clean run sells out
+        if (PASSENGERS_PER_RIDE >= SEATS_PER_RIDE) assertEquals(RIDES * SEATS_PER_RIDE, confirmedBookings);
+    }
+
+    private void flow(RideUnderLoad target, String passengerEmail) {
+        try {
+            MvcResult requested = timed("request", post("/api/bookings/request")
+                    .requestAttr("email", passengerEmail)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"rideId\":" + target.ride().getId() + ",\"seatsRequested\":1}"));
+            if (requested.getResponse().getStatus() != 200) {
+                turnedAway.incrementAndGet();
+                return;
+            }
+            long bookingId = objectMapper.readTree(requested.getResponse().getContentAsString()).get("id").asLong();
+
+            MvcResult decided = timed("decide", post("/api/bookings/" + bookingId + "/decide")
+                    .param("action", "accept")
+                    .requestAttr("email", target.hostEmail()));
+            if (decided.getResponse().getStatus() != 200) {
+                turnedAway.incrementAndGet();
+                return;
+            }
+
+            String used = target.lastTransactionId().get();
+            if (used != null && ThreadLocalRandom.current().nextInt(100) < REPLAY_PERCENT) {
+                try {
+                    MvcResult replay = verify(bookingId, passengerEmail, used);
+                    if (replay.getResponse().getStatus() == 200) replaysAccepted.incrementAndGet();
+                    else replaysRejected.incrementAndGet();
+                } catch (Exception e) {
+                    // The unique constraint catching a replay that raced the original is still a rejection
+                    replaysRejected.incrementAndGet();
+                }
+            }
+
+            MvcResult initiated = timedAsync("initiate-payment", post("/api/bookings/" + bookingId + "/initiate-payment")
+                    .requestAttr("email", passengerEmail));
+            if (initiated.getResponse().getStatus() != 200) {
+                turnedAway.incrementAndGet();
+                return;
+            }
+            String transactionId = objectMapper.readTree(initiated.getResponse().getContentAsString()).get("paymentIntentId").asText();
+            MvcResult paid = verify(bookingId, passengerEmail, transactionId);
+            JsonNode body = objectMapper.readTree(paid.getResponse().getContentAsString());
+            if (paid.getResponse().getStatus() == 200 && "CONFIRMED".equals(body.path("status").asText())) {
+                target.lastTransactionId().set(transactionId);
+                confirmed.incrementAndGet();
+            } else {
+                turnedAway.incrementAndGet();
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.warn("Load flow for {} failed: {}", passengerEmail, e.toString(), e);
+        }
+    }
+
+    private MvcResult verify(long bookingId, String passengerEmail, String transactionId) throws Exception {
+        return timed("verify-payment", post("/api/bookings/" + bookingId + "/verify-payment")
+                .requestAttr("email", passengerEmail)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"transactionId\":\"" + transactionId + "\"}"));
+    }
+
+    private MvcResult timed(String step, RequestBuilder request) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            return mvc.perform(request).andReturn();
+        } finally {
+            latencies.computeIfAbsent(step, k -> new ConcurrentLinkedQueue<>()).add(System.nanoTime() - t0);
+        }
+    }
+
+    // Payment endpoints answer asynchronously; the timing covers the full round trip
+    private MvcResult timedAsync(String step, RequestBuilder request) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            MvcResult started = mvc.perform(request).andReturn();
+            started.getAsyncResult(10_000);
+            return mvc.perform(asyncDispatch(started)).andReturn();
+        } finally {
+            latencies.computeIfAbsent(step, k -> new ConcurrentLinkedQueue<>()).add(System.nanoTime() - t0);
+        }
+    }
+
+    private void user(String email) {
+        User u = new User();
+        u.setEmail(email);
+        u.setFullname(email);
+        u.setRole("USER");
+        userRepository.save(u);
+    }
+
+    private void report(int flows, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        log.info("Booking load: {} flows on {} rides ({} seats each), {} threads, {} s, {} flows/s",
+                flows, RIDES, SEATS_PER_RIDE, THREADS, String.format("%.2f", seconds), String.format("%.1f", flows / seconds));
+        log.info("  confirmed={} turnedAway={} replaysRejected={} replaysAccepted={} errors={}",
+                confirmed.get(), turnedAway.get(), replaysRejected.get(), replaysAccepted.get(), errors.get());
+        Map<String, long[]> sorted = new HashMap<>();
+        latencies.forEach((step, samples) -> {
+            long[] s = samples.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(s);
+            sorted.put(step, s);
+        });
+        for (String step : List.of("request", "decide", "initiate-payment", "verify-payment")) {
+            long[] s = sorted.get(step);
+            if (s == null || s.length == 0) continue;
+            log.info(String.format("  %-17s n=%-6d p50=%6.1f ms  p99=%6.1f ms  max=%6.1f ms",
+                    step, s.length, percentile(s, 50), percentile(s, 99), s[s.length - 1] / 1e6));
+        }
+    }
+
+    private static double percentile(long[] sorted, int p) {
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(i, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,82 @@
+package com.carpool.loadtest;
+
+import com.carpool.model.Ride;
+import com.carpool.service.FareEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for fare quoting: the old inline double formula, an uncached
+ * {@link FareEngine#compute} and a cached {@link FareEngine#quote}. Each invocation quotes the
+ * next (ride, seats) pair from a pre-generated working set, so the cache sees the same spread of
+ * rides a busy server would. Run through {@link FareEngineBenchmarkTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FareEngineBenchmark {
+
+    // Power of two so the cursor wraps with a mask
+    private static final int REQUESTS = 1 << 16;
+
+    @Param("500")
+    public int rides;
+
+    private Ride[] rideOf;
+    private int[] seats;
+    private FareEngine engine;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        Ride[] pool = new Ride[rides];
+        for (int i = 0; i < rides; i++) {
+            Ride r = new Ride();
+            r.setId((long) i + 1);
+            r.setPrice(random.nextInt(5_000, 200_000) / 100.0);
+            pool[i] = r;
+        }
+        rideOf = new Ride[REQUESTS];
+        seats = new int[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            rideOf[i] = pool[random.nextInt(rides)];
+            seats[i] = random.nextInt(1, 5);
+        }
+        engine = new FareEngine(rides * 2);
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (REQUESTS - 1);
+    }
+
+    @Benchmark
+    public long legacyDouble() {
+        int i = next();
+        double base = rideOf[i].getPrice() * seats[i];
+        double subtotal = base + base * 0.05;
+        return Math.round((subtotal + subtotal * 0.036) * 100);
+    }
+
+    @Benchmark
+    public long compute() {
+        int i = next();
+        return FareEngine.compute(rideOf[i].getPrice(), seats[i]).totalPaise();
+    }
+
+    @Benchmark
+    public long quoteCached() {
+        int i = next();
+        return engine.quote(rideOf[i], seats[i]).totalPaise();
+    }
+}
@@ -0,0 +1,64 @@
+package com.carpool.loadtest;
+
+import com.carpool.model.Ride;
+import com.carpool.service.FareEngine;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs {@link FareEngineBenchmark} under JMH. The defaults are a short in-process smoke run that
+ * keeps the test suite quick; for real numbers fork and measure for longer, e.g.
+ *
+ *   mvn -B test -Dtest=FareEngineBenchmarkTest -Dbench.fare.forks=2 -Dbench.fare.warmup-iterations=5
+ *       -Dbench.fare.iterations=10 -Dbench.fare.iteration-ms=1000 -Dbench.fare.rides=2000
+ */
+public class FareEngineBenchmarkTest {
+
+    private static final int FORKS = Integer.getInteger("bench.fare.forks", 0);
+    private static final int WARMUP_ITERATIONS = Integer.getInteger("bench.fare.warmup-iterations", 1);
+    private static final int ITERATIONS = Integer.getInteger("bench.fare.iterations", 2);
+    private static final int ITERATION_MS = Integer.getInteger("bench.fare.iteration-ms", 100);
+    private static final String RIDES = System.getProperty("bench.fare.rides", "500");
+
+    @Test
+    public void quoteBenchmark() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(FareEngineBenchmark.class.getName())
+                .forks(FORKS)
+                .warmupIterations(WARMUP_ITERATIONS)
+                .warmupTime(TimeValue.milliseconds(ITERATION_MS))
+                .measurementIterations(ITERATIONS)
+                .measurementTime(TimeValue.milliseconds(ITERATION_MS))
+                .param("rides", RIDES)
+                .shouldFailOnError(true)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    public void cacheNeverChangesAQuote() {
+        SplittableRandom random = new SplittableRandom(7);
+        FareEngine engine = new FareEngine(64);
+        Ride[] rides = new Ride[100];
+        for (int i = 0; i < rides.length; i++) {
+            rides[i] = new Ride();
+            rides[i].setId((long) i + 1);
+            rides[i].setPrice(random.nextInt(5_000, 200_000) / 100.0);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            Ride r = rides[random.nextInt(rides.length)];
+            int seats = random.nextInt(1, 5);
+            assertEquals(FareEngine.compute(r.getPrice(), seats), engine.quote(r, seats));
+        }
+    }
+}
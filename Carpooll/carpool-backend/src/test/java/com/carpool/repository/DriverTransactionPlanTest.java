@@ -0,0 +1,70 @@
+package com.carpool.repository;
+
+import com.carpool.service.DriverTransactionService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Explains the SQL Hibernate actually sends for each filter combination of the driver transactions page
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.carpool.repository.DriverTransactionPlanTest$Recorder")
+@Import(DriverTransactionService.class)
+public class DriverTransactionPlanTest {
+
+    public static class Recorder implements StatementInspector {
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private DriverTransactionService driverTransactions;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void everyFilterCombinationSeeksTheDriverIndex() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2024, 3, 1, 0, 0), to = LocalDateTime.of(2024, 4, 1, 0, 0);
+        LocalDateTime[][] ranges = {{null, null}, {from, null}, {null, to}, {from, to}};
+        for (LocalDateTime[] range : ranges) {
+            Recorder.statements.clear();
+            driverTransactions.findDriverTransactions("plan@example.com", range[0], range[1], null, 20, true);
+
+            List<String> pages = new ArrayList<>();
+            for (String sql : Recorder.statements) {
+                if (sql.contains("driver_email")) pages.add(sql);
+            }
+            assertThat(pages).as("page queries for %s..%s", range[0], range[1]).hasSize(2);
+            assertThat(plan(pages.get(0))).as(pages.get(0)).doesNotContain("TABLESCAN").contains("IDX_BOOKING_DRIVER_PAID");
+            assertThat(plan(pages.get(1))).as(pages.get(1)).doesNotContain("TABLESCAN").contains("IDX_BOOKING_ARCHIVE_DRIVER_PAID");
+        }
+    }
+
+    // H2 explains a statement with its parameters left unbound
+    private String plan(String sql) throws Exception {
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement("EXPLAIN " + sql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getString(1).toUpperCase();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.carpool.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Guards the hot finder queries against regressing to table scans (schema from the entity @Index annotations)
+@DataJpaTest
+public class LookupIndexPlanTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    private String plan(String sql) throws Exception {
+        try (Connection c = dataSource.getConnection();
+             Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery("EXPLAIN " + sql)) {
+            rs.next();
+            return rs.getString(1).toUpperCase();
+        }
+    }
+
+    private void assertUsesIndex(String sql, String index) throws Exception {
+        String p = plan(sql);
+        assertThat(p).as(sql).doesNotContain("TABLESCAN").contains(index);
+    }
+
+    @Test
+    public void bookingLookupsUseIndexes() throws Exception {
+        assertUsesIndex("SELECT * FROM booking WHERE ride_id = 1", "IDX_BOOKING_RIDE");
+        assertUsesIndex("SELECT * FROM booking WHERE requester_id = 1", "IDX_BOOKING_REQUESTER");
+        assertUsesIndex("SELECT 1 FROM booking WHERE transaction_id = 'pi_x'", "UK_BOOKING_TRANSACTION_ID");
+        // Driver transaction pages seek to the cursor within the driver's payments
+        assertUsesIndex("SELECT * FROM booking WHERE driver_email = 'a@b.c' AND payment_completed_at <= TIMESTAMP '2024-01-01 00:00:00'"
+                + " ORDER BY payment_completed_at DESC, id DESC", "IDX_BOOKING_DRIVER_PAID");
+    }
+
+    @Test
+    public void otherFinderLookupsUseIndexes() throws Exception {
+        assertUsesIndex("SELECT * FROM ride WHERE owner_email = 'a@b.c'", "IDX_RIDE_OWNER_EMAIL");
+        // H2 costs a bare user_id lookup the same on the foreign-key index, so bound created_at to pin the feed index
+        assertUsesIndex("SELECT * FROM notifications WHERE user_id = 1 AND created_at < TIMESTAMP '2024-01-01 00:00:00'"
+                + " ORDER BY created_at DESC", "IDX_NOTIFICATIONS_USER_CREATED");
+        assertUsesIndex("SELECT * FROM rating_review WHERE reviewee_id = 1", "IDX_RATING_REVIEW_REVIEWEE");
+        assertUsesIndex("SELECT * FROM rating_review WHERE booking_id IN (1, 2)", "BOOKING_ID");
+        assertUsesIndex("SELECT * FROM car WHERE owner_id = 1", "IDX_CAR_OWNER");
+    }
+}
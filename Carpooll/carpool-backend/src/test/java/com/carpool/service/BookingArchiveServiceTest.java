@@ -0,0 +1,101 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.Refund;
+import com.carpool.model.Ride;
+import com.carpool.repository.ArchivedBookingRepository;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RefundRepository;
+import com.carpool.repository.RideRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Import(TestMailConfig.class)
+@Transactional
+public class BookingArchiveServiceTest {
+
+    @Autowired
+    private BookingArchiveService archiveService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ArchivedBookingRepository archiveRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private RefundRepository refundRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    private Booking booking(Ride r, Booking.Status status, LocalDateTime requestedAt, String tx) {
+        Booking b = new Booking();
+        b.setRideId(r.getId());
+        b.setRequesterId(42L);
+        b.setStatus(status);
+        b.setRequestedAt(requestedAt);
+        b.setTransactionId(tx);
+        return bookingRepository.save(b);
+    }
+
+    @Test
+    public void oldTerminalBookingsMoveToArchiveInChunks() {
+        Ride r = new Ride();
+        r.setOwnerEmail("archive-host@example.com");
+        rideRepository.save(r);
+
+        LocalDateTime old = LocalDateTime.now().minusDays(200);
+        Booking completed = booking(r, Booking.Status.COMPLETED, old, "pi_archive_1");
+        Booking rejected = booking(r, Booking.Status.REJECTED, old, null);
+        Booking cancelled = booking(r, Booking.Status.CANCELLED, old, null);
+        Booking confirmed = booking(r, Booking.Status.CONFIRMED, old, "pi_archive_2");
+        Booking recent = booking(r, Booking.Status.COMPLETED, LocalDateTime.now().minusDays(1), "pi_archive_3");
+        // The refund processor still has to update this one
+        Booking refunding = booking(r, Booking.Status.CANCELLED, old, "pi_archive_4");
+        refundRepository.save(new Refund(refunding.getId(), "pi_archive_4", 10000, Refund.Reason.PASSENGER_CANCELLED));
+
+        ReflectionTestUtils.setField(archiveService, "batchSize", 2);
+        try {
+            assertEquals(3, archiveService.archiveOlderThan(LocalDateTime.now().minusDays(180)));
+        } finally {
+            ReflectionTestUtils.setField(archiveService, "batchSize", 500);
+        }
+        em.flush();
+        em.clear();
+
+        assertFalse(bookingRepository.existsById(completed.getId()));
+        assertFalse(bookingRepository.existsById(rejected.getId()));
+        assertFalse(bookingRepository.existsById(cancelled.getId()));
+        assertTrue(bookingRepository.existsById(confirmed.getId()));
+        assertTrue(bookingRepository.existsById(recent.getId()));
+        assertTrue(bookingRepository.existsById(refunding.getId()));
+        assertEquals(3, archiveRepository.findByRideId(r.getId()).size());
+
+        // Hot reads stay hot unless history is asked for
+        assertEquals(3, archiveService.findByRideId(r.getId(), false).size());
+        assertEquals(6, archiveService.findByRideId(r.getId(), true).size());
+        assertTrue(archiveService.findById(completed.getId(), false).isEmpty());
+        assertEquals(Booking.Status.COMPLETED, archiveService.findById(completed.getId(), true).orElseThrow().getStatus());
+
+        // An archived payment must still count as a duplicate
+        assertFalse(bookingRepository.existsByTransactionId("pi_archive_1"));
+        assertTrue(archiveService.transactionIdExists("pi_archive_1"));
+    }
+}
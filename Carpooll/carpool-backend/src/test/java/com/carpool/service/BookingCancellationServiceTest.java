@@ -0,0 +1,230 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.OutboxMessage;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.model.WaitlistEntry;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.OutboxMessageRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import com.carpool.repository.WaitlistEntryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Not @Transactional: the concurrent cases need committed rows visible to worker threads
+@SpringBootTest
+@Import(TestMailConfig.class)
+public class BookingCancellationServiceTest {
+
+    @Autowired
+    private BookingCancellationService cancellationService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    @Autowired
+    private WaitlistEntryRepository waitlistRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    private Ride ride(int seats, LocalDateTime departure) {
+        Ride r = new Ride();
+        r.setOwnerEmail("cancel-host@example.com");
+        r.setSeatsAvailable(seats);
+        r.setPrice(100.0);
+        r.setDateTime(departure.toString());
+        return rideRepository.save(r);
+    }
+
+    private Booking booking(Ride r, Booking.Status status, int seats, String tx) {
+        Booking b = new Booking();
+        b.setRideId(r.getId());
+        b.setRequesterEmail("cancel-pass@example.com");
+        b.setSeatsRequested(seats);
+        b.setStatus(status);
+        b.setTransactionId(tx);
+        return bookingRepository.save(b);
+    }
+
+    @Test
+    public void cancellingConfirmedBookingRestoresSeatsAndIsRefundable() {
+        Ride r = ride(1, LocalDateTime.now().plusDays(1));
+        Booking b = booking(r, Booking.Status.CONFIRMED, 2, "pi_cancel_1");
+
+        BookingCancellationService.Result result = cancellationService.cancel(b);
+
+        assertTrue(result.seatsRestored());
+        assertTrue(result.refundEligible());
+        assertEquals(3, rideRepository.findById(r.getId()).orElseThrow().getSeatsAvailable());
+        Booking after = bookingRepository.findById(b.getId()).orElseThrow();
+        assertEquals(Booking.Status.CANCELLED, after.getStatus());
+        assertEquals(Boolean.TRUE, after.getRefundEligible());
+
+        // The stale copy still says CONFIRMED, but the compare-and-set refuses a second cancel
+        assertThrows(IllegalStateException.class, () -> cancellationService.cancel(b));
+        assertEquals(3, rideRepository.findById(r.getId()).orElseThrow().getSeatsAvailable());
+    }
+
+    @Test
+    public void deletingRideClosesItsWaitlistAndQueuesTheNotifications() {
+        String from = "Cancel-" + UUID.randomUUID().toString().substring(0, 8);
+        Ride r = ride(0, LocalDateTime.now().plusDays(1));
+        r.setFromLocation(from);
+        r.setToLocation("Elsewhere");
+        rideRepository.save(r);
+        Booking b = booking(r, Booking.Status.PENDING, 1, null);
+
+        User waiting = new User();
+        waiting.setEmail("cancel-waiting-" + from + "@example.com");
+        waiting.setFullname("Waiting");
+        waiting.setRole("USER");
+        userRepository.save(waiting);
+        WaitlistEntry e = new WaitlistEntry();
+        e.setRideId(r.getId());
+        e.setUserId(waiting.getId());
+        e.setUserEmail(waiting.getEmail());
+        e.setSeatsRequested(1);
+        waitlistRepository.save(e);
+
+        BookingCancellationService.RideCancellation rc = cancellationService.cancelRide(r);
+
+        assertEquals(1, rc.bookingsCancelled());
+        assertEquals(1, rc.waitlistClosed());
+        assertEquals(Booking.Status.CANCELLED, bookingRepository.findById(b.getId()).orElseThrow().getStatus());
+        assertEquals(WaitlistEntry.Status.LEFT, waitlistRepository.findById(e.getId()).orElseThrow().getStatus());
+        // Both notifications went through the outbox with the cancellation
+        List<OutboxMessage> queued = outboxRepository.findAll().stream()
+                .filter(m -> m.getPayload().contains(from)).toList();
+        assertEquals(2, queued.size());
+
+        outboxDispatcher.drain();
+    }
+
+    @Test
+    public void departedRideWithPaidPassengersCannotBeDeleted() {
+        Ride r = ride(1, LocalDateTime.now().minusHours(3));
+        Booking paid = booking(r, Booking.Status.CONFIRMED, 1, "pi_departed_" + UUID.randomUUID());
+
+        assertThrows(IllegalStateException.class, () -> cancellationService.cancelRide(r));
+        assertTrue(rideRepository.existsById(r.getId()));
+        assertEquals(Booking.Status.CONFIRMED, bookingRepository.findById(paid.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    public void cancellingPendingBookingLeavesSeatsAlone() {
+        Ride r = ride(2, LocalDateTime.now().plusDays(1));
+        Booking b = booking(r, Booking.Status.PENDING, 1, null);
+
+        BookingCancellationService.Result result = cancellationService.cancel(b);
+
+        assertEquals(false, result.seatsRestored());
+        assertEquals(false, result.refundEligible());
+        assertEquals(2, rideRepository.findById(r.getId()).orElseThrow().getSeatsAvailable());
+    }
+
+    @Test
+    public void concurrentCancelsRestoreSeatsOnce() throws Exception {
+        Ride r = ride(0, LocalDateTime.now().plusDays(1));
+        Booking b = booking(r, Booking.Status.CONFIRMED, 2, "pi_cancel_race");
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger wins = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                Booking copy = bookingRepository.findById(b.getId()).orElseThrow();
+                try {
+                    cancellationService.cancel(copy);
+                    wins.incrementAndGet();
+                } catch (Exception expected) {
+                    // lost the race
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(1, wins.get());
+        assertEquals(2, rideRepository.findById(r.getId()).orElseThrow().getSeatsAvailable());
+    }
+
+    @Test
+    public void concurrentCancelsAndDeductionsConserveSeats() throws Exception {
+        int pairs = 10;
+        Ride r = ride(0, LocalDateTime.now().plusDays(1));
+        List<Booking> confirmed = new ArrayList<>();
+        for (int i = 0; i < pairs; i++) confirmed.add(booking(r, Booking.Status.CONFIRMED, 1, "pi_conserve_" + i));
+
+        ExecutorService pool = Executors.newFixedThreadPool(pairs * 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger deducted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (Booking b : confirmed) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                cancellationService.cancel(b);
+                return null;
+            }));
+            futures.add(pool.submit(() -> {
+                start.await();
+                // Retry until a cancellation has released a seat for us
+                for (int attempt = 0; attempt < 500; attempt++) {
+                    Integer got = deductInTx(r.getId());
+                    if (got == 1) { deducted.incrementAndGet(); break; }
+                    Thread.sleep(5);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        int remaining = rideRepository.findById(r.getId()).orElseThrow().getSeatsAvailable();
+        assertEquals(pairs, deducted.get() + remaining);
+        assertTrue(remaining >= 0);
+    }
+
+    private Integer deductInTx(Long rideId) {
+        return tx.execute(s -> rideRepository.deductSeatsIfAvailable(rideId, 1));
+    }
+}
@@ -0,0 +1,139 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.Refund;
+import com.carpool.model.Ride;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RefundRepository;
+import com.carpool.repository.RideRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Not @Transactional: payments and refunds commit and are rolled up on the async pool
+@SpringBootTest
+@Import(TestMailConfig.class)
+public class EarningsRollupServiceTest {
+
+    @Autowired
+    private EarningsRollupService rollups;
+
+    @Autowired
+    private BookingPaymentService bookingPayments;
+
+    @Autowired
+    private BookingCancellationService cancellationService;
+
+    @Autowired
+    private RefundProcessor refundProcessor;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private RefundRepository refundRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Test
+    public void paymentsAndRefundsAreRolledUpOncePerDriverAndDay() throws Exception {
+        String driver = "rollup-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com";
+        Ride ride = new Ride();
+        ride.setOwnerEmail(driver);
+        ride.setPrice(137.0);
+        ride.setSeatsAvailable(20);
+        ride.setDateTime(LocalDateTime.now().plusDays(1).toString());
+        rideRepository.save(ride);
+
+        List<Booking> bookings = new ArrayList<>();
+        long gross = 0, fee = 0, gst = 0, net = 0;
+        for (int i = 0; i < 4; i++) {
+            Booking b = new Booking();
+            b.setRideId(ride.getId());
+            b.setRequesterEmail("rollup-pass-" + i + "@example.com");
+            b.setSeatsRequested(1 + i % 3);
+            b.setStatus(Booking.Status.ACCEPTED);
+            bookingRepository.save(b);
+            assertTrue(bookingPayments.confirm(b.getId(), "pi_rollup_" + b.getId()).confirmed());
+            bookings.add(b);
+            FareEngine.Quote q = FareEngine.compute(ride.getPrice(), b.getSeatsRequested());
+            gross += q.basePaise();
+            fee += q.platformFeePaise();
+            gst += q.gstPaise();
+            net += q.netToDriverPaise();
+        }
+
+        LocalDate today = LocalDate.now();
+        EarningsRollupService.Period all = await(driver, p -> p.payments() == 4);
+        assertEquals(rupees(gross), all.gross(), 1e-9);
+        assertEquals(rupees(fee), all.platformFee(), 1e-9);
+        assertEquals(rupees(gst), all.gst(), 1e-9);
+        assertEquals(rupees(net), all.net(), 1e-9);
+
+        // Nothing is counted twice however often the rollup runs
+        rollups.rollUpPending();
+        assertEquals(4, rollups.summary(driver, EarningsRollupService.Granularity.DAY, today, today).allTime().payments());
+
+        // The passenger of the last booking cancels; the refund takes its shares back off the day
+        Booking cancelled = bookingRepository.findById(bookings.get(3).getId()).orElseThrow();
+        cancellationService.cancel(cancelled);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (refundRepository.findByBookingId(cancelled.getId()).map(Refund::getStatus).orElse(null) != Refund.Status.SUCCEEDED
+                && System.currentTimeMillis() < deadline) {
+            refundProcessor.processDue();
+            Thread.sleep(50);
+        }
+        Refund refund = refundRepository.findByBookingId(cancelled.getId()).orElseThrow();
+        assertEquals(Refund.Status.SUCCEEDED, refund.getStatus());
+
+        FareEngine.Quote q = FareEngine.compute(ride.getPrice(), cancelled.getSeatsRequested());
+        all = await(driver, p -> p.refunds() == 1);
+        assertEquals(4, all.payments());
+        assertEquals(rupees(gross - q.basePaise()), all.gross(), 1e-9);
+        assertEquals(rupees(net - q.netToDriverPaise()), all.net(), 1e-9);
+        assertEquals(rupees(q.totalPaise()), all.refunded(), 1e-9);
+
+        EarningsRollupService.Summary daily = rollups.summary(driver, EarningsRollupService.Granularity.DAY, today.minusDays(6), today);
+        assertEquals(1, daily.periods().size());
+        assertEquals(today.toString(), daily.periods().get(0).period());
+        EarningsRollupService.Summary monthly = rollups.summary(driver, EarningsRollupService.Granularity.MONTH, today.withDayOfMonth(1), today);
+        assertEquals(YearMonth.from(today).toString(), monthly.periods().get(0).period());
+        assertEquals(all.net(), monthly.periods().get(0).net(), 1e-9);
+
+        // Deliver the confirmation and refund notifications now rather than leave them to whichever test drains next
+        outboxDispatcher.drain();
+    }
+
+    private EarningsRollupService.Period await(String driver, java.util.function.Predicate<EarningsRollupService.Period> done)
+            throws InterruptedException {
+        LocalDate today = LocalDate.now();
+        long deadline = System.currentTimeMillis() + 5_000;
+        EarningsRollupService.Period all = rollups.summary(driver, EarningsRollupService.Granularity.DAY, today, today).allTime();
+        while (!done.test(all) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            all = rollups.summary(driver, EarningsRollupService.Granularity.DAY, today, today).allTime();
+        }
+        assertTrue(done.test(all), "rollup not reached: " + all);
+        return all;
+    }
+
+    private static double rupees(long paise) {
+        return FareEngine.Quote.rupees(paise);
+    }
+}
@@ -0,0 +1,128 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.controller.DriverTransactionController;
+import com.carpool.dto.DriverTransactionDTO;
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Every path that shows or charges a fare (payment intent, checkout session, driver transaction
+ * history, invoice email) must agree to the paisa.
+ */
+@SpringBootTest(properties = {"payments.gateway=simulator", "payments.simulator.latency-ms=0", "payments.simulator.jitter-ms=0"})
+@AutoConfigureMockMvc
+@Import(TestMailConfig.class)
+@Transactional
+public class FareConsistencyTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private FareEngine fareEngine;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private DriverTransactionController driverTransactions;
+
+    @SpyBean
+    private PaymentGateway paymentGateway;
+
+    @Test
+    public void chargedAmountMatchesDriverHistoryAndInvoice() throws Exception {
+        Ride ride = new Ride();
+        ride.setOwnerEmail("fare-driver@example.com");
+        ride.setFromLocation("A");
+        ride.setToLocation("B");
+        ride.setPrice(123.45);
+        ride.setSeatsAvailable(4);
+        ride.setDateTime(LocalDateTime.now().plusDays(1).toString());
+        rideRepository.save(ride);
+
+        Booking b = new Booking();
+        b.setRideId(ride.getId());
+        b.setRequesterEmail("fare-pass@example.com");
+        b.setRequesterName("Fare Passenger");
+        b.setSeatsRequested(3);
+        b.setStatus(Booking.Status.ACCEPTED);
+        bookingRepository.save(b);
+
+        FareEngine.Quote fare = FareEngine.compute(123.45, 3);
+        assertEquals(fare, fareEngine.quote(ride, 3));
+
+        complete("/api/bookings/" + b.getId() + "/initiate-payment");
+        verify(paymentGateway).createPaymentIntent(eq(b.getId()), eq(fare.totalPaise()), anyString(), eq("fare-pass@example.com"));
+
+        complete("/api/bookings/" + b.getId() + "/create-checkout-session");
+        verify(paymentGateway).createCheckoutSession(eq(b.getId()), eq(fare.totalPaise()), anyString());
+
+        b.setTransactionId("pi_fare_consistency");
+        b.setStatus(Booking.Status.CONFIRMED);
+        b.setPaymentCompletedAt(LocalDateTime.now());
+        b.setDriverEmail(ride.getOwnerEmail());
+        bookingRepository.save(b);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> page = (Map<String, Object>) driverTransactions
+                .getDriverTransactions("fare-driver@example.com", null, null, null, 50, false).getBody();
+        @SuppressWarnings("unchecked")
+        List<DriverTransactionDTO> history = (List<DriverTransactionDTO>) page.get("items");
+        assertEquals(1, history.size());
+        DriverTransactionDTO t = history.get(0);
+        assertEquals(FareEngine.Quote.rupees(fare.basePaise()), t.getGrossFare());
+        assertEquals(FareEngine.Quote.rupees(fare.platformFeePaise()), t.getPlatformFee());
+        assertEquals(FareEngine.Quote.rupees(fare.cgstPaise()), t.getCgst());
+        assertEquals(FareEngine.Quote.rupees(fare.sgstPaise()), t.getSgst());
+        assertEquals(FareEngine.Quote.rupees(fare.netToDriverPaise()), t.getNetAmount());
+        // Lines shown to the driver add up to exactly what the passenger paid
+        assertEquals(fare.totalPaise(), Math.round((t.getGrossFare() + t.getPlatformFee() + t.getCgst() + t.getSgst()) * 100));
+
+        String invoice = emailService.invoiceHtml(b, ride);
+        assertTrue(invoice.contains("₹370.35"), "base fare");
+        assertTrue(invoice.contains("₹18.52"), "platform fee");
+        assertTrue(invoice.contains("₹7.00"), "CGST / SGST");
+        assertTrue(invoice.contains("₹%.2f".formatted(FareEngine.Quote.rupees(fare.totalPaise()))), "total paid");
+    }
+
+    private void complete(String path) throws Exception {
+        MvcResult started = mvc.perform(post(path).requestAttr("email", "fare-pass@example.com"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult(5_000);
+        mvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+    }
+}
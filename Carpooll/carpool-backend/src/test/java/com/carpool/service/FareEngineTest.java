@@ -0,0 +1,76 @@
+package com.carpool.service;
+
+import com.carpool.model.Ride;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FareEngineTest {
+
+    @Test
+    public void computesLinesInWholePaiseAndTheyAddUp() {
+        FareEngine.Quote q = FareEngine.compute(100.0, 2);
+        assertEquals(20000, q.basePaise());
+        assertEquals(1000, q.platformFeePaise());
+        assertEquals(378, q.cgstPaise());
+        assertEquals(378, q.sgstPaise());
+        assertEquals(21756, q.totalPaise());
+        assertEquals(19000, q.netToDriverPaise());
+
+        // 123.45 x 3 = 370.35; fee 18.5175 -> 18.52; subtotal 388.87; each GST half 6.99966 -> 7.00
+        FareEngine.Quote odd = FareEngine.compute(123.45, 3);
+        assertEquals(37035, odd.basePaise());
+        assertEquals(1852, odd.platformFeePaise());
+        assertEquals(700, odd.cgstPaise());
+        assertEquals(700, odd.sgstPaise());
+        assertEquals(odd.basePaise() + odd.platformFeePaise() + odd.cgstPaise() + odd.sgstPaise(), odd.totalPaise());
+
+        // 0.1 has no exact double; the per-seat price is still exactly 10 paise
+        assertEquals(10, FareEngine.compute(0.1, 1).unitPaise());
+        // Half a paisa rounds up
+        assertEquals(4501, FareEngine.compute(45.005, 1).unitPaise());
+        assertThrows(IllegalArgumentException.class, () -> FareEngine.compute(-1, 1));
+    }
+
+    @Test
+    public void cachedQuotesFollowPriceChangesAndEviction() {
+        FareEngine engine = new FareEngine(100);
+        Ride ride = ride(7L, 250.0);
+
+        FareEngine.Quote first = engine.quote(ride, 2);
+        assertSame(first, engine.quote(ride, 2));
+        assertEquals(FareEngine.compute(250.0, 2), first);
+        // No seats requested is charged as one seat
+        assertEquals(FareEngine.compute(250.0, 1), engine.quote(ride, 0));
+
+        ride.setPrice(260.0);
+        FareEngine.Quote repriced = engine.quote(ride, 2);
+        assertNotSame(first, repriced);
+        assertEquals(FareEngine.compute(260.0, 2), repriced);
+
+        engine.evict(7L);
+        assertEquals(0, engine.cachedRides());
+        assertNotSame(repriced, engine.quote(ride, 2));
+
+        // Beyond the cached seat range and for unsaved rides the quote is still correct
+        assertEquals(FareEngine.compute(260.0, 20), engine.quote(ride, 20));
+        assertEquals(FareEngine.compute(99.99, 1), engine.quote(ride(null, 99.99), 1));
+    }
+
+    @Test
+    public void cacheStaysWithinItsRideBound() {
+        FareEngine engine = new FareEngine(10);
+        for (long id = 1; id <= 25; id++) engine.quote(ride(id, id), 1);
+        assertEquals(5, engine.cachedRides());
+    }
+
+    private static Ride ride(Long id, double price) {
+        Ride r = new Ride();
+        r.setId(id);
+        r.setPrice(price);
+        return r;
+    }
+}
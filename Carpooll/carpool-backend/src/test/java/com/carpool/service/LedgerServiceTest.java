@@ -0,0 +1,229 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.LedgerEntry;
+import com.carpool.model.Refund;
+import com.carpool.model.Ride;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.LedgerEntryRepository;
+import com.carpool.repository.RefundRepository;
+import com.carpool.repository.RideRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Not @Transactional: postings commit and balances are folded in on the async pool
+@SpringBootTest
+@Import(TestMailConfig.class)
+public class LedgerServiceTest {
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private BookingPaymentService bookingPayments;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private LedgerEntryRepository entryRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private RefundRepository refundRepository;
+
+    @Autowired
+    private BookingCancellationService cancellationService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void confirmationsPostBalancedEntriesOnceAndAdvanceBalances() throws Exception {
+        String driver = "ledger-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com";
+        Ride ride = new Ride();
+        ride.setOwnerEmail(driver);
+        ride.setPrice(137.0);
+        ride.setSeatsAvailable(20);
+        ride.setDateTime(LocalDateTime.now().plusDays(1).toString());
+        rideRepository.save(ride);
+
+        long feesBefore = ledgerService.account(LedgerService.PLATFORM_FEES).balancePaise();
+        long clearingBefore = ledgerService.account(LedgerService.PAYMENTS_CLEARING).balancePaise();
+
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Booking b = new Booking();
+            b.setRideId(ride.getId());
+            b.setRequesterEmail("ledger-pass-" + i + "@example.com");
+            b.setSeatsRequested(1 + i % 2);
+            b.setStatus(Booking.Status.ACCEPTED);
+            bookings.add(bookingRepository.save(b));
+        }
+
+        // Every booking confirmed concurrently, twice, as when the webhook and the passenger race
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<BookingPaymentService.Result>> results = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            for (Booking b : bookings) {
+                results.add(CompletableFuture.supplyAsync(() -> bookingPayments.confirm(b.getId(), "pi_ledger_" + b.getId()), pool));
+            }
+        }
+        for (CompletableFuture<BookingPaymentService.Result> r : results) {
+            assertTrue(r.get(10, TimeUnit.SECONDS).confirmed());
+        }
+        pool.shutdown();
+
+        long expectedDriver = 0, expectedFees = 0, expectedCharged = 0;
+        for (Booking b : bookings) {
+            FareEngine.Quote fare = FareEngine.compute(ride.getPrice(), b.getSeatsRequested());
+            List<LedgerEntry> entries = entryRepository.findByBookingIdOrderById(b.getId());
+            assertEquals(6, entries.size());
+            assertEquals(entries.stream().mapToLong(LedgerEntry::getDebitPaise).sum(),
+                    entries.stream().mapToLong(LedgerEntry::getCreditPaise).sum());
+            expectedDriver += fare.netToDriverPaise();
+            expectedFees += 2 * fare.platformFeePaise();
+            expectedCharged += fare.totalPaise();
+        }
+
+        awaitBalance(LedgerService.driverAccount(driver), expectedDriver);
+        assertEquals(bookings.size(), ledgerService.account(LedgerService.driverAccount(driver)).getEntryCount());
+        // Other tests may post concurrently, so the shared accounts are checked for at least our share
+        assertTrue(ledgerService.account(LedgerService.PLATFORM_FEES).balancePaise() - feesBefore >= expectedFees);
+        assertTrue(clearingBefore - ledgerService.account(LedgerService.PAYMENTS_CLEARING).balancePaise() >= expectedCharged);
+
+        // Deliver the confirmation emails now rather than leave them to whichever test drains next
+        outboxDispatcher.drain();
+    }
+
+    @Test
+    public void refundsReverseThePaymentLines() throws Exception {
+        String driver = "ledger-refund-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com";
+        Ride ride = ride(driver, 212.5);
+        Booking b = new Booking();
+        b.setRideId(ride.getId());
+        b.setRequesterEmail("ledger-refund-pass@example.com");
+        b.setSeatsRequested(2);
+        b.setStatus(Booking.Status.ACCEPTED);
+        bookingRepository.save(b);
+        assertTrue(bookingPayments.confirm(b.getId(), "pi_ledger_refund_" + b.getId()).confirmed());
+        awaitBalance(LedgerService.driverAccount(driver), FareEngine.compute(212.5, 2).netToDriverPaise());
+
+        cancellationService.cancel(bookingRepository.findById(b.getId()).orElseThrow());
+        SimulatedPaymentGateway provider = new SimulatedPaymentGateway(0, 0, 0, 0, "http://localhost:3000/payment-success");
+        try {
+            RefundProcessor processor = new RefundProcessor(provider, refundRepository, bookingRepository,
+                    outboxService, ledgerService, eventPublisher, transactionManager, 10, 8);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (refundRepository.findByBookingId(b.getId()).orElseThrow().getStatus() != Refund.Status.SUCCEEDED
+                    && System.currentTimeMillis() < deadline) {
+                processor.processDue();
+                Thread.sleep(50);
+            }
+        } finally {
+            provider.shutdown();
+        }
+
+        List<LedgerEntry> entries = entryRepository.findByBookingIdOrderById(b.getId());
+        assertEquals(12, entries.size());
+        for (LedgerEntry e : entries.subList(0, 6)) {
+            LedgerEntry reversal = entryRepository.findByBookingIdAndType(b.getId(), e.getType().reversal()).orElseThrow();
+            assertEquals(e.getAccount(), reversal.getAccount());
+            assertEquals(e.getDebitPaise(), reversal.getCreditPaise());
+            assertEquals(e.getCreditPaise(), reversal.getDebitPaise());
+        }
+        awaitBalance(LedgerService.driverAccount(driver), 0);
+        assertEquals(2, ledgerService.account(LedgerService.driverAccount(driver)).getEntryCount());
+
+        outboxDispatcher.drain();
+    }
+
+    @Test
+    public void bookingsPaidBeforeTheLedgerAreBackfilledOnce() throws Exception {
+        String driver = "ledger-backfill-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com";
+        Ride ride = ride(driver, 99.0);
+        LocalDateTime paidAt = LocalDateTime.now().minusMonths(2).withNano(0);
+        Booking kept = paidWithoutLedger(ride, paidAt, Booking.Status.COMPLETED);
+        Booking refunded = paidWithoutLedger(ride, paidAt, Booking.Status.CANCELLED);
+        LocalDateTime refundedAt = paidAt.plusDays(1);
+        new TransactionTemplate(transactionManager).executeWithoutResult(s -> {
+            Refund r = refundRepository.save(new Refund(refunded.getId(), refunded.getTransactionId(),
+                    FareEngine.compute(99.0, 1).totalPaise(), Refund.Reason.PASSENGER_CANCELLED));
+            refundRepository.markSucceeded(r.getId(), "re_backfill_" + r.getId(), refundedAt);
+        });
+
+        assertTrue(ledgerService.backfillUnposted() >= 2);
+        // Posted bookings are not picked up again
+        ledgerService.backfillUnposted();
+
+        List<LedgerEntry> keptLines = entryRepository.findByBookingIdOrderById(kept.getId());
+        assertEquals(6, keptLines.size());
+        assertTrue(keptLines.stream().allMatch(e -> e.getCreatedAt().equals(paidAt)));
+        List<LedgerEntry> refundedLines = entryRepository.findByBookingIdOrderById(refunded.getId());
+        assertEquals(12, refundedLines.size());
+        assertEquals(refundedAt, entryRepository.findByBookingIdAndType(refunded.getId(),
+                LedgerEntry.Type.REFUND_DRIVER_PAYABLE).orElseThrow().getCreatedAt());
+
+        ledgerService.applyPending();
+        assertEquals(FareEngine.compute(99.0, 1).netToDriverPaise(),
+                ledgerService.account(LedgerService.driverAccount(driver)).balancePaise());
+    }
+
+    private Ride ride(String driver, double price) {
+        Ride ride = new Ride();
+        ride.setOwnerEmail(driver);
+        ride.setPrice(price);
+        ride.setSeatsAvailable(20);
+        ride.setDateTime(LocalDateTime.now().plusDays(1).toString());
+        return rideRepository.save(ride);
+    }
+
+    private Booking paidWithoutLedger(Ride ride, LocalDateTime paidAt, Booking.Status status) {
+        Booking b = new Booking();
+        b.setRideId(ride.getId());
+        b.setRequesterEmail("ledger-backfill-pass@example.com");
+        b.setSeatsRequested(1);
+        b.setStatus(status);
+        b.setPaymentCompletedAt(paidAt);
+        b = bookingRepository.save(b);
+        b.setTransactionId("pi_backfill_" + b.getId());
+        return bookingRepository.save(b);
+    }
+
+    private void awaitBalance(String account, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (ledgerService.account(account).balancePaise() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, ledgerService.account(account).balancePaise());
+    }
+}
@@ -0,0 +1,113 @@
+package com.carpool.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test stand-in for Stripe's side of the webhook: builds event payloads the way Stripe shapes
+ * them, signs them with the endpoint secret, and replays a stream of events at high rate,
+ * in shuffled order and with duplicate deliveries.
+ */
+class LocalStripe {
+
+    /** Delivers one signed event and returns the HTTP status the endpoint answered with. */
+    interface Endpoint {
+        int deliver(String payload, String signatureHeader) throws Exception;
+    }
+
+    record Replay(int deliveries, long elapsedNanos, Map<Integer, Integer> statuses) {
+        double perSecond() {
+            return deliveries / (elapsedNanos / 1e9);
+        }
+    }
+
+    private final String secret;
+
+    LocalStripe(String secret) {
+        this.secret = secret;
+    }
+
+    String paymentIntentSucceeded(long bookingId, String paymentIntentId) {
+        return event("payment_intent.succeeded", "{\"id\":\"" + paymentIntentId + "\",\"object\":\"payment_intent\","
+                + "\"status\":\"succeeded\",\"metadata\":{\"bookingId\":\"" + bookingId + "\"}}");
+    }
+
+    String checkoutSessionCompleted(long bookingId, String paymentIntentId) {
+        return event("checkout.session.completed", "{\"id\":\"cs_" + shortId() + "\",\"object\":\"checkout.session\","
+                + "\"payment_status\":\"paid\",\"payment_intent\":\"" + paymentIntentId + "\","
+                + "\"client_reference_id\":\"" + bookingId + "\"}");
+    }
+
+    String event(String type, String object) {
+        return "{\"id\":\"evt_" + shortId() + "\",\"object\":\"event\",\"type\":\"" + type + "\","
+                + "\"created\":" + nowSeconds() + ",\"data\":{\"object\":" + object + "}}";
+    }
+
+    String sign(String payload) {
+        return sign(payload, nowSeconds());
+    }
+
+    String sign(String payload, long timestamp) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] sig = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+            return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(sig);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sends every event {@code copies} times, shuffled, from {@code threads} concurrent senders.
+     */
+    Replay replay(List<String> events, int copies, int threads, Endpoint endpoint) throws Exception {
+        List<String> deliveries = new ArrayList<>();
+        for (int i = 0; i < copies; i++) deliveries.addAll(events);
+        Collections.shuffle(deliveries);
+
+        Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (String payload : deliveries) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                int status = endpoint.deliver(payload, sign(payload));
+                statuses.computeIfAbsent(status, k -> new AtomicInteger()).incrementAndGet();
+                return null;
+            }));
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - t0;
+        pool.shutdown();
+
+        Map<Integer, Integer> counts = new ConcurrentHashMap<>();
+        statuses.forEach((k, v) -> counts.put(k, v.get()));
+        return new Replay(deliveries.size(), elapsed, counts);
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static String shortId() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+    }
+}
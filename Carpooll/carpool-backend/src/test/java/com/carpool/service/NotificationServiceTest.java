@@ -0,0 +1,79 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Notification;
+import com.carpool.model.User;
+import com.carpool.repository.NotificationRepository;
+import com.carpool.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Not @Transactional: the counter is moved by bulk updates that must commit with each call
+@SpringBootTest
+@Import(TestMailConfig.class)
+public class NotificationServiceTest {
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    public void unreadCounterFollowsCreatesAndReads() throws Exception {
+        User u = new User();
+        u.setEmail("bell-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com");
+        u.setFullname("Bell");
+        u.setRole("USER");
+        userRepository.save(u);
+
+        // Notifications from before the counter existed are counted on the first read
+        Notification first = notificationService.create(u, "One", "first");
+        notificationService.create(u, "Two", "second");
+        assertEquals(2, notificationService.getUnreadCount(u.getId()));
+
+        // Concurrent creates, as when several bookings notify the same host at once
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<CompletableFuture<Notification>> creates = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            int n = i;
+            creates.add(CompletableFuture.supplyAsync(() -> notificationService.create(u, "N" + n, "concurrent"), pool));
+        }
+        for (CompletableFuture<Notification> c : creates) c.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+        assertEquals(14, notificationService.getUnreadCount(u.getId()));
+
+        notificationService.markAsRead(first.getId());
+        notificationService.markAsRead(first.getId()); // already read: no change
+        assertEquals(13, notificationService.getUnreadCount(u.getId()));
+
+        // Saving the user elsewhere must not overwrite the counter
+        User reloaded = userRepository.findById(u.getId()).orElseThrow();
+        reloaded.setPhone("9999999999");
+        userRepository.save(reloaded);
+        assertEquals(13, notificationService.getUnreadCount(u.getId()));
+
+        notificationService.markAllAsRead(u);
+        assertEquals(0, notificationService.getUnreadCount(u.getId()));
+        assertEquals(0, notificationRepository.countByUserAndIsReadFalse(u));
+
+        notificationService.create(u, "Later", "after reading");
+        assertEquals(1, notificationService.getUnreadCount(u.getId()));
+        assertEquals(1, notificationRepository.countByUserAndIsReadFalse(u));
+    }
+}
@@ -0,0 +1,172 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.OutboxMessage;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.NotificationRepository;
+import com.carpool.repository.OutboxMessageRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import jakarta.mail.Message;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+@Import(TestMailConfig.class)
+@Transactional
+public class OutboxDispatcherTest {
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @SpyBean
+    private JavaMailSender mailSender;
+
+    @Test
+    public void enqueuedNotificationIsDeliveredOnDrain() {
+        User u = new User(); u.setEmail("outbox-user@example.com"); u.setFullname("Outbox"); u.setRole("USER");
+        userRepository.save(u);
+
+        outboxService.notifyByEmail(u.getEmail(), "Hello", "From the outbox", "INFO", "/");
+        assertTrue(notificationRepository.findByUserOrderByCreatedAtDesc(u).isEmpty());
+
+        outboxDispatcher.drain();
+        em.flush(); em.clear();
+
+        var notes = notificationRepository.findByUserOrderByCreatedAtDesc(u);
+        assertEquals(1, notes.size());
+        assertEquals("Hello", notes.get(0).getTitle());
+    }
+
+    @Test
+    public void failedDeliveryIsRescheduledWithBackoff() {
+        OutboxMessage m = outboxRepository.save(new OutboxMessage(OutboxMessage.Kind.NOTIFICATION, "not json"));
+
+        LocalDateTime before = LocalDateTime.now();
+        assertEquals(0, outboxDispatcher.drain());
+        em.flush(); em.clear();
+
+        OutboxMessage after = outboxRepository.findById(m.getId()).orElse(null);
+        assertNotNull(after);
+        assertEquals(OutboxMessage.Status.PENDING, after.getStatus());
+        assertEquals(1, after.getAttempts());
+        assertNotNull(after.getLastError());
+        assertTrue(after.getNextAttemptAt().isAfter(before));
+    }
+
+    @Test
+    public void emailIsOnlyMarkedSentOnceTheMailServerTakesIt() {
+        Ride ride = new Ride();
+        ride.setOwnerEmail("outbox-host@example.com");
+        rideRepository.save(ride);
+        Booking b = new Booking();
+        b.setRideId(ride.getId());
+        b.setRequesterEmail("outbox-rider@example.com");
+        b.setSeatsRequested(1);
+        b.setStatus(Booking.Status.ACCEPTED);
+        bookingRepository.save(b);
+
+        doThrow(new MailSendException("SMTP down")).when(mailSender).send(any(MimeMessage.class));
+        outboxService.sendEmail(OutboxService.Email.BOOKING_ACCEPTED, b.getId());
+        assertEquals(0, outboxDispatcher.drain());
+        em.flush(); em.clear();
+
+        OutboxMessage failed = outboxRepository.findAll().stream()
+                .filter(m -> m.getKind() == OutboxMessage.Kind.EMAIL && m.getPayload().contains("\"bookingId\":" + b.getId()))
+                .findFirst().orElseThrow();
+        assertEquals(OutboxMessage.Status.PENDING, failed.getStatus());
+        assertEquals(1, failed.getAttempts());
+        assertTrue(failed.getLastError().contains("SMTP down"), failed.getLastError());
+
+        // Mail server is back: the retry sends it and only then is the message done
+        Mockito.reset(mailSender);
+        failed.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        outboxRepository.saveAndFlush(failed);
+        assertEquals(1, outboxDispatcher.drain());
+        em.flush(); em.clear();
+
+        verify(mailSender).send(any(MimeMessage.class));
+        assertEquals(OutboxMessage.Status.SENT, outboxRepository.findById(failed.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    public void ratingRequestRetryOnlyResendsTheFailedRecipient() {
+        Ride ride = new Ride();
+        ride.setOwnerEmail("outbox-rate-host@example.com");
+        rideRepository.save(ride);
+        Booking b = new Booking();
+        b.setRideId(ride.getId());
+        b.setRequesterEmail("outbox-rate-rider@example.com");
+        b.setSeatsRequested(1);
+        b.setStatus(Booking.Status.COMPLETED);
+        bookingRepository.save(b);
+
+        // The driver's mailbox rejects mail; the passenger's accepts it
+        AtomicInteger toRider = new AtomicInteger();
+        doAnswer(inv -> {
+            String to = ((MimeMessage) inv.getArgument(0)).getRecipients(Message.RecipientType.TO)[0].toString();
+            if (to.equals(ride.getOwnerEmail())) throw new MailSendException("mailbox full");
+            toRider.incrementAndGet();
+            return null;
+        }).when(mailSender).send(any(MimeMessage.class));
+
+        outboxService.sendEmail(OutboxService.Email.RATING_REQUEST_PASSENGER, b.getId());
+        outboxService.sendEmail(OutboxService.Email.RATING_REQUEST_DRIVER, b.getId());
+        assertEquals(1, outboxDispatcher.drain());
+        em.flush(); em.clear();
+
+        OutboxMessage failed = outboxRepository.findAll().stream()
+                .filter(m -> m.getStatus() == OutboxMessage.Status.PENDING && m.getPayload().contains("\"bookingId\":" + b.getId()))
+                .findFirst().orElseThrow();
+        assertTrue(failed.getPayload().contains("RATING_REQUEST_DRIVER"), failed.getPayload());
+
+        failed.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        outboxRepository.saveAndFlush(failed);
+        assertEquals(0, outboxDispatcher.drain());
+        assertEquals(1, toRider.get());
+    }
+}
@@ -0,0 +1,156 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.ArchivedBooking;
+import com.carpool.model.Booking;
+import com.carpool.model.PassengerBookingView;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.repository.ArchivedBookingRepository;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.PassengerBookingViewRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Not @Transactional: the projection is written asynchronously after the booking transaction commits
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(TestMailConfig.class)
+public class PassengerBookingViewProjectorTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingCancellationService cancellationService;
+
+    @Autowired
+    private PassengerBookingViewRepository viewRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ArchivedBookingRepository archivedBookingRepository;
+
+    @Autowired
+    private PassengerBookingViewProjector projector;
+
+    private User user(String email, String name, String phone) {
+        User u = new User();
+        u.setEmail(email);
+        u.setFullname(name);
+        u.setPhone(phone);
+        u.setRole("USER");
+        return userRepository.save(u);
+    }
+
+    private Booking book(Ride r, User passenger) {
+        Booking b = new Booking();
+        b.setRideId(r.getId());
+        b.setRequesterId(passenger.getId());
+        b.setRequesterEmail(passenger.getEmail());
+        b.setSeatsRequested(1);
+        return bookingService.save(b);
+    }
+
+    private PassengerBookingView awaitView(Long bookingId, Booking.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            PassengerBookingView v = viewRepository.findById(bookingId).orElse(null);
+            if (v != null && v.getStatus() == status) return v;
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("view row " + bookingId + " never reached " + status);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void viewFollowsBookingChangesAndServesPagedHistory() throws Exception {
+        User driver = user("pbv-driver@example.com", "View Driver", "9000000001");
+        User passenger = user("pbv-pass@example.com", "View Passenger", null);
+
+        Ride r = new Ride();
+        r.setOwnerEmail(driver.getEmail());
+        r.setOwnerId(driver.getId());
+        r.setDriverName("View Driver");
+        r.setFromLocation("Airport");
+        r.setToLocation("Central");
+        r.setPrice(250.0);
+        r.setSeatsAvailable(4);
+        r.setDateTime(LocalDateTime.now().plusDays(2).toString());
+        rideRepository.save(r);
+
+        Booking first = book(r, passenger);
+        Booking second = book(r, passenger);
+        Booking latest = book(r, passenger);
+
+        PassengerBookingView v = awaitView(first.getId(), Booking.Status.PENDING);
+        awaitView(second.getId(), Booking.Status.PENDING);
+        awaitView(latest.getId(), Booking.Status.PENDING);
+        assertEquals("Airport", v.getFromLocation());
+        assertEquals("9000000001", v.getDriverPhone());
+        assertEquals(driver.getId(), v.getDriverId());
+
+        cancellationService.cancel(bookingService.findById(first.getId()).orElseThrow());
+        awaitView(first.getId(), Booking.Status.CANCELLED);
+
+        mvc.perform(get("/api/bookings/my/history").param("page", "0").param("size", "2").requestAttr("email", passenger.getEmail()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(3))
+                .andExpect(jsonPath("$.totalPages").value(2))
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.content[0].bookingId").value(latest.getId()))
+                .andExpect(jsonPath("$.content[0].toLocation").value("Central"))
+                .andExpect(jsonPath("$.content[0].driverName").value("View Driver"));
+
+        mvc.perform(get("/api/bookings/my/history").param("page", "1").param("size", "2").requestAttr("email", passenger.getEmail()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.last").value(true))
+                .andExpect(jsonPath("$.content[0].bookingId").value(first.getId()))
+                .andExpect(jsonPath("$.content[0].status").value("CANCELLED"));
+    }
+
+    @Test
+    public void archivedBookingKeepsItsRow() throws Exception {
+        User passenger = user("pbv-archived@example.com", "Archived Passenger", null);
+        Ride r = new Ride();
+        r.setFromLocation("Harbour");
+        r.setSeatsAvailable(2);
+        rideRepository.save(r);
+        Booking b = book(r, passenger);
+        awaitView(b.getId(), Booking.Status.PENDING);
+
+        archivedBookingRepository.save(ArchivedBooking.from(b, LocalDateTime.now()));
+        bookingRepository.deleteById(b.getId());
+        projector.refresh(b.getId());
+        assertTrue(viewRepository.findById(b.getId()).isPresent());
+
+        // A booking that is gone altogether takes its row with it
+        archivedBookingRepository.deleteById(b.getId());
+        projector.refresh(b.getId());
+        assertTrue(viewRepository.findById(b.getId()).isEmpty());
+    }
+}
@@ -0,0 +1,139 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// Not @Transactional: intents are recorded on the async pool in their own transactions
+@SpringBootTest(properties = {"payments.gateway=simulator", "payments.simulator.latency-ms=100", "payments.simulator.jitter-ms=0"})
+@Import(TestMailConfig.class)
+public class PaymentIntentServiceTest {
+
+    @Autowired
+    private PaymentIntentService paymentIntents;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @SpyBean
+    private PaymentGateway paymentGateway;
+
+    @Test
+    public void concurrentAndRepeatedInitiationsShareOneIntent() throws Exception {
+        Ride ride = ride(150.0);
+        Booking b = booking(ride);
+
+        int clicks = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(clicks);
+        CountDownLatch go = new CountDownLatch(1);
+        List<CompletableFuture<PaymentGateway.PaymentIntent>> results = new ArrayList<>();
+        for (int i = 0; i < clicks; i++) {
+            CompletableFuture<PaymentGateway.PaymentIntent> result = new CompletableFuture<>();
+            results.add(result);
+            pool.execute(() -> {
+                try {
+                    go.await();
+                    paymentIntents.intentFor(b.getId(), ride).whenComplete((intent, err) -> {
+                        if (err != null) result.completeExceptionally(err);
+                        else result.complete(intent);
+                    });
+                } catch (InterruptedException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+        go.countDown();
+        Set<String> ids = new HashSet<>();
+        for (CompletableFuture<PaymentGateway.PaymentIntent> r : results) ids.add(r.get(5, TimeUnit.SECONDS).id());
+        pool.shutdown();
+
+        assertEquals(1, ids.size());
+        String intentId = ids.iterator().next();
+        verify(paymentGateway, times(1)).createPaymentIntent(eq(b.getId()), anyLong(), anyString(), anyString());
+
+        Booking stored = awaitRecorded(b.getId(), intentId);
+        assertEquals(FareEngine.compute(150.0, 2).totalPaise(), stored.getPaymentIntentAmountPaise());
+        LocalDateTime initiatedAt = stored.getPaymentInitiatedAt();
+
+        // A later retry is answered from the booking without calling the gateway
+        assertEquals(intentId, paymentIntents.intentFor(b.getId(), ride).get(5, TimeUnit.SECONDS).id());
+        verify(paymentGateway, times(1)).createPaymentIntent(eq(b.getId()), anyLong(), anyString(), anyString());
+        assertEquals(initiatedAt, bookingRepository.findById(b.getId()).orElseThrow().getPaymentInitiatedAt());
+    }
+
+    @Test
+    public void priceChangeCreatesAFreshIntent() throws Exception {
+        Ride ride = ride(90.0);
+        Booking b = booking(ride);
+
+        String first = paymentIntents.intentFor(b.getId(), ride).get(5, TimeUnit.SECONDS).id();
+        awaitRecorded(b.getId(), first);
+        ride.setPrice(95.0);
+        rideRepository.save(ride);
+        String second = paymentIntents.intentFor(b.getId(), ride).get(5, TimeUnit.SECONDS).id();
+
+        assertNotEquals(first, second);
+        verify(paymentGateway, times(2)).createPaymentIntent(eq(b.getId()), anyLong(), anyString(), anyString());
+        assertEquals(FareEngine.compute(95.0, 2).totalPaise(), awaitRecorded(b.getId(), second).getPaymentIntentAmountPaise());
+    }
+
+    // The intent is answered before it is stored; a retry in between joins the same flight
+    private Booking awaitRecorded(Long bookingId, String intentId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            Booking b = bookingRepository.findById(bookingId).orElseThrow();
+            if (intentId.equals(b.getPaymentIntentId()) || System.currentTimeMillis() > deadline) {
+                assertEquals(intentId, b.getPaymentIntentId());
+                return b;
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private Ride ride(double price) {
+        Ride ride = new Ride();
+        ride.setOwnerEmail("intent-host@example.com");
+        ride.setPrice(price);
+        ride.setSeatsAvailable(4);
+        ride.setDateTime(LocalDateTime.now().plusDays(1).toString());
+        return rideRepository.save(ride);
+    }
+
+    private Booking booking(Ride ride) {
+        Booking b = new Booking();
+        b.setRideId(ride.getId());
+        b.setRequesterEmail("intent-pass@example.com");
+        b.setSeatsRequested(2);
+        b.setStatus(Booking.Status.ACCEPTED);
+        return bookingRepository.save(b);
+    }
+}
@@ -0,0 +1,121 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.PaymentDiscrepancy;
+import com.carpool.model.Ride;
+import com.carpool.repository.ArchivedBookingRepository;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.PaymentDiscrepancyRepository;
+import com.carpool.repository.RideRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Not @Transactional: the job pages and writes in its own transactions
+@SpringBootTest
+@Import(TestMailConfig.class)
+public class PaymentReconciliationServiceTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ArchivedBookingRepository archiveRepository;
+
+    @Autowired
+    private PaymentDiscrepancyRepository discrepancyRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void pagesThroughProviderIntentsAndFlagsBothKindsOfMismatch() {
+        // A provider of our own, so only this test's payments are listed
+        SimulatedPaymentGateway provider = new SimulatedPaymentGateway(0, 0, 0, 0, "http://localhost/{CHECKOUT_SESSION_ID}");
+        PaymentReconciliationService job = new PaymentReconciliationService(provider, bookingRepository,
+                archiveRepository, discrepancyRepository, transactionManager, PAGE_SIZE, 48, 15, 1440);
+
+        Ride ride = new Ride();
+        ride.setOwnerEmail("reconcile-host@example.com");
+        ride.setPrice(100.0);
+        ride.setSeatsAvailable(400);
+        ride.setDateTime(LocalDateTime.now().plusDays(1).toString());
+        rideRepository.save(ride);
+
+        // 300 intents: 250 paid, of which 240 confirmed a booking; 5 bookings confirmed on unpaid intents
+        LocalDateTime paidAt = LocalDateTime.now();
+        List<Booking> bookings = new ArrayList<>();
+        List<String> intents = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Booking b = new Booking();
+            b.setRideId(ride.getId());
+            b.setRequesterEmail("reconcile-pass-" + i + "@example.com");
+            b.setStatus(Booking.Status.ACCEPTED);
+            bookings.add(bookingRepository.save(b));
+            intents.add(provider.createPaymentIntent(b.getId(), 10_000, "ride", null).join().id());
+        }
+        Set<String> paidNotConfirmed = new HashSet<>();
+        Set<String> confirmedNotPaid = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            String pi = intents.get(i);
+            if (i < 250) provider.succeedPaymentIntent(pi);
+            boolean confirmed = i < 240 || i >= 295;
+            if (i >= 240 && i < 250) paidNotConfirmed.add(pi);
+            if (i >= 295) confirmedNotPaid.add(pi);
+            if (!confirmed) continue;
+            Booking b = bookings.get(i);
+            b.setTransactionId(pi);
+            b.setStatus(Booking.Status.CONFIRMED);
+            b.setPaymentCompletedAt(paidAt);
+        }
+        bookingRepository.saveAll(bookings);
+
+        LocalDateTime from = paidAt.minusHours(1);
+        PaymentReconciliationService.Report report = job.reconcile(from, from, paidAt.plusMinutes(1));
+
+        assertEquals(300, report.intentsScanned());
+        assertEquals(300 / PAGE_SIZE, report.pages());
+        assertEquals(240, report.matched());
+        assertEquals(10, report.paidNotConfirmed());
+        // Bookings confirmed by other tests in the window are not paid at our provider either
+        assertTrue(report.confirmedNotPaid() >= 5);
+
+        List<String> flaggedIds = new ArrayList<>(paidNotConfirmed);
+        flaggedIds.addAll(confirmedNotPaid);
+        List<PaymentDiscrepancy> flagged = discrepancyRepository.findByTransactionIdIn(flaggedIds);
+        assertEquals(15, flagged.size());
+        for (PaymentDiscrepancy d : flagged) {
+            PaymentDiscrepancy.Kind expected = paidNotConfirmed.contains(d.getTransactionId())
+                    ? PaymentDiscrepancy.Kind.PAID_NOT_CONFIRMED
+                    : PaymentDiscrepancy.Kind.CONFIRMED_NOT_PAID;
+            assertEquals(expected, d.getKind());
+        }
+        assertNotNull(bookingRepository.findById(bookings.get(0).getId()).orElseThrow().getReconciledAt());
+        assertNull(bookingRepository.findById(bookings.get(299).getId()).orElseThrow().getReconciledAt());
+
+        // The next night sees the same window again: nothing new is flagged
+        PaymentReconciliationService.Report again = job.reconcile(from, from, paidAt.plusMinutes(1));
+        assertEquals(240, again.matched());
+        assertEquals(15, discrepancyRepository.findByTransactionIdIn(flaggedIds).size());
+        provider.shutdown();
+    }
+}
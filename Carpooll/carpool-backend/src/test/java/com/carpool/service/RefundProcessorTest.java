@@ -0,0 +1,176 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.PassengerBookingView;
+import com.carpool.model.Refund;
+import com.carpool.model.Ride;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.PassengerBookingViewRepository;
+import com.carpool.repository.RefundRepository;
+import com.carpool.repository.RideRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Refunds are issued through a local simulator rather than the application's gateway, so failures
+ * can be injected. The scheduled processor may pick up some of the same refunds, so assertions are
+ * on the refund rows, which only one processor can claim at a time.
+ */
+// Not @Transactional: cancellations and refunds commit and the history is projected asynchronously
+@SpringBootTest
+@Import(TestMailConfig.class)
+public class RefundProcessorTest {
+
+    private static final String SUCCESS_URL = "http://localhost:3000/payment-success?session_id={CHECKOUT_SESSION_ID}";
+
+    @Autowired
+    private BookingCancellationService cancellationService;
+
+    @Autowired
+    private RefundRepository refundRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private PassengerBookingViewRepository viewRepository;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void cancelledPaidBookingsAreRefundedOnceDespiteProviderFailures() throws Exception {
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        Ride ride = new Ride();
+        ride.setOwnerEmail("refund-host-" + tag + "@example.com");
+        ride.setPrice(150.0);
+        ride.setSeatsAvailable(10);
+        ride.setDateTime(LocalDateTime.now().plusDays(1).toString());
+        rideRepository.save(ride);
+
+        Booking cancelledByPassenger = booking(ride, Booking.Status.CONFIRMED, 2, "pi_refund_a_" + tag);
+        Booking paid1 = booking(ride, Booking.Status.CONFIRMED, 1, "pi_refund_b_" + tag);
+        Booking paid2 = booking(ride, Booking.Status.CONFIRMED, 3, "pi_refund_c_" + tag);
+        Booking unpaid = booking(ride, Booking.Status.ACCEPTED, 1, null);
+
+        cancellationService.cancel(cancelledByPassenger);
+        BookingCancellationService.RideCancellation rc = cancellationService.cancelRide(ride);
+        assertEquals(3, rc.bookingsCancelled());
+        assertEquals(2, rc.refundsEnqueued());
+        assertFalse(rideRepository.existsById(ride.getId()));
+
+        // Only paid bookings are refunded; unpaid ones are just cancelled
+        assertTrue(refundRepository.existsByBookingId(paid1.getId()));
+        assertFalse(refundRepository.existsByBookingId(unpaid.getId()));
+        assertEquals(Booking.Status.CANCELLED, bookingRepository.findById(unpaid.getId()).orElseThrow().getStatus());
+
+        List<Booking> paid = List.of(cancelledByPassenger, paid1, paid2);
+        for (Booking b : paid) {
+            Refund r = refundRepository.findByBookingId(b.getId()).orElseThrow();
+            assertEquals(FareEngine.compute(150.0, b.getSeatsRequested()).totalPaise(), r.getAmountPaise());
+            assertEquals(b.getTransactionId(), r.getPaymentIntentId());
+        }
+
+        SimulatedPaymentGateway provider = new SimulatedPaymentGateway(0, 0, 1.0, 0, SUCCESS_URL);
+        try {
+            // Batches of two, so the three refunds take two batches
+            RefundProcessor processor = new RefundProcessor(provider, refundRepository, bookingRepository,
+                    outboxService, ledgerService, eventPublisher, transactionManager, 2, 8);
+
+            // Provider down: every claimed refund fails and backs off, nothing is marked refunded
+            assertEquals(0, processor.processDue());
+            assertEquals(0, provider.refundsIssued());
+
+            provider.injectFaults(0, 0, 0);
+            long deadline = System.currentTimeMillis() + 15_000;
+            while (!allSucceeded(paid) && System.currentTimeMillis() < deadline) {
+                processor.processDue();
+                Thread.sleep(200);
+            }
+            assertTrue(allSucceeded(paid));
+            assertTrue(provider.refundsIssued() <= paid.size());
+
+            // Nothing is left to issue, and a replayed attempt gets the original refund back
+            assertEquals(0, processor.processDue());
+            Refund done = refundRepository.findByBookingId(paid1.getId()).orElseThrow();
+            assertNotNull(done.getProviderRefundId());
+            assertNotNull(done.getCompletedAt());
+            assertNull(done.getLastError());
+            PaymentGateway.RefundReceipt first = provider.refund(done.getPaymentIntentId(), done.getAmountPaise(), done.idempotencyKey()).join();
+            long issued = provider.refundsIssued();
+            assertEquals(first.id(), provider.refund(done.getPaymentIntentId(), done.getAmountPaise(), done.idempotencyKey()).join().id());
+            assertEquals(issued, provider.refundsIssued());
+        } finally {
+            provider.shutdown();
+        }
+
+        for (Booking b : paid) {
+            Booking after = bookingRepository.findById(b.getId()).orElseThrow();
+            assertEquals(Refund.Status.SUCCEEDED, after.getRefundStatus());
+            assertNotNull(after.getRefundedAt());
+            PassengerBookingView v = awaitRefundInHistory(b.getId());
+            assertEquals(Booking.Status.CANCELLED, v.getStatus());
+            assertNotNull(v.getRefundedAt());
+        }
+
+        // Deliver the refund notifications now rather than leave them to whichever test drains next
+        outboxDispatcher.drain();
+    }
+
+    private Booking booking(Ride ride, Booking.Status status, int seats, String transactionId) {
+        Booking b = new Booking();
+        b.setRideId(ride.getId());
+        b.setRequesterEmail("refund-pass@example.com");
+        b.setSeatsRequested(seats);
+        b.setStatus(status);
+        b.setTransactionId(transactionId);
+        return bookingRepository.save(b);
+    }
+
+    private boolean allSucceeded(List<Booking> bookings) {
+        return bookings.stream().allMatch(b -> refundRepository.findByBookingId(b.getId())
+                .map(r -> r.getStatus() == Refund.Status.SUCCEEDED).orElse(false));
+    }
+
+    private PassengerBookingView awaitRefundInHistory(Long bookingId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            PassengerBookingView v = viewRepository.findById(bookingId).orElse(null);
+            if (v != null && v.getRefundStatus() == Refund.Status.SUCCEEDED) return v;
+            Thread.sleep(20);
+        }
+        PassengerBookingView v = viewRepository.findById(bookingId).orElseThrow();
+        assertEquals(Refund.Status.SUCCEEDED, v.getRefundStatus());
+        return v;
+    }
+}
@@ -0,0 +1,129 @@
+package com.carpool.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ResilientPaymentGatewayTest {
+
+    private static final String SUCCESS_URL = "http://localhost:3000/payment-success?session_id={CHECKOUT_SESSION_ID}";
+
+    @Test
+    public void opensOnFailuresThenLetsOneProbeThrough() throws Exception {
+        SimulatedPaymentGateway provider = new SimulatedPaymentGateway(0, 0, 1.0, 0, SUCCESS_URL);
+        ResilientPaymentGateway gateway = new ResilientPaymentGateway(provider,
+                new ResilientPaymentGateway.Settings(8, 10, 5, 50, 200, 1000, 1000, 1000, 1000, 1000));
+        try {
+            for (int i = 0; i < 5; i++) assertEquals(502, status(gateway.createPaymentIntent(1L, 100, "ride", null)));
+            assertEquals(ResilientPaymentGateway.State.OPEN, gateway.state());
+
+            // Open: rejected without reaching the provider
+            assertEquals(503, status(gateway.createPaymentIntent(1L, 100, "ride", null)));
+            Map<String, Object> m = gateway.metrics();
+            assertEquals(5L, m.get("calls"));
+            assertEquals(1L, m.get("rejectedOpen"));
+
+            // Still failing after the open period: the probe fails and the circuit opens again
+            Thread.sleep(250);
+            assertEquals(ResilientPaymentGateway.State.HALF_OPEN, gateway.state());
+            assertEquals(502, status(gateway.createPaymentIntent(1L, 100, "ride", null)));
+            assertEquals(ResilientPaymentGateway.State.OPEN, gateway.state());
+
+            // Provider recovers (but is slow): exactly one probe goes out, the others are turned away
+            provider.injectFaults(200, 0, 0);
+            Thread.sleep(250);
+            CompletableFuture<PaymentGateway.PaymentIntent> probe = gateway.createPaymentIntent(1L, 100, "ride", null);
+            assertEquals(503, status(gateway.createPaymentIntent(2L, 100, "ride", null)));
+            assertTrue(probe.get(2, TimeUnit.SECONDS).id().startsWith("pi_"));
+            assertEquals(ResilientPaymentGateway.State.CLOSED, gateway.state());
+            assertEquals(2L, gateway.metrics().get("circuitOpened"));
+        } finally {
+            gateway.shutdown();
+        }
+    }
+
+    @Test
+    public void slowProviderTimesOutAndBulkheadCapsConcurrentCalls() throws Exception {
+        SimulatedPaymentGateway provider = new SimulatedPaymentGateway(1000, 0, 0, 0, SUCCESS_URL);
+        ResilientPaymentGateway gateway = new ResilientPaymentGateway(provider,
+                new ResilientPaymentGateway.Settings(2, 10, 5, 50, 30_000, 100, 100, 100, 100, 100));
+        try {
+            long start = System.nanoTime();
+            CompletableFuture<PaymentGateway.CheckoutSession> first = gateway.createCheckoutSession(1L, 100, "ride");
+            CompletableFuture<PaymentGateway.CheckoutSession> second = gateway.createCheckoutSession(2L, 100, "ride");
+            CompletableFuture<PaymentGateway.CheckoutSession> third = gateway.createCheckoutSession(3L, 100, "ride");
+            assertTrue(third.isCompletedExceptionally());
+            assertEquals(503, status(third));
+            assertFalse(first.isDone());
+
+            assertEquals(504, status(first));
+            assertEquals(504, status(second));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 800, "callers waited for the provider");
+
+            Map<String, Object> m = gateway.metrics();
+            assertEquals(2L, m.get("timeouts"));
+            assertEquals(1L, m.get("rejectedBulkhead"));
+            assertEquals(0, m.get("inFlight"));
+            // Two failures are below minimum-calls, so the circuit stays closed
+            assertEquals(ResilientPaymentGateway.State.CLOSED, gateway.state());
+        } finally {
+            gateway.shutdown();
+        }
+    }
+
+    @Test
+    public void permitIsHeldUntilTheProviderCallEnds() throws Exception {
+        // A provider call that cannot be aborted keeps running after the caller was answered
+        CompletableFuture<PaymentGateway.PaymentIntent> stuck = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return false;
+            }
+        };
+        PaymentGateway provider = mock(PaymentGateway.class);
+        when(provider.createPaymentIntent(any(), anyLong(), any(), any())).thenReturn(stuck);
+        ResilientPaymentGateway gateway = new ResilientPaymentGateway(provider,
+                new ResilientPaymentGateway.Settings(1, 10, 5, 50, 30_000, 100, 100, 100, 100, 100));
+
+        assertEquals(504, status(gateway.createPaymentIntent(1L, 100, "ride", null)));
+        assertEquals(1, gateway.metrics().get("inFlight"));
+        assertEquals(503, status(gateway.createPaymentIntent(2L, 100, "ride", null)));
+
+        stuck.complete(new PaymentGateway.PaymentIntent("pi_late", "pi_late_secret"));
+        assertEquals(0, gateway.metrics().get("inFlight"));
+    }
+
+    @Test
+    public void timedOutCallIsCancelledAtTheProvider() throws Exception {
+        SimulatedPaymentGateway provider = new SimulatedPaymentGateway(300, 0, 0, 0, SUCCESS_URL);
+        ResilientPaymentGateway gateway = new ResilientPaymentGateway(provider,
+                new ResilientPaymentGateway.Settings(1, 10, 5, 50, 30_000, 50, 50, 50, 50, 50));
+        try {
+            assertEquals(504, status(gateway.createPaymentIntent(1L, 100, "ride", null)));
+            assertEquals(0, gateway.metrics().get("inFlight"));
+
+            // The simulated call was dropped, so the intent was never created
+            Thread.sleep(400);
+            assertTrue(provider.listPaymentIntents(0, Long.MAX_VALUE, null, 10).get(2, TimeUnit.SECONDS).intents().isEmpty());
+        } finally {
+            gateway.shutdown();
+        }
+    }
+
+    private static int status(CompletableFuture<?> call) throws InterruptedException {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> call.get(2, TimeUnit.SECONDS));
+        return ((PaymentGateway.GatewayException) e.getCause()).getStatus();
+    }
+}
@@ -0,0 +1,133 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(TestMailConfig.class)
+@Transactional
+public class ScheduleIndexTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final LocalDateTime base = LocalDateTime.now().plusDays(3).withNano(0);
+
+    private User user(String email) {
+        User u = new User();
+        u.setEmail(email);
+        u.setFullname(email);
+        u.setRole("USER");
+        return userRepository.save(u);
+    }
+
+    private Ride ride(String owner, LocalDateTime start, LocalDateTime end) {
+        Ride r = new Ride();
+        r.setOwnerEmail(owner);
+        r.setSeatsAvailable(3);
+        r.setPrice(100.0);
+        r.setDateTime(start.toString());
+        r.setEstimatedCompletionDateTime(end.toString());
+        return rideRepository.save(r);
+    }
+
+    private String bookingJson(Ride r) {
+        return "{\"rideId\":" + r.getId() + ",\"seatsRequested\":1}";
+    }
+
+    @Test
+    public void passengerCannotBookOverlappingRides() throws Exception {
+        User p = user("overlap-pass@example.com");
+        Ride morning = ride("overlap-host1@example.com", base, base.plusHours(2));
+        Ride overlapping = ride("overlap-host2@example.com", base.plusHours(1), base.plusHours(3));
+        Ride evening = ride("overlap-host3@example.com", base.plusHours(2), base.plusHours(4));
+
+        mvc.perform(post("/api/bookings/request").requestAttr("email", p.getEmail()).contentType(MediaType.APPLICATION_JSON).content(bookingJson(morning)))
+                .andExpect(status().isOk());
+        mvc.perform(post("/api/bookings/request").requestAttr("email", p.getEmail()).contentType(MediaType.APPLICATION_JSON).content(bookingJson(overlapping)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.conflictingRideId").value(morning.getId()));
+        mvc.perform(post("/api/bookings/request").requestAttr("email", p.getEmail()).contentType(MediaType.APPLICATION_JSON).content(bookingJson(morning)))
+                .andExpect(status().isConflict());
+        // Back-to-back rides touch but do not overlap
+        mvc.perform(post("/api/bookings/request").requestAttr("email", p.getEmail()).contentType(MediaType.APPLICATION_JSON).content(bookingJson(evening)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void hostCannotPublishRideOverlappingTheirSchedule() throws Exception {
+        User host = user("overlap-driver@example.com");
+        Ride booked = ride("overlap-other@example.com", base, base.plusHours(2));
+        mvc.perform(post("/api/bookings/request").requestAttr("email", host.getEmail()).contentType(MediaType.APPLICATION_JSON).content(bookingJson(booked)))
+                .andExpect(status().isOk());
+
+        String overlapping = "{\"ownerEmail\":\"" + host.getEmail() + "\",\"dateTime\":\"" + base.plusMinutes(30)
+                + "\",\"estimatedCompletionDateTime\":\"" + base.plusHours(1) + "\",\"seatsAvailable\":2,\"price\":50}";
+        mvc.perform(post("/api/rides").contentType(MediaType.APPLICATION_JSON).content(overlapping))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.conflictingRideId").value(booked.getId()));
+
+        String later = "{\"ownerEmail\":\"" + host.getEmail() + "\",\"dateTime\":\"" + base.plusHours(5)
+                + "\",\"seatsAvailable\":2,\"price\":50}";
+        mvc.perform(post("/api/rides").contentType(MediaType.APPLICATION_JSON).content(later))
+                .andExpect(status().isOk());
+        mvc.perform(post("/api/rides").contentType(MediaType.APPLICATION_JSON).content(later))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void sweepPrunesEndedWindowsAndEvictsIdleUsers() {
+        ScheduleIndex index = new ScheduleIndex(mock(BookingRepository.class), mock(RideRepository.class));
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Ride ended = new Ride();
+        ended.setId(1L);
+        ended.setDateTime(now.minusHours(3).toString());
+        ended.setEstimatedCompletionDateTime(now.minusHours(1).toString());
+        Ride upcoming = new Ride();
+        upcoming.setId(2L);
+        upcoming.setDateTime(now.plusHours(1).toString());
+        upcoming.setEstimatedCompletionDateTime(now.plusHours(2).toString());
+        index.addHosted("sweep-a@example.com", ended);
+        index.addHosted("sweep-a@example.com", upcoming);
+        index.addHosted("sweep-b@example.com", upcoming);
+        assertTrue(index.findHostConflict("sweep-a@example.com", ended).isPresent());
+
+        assertEquals(0, index.sweep(System.currentTimeMillis(), now));
+        assertTrue(index.findHostConflict("sweep-a@example.com", ended).isEmpty());
+        assertTrue(index.findHostConflict("sweep-a@example.com", upcoming).isPresent());
+        assertEquals(2, index.cachedUsers());
+
+        assertEquals(2, index.sweep(System.currentTimeMillis() + 1_800_000, now));
+        assertEquals(0, index.cachedUsers());
+    }
+}
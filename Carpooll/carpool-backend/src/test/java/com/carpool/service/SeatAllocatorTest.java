@@ -0,0 +1,132 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Ride;
+import com.carpool.repository.RideRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Not @Transactional: every booking attempt runs in its own committed transaction
+@SpringBootTest
+@Import(TestMailConfig.class)
+public class SeatAllocatorTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatAllocatorTest.class);
+
+    private static final int BOOKINGS = 500;
+    private static final int SEATS = 40;
+    private static final long SOLD_OUT_TTL_MS = 250;
+
+    @Autowired
+    private SeatAllocator seatAllocator;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    private Ride ride(int seats) {
+        Ride r = new Ride();
+        r.setOwnerEmail("alloc-host@example.com");
+        r.setSeatsAvailable(seats);
+        r.setPrice(100.0);
+        r.setDateTime(LocalDateTime.now().plusDays(1).toString());
+        return rideRepository.save(r);
+    }
+
+    @Test
+    public void rolledBackAllocationIsReturned() {
+        Ride r = ride(1);
+
+        tx.executeWithoutResult(s -> {
+            assertTrue(seatAllocator.tryAllocate(r.getId(), null, 1));
+            s.setRollbackOnly();
+        });
+        assertEquals(1, rideRepository.findSeatsAvailable(r.getId()));
+
+        assertEquals(Boolean.TRUE, tx.execute(s -> seatAllocator.tryAllocate(r.getId(), null, 1)));
+        assertEquals(Boolean.FALSE, tx.execute(s -> seatAllocator.tryAllocate(r.getId(), null, 1)));
+        assertEquals(0, rideRepository.findSeatsAvailable(r.getId()));
+    }
+
+    @Test
+    public void flashDemandOnOneRideAllocatesExactlyTheSeats() throws Exception {
+        Ride direct = ride(SEATS);
+        Ride striped = ride(SEATS);
+
+        // The plain conditional update runs against the ride row once per buyer
+        long directMs = race(() -> rideRepository.deductSeatsIfAvailable(direct.getId(), 1) == 1, direct);
+
+        // The allocator only touches the row for the seats it sells and turns everyone else away from memory
+        long updatesBefore = seatAllocator.rowUpdates();
+        long rejectionsBefore = seatAllocator.soldOutRejections();
+        long stripedMs = race(() -> seatAllocator.tryAllocate(striped.getId(), null, 1), striped);
+        assertEquals(SEATS, seatAllocator.rowUpdates() - updatesBefore);
+        assertEquals(BOOKINGS - SEATS, seatAllocator.soldOutRejections() - rejectionsBefore);
+
+        log.info("{} bookings on one ride ({} seats): conditional UPDATE {} ms with {} row updates, allocator {} ms with {}",
+                BOOKINGS, SEATS, directMs, BOOKINGS, stripedMs, SEATS);
+    }
+
+    @Test
+    public void staleSoldOutCountDoesNotTurnPassengersAway() throws Exception {
+        Ride r = ride(1);
+        assertEquals(Boolean.TRUE, tx.execute(s -> seatAllocator.tryAllocate(r.getId(), null, 1)));
+        assertEquals(Boolean.FALSE, tx.execute(s -> seatAllocator.tryAllocate(r.getId(), null, 1)));
+
+        // A seat comes back without this node hearing about it, e.g. released on another node;
+        // the sold-out count is read again once it is older than seats.allocator.sold-out-ttl-ms
+        tx.executeWithoutResult(s -> rideRepository.restoreSeats(r.getId(), 1));
+        Thread.sleep(SOLD_OUT_TTL_MS + 50);
+
+        assertEquals(Boolean.TRUE, tx.execute(s -> seatAllocator.tryAllocate(r.getId(), null, 1)));
+        assertEquals(0, rideRepository.findSeatsAvailable(r.getId()));
+    }
+
+    // Fires BOOKINGS concurrent attempts, checks that exactly SEATS of them succeed and returns the elapsed ms
+    private long race(Supplier<Boolean> attempt, Ride r) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(BOOKINGS);
+        CountDownLatch ready = new CountDownLatch(BOOKINGS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger wins = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < BOOKINGS; i++) {
+            futures.add(pool.submit(() -> {
+                ready.countDown();
+                start.await();
+                if (Boolean.TRUE.equals(tx.execute(s -> attempt.get()))) wins.incrementAndGet();
+                return null;
+            }));
+        }
+        ready.await(30, TimeUnit.SECONDS);
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) f.get(120, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+        pool.shutdown();
+
+        assertEquals(SEATS, wins.get());
+        assertEquals(0, rideRepository.findSeatsAvailable(r.getId()));
+        return elapsedMs;
+    }
+}
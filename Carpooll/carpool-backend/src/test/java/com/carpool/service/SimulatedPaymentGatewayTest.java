@@ -0,0 +1,58 @@
+package com.carpool.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SimulatedPaymentGatewayTest {
+
+    private static final String SUCCESS_URL = "http://localhost:3000/payment-success?session_id={CHECKOUT_SESSION_ID}";
+
+    @Test
+    public void answersAfterLatencyAndCompletesCheckoutRoundTrip() throws Exception {
+        SimulatedPaymentGateway gateway = new SimulatedPaymentGateway(100, 0, 0, 0, SUCCESS_URL);
+        try {
+            CompletableFuture<PaymentGateway.PaymentIntent> intent = gateway.createPaymentIntent(1L, 10_000, "ride", "p@example.com");
+            assertFalse(intent.isDone());
+            PaymentGateway.PaymentIntent pi = intent.get(2, TimeUnit.SECONDS);
+            assertTrue(pi.id().startsWith("pi_"));
+            assertTrue(pi.clientSecret().startsWith(pi.id() + "_secret_"));
+
+            PaymentGateway.CheckoutSession session = gateway.createCheckoutSession(1L, 10_000, "ride").get(2, TimeUnit.SECONDS);
+            assertEquals("http://localhost:3000/payment-success?session_id=" + session.id(), session.url());
+            PaymentGateway.CheckoutStatus status = gateway.retrieveCheckoutSession(session.id()).get(2, TimeUnit.SECONDS);
+            assertTrue(status.paid());
+            assertTrue(status.paymentIntentId().startsWith("pi_"));
+        } finally {
+            gateway.shutdown();
+        }
+    }
+
+    @Test
+    public void injectsFailuresAndEnforcesThroughputLimit() throws Exception {
+        SimulatedPaymentGateway failing = new SimulatedPaymentGateway(0, 0, 1.0, 0, SUCCESS_URL);
+        SimulatedPaymentGateway limited = new SimulatedPaymentGateway(0, 0, 0, 10, SUCCESS_URL);
+        try {
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> failing.createPaymentIntent(1L, 100, "ride", null).get());
+            assertEquals(502, ((PaymentGateway.GatewayException) e.getCause()).getStatus());
+
+            List<CompletableFuture<PaymentGateway.PaymentIntent>> calls = new ArrayList<>();
+            for (int i = 0; i < 25; i++) calls.add(limited.createPaymentIntent((long) i, 100, "ride", null));
+            long rejected = calls.stream().filter(CompletableFuture::isCompletedExceptionally).count();
+            assertEquals(15, rejected);
+        } finally {
+            failing.shutdown();
+            limited.shutdown();
+        }
+    }
+}
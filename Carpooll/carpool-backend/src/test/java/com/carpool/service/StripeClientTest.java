@@ -0,0 +1,29 @@
+package com.carpool.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StripeClientTest {
+
+    @Test
+    public void saturatedClientFailsFastWithoutCallingStripe() {
+        StripeClient client = new StripeClient(new ObjectMapper(), 1, 0, 1000, 1000);
+        try {
+            CompletableFuture<Map<String, Object>> call = client.post("payment_intents", "amount=100");
+            assertTrue(call.isDone());
+            ExecutionException e = assertThrows(ExecutionException.class, call::get);
+            StripeClient.StripeException cause = (StripeClient.StripeException) e.getCause();
+            assertEquals(503, cause.getStatus());
+        } finally {
+            client.shutdown();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.model.WaitlistEntry;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import com.carpool.repository.WaitlistEntryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Not @Transactional: events are applied on the webhook worker pool in their own transactions
+@SpringBootTest(properties = "stripe.webhook.secret=" + StripeWebhookServiceTest.SECRET)
+@AutoConfigureMockMvc
+@Import(TestMailConfig.class)
+public class StripeWebhookServiceTest {
+
+    static final String SECRET = "whsec_local_test";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private StripeWebhookService webhookService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WaitlistEntryRepository waitlistRepository;
+
+    private final LocalStripe stripe = new LocalStripe(SECRET);
+
+    @Test
+    public void rejectsForgedAndStaleSignatures() throws Exception {
+        String payload = stripe.paymentIntentSucceeded(1, "pi_forged");
+        long now = System.currentTimeMillis() / 1000;
+
+        assertTrue(webhookService.signatureValid(payload, stripe.sign(payload, now), now));
+        assertFalse(webhookService.signatureValid(payload, new LocalStripe("whsec_other").sign(payload, now), now));
+        assertFalse(webhookService.signatureValid(payload + " ", stripe.sign(payload, now), now));
+        assertFalse(webhookService.signatureValid(payload, stripe.sign(payload, now - 3600), now));
+        assertFalse(webhookService.signatureValid(payload, "t=" + now, now));
+
+        mvc.perform(post("/api/payments/stripe/webhook").contentType(MediaType.APPLICATION_JSON).content(payload)
+                        .header("Stripe-Signature", "t=" + now + ",v1=00"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void replayedEventStreamConfirmsEachBookingOnce() throws Exception {
+        int seats = 5;
+        Ride ride = new Ride();
+        ride.setOwnerEmail("webhook-host@example.com");
+        ride.setSeatsAvailable(seats);
+        ride.setPrice(120.0);
+        ride.setDateTime(LocalDateTime.now().plusDays(1).toString());
+        rideRepository.save(ride);
+
+        List<Booking> bookings = new ArrayList<>();
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            User u = new User();
+            u.setEmail("webhook-pass-" + ride.getId() + "-" + i + "@example.com");
+            u.setFullname("Webhook Passenger " + i);
+            u.setRole("USER");
+            userRepository.save(u);
+
+            Booking b = new Booking();
+            b.setRideId(ride.getId());
+            b.setRequesterId(u.getId());
+            b.setRequesterEmail(u.getEmail());
+            b.setSeatsRequested(1);
+            b.setStatus(Booking.Status.ACCEPTED);
+            bookingRepository.save(b);
+            bookings.add(b);
+
+            // Stripe sends both events for a checkout payment, each possibly more than once
+            String pi = "pi_webhook_" + b.getId();
+            events.add(stripe.paymentIntentSucceeded(b.getId(), pi));
+            events.add(stripe.checkoutSessionCompleted(b.getId(), pi));
+        }
+
+        LocalStripe.Replay replay = stripe.replay(events, 5, 16, (payload, signature) ->
+                mvc.perform(post("/api/payments/stripe/webhook")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(payload)
+                                .header("Stripe-Signature", signature))
+                        .andReturn().getResponse().getStatus());
+        System.out.printf("Replayed %d webhook deliveries in %.0f ms (%.0f/s)%n",
+                replay.deliveries(), replay.elapsedNanos() / 1e6, replay.perSecond());
+        assertEquals(replay.deliveries(), replay.statuses().getOrDefault(200, 0));
+
+        // Wait for the worker pool to apply every distinct event
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline
+                && (confirmedCount(ride) < seats || waiting(ride) < bookings.size() - seats)) {
+            Thread.sleep(50);
+        }
+
+        Set<String> transactionIds = new HashSet<>();
+        int confirmed = 0;
+        for (Booking b : bookingRepository.findByRideId(ride.getId())) {
+            if (b.getStatus() != Booking.Status.CONFIRMED) continue;
+            confirmed++;
+            assertTrue(transactionIds.add(b.getTransactionId()));
+            assertEquals("pi_webhook_" + b.getId(), b.getTransactionId());
+        }
+        assertEquals(seats, confirmed);
+        assertEquals(0, rideRepository.findSeatsAvailable(ride.getId()));
+        assertEquals(bookings.size() - seats, waiting(ride));
+    }
+
+    private long confirmedCount(Ride ride) {
+        return bookingRepository.findByRideId(ride.getId()).stream().filter(b -> b.getStatus() == Booking.Status.CONFIRMED).count();
+    }
+
+    private int waiting(Ride ride) {
+        return waitlistRepository.findByRideIdAndStatusOrderByIdAsc(ride.getId(), WaitlistEntry.Status.WAITING).size();
+    }
+}
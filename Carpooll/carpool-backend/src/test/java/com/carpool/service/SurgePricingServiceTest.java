@@ -0,0 +1,133 @@
+package com.carpool.service;
+
+import com.carpool.model.Ride;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SurgePricingServiceTest {
+
+    // Two corridors around Mumbai and Pune
+    private static final double[] BUSY = {19.076, 72.877, 18.520, 73.856};
+    private static final double[] QUIET = {19.218, 72.978, 18.520, 73.856};
+
+    @Test
+    public void concurrentSearchesAreCountedOnDrainAndRaiseTheMultiplier() throws Exception {
+        MutableClock clock = new MutableClock();
+        SurgePricingService surge = new SurgePricingService(0.05, 60, 15, 1000, 1_000_000, 30, 5, 0.25, 2.0, clock);
+
+        int threads = 8, perThread = 5_000;
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    // Different points inside the same cells are the same corridor
+                    double jitter = (i % 10) * 0.001;
+                    surge.recordSearch(BUSY[0] + jitter, BUSY[1] + jitter, BUSY[2], BUSY[3]);
+                }
+            });
+            w.start();
+            workers.add(w);
+        }
+        go.countDown();
+        for (Thread w : workers) w.join();
+
+        // Nothing is counted on the caller's thread
+        assertEquals(0, surge.suggest(BUSY[0], BUSY[1], BUSY[2], BUSY[3]).searches());
+
+        assertEquals(threads * perThread, surge.drain());
+        SurgePricingService.Suggestion busy = surge.suggest(BUSY[0], BUSY[1], BUSY[2], BUSY[3]);
+        assertEquals(threads * perThread, busy.searches());
+        assertEquals(2.0, busy.multiplier());
+        assertEquals(0, surge.dropped());
+
+        // 30 searches and 6 booking requests weigh 60, twice the baseline: one step of sensitivity
+        Ride quiet = ride(QUIET);
+        for (int i = 0; i < 30; i++) surge.recordSearch(QUIET[0], QUIET[1], QUIET[2], QUIET[3]);
+        for (int i = 0; i < 6; i++) surge.recordBookingRequest(quiet);
+        surge.drain();
+        SurgePricingService.Suggestion s = surge.suggest(quiet);
+        assertEquals(30, s.searches());
+        assertEquals(6, s.bookingRequests());
+        assertEquals(1.25, s.multiplier());
+    }
+
+    @Test
+    public void windowSlidesAndIdleCorridorsAreForgotten() {
+        MutableClock clock = new MutableClock();
+        SurgePricingService surge = new SurgePricingService(0.05, 60, 15, 1000, 1000, 30, 5, 0.25, 2.0, clock);
+
+        for (int i = 0; i < 60; i++) surge.recordSearch(BUSY[0], BUSY[1], BUSY[2], BUSY[3]);
+        surge.drain();
+        assertEquals(1.25, surge.suggest(BUSY[0], BUSY[1], BUSY[2], BUSY[3]).multiplier());
+
+        clock.advanceSeconds(10 * 60);
+        surge.drain();
+        assertEquals(60, surge.suggest(BUSY[0], BUSY[1], BUSY[2], BUSY[3]).searches());
+
+        // Past the 15 minute window: the old bucket no longer counts and the corridor is dropped
+        clock.advanceSeconds(6 * 60);
+        assertEquals(0, surge.suggest(BUSY[0], BUSY[1], BUSY[2], BUSY[3]).searches());
+        surge.drain();
+        assertEquals(0, surge.trackedCorridors());
+        assertEquals(1.0, surge.suggest(BUSY[0], BUSY[1], BUSY[2], BUSY[3]).multiplier());
+    }
+
+    @Test
+    public void signalsBeyondThePendingLimitAreDropped() {
+        SurgePricingService surge = new SurgePricingService(0.05, 60, 15, 1000, 10, 30, 5, 0.25, 2.0, new MutableClock());
+        for (int i = 0; i < 15; i++) surge.recordSearch(BUSY[0], BUSY[1], BUSY[2], BUSY[3]);
+        assertEquals(5, surge.dropped());
+        assertEquals(10, surge.drain());
+
+        // Rides without coordinates have no corridor
+        surge.recordBookingRequest(new Ride());
+        assertEquals(0, surge.drain());
+    }
+
+    private static Ride ride(double[] route) {
+        Ride r = new Ride();
+        r.setFromLat(route[0]);
+        r.setFromLng(route[1]);
+        r.setToLat(route[2]);
+        r.setToLng(route[3]);
+        return r;
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant now = Instant.parse("2026-01-01T08:00:00Z");
+
+        void advanceSeconds(long seconds) {
+            now = now.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.LedgerEntry;
+import com.carpool.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Import(TestMailConfig.class)
+public class TaxReportServiceTest {
+
+    @Autowired
+    private LedgerEntryRepository entryRepository;
+
+    @Test
+    public void sumsLedgerChunksInParallelIntoMonthlyTotals() {
+        // Tiny chunks so the lines below span many ranges summed on different workers
+        TaxReportService reports = new TaxReportService(entryRepository, 4, 7);
+        try {
+            TaxReportService.Month before = thisMonth(reports.monthly());
+
+            List<LedgerEntry> lines = new ArrayList<>();
+            long expectedCollected = 0, expectedFees = 0, expectedGst = 0;
+            long firstBooking = System.nanoTime();
+            for (int i = 0; i < 25; i++) {
+                FareEngine.Quote fare = FareEngine.compute(100.0 + i, 1 + i % 3);
+                long bookingId = firstBooking + i;
+                lines.add(new LedgerEntry(bookingId, LedgerService.PAYMENTS_CLEARING, LedgerEntry.Type.PASSENGER_CHARGE, fare.totalPaise(), 0, "pi_tax_" + bookingId));
+                lines.add(new LedgerEntry(bookingId, LedgerService.PLATFORM_FEES, LedgerEntry.Type.PLATFORM_FEE, 0, fare.platformFeePaise(), "pi_tax_" + bookingId));
+                lines.add(new LedgerEntry(bookingId, LedgerService.PLATFORM_FEES, LedgerEntry.Type.DRIVER_COMMISSION, 0, fare.platformFeePaise(), "pi_tax_" + bookingId));
+                lines.add(new LedgerEntry(bookingId, LedgerService.CGST_PAYABLE, LedgerEntry.Type.CGST, 0, fare.cgstPaise(), "pi_tax_" + bookingId));
+                lines.add(new LedgerEntry(bookingId, LedgerService.SGST_PAYABLE, LedgerEntry.Type.SGST, 0, fare.sgstPaise(), "pi_tax_" + bookingId));
+                expectedCollected += fare.totalPaise();
+                expectedFees += 2 * fare.platformFeePaise();
+                expectedGst += fare.cgstPaise() + fare.sgstPaise();
+            }
+            entryRepository.saveAll(lines);
+
+            TaxReportService.Report report = reports.monthly();
+            TaxReportService.Month after = thisMonth(report);
+            assertTrue(report.chunks() > 1);
+            assertEquals(25, after.bookings() - before.bookings());
+            assertEquals(expectedCollected, after.collectedPaise() - before.collectedPaise());
+            assertEquals(expectedFees, after.platformRevenuePaise() - before.platformRevenuePaise());
+            assertEquals(expectedGst, after.gstPaise() - before.gstPaise());
+            // Months come out oldest first
+            for (int i = 1; i < report.months().size(); i++) {
+                assertTrue(report.months().get(i - 1).month().isBefore(report.months().get(i).month()));
+            }
+        } finally {
+            reports.shutdown();
+        }
+    }
+
+    @Test
+    public void refundsAreNettedOffInTheMonthTheyComplete() {
+        TaxReportService reports = new TaxReportService(entryRepository, 2, 3);
+        YearMonth paidMonth = YearMonth.of(2001, 1);
+        LocalDateTime paidAt = paidMonth.atDay(15).atTime(10, 0);
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            TaxReportService.Report start = reports.monthly();
+            TaxReportService.Month beforeNow = month(start, YearMonth.now());
+            TaxReportService.Month beforePaid = month(start, paidMonth);
+
+            // One booking paid and refunded this month, one paid in January 2001 and refunded now
+            long sameMonth = System.nanoTime(), earlier = sameMonth + 1;
+            FareEngine.Quote sameFare = FareEngine.compute(240.0, 2);
+            FareEngine.Quote earlierFare = FareEngine.compute(180.0, 1);
+            List<LedgerEntry> paid = new ArrayList<>();
+            paid.addAll(paymentLines(sameMonth, sameFare, now));
+            paid.addAll(paymentLines(earlier, earlierFare, paidAt));
+            entryRepository.saveAll(paid);
+            entryRepository.saveAll(paid.stream().map(e -> e.reversed("re_tax_" + e.getBookingId(), now)).toList());
+
+            TaxReportService.Report report = reports.monthly();
+            TaxReportService.Month afterNow = month(report, YearMonth.now());
+            TaxReportService.Month afterPaid = month(report, paidMonth);
+
+            assertEquals(1, afterNow.bookings() - beforeNow.bookings());
+            assertEquals(2, afterNow.refunds() - beforeNow.refunds());
+            assertEquals(-earlierFare.totalPaise(), afterNow.collectedPaise() - beforeNow.collectedPaise());
+            assertEquals(-2 * earlierFare.platformFeePaise(), afterNow.platformRevenuePaise() - beforeNow.platformRevenuePaise());
+            assertEquals(-(earlierFare.cgstPaise() + earlierFare.sgstPaise()), afterNow.gstPaise() - beforeNow.gstPaise());
+
+            // The month it was paid in keeps the payment
+            assertEquals(1, afterPaid.bookings() - beforePaid.bookings());
+            assertEquals(0, afterPaid.refunds() - beforePaid.refunds());
+            assertEquals(earlierFare.totalPaise(), afterPaid.collectedPaise() - beforePaid.collectedPaise());
+            assertEquals(earlierFare.cgstPaise() + earlierFare.sgstPaise(), afterPaid.gstPaise() - beforePaid.gstPaise());
+        } finally {
+            reports.shutdown();
+        }
+    }
+
+    private static List<LedgerEntry> paymentLines(long bookingId, FareEngine.Quote fare, LocalDateTime at) {
+        String tx = "pi_tax_" + bookingId;
+        return List.of(
+                new LedgerEntry(bookingId, LedgerService.PAYMENTS_CLEARING, LedgerEntry.Type.PASSENGER_CHARGE, fare.totalPaise(), 0, tx, at),
+                new LedgerEntry(bookingId, LedgerService.PLATFORM_FEES, LedgerEntry.Type.PLATFORM_FEE, 0, fare.platformFeePaise(), tx, at),
+                new LedgerEntry(bookingId, LedgerService.PLATFORM_FEES, LedgerEntry.Type.DRIVER_COMMISSION, 0, fare.platformFeePaise(), tx, at),
+                new LedgerEntry(bookingId, LedgerService.CGST_PAYABLE, LedgerEntry.Type.CGST, 0, fare.cgstPaise(), tx, at),
+                new LedgerEntry(bookingId, LedgerService.SGST_PAYABLE, LedgerEntry.Type.SGST, 0, fare.sgstPaise(), tx, at));
+    }
+
+    private static TaxReportService.Month thisMonth(TaxReportService.Report report) {
+        return month(report, YearMonth.now());
+    }
+
+    private static TaxReportService.Month month(TaxReportService.Report report, YearMonth month) {
+        return report.months().stream().filter(m -> m.month().equals(month)).findFirst()
+                .orElse(new TaxReportService.Month(month, 0, 0, 0, 0, 0, 0, 0));
+    }
+}
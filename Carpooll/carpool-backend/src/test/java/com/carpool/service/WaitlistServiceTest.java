@@ -0,0 +1,189 @@
+package com.carpool.service;
+
+import com.carpool.config.TestMailConfig;
+import com.carpool.model.Booking;
+import com.carpool.model.Ride;
+import com.carpool.model.User;
+import com.carpool.model.WaitlistEntry;
+import com.carpool.repository.BookingRepository;
+import com.carpool.repository.RideRepository;
+import com.carpool.repository.UserRepository;
+import com.carpool.repository.WaitlistEntryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Import(TestMailConfig.class)
+@Transactional
+public class WaitlistServiceTest {
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private WaitlistEntryRepository waitlistRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SeatAllocator seatAllocator;
+
+    private User user(String email) {
+        User u = new User();
+        u.setEmail(email);
+        u.setFullname(email);
+        u.setRole("USER");
+        return userRepository.save(u);
+    }
+
+    @Test
+    public void promotesInFifoOrderWithinFreeSeats() {
+        Ride ride = new Ride();
+        ride.setOwnerEmail("wl-host@example.com");
+        ride.setSeatsAvailable(0);
+        rideRepository.save(ride);
+
+        User first = user("wl-first@example.com");
+        User second = user("wl-second@example.com");
+        User third = user("wl-third@example.com");
+
+        WaitlistEntry e1 = waitlistService.join(ride.getId(), first, 2, null);
+        WaitlistEntry e2 = waitlistService.join(ride.getId(), second, 3, null);
+        WaitlistEntry e3 = waitlistService.join(ride.getId(), third, 1, null);
+        assertEquals(3, waitlistService.position(e3));
+
+        // Full ride: nothing to promote
+        assertEquals(0, waitlistService.promote(ride.getId()).size());
+
+        // Three seats free: first (2) fits, second (3) no longer fits, third (1) does
+        ride = rideRepository.findById(ride.getId()).orElseThrow();
+        ride.setSeatsAvailable(3);
+        rideRepository.saveAndFlush(ride);
+
+        List<WaitlistEntry> promoted = waitlistService.promote(ride.getId());
+        assertEquals(List.of(e1.getId(), e3.getId()), promoted.stream().map(WaitlistEntry::getId).toList());
+
+        assertEquals(WaitlistEntry.Status.WAITING, waitlistRepository.findById(e2.getId()).orElseThrow().getStatus());
+        WaitlistEntry after = waitlistRepository.findById(e1.getId()).orElseThrow();
+        assertEquals(WaitlistEntry.Status.PROMOTED, after.getStatus());
+        assertNotNull(after.getBookingId());
+        assertEquals(Booking.Status.PENDING, bookingRepository.findById(after.getBookingId()).orElseThrow().getStatus());
+
+        // Promoted passengers hold their seats until they pay or are turned down
+        assertEquals(1, waitlistService.position(waitlistRepository.findById(e2.getId()).orElseThrow()));
+        assertEquals(0, waitlistService.promote(ride.getId()).size());
+    }
+
+    @Test
+    public void heldSeatsCanOnlyBeTakenByTheirBooking() {
+        Ride ride = new Ride();
+        ride.setSeatsAvailable(0);
+        rideRepository.save(ride);
+        WaitlistEntry e = waitlistService.join(ride.getId(), user("wl-hold@example.com"), 1, null);
+
+        ride.setSeatsAvailable(1);
+        rideRepository.saveAndFlush(ride);
+        assertEquals(1, waitlistService.promote(ride.getId()).size());
+        Long held = waitlistRepository.findById(e.getId()).orElseThrow().getBookingId();
+        assertTrue(waitlistService.holdsSeats(held));
+        assertEquals(0, waitlistService.unheldSeats(ride, null));
+
+        // Another passenger paying first cannot take the promoted passenger's seat
+        assertFalse(seatAllocator.tryAllocate(ride.getId(), null, 1));
+        assertTrue(seatAllocator.tryAllocate(ride.getId(), held, 1));
+        assertEquals(0, rideRepository.findSeatsAvailable(ride.getId()));
+    }
+
+    @Test
+    public void unpaidHoldsExpireAndTheirSeatsGoToTheNextInQueue() {
+        Ride ride = new Ride();
+        ride.setSeatsAvailable(0);
+        rideRepository.save(ride);
+        WaitlistEntry first = waitlistService.join(ride.getId(), user("wl-lapse@example.com"), 1, null);
+        WaitlistEntry next = waitlistService.join(ride.getId(), user("wl-next@example.com"), 1, null);
+
+        ride.setSeatsAvailable(1);
+        rideRepository.saveAndFlush(ride);
+        assertEquals(1, waitlistService.promote(ride.getId()).size());
+        Long held = waitlistRepository.findById(first.getId()).orElseThrow().getBookingId();
+
+        // Within the hold the seat stays reserved
+        waitlistService.expireHolds(LocalDateTime.now());
+        assertTrue(waitlistService.holdsSeats(held));
+        assertEquals(0, waitlistService.unheldSeats(ride, null));
+
+        assertTrue(waitlistService.expireHolds(LocalDateTime.now().plusHours(1)) >= 1);
+        assertEquals(WaitlistEntry.Status.EXPIRED, waitlistRepository.findById(first.getId()).orElseThrow().getStatus());
+        assertEquals(Booking.Status.CANCELLED, bookingRepository.findById(held).orElseThrow().getStatus());
+        assertFalse(waitlistService.holdsSeats(held));
+        assertEquals(1, waitlistService.unheldSeats(ride, null));
+
+        // The released seat goes to the next passenger waiting
+        assertEquals(List.of(next.getId()), waitlistService.promote(ride.getId()).stream().map(WaitlistEntry::getId).toList());
+    }
+
+    @Test
+    public void promotionPassesOverPassengersWithAnOverlappingBooking() {
+        String at = LocalDateTime.now().plusDays(3).withNano(0).toString();
+        Ride booked = new Ride();
+        booked.setSeatsAvailable(1);
+        booked.setDateTime(at);
+        rideRepository.save(booked);
+        Ride full = new Ride();
+        full.setSeatsAvailable(0);
+        full.setDateTime(at);
+        rideRepository.save(full);
+
+        User busy = user("wl-busy@example.com");
+        User free = user("wl-free@example.com");
+        WaitlistEntry busyEntry = waitlistService.join(full.getId(), busy, 1, null);
+        WaitlistEntry freeEntry = waitlistService.join(full.getId(), free, 1, null);
+
+        // Booked on another ride at the same time after joining the queue
+        Booking other = new Booking();
+        other.setRideId(booked.getId());
+        other.setRequesterId(busy.getId());
+        other.setRequesterEmail(busy.getEmail());
+        other.setSeatsRequested(1);
+        other.setStatus(Booking.Status.CONFIRMED);
+        bookingRepository.save(other);
+
+        full.setSeatsAvailable(1);
+        rideRepository.saveAndFlush(full);
+        List<WaitlistEntry> promoted = waitlistService.promote(full.getId());
+        assertEquals(List.of(freeEntry.getId()), promoted.stream().map(WaitlistEntry::getId).toList());
+        assertEquals(WaitlistEntry.Status.WAITING, waitlistRepository.findById(busyEntry.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    public void joiningTwiceKeepsSinglePlace() {
+        Ride ride = new Ride();
+        ride.setSeatsAvailable(0);
+        rideRepository.save(ride);
+        User u = user("wl-twice@example.com");
+
+        WaitlistEntry a = waitlistService.join(ride.getId(), u, 1, null);
+        WaitlistEntry b = waitlistService.join(ride.getId(), u, 1, null);
+        assertEquals(a.getId(), b.getId());
+        assertEquals(true, waitlistService.leave(a.getId(), u.getId()));
+        assertEquals(false, waitlistService.leave(a.getId(), u.getId()));
+    }
+}
@@ -0,0 +1,48 @@
+package com.carpool.tools;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CancelledBookingStatusMigrationTest {
+
+    @Test
+    public void v3AllowsCancelledAndStillRejectsUnknownStatuses() throws Exception {
+        String url = "jdbc:h2:mem:cancelled-status-migration;DB_CLOSE_DELAY=-1";
+
+        // The primary key is named so it cannot collide with the CONSTRAINT_2 the migrations replace
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            s.execute("CREATE TABLE BOOKING (ID BIGINT CONSTRAINT PK_BOOKING PRIMARY KEY, STATUS VARCHAR(255))");
+        }
+
+        // Up to V2 the check constraint has no CANCELLED
+        Flyway.configure().dataSource(url, "sa", "").baselineOnMigrate(true).baselineVersion("0").target("2").load().migrate();
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            assertThatThrownBy(() -> s.execute("INSERT INTO BOOKING (ID, STATUS) VALUES (1, 'CANCELLED')"))
+                    .isInstanceOf(SQLException.class);
+        }
+
+        Flyway.configure().dataSource(url, "sa", "").target("3").load().migrate();
+
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            s.execute("INSERT INTO BOOKING (ID, STATUS) VALUES (1, 'CANCELLED')");
+            s.execute("INSERT INTO BOOKING (ID, STATUS) VALUES (2, 'COMPLETED')");
+            assertThatThrownBy(() -> s.execute("INSERT INTO BOOKING (ID, STATUS) VALUES (3, 'LOST')"))
+                    .isInstanceOf(SQLException.class);
+            assertThat(s.executeUpdate("UPDATE BOOKING SET STATUS = 'CANCELLED' WHERE ID = 2")).isEqualTo(1);
+            // The primary key survived the constraint swap
+            assertThatThrownBy(() -> s.execute("INSERT INTO BOOKING (ID, STATUS) VALUES (1, 'PENDING')"))
+                    .isInstanceOf(SQLException.class);
+        }
+    }
+}
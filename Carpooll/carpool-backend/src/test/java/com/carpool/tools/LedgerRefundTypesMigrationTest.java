@@ -0,0 +1,42 @@
+package com.carpool.tools;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LedgerRefundTypesMigrationTest {
+
+    @Test
+    public void v5AllowsRefundReversalLines() throws Exception {
+        String url = "jdbc:h2:mem:ledger-refund-migration;DB_CLOSE_DELAY=-1";
+
+        // LEDGER_ENTRY as Hibernate created it before the refund types existed
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            s.execute("CREATE TABLE BOOKING (ID BIGINT PRIMARY KEY, STATUS VARCHAR(255))");
+            s.execute("CREATE TABLE LEDGER_ENTRY (ID BIGINT PRIMARY KEY, TYPE VARCHAR(255) CHECK (TYPE IN "
+                    + "('PASSENGER_CHARGE','PLATFORM_FEE','DRIVER_COMMISSION','CGST','SGST','DRIVER_PAYABLE')))");
+        }
+
+        Flyway.configure().dataSource(url, "sa", "").baselineOnMigrate(true).load().migrate();
+
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            s.execute("INSERT INTO LEDGER_ENTRY (ID, TYPE) VALUES (1, 'CGST')");
+            s.execute("INSERT INTO LEDGER_ENTRY (ID, TYPE) VALUES (2, 'REFUND_CGST')");
+            boolean rejected = false;
+            try {
+                s.execute("INSERT INTO LEDGER_ENTRY (ID, TYPE) VALUES (3, 'NOT_A_TYPE')");
+            } catch (SQLException e) {
+                rejected = true;
+            }
+            assertThat(rejected).isTrue();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.carpool.tools;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LookupIndexMigrationTest {
+
+    @Test
+    public void v4CreatesLookupIndexesAndSkipsMissingTables() throws Exception {
+        String url = "jdbc:h2:mem:lookup-index-migration;DB_CLOSE_DELAY=-1";
+
+        // Existing tables as Hibernate would have created them; CAR and NOTIFICATIONS are left out on purpose
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            s.execute("CREATE TABLE BOOKING (ID BIGINT PRIMARY KEY, STATUS VARCHAR(255), RIDE_ID BIGINT, REQUESTER_ID BIGINT, TRANSACTION_ID VARCHAR(255))");
+            s.execute("CREATE TABLE RIDE (ID BIGINT PRIMARY KEY, OWNER_EMAIL VARCHAR(255))");
+            s.execute("CREATE TABLE RATING_REVIEW (ID BIGINT PRIMARY KEY, BOOKING_ID BIGINT, REVIEWEE_ID BIGINT)");
+        }
+
+        Flyway.configure().dataSource(url, "sa", "").baselineOnMigrate(true).load().migrate();
+
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            Set<String> indexes = new HashSet<>();
+            try (ResultSet rs = s.executeQuery("SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES")) {
+                while (rs.next()) indexes.add(rs.getString(1));
+            }
+            assertThat(indexes).contains("IDX_BOOKING_RIDE", "IDX_BOOKING_REQUESTER", "IDX_RIDE_OWNER_EMAIL", "IDX_RATING_REVIEW_REVIEWEE");
+
+            try (ResultSet rs = s.executeQuery("EXPLAIN SELECT * FROM BOOKING WHERE RIDE_ID = 1")) {
+                rs.next();
+                assertThat(rs.getString(1)).contains("IDX_BOOKING_RIDE").doesNotContain("tableScan");
+            }
+
+            s.execute("INSERT INTO BOOKING (ID, TRANSACTION_ID) VALUES (1, 'pi_dup')");
+            boolean rejected = false;
+            try {
+                s.execute("INSERT INTO BOOKING (ID, TRANSACTION_ID) VALUES (2, 'pi_dup')");
+            } catch (java.sql.SQLException e) {
+                rejected = true;
+            }
+            assertThat(rejected).isTrue();
+        }
+    }
+
+    @Test
+    public void v4RefusesDuplicateTransactionIds() throws Exception {
+        String url = "jdbc:h2:mem:lookup-index-duplicates;DB_CLOSE_DELAY=-1";
+
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            s.execute("CREATE TABLE BOOKING (ID BIGINT PRIMARY KEY, STATUS VARCHAR(255), RIDE_ID BIGINT, REQUESTER_ID BIGINT, TRANSACTION_ID VARCHAR(255))");
+            s.execute("INSERT INTO BOOKING (ID, TRANSACTION_ID) VALUES (1, 'pi_twice'), (2, 'pi_twice'), (3, 'pi_once')");
+        }
+
+        assertThatThrownBy(() -> Flyway.configure().dataSource(url, "sa", "").baselineOnMigrate(true).load().migrate())
+                .hasStackTraceContaining("pi_twice (2 bookings)")
+                .hasStackTraceContaining("UK_BOOKING_TRANSACTION_ID");
+
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME LIKE 'UK_BOOKING_TRANSACTION_ID%'")) {
+            rs.next();
+            assertThat(rs.getLong(1)).isZero();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.carpool.tools;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WaitlistExpiredStatusMigrationTest {
+
+    @Test
+    public void v6AllowsExpiredHolds() throws Exception {
+        String url = "jdbc:h2:mem:waitlist-expired-migration;DB_CLOSE_DELAY=-1";
+
+        // WAITLIST_ENTRY as Hibernate created it before holds could expire
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            s.execute("CREATE TABLE BOOKING (ID BIGINT PRIMARY KEY, STATUS VARCHAR(255))");
+            s.execute("CREATE TABLE WAITLIST_ENTRY (ID BIGINT PRIMARY KEY, STATUS VARCHAR(255) CHECK (STATUS IN "
+                    + "('WAITING','PROMOTED','LEFT')))");
+        }
+
+        Flyway.configure().dataSource(url, "sa", "").baselineOnMigrate(true).load().migrate();
+
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            s.execute("INSERT INTO WAITLIST_ENTRY (ID, STATUS) VALUES (1, 'PROMOTED')");
+            s.execute("INSERT INTO WAITLIST_ENTRY (ID, STATUS) VALUES (2, 'EXPIRED')");
+            boolean rejected = false;
+            try {
+                s.execute("INSERT INTO WAITLIST_ENTRY (ID, STATUS) VALUES (3, 'NOT_A_STATUS')");
+            } catch (SQLException e) {
+                rejected = true;
+            }
+            assertThat(rejected).isTrue();
+        }
+    }
+}
@@ -90,6 +90,30 @@ export async function apiFetch(path, opts = {}) {
     return data;
 }
 
+// Fetches a file (e.g. a CSV export) with the user's token and hands it to the browser as a download
+export async function apiDownload(path, filename) {
+    const url = path.startsWith("http") ? path : `${API_BASE}${path}`;
+    const token = getToken();
+    const headers = new Headers();
+    if (token) {
+        headers.set("Authorization", `Bearer ${token}`);
+    }
+    const res = await fetch(url, { headers });
+    if (!res.ok) {
+        const err = new Error(res.statusText || "Download failed");
+        err.status = res.status;
+        throw err;
+    }
+    const blobUrl = URL.createObjectURL(await res.blob());
+    const a = document.createElement("a");
+    a.href = blobUrl;
+    a.download = filename;
+    document.body.appendChild(a);
+    a.click();
+    a.remove();
+    URL.revokeObjectURL(blobUrl);
+}
+
 export const apiGet = (path, opts = {}) => apiFetch(path, { ...opts, method: "GET" });
 export const apiPost = (path, body, opts = {}) => apiFetch(path, { ...opts, method: "POST", body });
 export const apiPut = (path, body, opts = {}) => apiFetch(path, { ...opts, method: "PUT", body });
@@ -18,11 +18,42 @@ export default function NotificationBell({ userId }) {
     useEffect(() => {
         fetchUnreadCount();
         fetchNotifications(0);
-        // optional: polling every 30s
-        const interval = setInterval(() => {
-            fetchUnreadCount();
-        }, 30000);
-        return () => clearInterval(interval);
+
+        // Live updates instead of polling. EventSource reconnects by itself and sends
+        // Last-Event-ID, so the server replays anything missed; "resync" means it could not
+        let source;
+        let retry;
+        const connect = () => {
+            source = new EventSource(`http://localhost:8080/api/notifications/stream/${userId}`);
+            source.addEventListener("notification", (e) => {
+                const n = JSON.parse(e.data);
+                setNotifications(prev => prev.some(x => x.id === n.id) ? prev : [n, ...prev]);
+                setUnreadCount(c => n.unread ?? c + 1);
+            });
+            source.addEventListener("read", (e) => {
+                const r = JSON.parse(e.data);
+                setNotifications(prev => prev.map(x => (r.all || x.id === r.id) ? { ...x, read: true } : x));
+                if (r.unread != null) setUnreadCount(r.unread);
+            });
+            source.addEventListener("resync", () => {
+                fetchUnreadCount();
+                fetchNotifications(0);
+            });
+            source.onerror = () => {
+                // Closed for good (e.g. server down at connect time): start over in a while
+                if (source.readyState === EventSource.CLOSED) {
+                    retry = setTimeout(() => {
+                        connect();
+                        fetchUnreadCount();
+                    }, 15000);
+                }
+            };
+        };
+        connect();
+        return () => {
+            clearTimeout(retry);
+            source && source.close();
+        };
     }, [userId]);
 
     const fetchUnreadCount = async () => {
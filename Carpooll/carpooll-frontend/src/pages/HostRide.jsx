@@ -175,6 +175,8 @@ export default function HostRide({ user }) {
     const [loading, setLoading] = useState(false);
     const [successModal, setSuccessModal] = useState(false);
     const [errorMsg, setErrorMsg] = useState("");
+    const [surge, setSurge] = useState(null);
+    const [applySurge, setApplySurge] = useState(false);
 
     // SYNC TIME DROPDOWNS TO TIME STRING
     useEffect(() => {
@@ -253,6 +255,14 @@ export default function HostRide({ user }) {
         calculate();
     }, [pickup, drop, allStops]);
 
+    // demand multiplier suggested for this corridor; the host decides whether to apply it
+    useEffect(() => {
+        setApplySurge(false);
+        if (!pickup || !drop) { setSurge(null); return; }
+        apiGet(`/api/rides/surge?fromLat=${pickup.lat}&fromLng=${pickup.lng}&toLat=${drop.lat}&toLng=${drop.lng}`)
+            .then(setSurge).catch(() => setSurge(null));
+    }, [pickup, drop]);
+
     // keep estimated end date in sync with departure date by default
     useEffect(() => {
         if (date && !endDate) setEndDate(date);
@@ -285,7 +295,7 @@ export default function HostRide({ user }) {
                 pickupPoints: extraPickups.map(p => p.query).filter(Boolean),
                 dropoffPoints: extraDrops.map(p => p.query).filter(Boolean)
             };
-            await apiPost("/api/rides", payload);
+            await apiPost(applySurge ? "/api/rides?applySurge=true" : "/api/rides", payload);
             setSuccessModal(true);
         } catch (err) { setErrorMsg(err.message || "Failed to publish ride."); } 
         finally { setLoading(false); }
@@ -475,6 +485,12 @@ export default function HostRide({ user }) {
                                                 </div>
                                             );
                                         })()}
+                                        {surge && surge.multiplier > 1 && (
+                                            <label style={{ display: 'flex', alignItems: 'center', gap: '8px', marginTop: '10px', fontSize: '13px', color: 'var(--text)', cursor: 'pointer' }}>
+                                                <input type="checkbox" checked={applySurge} onChange={e => setApplySurge(e.target.checked)} />
+                                                High demand on this route: apply ×{surge.multiplier.toFixed(2)} (₹{(Number(form.price || 0) * surge.multiplier).toFixed(2)} per seat)
+                                            </label>
+                                        )}
                             </div>
                             <div style={{ textAlign: 'center' }}>
                                 <label style={{ fontSize: '10px', color: 'var(--text-muted)', display: 'block', marginBottom: '4px', fontWeight:'bold' }}>SEATS</label>
@@ -202,6 +202,43 @@ function computeFare(ride, seats = 1) {
     return { base: obj.base, platformFees: obj.platformFee, gst: obj.gstTotal, total: obj.total, ...obj };
 }
 
+// Walk /api/bookings/my/history page by page until the server reports the last one
+async function fetchBookingHistory() {
+    const rows = [];
+    for (let page = 0; ; page++) {
+        const res = await apiGet(`/api/bookings/my/history?page=${page}&size=100`);
+        rows.push(...(res?.content || []));
+        if (!res || res.last) return rows;
+    }
+}
+
+// Shape a /api/bookings/my/history row like a booking with its ride attached as rideDetails
+function historyRowToBooking(v) {
+    const { bookingId, driverId, driverEmail, driverPhone, driverRating, refreshedAt, ...rest } = v;
+    return {
+        ...rest,
+        id: bookingId,
+        rideDetails: {
+            id: v.rideId,
+            fromLocation: v.fromLocation,
+            toLocation: v.toLocation,
+            dateTime: v.dateTime,
+            estimatedCompletionDateTime: v.estimatedCompletionDateTime,
+            price: v.price,
+            distanceKm: v.distanceKm,
+            fromLat: v.fromLat,
+            fromLng: v.fromLng,
+            toLat: v.toLat,
+            toLng: v.toLng,
+            carName: v.carName,
+            vehicleNumber: v.vehicleNumber,
+            driverName: v.driverName,
+            ownerId: driverId,
+            ownerEmail: driverEmail,
+        },
+    };
+}
+
 // --- ADVANCED CARD PAYMENT FORM ---
 function AdvancedCardPaymentForm({ paymentBooking, onSuccess, onError, disabled }) {
     const fareObj = computeFare(paymentBooking?.rideDetails || {}, paymentBooking?.seatsRequested || 1);
@@ -622,11 +659,9 @@ const submitRating = async () => {
                     setPassengerRatingsByRide(map);
                 }catch(e){ console.error('Failed to fetch passenger rating aggregates', e); }
             } else {
-                const bookings = await apiGet("/api/bookings/my") || [];
-                const withRide = await Promise.all(bookings.map(async b => {
-                    try { const r = await apiGet(`/api/rides/${b.rideId}`); return { ...b, rideDetails: r }; }
-                    catch(e){ return b; }
-                }));
+                // Bookings come pre-joined with their ride summary from the history read model
+                const rows = await fetchBookingHistory();
+                const withRide = (rows || []).map(historyRowToBooking);
                 const now = new Date();
                 const getRideEnd = (r) => (r && (r.estimatedCompletionDateTime || r.dateTime));
 
@@ -928,8 +963,16 @@ const submitRating = async () => {
             const email = user?.email;
             if (!email) { setEarningsTransactions([]); setEarningsFiltered([]); setEarningsLoading(false); return; }
 
-            const q = new URLSearchParams({ driverEmail: email }).toString();
-            const txs = await apiGet(`/api/driver/transactions?${q}`) || [];
+            // The endpoint pages newest first; follow the cursor to collect the full history
+            const txs = [];
+            let cursor = null;
+            do {
+                const params = { driverEmail: email, limit: '200' };
+                if (cursor) params.cursor = cursor;
+                const page = await apiGet(`/api/driver/transactions?${new URLSearchParams(params).toString()}`);
+                txs.push(...(page?.items || []));
+                cursor = page?.nextCursor || null;
+            } while (cursor);
             // Diagnostics: log raw transactions count and a small sample
             console.debug('fetchEarnings: raw txs count=', (txs||[]).length, 'sample=', (txs||[]).slice(0,6)); 
 
@@ -1,6 +1,6 @@
 // src/pages/admin/AdminDashboard.jsx
 import React, { useEffect, useState } from "react";
-import { apiGet, apiPost, apiDelete } from "../../api/api";
+import { apiGet, apiPost, apiDelete, apiDownload } from "../../api/api";
 import { Users, Shield, Car, LayoutDashboard, UserCheck, X, Calendar, Search, CreditCard, TrendingUp, TrendingDown, AlertCircle } from "lucide-react";
 
 
@@ -261,6 +261,8 @@ export default function AdminDashboard({ user }) {
     const upcomingRidesList = rides.filter(r => getRideEnd(r) && new Date(getRideEnd(r)) >= now).sort((a,b) => new Date(getRideEnd(b)) - new Date(getRideEnd(a)));
     const completedRidesList = rides.filter(r => getRideEnd(r) && new Date(getRideEnd(r)) < now).sort((a,b) => new Date(getRideEnd(b)) - new Date(getRideEnd(a)));
 
+    // Monthly GST / platform-fee totals, aggregated by the backend from the ledger
+    async function downloadTaxReport() { try { await apiDownload("/api/admin/reports/tax", "tax-report.csv"); } catch(e){ console.error(e); alert("Could not generate the tax report. Please try again."); } }
     async function handleAccept(id) { try { await apiPost(`/api/admin/approve/${id}`, {}); await loadData(); setActiveTab('team'); } catch(e){} }
     async function handleDelete(id) { if(!confirm("Are you sure?")) return; try { await apiDelete(`/api/admin/user/${id}`); await loadData(); } catch(e){} }
     async function handlePromote(newRole) { if(!promoteModal) return; try { await apiPost(`/api/admin/promote/${promoteModal.id}`, { role: newRole }); await loadData(); setPromoteModal(null); } catch(e){} }
@@ -648,6 +650,7 @@ export default function AdminDashboard({ user }) {
                             <button onClick={() => setTransactionsView('failed')} className="btn" style={{background: transactionsView === 'failed' ? 'var(--danger)' : 'var(--input-bg)', color: transactionsView === 'failed' ? 'white' : 'var(--text)'}}>Failed ({failedPayments.length})</button>
                             <button onClick={() => setTransactionsView('successful')} className="btn" style={{background: transactionsView === 'successful' ? 'var(--success)' : 'var(--input-bg)', color: transactionsView === 'successful' ? 'white' : 'var(--text)'}}>Successful ({successfulPayments.length})</button>
                         </div>
+                        <button onClick={downloadTaxReport} className="btn btn-secondary">GST Report (CSV)</button>
                         <div style={{width:'260px', position:'relative'}}>
                             <input value={searchTransactions} onChange={e => setSearchTransactions(e.target.value)} placeholder="Search passenger or driver..." style={{width:'100%', padding:'8px 12px', borderRadius:'6px', background:'var(--input-bg)', border:'1px solid var(--border)', color:'var(--text)'}} />
                             <Search size={14} style={{position:'absolute', right:10, top:'50%', transform:'translateY(-50%)', color:'var(--text-muted)'}} />
@@ -1,5 +1,5 @@
 import { useEffect, useState } from "react";
-import { apiGet } from "../../api/api";
+import { apiGet, apiDownload } from "../../api/api";
 import { Search, Calendar, Filter, Download } from "lucide-react";
 
 const DriverTransactions = () => {
@@ -11,10 +11,14 @@ const DriverTransactions = () => {
   const [statusFilter, setStatusFilter] = useState("all");
   const [typeFilter, setTypeFilter] = useState("all");
   const [currentPage, setCurrentPage] = useState(1);
+  const [earnings, setEarnings] = useState(null);
+  const [driverCursor, setDriverCursor] = useState(null);
+  const [loadingOlder, setLoadingOlder] = useState(false);
   const ITEMS_PER_PAGE = 8; // change to 10/15 if you want
 
 useEffect(() => {
   fetchTransactions();
+  fetchEarningsSummary();
 }, []);
 
   useEffect(() => {
@@ -23,31 +27,36 @@ useEffect(() => {
 }, [transactions, searchDate, statusFilter, typeFilter]);
 
 
-  const fetchTransactions = async () => {
+  // Totals come from the server-side daily rollups rather than summing every row here
+  const fetchEarningsSummary = async () => {
+    const user = JSON.parse(localStorage.getItem("user"));
+    if (!user?.email) return;
     try {
-      setLoading(true);
-      setError("");
-      const user = JSON.parse(localStorage.getItem("user"));
-      const userEmail = user?.email;
-      const userRole = user?.role;
-
-      if (!userEmail) {
-        setError("Please login again.");
-        setLoading(false);
-        return;
-      }
+      const queryParams = new URLSearchParams({ driverEmail: user.email, granularity: "month" }).toString();
+      setEarnings(await apiGet(`/api/driver/earnings/summary?${queryParams}`));
+    } catch (err) {
+      console.error("Error fetching earnings summary:", err);
+    }
+  };
 
-      let allTransactions = [];
+  // Earnings as CSV, streamed by the backend (includes archived bookings)
+  const exportCsv = async () => {
+    const user = JSON.parse(localStorage.getItem("user"));
+    if (!user?.email) {
+      setError("Please login again.");
+      return;
+    }
+    try {
+      const queryParams = new URLSearchParams({ driverEmail: user.email, includeArchived: "true" }).toString();
+      await apiDownload(`/api/driver/transactions/export?${queryParams}`, "transactions.csv");
+    } catch (err) {
+      console.error("Error exporting driver transactions:", err);
+      setError("Could not export transactions. Please try again.");
+    }
+  };
 
-      // Fetch driver transactions (money received) - Try for all users, not just DRIVER role
-      // Anyone who has hosted rides can receive payments
-      // Fetch driver transactions (money received)
-try {
-  const queryParams = new URLSearchParams({ driverEmail: userEmail }).toString();
-  const driverData = await apiGet(`/api/driver/transactions?${queryParams}`);
-  console.log("Driver transactions response:", driverData);
-  
-  if (driverData && Array.isArray(driverData) && driverData.length > 0) {
+  // Journey dates for a page of driver transactions, looked up through the host's bookings
+  const enrichDriverTxs = async (driverData) => {
     // Fetch all bookings for the host to get rideId for each transaction
     const hostBookings = await apiGet("/api/bookings/for-host") || [];
     console.log("Host bookings:", hostBookings.length);
@@ -64,7 +73,7 @@ try {
     console.log("Driver transaction IDs:", driverData.map(tx => tx.transactionId));
 
     // Fetch ride details for each transaction to get journey date
-    const driverTxs = await Promise.all(
+    return Promise.all(
       driverData.map(async (tx) => {
         try {
           // Find the booking for this transaction to get rideId
@@ -111,7 +120,56 @@ try {
         }
       })
     );
-    
+  };
+
+  // Next page of driver transactions, merged into the list in date order
+  const loadOlderDriverTransactions = async () => {
+    const user = JSON.parse(localStorage.getItem("user"));
+    if (!user?.email || !driverCursor) return;
+    try {
+      setLoadingOlder(true);
+      const queryParams = new URLSearchParams({ driverEmail: user.email, cursor: driverCursor }).toString();
+      const driverPage = await apiGet(`/api/driver/transactions?${queryParams}`);
+      const olderTxs = await enrichDriverTxs(driverPage?.items || []);
+      setDriverCursor(driverPage?.nextCursor || null);
+      setTransactions(prev => [...prev, ...olderTxs].sort((a, b) => new Date(b.date || 0) - new Date(a.date || 0)));
+    } catch (err) {
+      console.error("Error loading older driver transactions:", err);
+      setError("Could not load older transactions. Please try again.");
+    } finally {
+      setLoadingOlder(false);
+    }
+  };
+
+  const fetchTransactions = async () => {
+    try {
+      setLoading(true);
+      setError("");
+      const user = JSON.parse(localStorage.getItem("user"));
+      const userEmail = user?.email;
+      const userRole = user?.role;
+
+      if (!userEmail) {
+        setError("Please login again.");
+        setLoading(false);
+        return;
+      }
+
+      let allTransactions = [];
+
+      // Fetch driver transactions (money received) - Try for all users, not just DRIVER role
+      // Anyone who has hosted rides can receive payments
+      // Fetch driver transactions (money received)
+try {
+  const queryParams = new URLSearchParams({ driverEmail: userEmail }).toString();
+  // Newest page only; older pages are fetched on demand with the returned cursor
+  const driverPage = await apiGet(`/api/driver/transactions?${queryParams}`);
+  console.log("Driver transactions response:", driverPage);
+  const driverData = driverPage?.items || [];
+  setDriverCursor(driverPage?.nextCursor || null);
+  
+  if (driverData.length > 0) {
+    const driverTxs = await enrichDriverTxs(driverData);
     allTransactions = allTransactions.concat(driverTxs);
     console.log("Added driver transactions:", driverTxs.length);
     console.log("Driver transactions with journey dates:", driverTxs.filter(tx => tx.journeyDate).length);
@@ -463,6 +521,27 @@ const paginatedTransactions = filteredTransactions.slice(
             >
               Clear Filters
             </button>
+
+            <button
+              onClick={exportCsv}
+              style={{
+                padding: "12px 24px",
+                background: "#3b82f6",
+                border: "none",
+                borderRadius: "8px",
+                color: "white",
+                fontSize: "14px",
+                fontWeight: "bold",
+                cursor: "pointer",
+                whiteSpace: "nowrap",
+                display: "flex",
+                alignItems: "center",
+                gap: "6px"
+              }}
+            >
+              <Download size={16} />
+              Export CSV
+            </button>
           </div>
         </div>
 
@@ -738,6 +817,25 @@ const paginatedTransactions = filteredTransactions.slice(
   </div>
 )}
 
+{driverCursor && !loading && (
+  <div style={{ display: "flex", justifyContent: "center", padding: "12px" }}>
+    <button
+      disabled={loadingOlder}
+      onClick={loadOlderDriverTransactions}
+      style={{
+        padding: "8px 16px",
+        borderRadius: "8px",
+        border: "1px solid var(--border)",
+        background: "var(--bg-secondary)",
+        color: "var(--text)",
+        cursor: loadingOlder ? "not-allowed" : "pointer"
+      }}
+    >
+      {loadingOlder ? "Loading..." : "Load older earnings"}
+    </button>
+  </div>
+)}
+
         {/* Summary */}
         {!loading && !error && filteredTransactions.length > 0 && (
           <div style={{
@@ -761,7 +859,15 @@ const paginatedTransactions = filteredTransactions.slice(
             <div>
             <div style={{ fontSize: "12px", color: "#9ca3af", marginBottom: "4px" }}>Total Received (All time)</div>
   <div style={{ fontSize: "24px", fontWeight: "bold", color: "#10b981" }}>
-    ₹{(transactions.filter(tx => (tx.type === "credited" || (tx.role || '').toLowerCase() === 'driver')).reduce((sum, tx) => sum + (Number(tx.amount ?? tx.netAmount ?? tx.creditedAmount ?? tx.value ?? 0) || 0), 0)).toFixed(2)}
+    ₹{Number(earnings?.allTime?.net ?? 0).toFixed(2)}
+  </div>
+</div>
+<div>
+  <div style={{ fontSize: "12px", color: "#9ca3af", marginBottom: "4px" }}>Received This Month</div>
+  <div style={{ fontSize: "24px", fontWeight: "bold", color: "#10b981" }}>
+    ₹{Number(earnings?.periods?.[earnings.periods.length - 1]?.period === new Date().toISOString().slice(0, 7)
+      ? earnings.periods[earnings.periods.length - 1].net
+      : 0).toFixed(2)}
   </div>
 </div>
 <div>